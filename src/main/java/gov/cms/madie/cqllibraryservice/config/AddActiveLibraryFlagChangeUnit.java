@@ -11,7 +11,7 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
 @Slf4j
-@ChangeUnit(id = "add_active_library_flag", order = "1", author = "madie_dev")
+@ChangeUnit(id = "add_active_library_flag", order = "001", author = "madie_dev")
 public class AddActiveLibraryFlagChangeUnit {
 
   @Execution
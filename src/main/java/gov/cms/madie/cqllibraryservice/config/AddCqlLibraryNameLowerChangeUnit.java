@@ -0,0 +1,49 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.CQL_LIBRARY_NAME_LOWER;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Backfills the lower-cased library name used by the duplicate name check and indexes it. New and
+ * updated libraries get the field from the before save callback.
+ */
+@Slf4j
+@ChangeUnit(id = "add_cql_library_name_lower", order = "006", author = "madie_dev")
+public class AddCqlLibraryNameLowerChangeUnit {
+  static final String NAME_LOWER_INDEX = "cqlLibraryNameLower_1";
+
+  @Execution
+  public void addCqlLibraryNameLower(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library.cqlLibraryNameLower");
+    mongoTemplate.updateMulti(
+        new Query(),
+        AggregationUpdate.update()
+            .set(CQL_LIBRARY_NAME_LOWER)
+            .toValue(StringOperators.valueOf("cqlLibraryName").toLower()),
+        CqlLibrary.class);
+    mongoTemplate
+        .indexOps(CqlLibrary.class)
+        .ensureIndex(
+            new Index().on(CQL_LIBRARY_NAME_LOWER, Sort.Direction.ASC).named(NAME_LOWER_INDEX));
+    log.info("Running changelog to add library.cqlLibraryNameLower is complete");
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library.cqlLibraryNameLower");
+    mongoTemplate.updateMulti(
+        new Query(), new Update().unset(CQL_LIBRARY_NAME_LOWER), CqlLibrary.class);
+  }
+}
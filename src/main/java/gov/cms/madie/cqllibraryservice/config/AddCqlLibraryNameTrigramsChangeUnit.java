@@ -0,0 +1,73 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.CQL_LIBRARY_NAME_TRIGRAMS;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Backfills the name trigrams used by the library name search and indexes them. The trigrams are
+ * computed by the database, the same way the before save callback computes them for new and updated
+ * libraries.
+ */
+@Slf4j
+@ChangeUnit(id = "add_cql_library_name_trigrams", order = "008", author = "madie_dev")
+public class AddCqlLibraryNameTrigramsChangeUnit {
+  static final String NAME_TRIGRAMS_INDEX = "cqlLibraryNameTrigrams_1";
+
+  @Execution
+  public void addCqlLibraryNameTrigrams(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library.cqlLibraryNameTrigrams");
+    Document name =
+        new Document("$toLower", new Document("$ifNull", List.of("$cqlLibraryName", "")));
+    // substrings at every start position up to the last full trigram, de-duplicated by $setUnion
+    Document starts =
+        new Document(
+            "$range",
+            List.of(
+                0,
+                new Document(
+                    "$max",
+                    List.of(
+                        0,
+                        new Document("$subtract", List.of(new Document("$strLenCP", name), 2))))));
+    Document trigrams =
+        new Document(
+            "$setUnion",
+            List.of(
+                new Document(
+                    "$map",
+                    new Document("input", starts)
+                        .append("as", "start")
+                        .append("in", new Document("$substrCP", List.of(name, "$$start", 3))))));
+    mongoTemplate
+        .getCollection(mongoTemplate.getCollectionName(CqlLibrary.class))
+        .updateMany(
+            new Document(),
+            List.of(new Document("$set", new Document(CQL_LIBRARY_NAME_TRIGRAMS, trigrams))));
+    mongoTemplate
+        .indexOps(CqlLibrary.class)
+        .ensureIndex(
+            new Index()
+                .on(CQL_LIBRARY_NAME_TRIGRAMS, Sort.Direction.ASC)
+                .named(NAME_TRIGRAMS_INDEX));
+    log.info("Running changelog to add library.cqlLibraryNameTrigrams is complete");
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library.cqlLibraryNameTrigrams");
+    mongoTemplate.updateMulti(
+        new Query(), new Update().unset(CQL_LIBRARY_NAME_TRIGRAMS), CqlLibrary.class);
+  }
+}
@@ -17,7 +17,7 @@ import org.springframework.data.mongodb.core.query.Update;
 import java.util.List;
 
 @Slf4j
-@ChangeUnit(id = "add_included_libraries_prop", order = "2", author = "madie_dev")
+@ChangeUnit(id = "add_included_libraries_prop", order = "002", author = "madie_dev")
 public class AddIncludedLibrariesPropChangeUnit {
 
   @Execution
@@ -0,0 +1,70 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Collation;
+
+/**
+ * Indexes used to resolve the library sets a user can access before reading their libraries. The
+ * user id indexes are case-insensitive (en, strength 2), matching the collation of the query.
+ */
+@Slf4j
+@ChangeUnit(id = "add_library_access_indexes", order = "004", author = "madie_dev")
+public class AddLibraryAccessIndexesChangeUnit {
+  static final String OWNER_INDEX = "owner_1_ci";
+  static final String ACL_USER_ID_INDEX = "acls.userId_1_ci";
+  static final String LIBRARY_SET_ID_INDEX = "librarySetId_1";
+
+  private static final Collation CASE_INSENSITIVE =
+      Collation.of("en").strength(Collation.ComparisonLevel.secondary());
+
+  @Execution
+  public void addLibraryAccessIndexes(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library access indexes");
+    mongoTemplate
+        .indexOps(LibrarySet.class)
+        .ensureIndex(
+            new Index()
+                .on("owner", Sort.Direction.ASC)
+                .collation(CASE_INSENSITIVE)
+                .named(OWNER_INDEX));
+    mongoTemplate
+        .indexOps(LibrarySet.class)
+        .ensureIndex(
+            new Index()
+                .on("acls.userId", Sort.Direction.ASC)
+                .collation(CASE_INSENSITIVE)
+                .named(ACL_USER_ID_INDEX));
+    IndexOperations libraryIndexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    // the model may already declare an index on librarySetId under another name
+    boolean librarySetIdIndexed =
+        libraryIndexOperations.getIndexInfo().stream()
+            .anyMatch(index -> index.isIndexForFields(List.of("librarySetId")));
+    if (!librarySetIdIndexed) {
+      libraryIndexOperations.ensureIndex(
+          new Index().on("librarySetId", Sort.Direction.ASC).named(LIBRARY_SET_ID_INDEX));
+    }
+    log.info("Running changelog to add library access indexes is complete");
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library access indexes");
+    mongoTemplate.indexOps(LibrarySet.class).dropIndex(OWNER_INDEX);
+    mongoTemplate.indexOps(LibrarySet.class).dropIndex(ACL_USER_ID_INDEX);
+    IndexOperations libraryIndexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    if (libraryIndexOperations.getIndexInfo().stream()
+        .anyMatch(index -> LIBRARY_SET_ID_INDEX.equals(index.getName()))) {
+      libraryIndexOperations.dropIndex(LIBRARY_SET_ID_INDEX);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Compound indexes backing the paged library listing. Every sort key ends with _id, so a page
+ * continuing from a cursor is a single index range scan, with or without the model/draft filters.
+ */
+@Slf4j
+@ChangeUnit(id = "add_library_list_indexes", order = "003", author = "madie_dev")
+public class AddLibraryListIndexesChangeUnit {
+  static final String NAME_INDEX = "cqlLibraryName_1__id_1";
+  static final String CREATED_AT_INDEX = "createdAt_-1__id_-1";
+  static final String MODEL_DRAFT_NAME_INDEX = "model_1_draft_1_cqlLibraryName_1__id_1";
+  static final String MODEL_DRAFT_CREATED_AT_INDEX = "model_1_draft_1_createdAt_-1__id_-1";
+
+  @Execution
+  public void addLibraryListIndexes(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library list indexes");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.ensureIndex(
+        new Index()
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on("_id", Sort.Direction.ASC)
+            .named(NAME_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("createdAt", Sort.Direction.DESC)
+            .on("_id", Sort.Direction.DESC)
+            .named(CREATED_AT_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("model", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on("_id", Sort.Direction.ASC)
+            .named(MODEL_DRAFT_NAME_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("model", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("createdAt", Sort.Direction.DESC)
+            .on("_id", Sort.Direction.DESC)
+            .named(MODEL_DRAFT_CREATED_AT_INDEX));
+    log.info("Running changelog to add library list indexes is complete");
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library list indexes");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.dropIndex(NAME_INDEX);
+    indexOperations.dropIndex(CREATED_AT_INDEX);
+    indexOperations.dropIndex(MODEL_DRAFT_NAME_INDEX);
+    indexOperations.dropIndex(MODEL_DRAFT_CREATED_AT_INDEX);
+  }
+}
@@ -11,7 +11,7 @@ import io.mongock.api.annotations.ChangeUnit;
 import io.mongock.api.annotations.Execution;
 import io.mongock.api.annotations.RollbackExecution;
 
-@ChangeUnit(id = "add_library_set", order = "2", author = "madie_dev")
+@ChangeUnit(id = "add_library_set", order = "002", author = "madie_dev")
 public class AddLibrarySetChangeUnit {
 
   @Execution
@@ -0,0 +1,50 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Compound indexes backing the paged library listing of a user, which is limited to the user's
+ * library sets. The planner scans the sort key range of each library set and merges the scans in
+ * sort order, so a page still stops after limit libraries.
+ */
+@Slf4j
+@ChangeUnit(id = "add_library_set_list_indexes", order = "011", author = "madie_dev")
+public class AddLibrarySetListIndexesChangeUnit {
+  static final String LIBRARY_SET_NAME_INDEX = "librarySetId_1_cqlLibraryName_1__id_1";
+  static final String LIBRARY_SET_CREATED_AT_INDEX = "librarySetId_1_createdAt_-1__id_-1";
+
+  @Execution
+  public void addLibrarySetListIndexes(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library set list indexes");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.ensureIndex(
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on("_id", Sort.Direction.ASC)
+            .named(LIBRARY_SET_NAME_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .on("createdAt", Sort.Direction.DESC)
+            .on("_id", Sort.Direction.DESC)
+            .named(LIBRARY_SET_CREATED_AT_INDEX));
+    log.info("Running changelog to add library set list indexes is complete");
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library set list indexes");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.dropIndex(LIBRARY_SET_NAME_INDEX);
+    indexOperations.dropIndex(LIBRARY_SET_CREATED_AT_INDEX);
+  }
+}
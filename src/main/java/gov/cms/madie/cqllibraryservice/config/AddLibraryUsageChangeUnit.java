@@ -0,0 +1,101 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryUsageEntry;
+import gov.cms.madie.cqllibraryservice.repositories.LibraryUsageRepositoryImpl;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Builds the libraryUsage collection from the includes of the active libraries and indexes it.
+ * Later saves of libraries and library sets keep it up to date through the library usage listener.
+ */
+@Slf4j
+@ChangeUnit(id = "add_library_usage", order = "007", author = "madie_dev")
+public class AddLibraryUsageChangeUnit {
+  static final String LIBRARY_NAME_INDEX = "libraryName_1";
+  static final String USED_BY_ID_INDEX = "usedById_1";
+  static final String USED_BY_LIBRARY_SET_ID_INDEX = "usedByLibrarySetId_1";
+  static final int BATCH_SIZE = 500;
+
+  @Execution
+  public void addLibraryUsage(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add libraryUsage");
+    IndexOperations indexOperations = mongoTemplate.indexOps(LibraryUsageEntry.class);
+    indexOperations.ensureIndex(
+        new Index().on("libraryName", Sort.Direction.ASC).named(LIBRARY_NAME_INDEX));
+    indexOperations.ensureIndex(
+        new Index().on("usedById", Sort.Direction.ASC).named(USED_BY_ID_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("usedByLibrarySetId", Sort.Direction.ASC)
+            .named(USED_BY_LIBRARY_SET_ID_INDEX));
+
+    mongoTemplate.remove(new Query(), LibraryUsageEntry.class);
+    Query query =
+        Query.query(Criteria.where("active").is(true).and("includedLibraries.0").exists(true));
+    List<CqlLibrary> batch = new ArrayList<>(BATCH_SIZE);
+    int count = 0;
+    try (Stream<CqlLibrary> libraries = mongoTemplate.stream(query, CqlLibrary.class)) {
+      for (CqlLibrary library : (Iterable<CqlLibrary>) libraries::iterator) {
+        batch.add(library);
+        if (batch.size() == BATCH_SIZE) {
+          count += insertLibraryUsage(mongoTemplate, batch);
+          batch.clear();
+        }
+      }
+    }
+    count += insertLibraryUsage(mongoTemplate, batch);
+    log.info("Running changelog to add libraryUsage is complete, {} entries added", count);
+  }
+
+  private int insertLibraryUsage(MongoTemplate mongoTemplate, List<CqlLibrary> libraries) {
+    if (libraries.isEmpty()) {
+      return 0;
+    }
+    List<String> librarySetIds =
+        libraries.stream().map(CqlLibrary::getLibrarySetId).filter(Objects::nonNull).toList();
+    Map<String, String> owners =
+        mongoTemplate
+            .find(Query.query(Criteria.where("librarySetId").in(librarySetIds)), LibrarySet.class)
+            .stream()
+            .filter(
+                librarySet -> librarySet.getLibrarySetId() != null && librarySet.getOwner() != null)
+            .collect(
+                Collectors.toMap(
+                    LibrarySet::getLibrarySetId, LibrarySet::getOwner, (first, second) -> first));
+    List<LibraryUsageEntry> entries =
+        libraries.stream()
+            .flatMap(
+                library ->
+                    LibraryUsageRepositoryImpl.toLibraryUsageEntries(
+                        library, owners.get(library.getLibrarySetId()))
+                        .stream())
+            .toList();
+    if (!entries.isEmpty()) {
+      mongoTemplate.insertAll(entries);
+    }
+    return entries.size();
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back libraryUsage");
+    mongoTemplate.dropCollection(LibraryUsageEntry.class);
+  }
+}
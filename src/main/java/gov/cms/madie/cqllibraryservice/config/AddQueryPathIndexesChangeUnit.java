@@ -0,0 +1,97 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Indexes for the repository lookups: version lookups within a library set, versioned library
+ * lookups by name, library usage, library set lookups and action log upserts. An index is skipped
+ * if the collection already has one on the same fields, e.g. declared on the model.
+ */
+@Slf4j
+@ChangeUnit(id = "add_query_path_indexes", order = "005", author = "madie_dev")
+public class AddQueryPathIndexesChangeUnit {
+  static final String LIBRARY_SET_VERSION_INDEX =
+      "librarySetId_1_draft_1_version.major_-1_version.minor_-1";
+  static final String NAME_VERSION_MODEL_INDEX = "cqlLibraryName_1_draft_1_version_1_model_1";
+  static final String INCLUDED_LIBRARIES_INDEX = "includedLibraries.name_1_active_1";
+  static final String LIBRARY_SET_ID_INDEX = "librarySetId_1";
+  static final String TARGET_ID_INDEX = "targetId_1";
+
+  @Execution
+  public void addQueryPathIndexes(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add query path indexes");
+    IndexOperations libraryIndexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    ensureIndex(
+        libraryIndexOperations,
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("version.major", Sort.Direction.DESC)
+            .on("version.minor", Sort.Direction.DESC)
+            .named(LIBRARY_SET_VERSION_INDEX),
+        List.of("librarySetId", "draft", "version.major", "version.minor"));
+    ensureIndex(
+        libraryIndexOperations,
+        new Index()
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("version", Sort.Direction.ASC)
+            .on("model", Sort.Direction.ASC)
+            .named(NAME_VERSION_MODEL_INDEX),
+        List.of("cqlLibraryName", "draft", "version", "model"));
+    ensureIndex(
+        libraryIndexOperations,
+        new Index()
+            .on("includedLibraries.name", Sort.Direction.ASC)
+            .on("active", Sort.Direction.ASC)
+            .named(INCLUDED_LIBRARIES_INDEX),
+        List.of("includedLibraries.name", "active"));
+    ensureIndex(
+        mongoTemplate.indexOps(LibrarySet.class),
+        new Index().on("librarySetId", Sort.Direction.ASC).named(LIBRARY_SET_ID_INDEX),
+        List.of("librarySetId"));
+    ensureIndex(
+        mongoTemplate.indexOps(ActionLog.class),
+        new Index().on("targetId", Sort.Direction.ASC).named(TARGET_ID_INDEX),
+        List.of("targetId"));
+    log.info("Running changelog to add query path indexes is complete");
+  }
+
+  private void ensureIndex(IndexOperations indexOperations, Index index, List<String> fields) {
+    boolean indexed =
+        indexOperations.getIndexInfo().stream().anyMatch(info -> info.isIndexForFields(fields));
+    if (indexed) {
+      log.info("Index on {} already exists", fields);
+    } else {
+      indexOperations.ensureIndex(index);
+    }
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back query path indexes");
+    IndexOperations libraryIndexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    dropIndex(libraryIndexOperations, LIBRARY_SET_VERSION_INDEX);
+    dropIndex(libraryIndexOperations, NAME_VERSION_MODEL_INDEX);
+    dropIndex(libraryIndexOperations, INCLUDED_LIBRARIES_INDEX);
+    dropIndex(mongoTemplate.indexOps(LibrarySet.class), LIBRARY_SET_ID_INDEX);
+    dropIndex(mongoTemplate.indexOps(ActionLog.class), TARGET_ID_INDEX);
+  }
+
+  private void dropIndex(IndexOperations indexOperations, String name) {
+    if (indexOperations.getIndexInfo().stream().anyMatch(info -> name.equals(info.getName()))) {
+      indexOperations.dropIndex(name);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.CQL_LIBRARY_NAME_LOWER;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Makes the lower-cased library name unique among drafts, so two concurrent requests can no longer
+ * both pass the duplicate name check and save a draft with the same name. Versions share the name
+ * of their draft and are left out of the index. Existing duplicates have to be resolved by hand, so
+ * the migration fails while there are any; Mongock records it as failed and runs it again on the
+ * next start.
+ */
+@Slf4j
+@ChangeUnit(id = "add_unique_draft_name_index", order = "012", author = "madie_dev")
+public class AddUniqueDraftNameIndexChangeUnit {
+  static final String UNIQUE_DRAFT_NAME_INDEX = "cqlLibraryNameLower_1_draft_unique";
+
+  @Execution
+  public void addUniqueDraftNameIndex(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add the unique draft library name index");
+    List<Document> duplicates = findDuplicateDraftNames(mongoTemplate);
+    if (!duplicates.isEmpty()) {
+      throw new IllegalStateException(
+          "Unique draft library name index not created, names used by more than one draft: "
+              + duplicates);
+    }
+    mongoTemplate
+        .indexOps(CqlLibrary.class)
+        .ensureIndex(
+            new Index()
+                .on(CQL_LIBRARY_NAME_LOWER, Sort.Direction.ASC)
+                .unique()
+                .partial(PartialIndexFilter.of(Criteria.where("draft").is(true)))
+                .named(UNIQUE_DRAFT_NAME_INDEX));
+    log.info("Running changelog to add the unique draft library name index is complete");
+  }
+
+  private List<Document> findDuplicateDraftNames(MongoTemplate mongoTemplate) {
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("draft").is(true)),
+            Aggregation.group(CQL_LIBRARY_NAME_LOWER).count().as("count"),
+            Aggregation.match(Criteria.where("count").gt(1)),
+            Aggregation.limit(100));
+    return mongoTemplate
+        .aggregate(aggregation, CqlLibrary.class, Document.class)
+        .getMappedResults();
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back the unique draft library name index");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    if (indexOperations.getIndexInfo().stream()
+        .anyMatch(info -> UNIQUE_DRAFT_NAME_INDEX.equals(info.getName()))) {
+      indexOperations.dropIndex(UNIQUE_DRAFT_NAME_INDEX);
+    }
+  }
+}
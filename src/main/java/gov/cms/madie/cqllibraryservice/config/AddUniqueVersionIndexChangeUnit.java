@@ -0,0 +1,74 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.VERSION_KEY;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * Makes a version number unique within a library set, so two concurrent versioning requests can no
+ * longer both save the same next version. Drafts are left out of the index. Existing duplicates
+ * have to be resolved by hand, so the migration fails while there are any; Mongock records it as
+ * failed and runs it again on the next start.
+ */
+@Slf4j
+@ChangeUnit(id = "add_unique_version_index", order = "010", author = "madie_dev")
+public class AddUniqueVersionIndexChangeUnit {
+  static final String UNIQUE_VERSION_INDEX = "librarySetId_1_versionKey_1_unique";
+
+  @Execution
+  public void addUniqueVersionIndex(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add the unique library version index");
+    List<Document> duplicates = findDuplicateVersions(mongoTemplate);
+    if (!duplicates.isEmpty()) {
+      throw new IllegalStateException(
+          "Unique library version index not created, versions saved more than once: " + duplicates);
+    }
+    mongoTemplate
+        .indexOps(CqlLibrary.class)
+        .ensureIndex(
+            new Index()
+                .on("librarySetId", Sort.Direction.ASC)
+                .on(VERSION_KEY, Sort.Direction.ASC)
+                .unique()
+                .partial(
+                    PartialIndexFilter.of(
+                        Criteria.where("draft").is(false).and(VERSION_KEY).exists(true)))
+                .named(UNIQUE_VERSION_INDEX));
+    log.info("Running changelog to add the unique library version index is complete");
+  }
+
+  private List<Document> findDuplicateVersions(MongoTemplate mongoTemplate) {
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("draft").is(false).and(VERSION_KEY).exists(true)),
+            Aggregation.group("librarySetId", VERSION_KEY).count().as("count"),
+            Aggregation.match(Criteria.where("count").gt(1)),
+            Aggregation.limit(100));
+    return mongoTemplate
+        .aggregate(aggregation, CqlLibrary.class, Document.class)
+        .getMappedResults();
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back the unique library version index");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    if (indexOperations.getIndexInfo().stream()
+        .anyMatch(info -> UNIQUE_VERSION_INDEX.equals(info.getName()))) {
+      indexOperations.dropIndex(UNIQUE_VERSION_INDEX);
+    }
+  }
+}
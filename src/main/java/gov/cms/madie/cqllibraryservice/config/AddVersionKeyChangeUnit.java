@@ -0,0 +1,111 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.VERSION_KEY;
+
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
+import gov.cms.madie.models.library.CqlLibrary;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Backfills the packed version key of the libraries and indexes it for the version lookups within a
+ * library set and for the versioned library listings. The key is computed by the database the same
+ * way VersionKeyUtils computes it in the before save callback. The indexes these supersede, being
+ * prefixes of them or keyed on the version components, are dropped.
+ */
+@Slf4j
+@ChangeUnit(id = "add_version_key", order = "009", author = "madie_dev")
+public class AddVersionKeyChangeUnit {
+  static final String LIBRARY_SET_VERSION_KEY_INDEX = "librarySetId_1_draft_1_versionKey_-1";
+  static final String MODEL_NAME_VERSION_KEY_INDEX =
+      "model_1_draft_1_cqlLibraryName_1_versionKey_-1";
+  static final List<String> SUPERSEDED_INDEXES =
+      List.of(
+          AddQueryPathIndexesChangeUnit.LIBRARY_SET_VERSION_INDEX,
+          AddLibraryListIndexesChangeUnit.MODEL_DRAFT_NAME_INDEX,
+          AddLibraryAccessIndexesChangeUnit.LIBRARY_SET_ID_INDEX);
+
+  @Execution
+  public void addVersionKey(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to add library.versionKey");
+    Document versionKey =
+        new Document(
+            "$add",
+            List.of(
+                new Document(
+                    "$multiply",
+                    List.of(
+                        versionComponent("$version.major"),
+                        VersionKeyUtils.MINOR_FACTOR * VersionKeyUtils.MINOR_FACTOR)),
+                new Document(
+                    "$multiply",
+                    List.of(versionComponent("$version.minor"), VersionKeyUtils.MINOR_FACTOR)),
+                versionComponent("$version.revisionNumber")));
+    mongoTemplate
+        .getCollection(mongoTemplate.getCollectionName(CqlLibrary.class))
+        .updateMany(
+            new Document("version", new Document("$type", "object")),
+            List.of(new Document("$set", new Document(VERSION_KEY, versionKey))));
+
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.ensureIndex(
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on(VERSION_KEY, Sort.Direction.DESC)
+            .named(LIBRARY_SET_VERSION_KEY_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("model", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on(VERSION_KEY, Sort.Direction.DESC)
+            .named(MODEL_NAME_VERSION_KEY_INDEX));
+    List<String> indexNames =
+        indexOperations.getIndexInfo().stream().map(IndexInfo::getName).toList();
+    SUPERSEDED_INDEXES.stream().filter(indexNames::contains).forEach(indexOperations::dropIndex);
+    log.info("Running changelog to add library.versionKey is complete");
+  }
+
+  private Document versionComponent(String field) {
+    return new Document("$toLong", new Document("$ifNull", List.of(field, 0)));
+  }
+
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back library.versionKey");
+    IndexOperations indexOperations = mongoTemplate.indexOps(CqlLibrary.class);
+    indexOperations.dropIndex(LIBRARY_SET_VERSION_KEY_INDEX);
+    indexOperations.dropIndex(MODEL_NAME_VERSION_KEY_INDEX);
+    indexOperations.ensureIndex(
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("version.major", Sort.Direction.DESC)
+            .on("version.minor", Sort.Direction.DESC)
+            .named(AddQueryPathIndexesChangeUnit.LIBRARY_SET_VERSION_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("model", Sort.Direction.ASC)
+            .on("draft", Sort.Direction.ASC)
+            .on("cqlLibraryName", Sort.Direction.ASC)
+            .on("_id", Sort.Direction.ASC)
+            .named(AddLibraryListIndexesChangeUnit.MODEL_DRAFT_NAME_INDEX));
+    indexOperations.ensureIndex(
+        new Index()
+            .on("librarySetId", Sort.Direction.ASC)
+            .named(AddLibraryAccessIndexesChangeUnit.LIBRARY_SET_ID_INDEX));
+    mongoTemplate.updateMulti(new Query(), new Update().unset(VERSION_KEY), CqlLibrary.class);
+  }
+}
@@ -11,7 +11,7 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
 @Slf4j
-@ChangeUnit(id = "delete_group_id_from_library", order = "1", author = "madie_dev")
+@ChangeUnit(id = "delete_group_id_from_library", order = "001", author = "madie_dev")
 public class DeleteGroupIdFromLibraryChangeUnit {
 
   @Execution
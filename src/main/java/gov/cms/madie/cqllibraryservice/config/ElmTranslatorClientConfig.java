@@ -1,14 +1,100 @@
 package gov.cms.madie.cqllibraryservice.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import gov.cms.madie.models.measure.ElmJson;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 @Configuration
 public class ElmTranslatorClientConfig {
 
+  /**
+   * Cache of translated ELM, weighed by the size of the JSON and XML it holds so that the bound is
+   * an approximation of the memory used rather than a count of (very differently sized) libraries.
+   */
   @Bean
-  public RestTemplate elmTranslatorRestTemplate() {
-    return new RestTemplate();
+  public Cache<String, ElmJson> elmJsonCache(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    Cache<String, ElmJson> cache =
+        Caffeine.newBuilder()
+            .maximumWeight(environmentConfig.getElmJsonCacheMaxSizeMb() * 1024 * 1024)
+            .weigher(
+                (String key, ElmJson elmJson) ->
+                    StringUtils.length(elmJson.getJson()) + StringUtils.length(elmJson.getXml()))
+            .recordStats()
+            .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, "elmJsonCache");
+  }
+
+  /**
+   * Circuit breakers for the translator, one per translator endpoint (QDM and FHIR), so an outage
+   * of one does not fail calls to the other. Client errors (e.g. an expired token) are the caller's
+   * problem and do not count as translator failures.
+   */
+  @Bean
+  public CircuitBreakerRegistry elmTranslatorCircuitBreakerRegistry(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    CircuitBreakerRegistry registry =
+        CircuitBreakerRegistry.of(
+            CircuitBreakerConfig.custom()
+                .failureRateThreshold(environmentConfig.getElmTranslatorFailureRateThreshold())
+                .slowCallRateThreshold(environmentConfig.getElmTranslatorSlowCallRateThreshold())
+                .slowCallDurationThreshold(
+                    environmentConfig.getElmTranslatorSlowCallDurationThreshold())
+                .slidingWindowSize(environmentConfig.getElmTranslatorSlidingWindowSize())
+                .minimumNumberOfCalls(environmentConfig.getElmTranslatorSlidingWindowSize())
+                .waitDurationInOpenState(
+                    environmentConfig.getElmTranslatorWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(
+                    environmentConfig.getElmTranslatorPermittedCallsInHalfOpenState())
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+    return registry;
+  }
+
+  /**
+   * Bulkheads for the translator, one per translator endpoint, bounding the request threads that
+   * can be blocked on it. Rejections are counted in resilience4j.bulkhead.rejected.calls.
+   */
+  @Bean
+  public BulkheadRegistry elmTranslatorBulkheadRegistry(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    BulkheadRegistry registry =
+        BulkheadRegistry.of(
+            BulkheadConfig.custom()
+                .maxConcurrentCalls(environmentConfig.getElmTranslatorMaxConcurrentCalls())
+                .maxWaitDuration(environmentConfig.getElmTranslatorBulkheadMaxWait())
+                .build());
+    registry
+        .getEventPublisher()
+        .onEntryAdded(
+            (EntryAddedEvent<Bulkhead> event) ->
+                event
+                    .getAddedEntry()
+                    .getEventPublisher()
+                    .onCallRejected(
+                        rejected ->
+                            meterRegistry
+                                .counter(
+                                    "resilience4j.bulkhead.rejected.calls",
+                                    "name",
+                                    rejected.getBulkheadName())
+                                .increment()));
+    TaggedBulkheadMetrics.ofBulkheadRegistry(registry).bindTo(meterRegistry);
+    return registry;
   }
 }
@@ -1,5 +1,7 @@
 package gov.cms.madie.cqllibraryservice.config;
 
+import gov.cms.madie.cqllibraryservice.services.ActionLogWriter;
+import java.time.Duration;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
@@ -17,6 +19,93 @@ public class EnvironmentConfig {
   @Value("${madie.cql-elm.service.elm-json-uri}")
   private String cqlElmServiceElmJsonUri;
 
+  @Value("${madie.cql-elm.service.translator-version:}")
+  private String cqlElmTranslatorVersion;
+
+  @Value("${madie.cql-elm.service.read-timeout:60s}")
+  private Duration cqlElmServiceReadTimeout;
+
+  @Value("${madie.cql-elm.bulkhead.max-concurrent-calls:20}")
+  private int elmTranslatorMaxConcurrentCalls;
+
+  @Value("${madie.cql-elm.bulkhead.max-wait:500ms}")
+  private Duration elmTranslatorBulkheadMaxWait;
+
+  @Value("${madie.cql-elm.circuit-breaker.failure-rate-threshold:50}")
+  private float elmTranslatorFailureRateThreshold;
+
+  @Value("${madie.cql-elm.circuit-breaker.slow-call-rate-threshold:50}")
+  private float elmTranslatorSlowCallRateThreshold;
+
+  @Value("${madie.cql-elm.circuit-breaker.slow-call-duration-threshold:10s}")
+  private Duration elmTranslatorSlowCallDurationThreshold;
+
+  @Value("${madie.cql-elm.circuit-breaker.sliding-window-size:20}")
+  private int elmTranslatorSlidingWindowSize;
+
+  @Value("${madie.cql-elm.circuit-breaker.wait-duration-in-open-state:30s}")
+  private Duration elmTranslatorWaitDurationInOpenState;
+
+  @Value("${madie.cql-elm.circuit-breaker.permitted-calls-in-half-open-state:3}")
+  private int elmTranslatorPermittedCallsInHalfOpenState;
+
+  @Value("${madie.cql-elm.translation-executor.threads:8}")
+  private int elmTranslationThreads;
+
+  @Value("${madie.cql-elm.translation-executor.queue-capacity:100}")
+  private int elmTranslationQueueCapacity;
+
+  @Value("${madie.cql-elm.cache.max-size-mb:256}")
+  private long elmJsonCacheMaxSizeMb;
+
+  @Value("${madie.library-set.cache.max-size:10000}")
+  private long librarySetCacheMaxSize;
+
+  @Value("${madie.library-set.cache.expire-after-write:5m}")
+  private Duration librarySetCacheExpireAfterWrite;
+
+  @Value("${madie.library-set.cache.change-stream.restart-delay:5s}")
+  private Duration librarySetChangeStreamRestartDelay;
+
   @Value("${madie.measure-service.base-url}")
   private String measureServiceBaseUrl;
+
+  @Value("${madie.measure-service.read-timeout:15s}")
+  private Duration measureServiceReadTimeout;
+
+  @Value("${madie.usage-check-executor.threads:8}")
+  private int usageCheckThreads;
+
+  @Value("${madie.usage-check-executor.queue-capacity:50}")
+  private int usageCheckQueueCapacity;
+
+  @Value("${madie.action-log.writer.queue-capacity:10000}")
+  private int actionLogQueueCapacity;
+
+  @Value("${madie.action-log.writer.batch-size:500}")
+  private int actionLogBatchSize;
+
+  @Value("${madie.action-log.writer.flush-interval:1s}")
+  private Duration actionLogFlushInterval;
+
+  @Value("${madie.action-log.writer.backpressure:CALLER_RUNS}")
+  private ActionLogWriter.Backpressure actionLogBackpressure;
+
+  @Value("${madie.action-log.writer.shutdown-timeout:10s}")
+  private Duration actionLogShutdownTimeout;
+
+  @Value("${madie.http-client.max-connections-total:100}")
+  private int httpClientMaxConnectionsTotal;
+
+  @Value("${madie.http-client.max-connections-per-route:50}")
+  private int httpClientMaxConnectionsPerRoute;
+
+  @Value("${madie.http-client.connect-timeout:2s}")
+  private Duration httpClientConnectTimeout;
+
+  @Value("${madie.http-client.connection-request-timeout:5s}")
+  private Duration httpClientConnectionRequestTimeout;
+
+  @Value("${madie.http-client.idle-eviction:30s}")
+  private Duration httpClientIdleEviction;
 }
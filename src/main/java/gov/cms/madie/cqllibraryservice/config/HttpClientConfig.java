@@ -0,0 +1,105 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.time.Duration;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * RestTemplates for the downstream services, each backed by its own connection pool so a burst of
+ * translation requests cannot starve calls to the measure service (or the other way round).
+ */
+@Configuration
+public class HttpClientConfig {
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient elmTranslatorHttpClient(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    return pooledHttpClient(
+        "elmTranslator",
+        environmentConfig.getCqlElmServiceReadTimeout(),
+        environmentConfig,
+        meterRegistry);
+  }
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient measureServiceHttpClient(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    return pooledHttpClient(
+        "measureService",
+        environmentConfig.getMeasureServiceReadTimeout(),
+        environmentConfig,
+        meterRegistry);
+  }
+
+  @Bean
+  public RestTemplate elmTranslatorRestTemplate(
+      RestTemplateBuilder restTemplateBuilder,
+      @Qualifier("elmTranslatorHttpClient") CloseableHttpClient elmTranslatorHttpClient) {
+    return pooledRestTemplate(restTemplateBuilder, elmTranslatorHttpClient);
+  }
+
+  @Bean
+  public RestTemplate measureServiceRestTemplate(
+      RestTemplateBuilder restTemplateBuilder,
+      @Qualifier("measureServiceHttpClient") CloseableHttpClient measureServiceHttpClient) {
+    return pooledRestTemplate(restTemplateBuilder, measureServiceHttpClient);
+  }
+
+  /**
+   * Builds an Apache HttpClient on its own connection pool. Pool usage is published as the
+   * httpcomponents.httpclient.pool.* meters tagged with the pool name. Responses are transparently
+   * decompressed, as the client advertises gzip/deflate by default. Closing the client closes its
+   * pool, so the client is exposed as a bean and closed with the application context.
+   */
+  static CloseableHttpClient pooledHttpClient(
+      String poolName,
+      Duration readTimeout,
+      EnvironmentConfig environmentConfig,
+      MeterRegistry meterRegistry) {
+    PoolingHttpClientConnectionManager connectionManager =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(environmentConfig.getHttpClientMaxConnectionsTotal())
+            .setMaxConnPerRoute(environmentConfig.getHttpClientMaxConnectionsPerRoute())
+            .setDefaultConnectionConfig(
+                ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(environmentConfig.getHttpClientConnectTimeout()))
+                    .setSocketTimeout(Timeout.of(readTimeout))
+                    .build())
+            .build();
+    new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, poolName)
+        .bindTo(meterRegistry);
+
+    return HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(
+            RequestConfig.custom()
+                .setConnectionRequestTimeout(
+                    Timeout.of(environmentConfig.getHttpClientConnectionRequestTimeout()))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build())
+        .evictExpiredConnections()
+        .evictIdleConnections(TimeValue.of(environmentConfig.getHttpClientIdleEviction()))
+        .build();
+  }
+
+  static RestTemplate pooledRestTemplate(
+      RestTemplateBuilder restTemplateBuilder, CloseableHttpClient httpClient) {
+    return restTemplateBuilder
+        .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+        .build();
+  }
+}
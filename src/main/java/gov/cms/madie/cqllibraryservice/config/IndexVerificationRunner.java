@@ -0,0 +1,205 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import gov.cms.madie.cqllibraryservice.dto.LibraryUsageEntry;
+import gov.cms.madie.cqllibraryservice.repositories.ActionLogRepository;
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Explains the filters and sorts of the repository queries at startup and warns about any that the
+ * query planner would answer with a collection scan. Only reports; indexes are created by the
+ * Mongock change units.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "madie.mongo.index-verification.enabled", havingValue = "true")
+public class IndexVerificationRunner implements ApplicationRunner {
+  private static final String COLLSCAN = "COLLSCAN";
+  private static final String SAMPLE = "index-verification";
+
+  private final MongoTemplate mongoTemplate;
+
+  record QueryPath(
+      String name, Class<?> entityClass, Document filter, Document sort, Collation collation) {
+    QueryPath(String name, Class<?> entityClass, Document filter, Document sort) {
+      this(name, entityClass, filter, sort, null);
+    }
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    try {
+      List<String> unindexed = findUnindexedQueryPaths();
+      if (unindexed.isEmpty()) {
+        log.info("All {} verified query paths are index backed", getQueryPaths().size());
+      } else {
+        log.warn("Query paths answered with a collection scan: {}", unindexed);
+      }
+    } catch (RuntimeException ex) {
+      log.warn("Index verification could not be completed: {}", ex.getMessage());
+    }
+  }
+
+  List<String> findUnindexedQueryPaths() {
+    return getQueryPaths().stream()
+        .filter(path -> usesCollectionScan(getWinningPlan(explain(path))))
+        .map(QueryPath::name)
+        .toList();
+  }
+
+  List<QueryPath> getQueryPaths() {
+    Document version = new Document("major", 1).append("minor", 0).append("revisionNumber", 0);
+    Document versionSort = new Document("versionKey", -1);
+    return List.of(
+        new QueryPath(
+            "findMaxVersionByLibrarySetId",
+            CqlLibrary.class,
+            new Document("librarySetId", SAMPLE).append("draft", false),
+            versionSort),
+        new QueryPath(
+            "findMaxMinorVersionByLibrarySetIdAndVersionMajor",
+            CqlLibrary.class,
+            new Document("librarySetId", SAMPLE)
+                .append("draft", false)
+                .append(
+                    "versionKey",
+                    new Document("$gte", VersionKeyUtils.getMajorLowerBound(1))
+                        .append("$lt", VersionKeyUtils.getMajorLowerBound(2))),
+            versionSort),
+        new QueryPath(
+            "findAllByCqlLibraryNameAndDraftAndVersionAndModel",
+            CqlLibrary.class,
+            new Document("cqlLibraryName", SAMPLE)
+                .append("draft", false)
+                .append("version", version)
+                .append("model", SAMPLE),
+            new Document()),
+        new QueryPath(
+            "existsByCqlLibraryName",
+            CqlLibrary.class,
+            new Document("cqlLibraryNameLower", SAMPLE),
+            new Document()),
+        new QueryPath(
+            "findLibrariesByNameAndModel(prefix)",
+            CqlLibrary.class,
+            new Document("cqlLibraryNameLower", new Document("$regex", "^" + SAMPLE))
+                .append("model", SAMPLE)
+                .append("draft", false),
+            new Document()),
+        new QueryPath(
+            "findLibrariesByNameAndModel(contains)",
+            CqlLibrary.class,
+            new Document(
+                    "cqlLibraryNameTrigrams", new Document("$all", List.of("ind", "nde", "dex")))
+                .append("model", SAMPLE)
+                .append("draft", false),
+            new Document()),
+        new QueryPath(
+            "findVersionedLibrariesByLibrarySetId",
+            CqlLibrary.class,
+            new Document("librarySetId", SAMPLE).append("draft", false).append("active", true),
+            new Document()),
+        new QueryPath(
+            "findLibraryUsageByLibraryName",
+            LibraryUsageEntry.class,
+            new Document("libraryName", SAMPLE),
+            new Document()),
+        new QueryPath(
+            "findAllLibrariesByUser",
+            CqlLibrary.class,
+            new Document("librarySetId", new Document("$in", List.of(SAMPLE))),
+            new Document("_id", 1)),
+        new QueryPath(
+            "findLibrariesPage",
+            CqlLibrary.class,
+            new Document("model", SAMPLE).append("draft", false),
+            new Document("createdAt", -1).append("_id", -1)),
+        new QueryPath(
+            "findLibrariesPage(user)",
+            CqlLibrary.class,
+            new Document("librarySetId", new Document("$in", List.of(SAMPLE, SAMPLE + "-2"))),
+            new Document("cqlLibraryName", 1).append("_id", 1)),
+        new QueryPath(
+            "findByLibrarySetId",
+            LibrarySet.class,
+            new Document("librarySetId", SAMPLE),
+            new Document()),
+        new QueryPath(
+            "findAccessibleLibrarySets",
+            LibrarySet.class,
+            new Document(
+                "$or",
+                List.of(
+                    new Document("owner", SAMPLE),
+                    new Document(
+                        "acls",
+                        new Document(
+                            "$elemMatch",
+                            new Document("userId", SAMPLE)
+                                .append("roles", new Document("$in", List.of("SHARED_WITH"))))))),
+            new Document(),
+            Collation.builder()
+                .locale("en")
+                .collationStrength(CollationStrength.SECONDARY)
+                .build()),
+        new QueryPath(
+            "pushEvent",
+            ActionLog.class,
+            new Document("targetId", SAMPLE)
+                .append(
+                    "actions." + (ActionLogRepository.ACTIONS_PER_BUCKET - 1),
+                    new Document("$exists", false)),
+            new Document()),
+        new QueryPath(
+            "findActionsByTargetIds",
+            ActionLog.class,
+            new Document("targetId", new Document("$in", List.of(SAMPLE))),
+            new Document()));
+  }
+
+  private Document explain(QueryPath path) {
+    FindIterable<Document> find =
+        mongoTemplate
+            .getCollection(mongoTemplate.getCollectionName(path.entityClass()))
+            .find(path.filter())
+            .sort(path.sort());
+    if (path.collation() != null) {
+      find = find.collation(path.collation());
+    }
+    return find.explain();
+  }
+
+  private Object getWinningPlan(Document explain) {
+    Document queryPlanner = explain.get("queryPlanner", Document.class);
+    return queryPlanner == null ? explain : queryPlanner.get("winningPlan");
+  }
+
+  /** Plan layouts differ between server versions, so the whole plan tree is searched. */
+  static boolean usesCollectionScan(Object plan) {
+    if (plan instanceof Map<?, ?> document) {
+      return COLLSCAN.equals(document.get("stage"))
+          || document.values().stream().anyMatch(IndexVerificationRunner::usesCollectionScan);
+    }
+    if (plan instanceof Collection<?> stages) {
+      return stages.stream().anyMatch(IndexVerificationRunner::usesCollectionScan);
+    }
+    return false;
+  }
+}
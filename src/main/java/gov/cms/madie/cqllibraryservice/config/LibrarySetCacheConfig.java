@@ -0,0 +1,72 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import gov.cms.madie.models.library.LibrarySet;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+
+@Configuration
+public class LibrarySetCacheConfig {
+
+  /**
+   * Library sets by librarySetId. Entries are evicted on local updates and on change events from
+   * other replicas; the expiry bounds staleness when change streams are unavailable.
+   */
+  @Bean
+  public Cache<String, LibrarySet> librarySetCache(
+      EnvironmentConfig environmentConfig, MeterRegistry meterRegistry) {
+    Cache<String, LibrarySet> cache =
+        Caffeine.newBuilder()
+            .maximumSize(environmentConfig.getLibrarySetCacheMaxSize())
+            .expireAfterWrite(environmentConfig.getLibrarySetCacheExpireAfterWrite())
+            .recordStats()
+            .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, "librarySetCache");
+  }
+
+  /** Runs the librarySet change stream, see {@link LibrarySetChangeStream}. */
+  @Bean
+  @ConditionalOnProperty(
+      value = "madie.library-set.cache.change-stream.enabled",
+      havingValue = "true",
+      matchIfMissing = true)
+  public MessageListenerContainer librarySetChangeStreamContainer(MongoTemplate mongoTemplate) {
+    return new DefaultMessageListenerContainer(
+        mongoTemplate, new SimpleAsyncTaskExecutor("library-set-changes-"));
+  }
+
+  /**
+   * Watches the librarySet collection for changes made by any replica and restarts the watch when
+   * it fails. Change streams need a replica set; on a standalone server the watch fails once, is
+   * logged, and the cache falls back to its expiry.
+   */
+  @Bean
+  @ConditionalOnProperty(
+      value = "madie.library-set.cache.change-stream.enabled",
+      havingValue = "true",
+      matchIfMissing = true)
+  public LibrarySetChangeStream librarySetChangeStream(
+      MongoTemplate mongoTemplate,
+      MessageListenerContainer librarySetChangeStreamContainer,
+      LibrarySetChangeListener librarySetChangeListener,
+      Cache<String, LibrarySet> librarySetCache,
+      EnvironmentConfig environmentConfig) {
+    LibrarySetChangeStream changeStream =
+        new LibrarySetChangeStream(
+            librarySetChangeStreamContainer,
+            mongoTemplate.getCollectionName(LibrarySet.class),
+            librarySetChangeListener,
+            librarySetCache,
+            environmentConfig.getLibrarySetChangeStreamRestartDelay());
+    changeStream.subscribe();
+    return changeStream;
+  }
+}
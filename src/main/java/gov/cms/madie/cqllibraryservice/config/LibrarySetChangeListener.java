@@ -0,0 +1,36 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import gov.cms.madie.models.library.LibrarySet;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts cached library sets changed by any replica. Events without the changed document (e.g.
+ * deletes, which only carry the _id) clear the whole cache, since it is keyed by librarySetId.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LibrarySetChangeListener
+    implements MessageListener<ChangeStreamDocument<Document>, Document> {
+
+  private final Cache<String, LibrarySet> librarySetCache;
+
+  @Override
+  public void onMessage(Message<ChangeStreamDocument<Document>, Document> message) {
+    Document librarySet = message.getBody();
+    String librarySetId = librarySet == null ? null : librarySet.getString("librarySetId");
+    if (librarySetId == null) {
+      log.debug("LibrarySet change without librarySetId, clearing the library set cache");
+      librarySetCache.invalidateAll();
+    } else {
+      librarySetCache.invalidate(librarySetId);
+    }
+  }
+}
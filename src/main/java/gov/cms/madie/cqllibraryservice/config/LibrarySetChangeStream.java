@@ -0,0 +1,148 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import gov.cms.madie.models.library.LibrarySet;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+
+/**
+ * Keeps the librarySet change stream open. When the stream fails, changes made until it is back are
+ * not seen, so the library set cache is cleared and the stream is restarted after a delay, resuming
+ * after the last event it delivered. Without a resume token, or when the server can no longer
+ * resume from it, the stream restarts from now and the cache is cleared again once it is open. On a
+ * server without change streams (not a replica set) the cache expires by age only.
+ */
+@Slf4j
+public class LibrarySetChangeStream implements DisposableBean {
+
+  /** The server is not part of a replica set. */
+  static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+
+  /** The resume token is no longer in the oplog. */
+  static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+  static final int CHANGE_STREAM_FATAL_ERROR = 280;
+
+  private static final Set<Integer> NON_RESUMABLE_ERRORS =
+      Set.of(CHANGE_STREAM_HISTORY_LOST, CHANGE_STREAM_FATAL_ERROR);
+
+  private final MessageListenerContainer container;
+  private final String collectionName;
+  private final LibrarySetChangeListener librarySetChangeListener;
+  private final Cache<String, LibrarySet> librarySetCache;
+  private final Duration restartDelay;
+  private final ScheduledExecutorService restartScheduler;
+
+  private volatile BsonValue resumeToken;
+  private volatile Subscription subscription;
+
+  public LibrarySetChangeStream(
+      MessageListenerContainer container,
+      String collectionName,
+      LibrarySetChangeListener librarySetChangeListener,
+      Cache<String, LibrarySet> librarySetCache,
+      Duration restartDelay) {
+    this.container = container;
+    this.collectionName = collectionName;
+    this.librarySetChangeListener = librarySetChangeListener;
+    this.librarySetCache = librarySetCache;
+    this.restartDelay = restartDelay;
+    this.restartScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "library-set-changes-restart");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Registers the change stream with the container, resuming after the last event if known. */
+  public synchronized Subscription subscribe() {
+    ChangeStreamRequest.ChangeStreamRequestBuilder<Document> request =
+        ChangeStreamRequest.<Document>builder(this::onMessage)
+            .collection(collectionName)
+            .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+    BsonValue token = resumeToken;
+    if (token != null) {
+      request.resumeAfter(token);
+    }
+    subscription = container.register(request.build(), Document.class, this::onError);
+    return subscription;
+  }
+
+  private void onMessage(Message<ChangeStreamDocument<Document>, Document> message) {
+    librarySetChangeListener.onMessage(message);
+    ChangeStreamDocument<Document> event = message.getRaw();
+    if (event != null && event.getResumeToken() != null) {
+      resumeToken = event.getResumeToken();
+    }
+  }
+
+  void onError(Throwable ex) {
+    librarySetCache.invalidateAll();
+    MongoException mongoException = findMongoException(ex);
+    if (mongoException != null && mongoException.getCode() == CHANGE_STREAMS_NOT_SUPPORTED) {
+      log.warn(
+          "LibrarySet change streams are not supported, cached library sets now expire by age only",
+          ex);
+      return;
+    }
+    if (mongoException != null
+        && (NON_RESUMABLE_ERRORS.contains(mongoException.getCode())
+            || mongoException.hasErrorLabel("NonResumableChangeStreamError"))) {
+      resumeToken = null;
+    }
+    log.warn("LibrarySet change stream failed, restarting it in {}", restartDelay, ex);
+    restartScheduler.schedule(this::restart, restartDelay.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  void restart() {
+    Subscription failed = subscription;
+    if (!container.isRunning() || (failed != null && failed.isActive())) {
+      return;
+    }
+    if (failed != null) {
+      container.remove(failed);
+    }
+    boolean resuming = resumeToken != null;
+    Subscription restarted = subscribe();
+    if (!resuming) {
+      try {
+        restarted.await(restartDelay);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      // changes made before the stream was open again are not replayed
+      librarySetCache.invalidateAll();
+    }
+    log.info("LibrarySet change stream restarted{}", resuming ? " from its last event" : "");
+  }
+
+  private static MongoException findMongoException(Throwable ex) {
+    for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+      if (cause instanceof MongoException mongoException) {
+        return mongoException;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void destroy() {
+    restartScheduler.shutdownNow();
+  }
+}
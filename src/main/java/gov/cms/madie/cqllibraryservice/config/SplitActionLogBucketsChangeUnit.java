@@ -0,0 +1,106 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static gov.cms.madie.cqllibraryservice.repositories.ActionLogRepository.ACTIONS_PER_BUCKET;
+
+import gov.cms.madie.models.common.ActionLog;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.ListUtils;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Splits action logs holding more than ACTIONS_PER_BUCKET actions into buckets of that size, so
+ * later pushes go to a bucket with room instead of rewriting an ever-growing document. The first
+ * bucket keeps the id of the action log; the others get ids derived from it, so a rerun after a
+ * failure replaces them rather than adding copies. Runs after all the other change units.
+ */
+@Slf4j
+@ChangeUnit(id = "split_action_log_buckets", order = "013", author = "madie_dev")
+public class SplitActionLogBucketsChangeUnit {
+
+  @Execution
+  public void splitActionLogBuckets(MongoTemplate mongoTemplate) {
+    log.info("Running changelog to split action logs into buckets");
+    String collectionName = mongoTemplate.getCollectionName(ActionLog.class);
+    Query query = Query.query(Criteria.where("actions." + ACTIONS_PER_BUCKET).exists(true));
+    int count = 0;
+    try (Stream<Document> actionLogs =
+        mongoTemplate.stream(query, Document.class, collectionName)) {
+      for (Document actionLog : (Iterable<Document>) actionLogs::iterator) {
+        splitActionLog(mongoTemplate, collectionName, actionLog);
+        count++;
+      }
+    }
+    log.info("Running changelog to split action logs is complete, {} action logs split", count);
+  }
+
+  private void splitActionLog(
+      MongoTemplate mongoTemplate, String collectionName, Document actionLog) {
+    Object id = actionLog.get("_id");
+    List<List<Document>> buckets =
+        ListUtils.partition(actionLog.getList("actions", Document.class), ACTIONS_PER_BUCKET);
+    for (int i = 1; i < buckets.size(); i++) {
+      Document bucket = new Document(actionLog);
+      bucket.put("_id", id + "_" + i);
+      bucket.put("actions", buckets.get(i));
+      mongoTemplate.save(bucket, collectionName);
+    }
+    mongoTemplate.updateFirst(
+        Query.query(Criteria.where("_id").is(id)),
+        Update.update("actions", buckets.get(0)),
+        collectionName);
+  }
+
+  /** Merges the buckets of each target back into one action log, ordered by performedAt. */
+  @RollbackExecution
+  public void rollbackExecution(MongoTemplate mongoTemplate) {
+    log.info("Rolling back action log buckets");
+    String collectionName = mongoTemplate.getCollectionName(ActionLog.class);
+    List<Document> targets =
+        mongoTemplate
+            .aggregate(
+                Aggregation.newAggregation(
+                    Aggregation.group("targetId").count().as("count"),
+                    Aggregation.match(Criteria.where("count").gt(1))),
+                collectionName,
+                Document.class)
+            .getMappedResults();
+    for (Document target : targets) {
+      mergeBuckets(mongoTemplate, collectionName, target.get("_id"));
+    }
+  }
+
+  private void mergeBuckets(MongoTemplate mongoTemplate, String collectionName, Object targetId) {
+    List<Document> buckets =
+        mongoTemplate.find(
+            Query.query(Criteria.where("targetId").is(targetId)), Document.class, collectionName);
+    List<Document> actions =
+        buckets.stream()
+            .flatMap(bucket -> bucket.getList("actions", Document.class, List.of()).stream())
+            .sorted(
+                Comparator.comparing(
+                    action -> action.getDate("performedAt"),
+                    Comparator.nullsFirst(Comparator.<Date>naturalOrder())))
+            .toList();
+    Object id = buckets.get(0).get("_id");
+    mongoTemplate.updateFirst(
+        Query.query(Criteria.where("_id").is(id)),
+        Update.update("actions", actions),
+        collectionName);
+    mongoTemplate.remove(
+        Query.query(
+            Criteria.where("_id").in(buckets.stream().skip(1).map(b -> b.get("_id")).toList())),
+        collectionName);
+  }
+}
@@ -0,0 +1,62 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for work fanned out from a request. Each gets its own pool so one slow downstream
+ * cannot occupy the threads of another. Thread and queue usage is published as executor.* meters
+ * tagged with the bean name.
+ */
+@Configuration
+public class TaskExecutorConfig {
+
+  /**
+   * Spring Boot only creates its application executor (used for async MVC responses) when no other
+   * Executor is defined, so it is declared here the way Boot would declare it.
+   */
+  @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+  public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+  /**
+   * Runs CQL-ELM translations of a batch in parallel. When the queue is full the request thread
+   * translates itself, slowing the caller down instead of failing it.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor elmTranslationExecutor(
+      ThreadPoolTaskExecutorBuilder builder, EnvironmentConfig environmentConfig) {
+    ThreadPoolTaskExecutor executor =
+        builder
+            .corePoolSize(environmentConfig.getElmTranslationThreads())
+            .maxPoolSize(environmentConfig.getElmTranslationThreads())
+            .queueCapacity(environmentConfig.getElmTranslationQueueCapacity())
+            .threadNamePrefix("elm-translation-")
+            .build();
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    return executor;
+  }
+
+  /**
+   * Runs the library usage lookups (local libraries and the measure service) side by side. When the
+   * queue is full the request thread runs the lookup itself.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor usageCheckExecutor(
+      ThreadPoolTaskExecutorBuilder builder, EnvironmentConfig environmentConfig) {
+    ThreadPoolTaskExecutor executor =
+        builder
+            .corePoolSize(environmentConfig.getUsageCheckThreads())
+            .maxPoolSize(environmentConfig.getUsageCheckThreads())
+            .queueCapacity(environmentConfig.getUsageCheckQueueCapacity())
+            .threadNamePrefix("usage-check-")
+            .build();
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    return executor;
+  }
+}
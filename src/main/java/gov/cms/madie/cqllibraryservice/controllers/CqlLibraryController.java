@@ -1,12 +1,25 @@
 package gov.cms.madie.cqllibraryservice.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.cms.madie.cqllibraryservice.dto.ActionLogPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.IncludedLibraryDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
 import gov.cms.madie.cqllibraryservice.dto.LibrarySetDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
+import gov.cms.madie.cqllibraryservice.dto.LibraryNameMatch;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
+import gov.cms.madie.cqllibraryservice.exceptions.DuplicateKeyException;
 import gov.cms.madie.cqllibraryservice.exceptions.InvalidIdException;
 import gov.cms.madie.cqllibraryservice.exceptions.InvalidResourceStateException;
 import gov.cms.madie.cqllibraryservice.services.ActionLogService;
 import gov.cms.madie.cqllibraryservice.services.LibrarySetService;
 import gov.cms.madie.cqllibraryservice.utils.AuthUtils;
+import gov.cms.madie.cqllibraryservice.utils.ProjectionUtils;
+import gov.cms.madie.cqllibraryservice.utils.ResponseStreamUtils;
 import gov.cms.madie.cqllibraryservice.utils.LibraryUtils;
 import gov.cms.madie.models.common.ActionType;
 import gov.cms.madie.models.dto.LibraryUsage;
@@ -23,7 +36,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import jakarta.servlet.http.HttpServletRequest;
@@ -32,14 +47,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
-
-import gov.cms.madie.cqllibraryservice.exceptions.ResourceNotFoundException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -52,6 +67,7 @@ public class CqlLibraryController {
   private final VersionService versionService;
   private final CqlLibraryService cqlLibraryService;
   private final LibrarySetService librarySetService;
+  private final ObjectMapper objectMapper;
 
   @GetMapping
   public ResponseEntity<List<LibraryListDTO>> getCqlLibraries(
@@ -64,9 +80,82 @@ public class CqlLibraryController {
     return ResponseEntity.ok(cqlLibraries);
   }
 
+  @GetMapping(
+      value = "/stream",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<StreamingResponseBody> streamCqlLibraries(
+      Principal principal,
+      @RequestParam(required = false, defaultValue = "false", name = "currentUser")
+          boolean filterByCurrentUser,
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    final String username = principal.getName();
+    MediaType mediaType = ResponseStreamUtils.getStreamMediaType(accept);
+    Stream<LibraryListDTO> cqlLibraries =
+        cqlLibraryRepository.streamAllLibrariesByUser(filterByCurrentUser ? username : "");
+    return ResponseEntity.ok()
+        .contentType(mediaType)
+        .body(ResponseStreamUtils.write(cqlLibraries, mediaType, objectMapper));
+  }
+
+  @GetMapping("/page")
+  public ResponseEntity<LibraryListPageDTO> getCqlLibrariesPage(
+      Principal principal,
+      @RequestParam(required = false, defaultValue = "false", name = "currentUser")
+          boolean filterByCurrentUser,
+      @RequestParam(required = false) String model,
+      @RequestParam(required = false) Boolean draft,
+      @RequestParam(required = false) String namePrefix,
+      @RequestParam(required = false, defaultValue = "name") String sort,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false, defaultValue = "25") int limit) {
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder()
+            .userId(filterByCurrentUser ? principal.getName() : null)
+            .model(model)
+            .draft(draft)
+            .namePrefix(namePrefix)
+            .sort(LibraryListSort.fromValue(sort))
+            .limit(limit)
+            .build();
+    return ResponseEntity.ok(cqlLibraryService.findLibrariesPage(criteria, cursor));
+  }
+
+  /**
+   * Get a library. With fields, only the named library fields (and the id) are read and returned,
+   * e.g. fields=cqlLibraryName,version to skip the cql and ELM.
+   */
   @GetMapping("/{id}")
-  public ResponseEntity<CqlLibrary> getCqlLibrary(@PathVariable("id") String id) {
-    return ResponseEntity.ok(cqlLibraryService.findCqlLibraryById(id));
+  public ResponseEntity<Object> getCqlLibrary(
+      @PathVariable("id") String id, @RequestParam(required = false) List<String> fields) {
+    Set<String> libraryFields = ProjectionUtils.getLibraryFields(fields);
+    CqlLibrary cqlLibrary = cqlLibraryService.findCqlLibraryById(id, libraryFields);
+    return ResponseEntity.ok(
+        libraryFields == null
+            ? cqlLibrary
+            : ProjectionUtils.toFieldMap(objectMapper, cqlLibrary, libraryFields));
+  }
+
+  /**
+   * Get a page of the actions logged against a library and its library set, newest first, e.g. its
+   * creation, versions, shares and ownership changes.
+   */
+  @GetMapping("/{id}/action-logs")
+  public ResponseEntity<ActionLogPageDTO> getActionLogs(
+      @PathVariable("id") String id,
+      @RequestParam(required = false, defaultValue = "0") int page,
+      @RequestParam(required = false, defaultValue = "25") int limit) {
+    CqlLibrary cqlLibrary =
+        cqlLibraryService.findCqlLibraryById(id, Set.of(ProjectionUtils.ID, "librarySetId"));
+    List<String> targetIds = new ArrayList<>();
+    targetIds.add(cqlLibrary.getId());
+    if (StringUtils.isNotBlank(cqlLibrary.getLibrarySetId())) {
+      targetIds.add(cqlLibrary.getLibrarySetId());
+    }
+    if (cqlLibrary.getLibrarySet() != null
+        && StringUtils.isNotBlank(cqlLibrary.getLibrarySet().getId())) {
+      targetIds.add(cqlLibrary.getLibrarySet().getId());
+    }
+    return ResponseEntity.ok(actionLogService.findActions(targetIds, page, limit));
   }
 
   @GetMapping("/versioned")
@@ -80,9 +169,45 @@ public class CqlLibraryController {
         cqlLibraryService.getVersionedCqlLibrary(name, version, model, includeElm, accessToken));
   }
 
+  @PostMapping("/versioned/batch")
+  public ResponseEntity<List<CqlLibrary>> getVersionedCqlLibraries(
+      @RequestBody List<VersionedLibraryRequest> libraries,
+      @RequestParam(defaultValue = "true") boolean includeElm,
+      @RequestHeader("Authorization") String accessToken) {
+    return ResponseEntity.ok(
+        cqlLibraryService.getVersionedCqlLibraries(libraries, includeElm, accessToken));
+  }
+
+  @GetMapping("/{id}/includes")
+  public ResponseEntity<List<IncludedLibraryDTO>> getIncludedLibraries(
+      @PathVariable String id,
+      @RequestParam(defaultValue = "10") int maxDepth,
+      @RequestParam(defaultValue = "false") boolean includeElm,
+      @RequestHeader("Authorization") String accessToken) {
+    return ResponseEntity.ok(
+        cqlLibraryService.getIncludedLibraries(id, maxDepth, includeElm, accessToken));
+  }
+
+  /**
+   * Get the versioned libraries of a library set. With fields, only the named library fields (and
+   * the id) of each library are read and returned.
+   */
   @GetMapping("/library-set/{setId}")
-  public ResponseEntity<LibrarySetDTO> getLibrarySetBySetId(@PathVariable String setId) {
-    return ResponseEntity.ok(cqlLibraryService.getLibrarySetBySetId(setId));
+  public ResponseEntity<Object> getLibrarySetBySetId(
+      @PathVariable String setId, @RequestParam(required = false) List<String> fields) {
+    Set<String> libraryFields = ProjectionUtils.getLibraryFields(fields);
+    LibrarySetDTO librarySetDTO = cqlLibraryService.getLibrarySetBySetId(setId, libraryFields);
+    if (librarySetDTO == null || libraryFields == null) {
+      return ResponseEntity.ok(librarySetDTO);
+    }
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("librarySet", librarySetDTO.getLibrarySet());
+    body.put(
+        "libraries",
+        librarySetDTO.getLibraries().stream()
+            .map(library -> ProjectionUtils.toFieldMap(objectMapper, library, libraryFields))
+            .toList());
+    return ResponseEntity.ok(body);
   }
 
   @PostMapping
@@ -104,7 +229,7 @@ public class CqlLibraryController {
     cqlLibrary.setVersion(Version.parse("0.0.000"));
     cqlLibrary.setDraft(true);
     cqlLibrary.setLibrarySetId(UUID.randomUUID().toString());
-    CqlLibrary savedCqlLibrary = cqlLibraryRepository.save(cqlLibrary);
+    CqlLibrary savedCqlLibrary = saveDraft(cqlLibrary);
     log.info(
         "User [{}] successfully created new cql library with ID [{}]",
         username,
@@ -147,7 +272,16 @@ public class CqlLibraryController {
     cqlLibrary.setLastModifiedBy(username);
     cqlLibrary.setCreatedAt(persistedLibrary.getCreatedAt());
     cqlLibrary.setCreatedBy(persistedLibrary.getCreatedBy());
-    return ResponseEntity.ok(cqlLibraryRepository.save(cqlLibrary));
+    return ResponseEntity.ok(saveDraft(cqlLibrary));
+  }
+
+  private CqlLibrary saveDraft(CqlLibrary cqlLibrary) {
+    try {
+      return cqlLibraryRepository.save(cqlLibrary);
+    } catch (org.springframework.dao.DuplicateKeyException ex) {
+      // the unique draft name index rejected a name taken since the duplicate name check
+      throw new DuplicateKeyException("cqlLibraryName", "Library name must be unique.");
+    }
   }
 
   @GetMapping(value = "/cql", produces = MediaType.TEXT_PLAIN_VALUE)
@@ -182,7 +316,11 @@ public class CqlLibraryController {
   @GetMapping(
       value = "/usage",
       produces = {MediaType.APPLICATION_JSON_VALUE})
-  public ResponseEntity<List<LibraryUsage>> getLibraryUsage(@RequestParam String libraryName) {
+  public ResponseEntity<List<LibraryUsage>> getLibraryUsage(
+      @RequestParam String libraryName, @RequestParam(defaultValue = "false") boolean transitive) {
+    if (transitive) {
+      return ResponseEntity.ok().body(cqlLibraryService.findTransitiveLibraryUsage(libraryName));
+    }
     return ResponseEntity.ok().body(cqlLibraryService.findLibraryUsage(libraryName));
   }
 
@@ -190,9 +328,45 @@ public class CqlLibraryController {
       value = "/all-versioned",
       produces = {MediaType.APPLICATION_JSON_VALUE})
   public ResponseEntity<List<LibraryListDTO>> getLibrariesByNameAndModel(
-      @RequestParam String libraryName, @RequestParam String model) {
+      @RequestParam String libraryName,
+      @RequestParam String model,
+      @RequestParam(required = false, defaultValue = "contains") String match,
+      @RequestParam(required = false, defaultValue = "0") int page,
+      @RequestParam(required = false) Integer limit) {
     return ResponseEntity.ok()
-        .body(cqlLibraryService.findLibrariesByNameAndModel(libraryName, model));
+        .body(
+            cqlLibraryService.findLibrariesByNameAndModel(
+                getLibrarySearchCriteria(libraryName, model, match, page, limit)));
+  }
+
+  private LibrarySearchCriteria getLibrarySearchCriteria(
+      String libraryName, String model, String match, int page, Integer limit) {
+    return LibrarySearchCriteria.builder()
+        .name(libraryName)
+        .model(model)
+        .match(LibraryNameMatch.fromValue(match))
+        .page(page)
+        .limit(limit)
+        .build();
+  }
+
+  @GetMapping(
+      value = "/all-versioned/stream",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<StreamingResponseBody> streamLibrariesByNameAndModel(
+      @RequestParam String libraryName,
+      @RequestParam String model,
+      @RequestParam(required = false, defaultValue = "contains") String match,
+      @RequestParam(required = false, defaultValue = "0") int page,
+      @RequestParam(required = false) Integer limit,
+      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+    MediaType mediaType = ResponseStreamUtils.getStreamMediaType(accept);
+    Stream<LibraryListDTO> libraries =
+        cqlLibraryService.streamLibrariesByNameAndModel(
+            getLibrarySearchCriteria(libraryName, model, match, page, limit));
+    return ResponseEntity.ok()
+        .contentType(mediaType)
+        .body(ResponseStreamUtils.write(libraries, mediaType, objectMapper));
   }
 
   @PutMapping(
@@ -246,22 +420,16 @@ public class CqlLibraryController {
       HttpServletRequest request,
       @Value("${admin-api-key}") String apiKey,
       @RequestParam(name = "measureids") String measureids) {
+    List<String> ids = List.of(StringUtils.split(measureids, ","));
     List<Map<String, Object>> results = new ArrayList<>();
-    String[] ids = StringUtils.split(measureids, ",");
-    for (String id : ids) {
-      CqlLibrary library = cqlLibraryService.findCqlLibraryById(id);
-      if (library != null) {
-
-        Map<String, Object> result = new LinkedHashMap<>();
-
-        result.put("libraryName", library.getCqlLibraryName());
-        result.put("libraryId", library.getId());
-        result.put("libraryOwner", library.getLibrarySet().getOwner());
-        result.put("sharedWith", library.getLibrarySet().getAcls());
-        results.add(result);
-      } else {
-        throw new ResourceNotFoundException(id);
-      }
+    for (CqlLibrary library : cqlLibraryService.findCqlLibrarySummariesByIds(ids)) {
+      Map<String, Object> result = new LinkedHashMap<>();
+
+      result.put("libraryName", library.getCqlLibraryName());
+      result.put("libraryId", library.getId());
+      result.put("libraryOwner", library.getLibrarySet().getOwner());
+      result.put("sharedWith", library.getLibrarySet().getAcls());
+      results.add(result);
     }
     return ResponseEntity.ok(results);
   }
@@ -279,7 +447,14 @@ public class CqlLibraryController {
       @PathVariable String libraryName,
       @RequestHeader("Authorization") String accessToken,
       @Value("${admin-api-key}") String apiKey) {
-    cqlLibraryService.deleteLibraryAlongWithVersions(libraryName, accessToken);
+    LibraryDeleteResultDTO result =
+        cqlLibraryService.deleteLibraryAlongWithVersions(libraryName, accessToken);
+    log.info(
+        "Deleted library [{}]: {} libraries, {} library sets, {} action logs",
+        libraryName,
+        result.getDeletedLibraries(),
+        result.getDeletedLibrarySets(),
+        result.getDeletedActionLogs());
     return ResponseEntity.ok()
         .body("The library and all its associated versions have been removed successfully.");
   }
@@ -130,6 +130,13 @@ public class ErrorHandlingControllerAdvice {
     return getErrorAttributes(request, HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(CqlElmTranslationServiceUnavailableException.class)
+  @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+  @ResponseBody
+  Map<String, Object> onCqlElmTranslationServiceUnavailableException(WebRequest request) {
+    return getErrorAttributes(request, HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   @ExceptionHandler({
     InternalServerErrorException.class,
     PersistHapiFhirCqlLibraryException.class,
@@ -0,0 +1,19 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import gov.cms.madie.models.common.Action;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+@Data
+@SuperBuilder(toBuilder = true)
+@NoArgsConstructor
+public class ActionLogPageDTO {
+  private List<Action> content;
+  private int page;
+  private int limit;
+
+  /** Number of the next page, null if this is the last page. */
+  private Integer nextPage;
+}
@@ -0,0 +1,25 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A library reached through the includes of another library. Depth is the length of the shortest
+ * include path from the library the lookup started at (1 for a direct include).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IncludedLibraryDTO {
+  private String id;
+  private String name;
+  private String version;
+  private String model;
+  private int depth;
+  private String cql;
+  private String elmJson;
+  private String elmXml;
+}
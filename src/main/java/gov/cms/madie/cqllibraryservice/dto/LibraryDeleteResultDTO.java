@@ -0,0 +1,25 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+/** What was removed when a library was deleted along with all its versions. */
+@Data
+@SuperBuilder(toBuilder = true)
+@NoArgsConstructor
+public class LibraryDeleteResultDTO {
+  private String cqlLibraryName;
+  private long deletedLibraries;
+
+  /** Library sets left without libraries by the delete, which are removed with them. */
+  private List<String> deletedLibrarySetIds;
+
+  private long deletedLibrarySets;
+  private long deletedActionLogs;
+
+  /** Targets whose action logs were removed, to discard actions still queued for them. */
+  @JsonIgnore private List<String> deletedActionLogTargetIds;
+}
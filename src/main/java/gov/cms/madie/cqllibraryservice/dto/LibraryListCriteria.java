@@ -0,0 +1,25 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Filters and position of a page of the library listing. A null filter means the listing is not
+ * filtered on that field.
+ */
+@Data
+@Builder(toBuilder = true)
+public class LibraryListCriteria {
+  /** Only libraries owned by or shared with this user. */
+  private String userId;
+
+  private String model;
+  private Boolean draft;
+  private String namePrefix;
+  private LibraryListSort sort;
+
+  /** Position of the last library of the previous page, null for the first page. */
+  private LibraryListCursor after;
+
+  private int limit;
+}
@@ -0,0 +1,17 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Position of a library within the listing: the value of the sort field and the library id. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LibraryListCursor {
+  private LibraryListSort sort;
+  private String value;
+  private String id;
+}
@@ -0,0 +1,17 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+@Data
+@SuperBuilder(toBuilder = true)
+@NoArgsConstructor
+public class LibraryListPageDTO {
+  private List<LibraryListDTO> content;
+  private int limit;
+
+  /** Cursor for the next page, null if this is the last page. */
+  private String nextCursor;
+}
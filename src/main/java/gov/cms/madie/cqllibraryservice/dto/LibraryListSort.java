@@ -0,0 +1,32 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import java.util.Arrays;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+/** Supported orderings of the paged library listing. Ties are always broken by the library id. */
+@Getter
+@RequiredArgsConstructor
+public enum LibraryListSort {
+  NAME("name", "cqlLibraryName", Sort.Direction.ASC),
+  CREATED_AT("createdAt", "createdAt", Sort.Direction.DESC);
+
+  private final String value;
+  private final String field;
+  private final Sort.Direction direction;
+
+  public static LibraryListSort fromValue(String value) {
+    return Arrays.stream(values())
+        .filter(sort -> sort.getValue().equalsIgnoreCase(value))
+        .findFirst()
+        .orElseThrow(
+            () ->
+                new BadRequestObjectException(
+                    "Sort must be one of: "
+                        + String.join(
+                            ", ", Arrays.stream(values()).map(LibraryListSort::getValue).toList())
+                        + "."));
+  }
+}
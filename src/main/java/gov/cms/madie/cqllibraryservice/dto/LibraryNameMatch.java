@@ -0,0 +1,31 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import java.util.Arrays;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/** How a library name search term is matched. Both are case-insensitive. */
+@Getter
+@RequiredArgsConstructor
+public enum LibraryNameMatch {
+  /** Names starting with the term, answered from a range of the lower-cased name index. */
+  PREFIX("prefix"),
+  /** Names containing the term, narrowed by the name trigram index. */
+  CONTAINS("contains");
+
+  private final String value;
+
+  public static LibraryNameMatch fromValue(String value) {
+    return Arrays.stream(values())
+        .filter(match -> match.getValue().equalsIgnoreCase(value))
+        .findFirst()
+        .orElseThrow(
+            () ->
+                new BadRequestObjectException(
+                    "Match must be one of: "
+                        + String.join(
+                            ", ", Arrays.stream(values()).map(LibraryNameMatch::getValue).toList())
+                        + "."));
+  }
+}
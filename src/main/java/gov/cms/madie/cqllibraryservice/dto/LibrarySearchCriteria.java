@@ -0,0 +1,19 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** Search term, model and page of a versioned library search by name. */
+@Data
+@Builder(toBuilder = true)
+public class LibrarySearchCriteria {
+  private String name;
+  private String model;
+  private LibraryNameMatch match;
+
+  /** Zero based page number, pages are limit libraries long. */
+  private int page;
+
+  /** Page length, null for all matching libraries. */
+  private Integer limit;
+}
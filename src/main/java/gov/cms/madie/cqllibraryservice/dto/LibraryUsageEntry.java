@@ -0,0 +1,33 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One edge of the library dependency graph, stored reversed: library libraryName is included by
+ * library usedById. Maintained from library and library set saves, so that usage lookups read a
+ * single indexed collection.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(LibraryUsageEntry.COLLECTION)
+public class LibraryUsageEntry {
+  public static final String COLLECTION = "libraryUsage";
+
+  /** usedById and libraryName, a library includes each library name at most once. */
+  @Id private String id;
+
+  private String libraryName;
+  private String libraryVersion;
+  private String usedById;
+  private String usedByName;
+  private String usedByVersion;
+  private String usedByLibrarySetId;
+  private String owner;
+}
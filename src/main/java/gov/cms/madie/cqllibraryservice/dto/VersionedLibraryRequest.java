@@ -0,0 +1,17 @@
+package gov.cms.madie.cqllibraryservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One library in a batch lookup of versioned libraries; model is optional. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VersionedLibraryRequest {
+  private String name;
+  private String version;
+  private String model;
+}
@@ -0,0 +1,10 @@
+package gov.cms.madie.cqllibraryservice.exceptions;
+
+/** The translator was not called because its circuit is open or too many calls are in flight. */
+public class CqlElmTranslationServiceUnavailableException
+    extends CqlElmTranslationServiceException {
+
+  public CqlElmTranslationServiceUnavailableException(String message, Exception cause) {
+    super(message, cause);
+  }
+}
@@ -1,18 +1,45 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
 import gov.cms.madie.models.common.Action;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Action logs are kept in buckets: a target has as many action log documents as it needs, each
+ * holding at most ACTIONS_PER_BUCKET actions, so a push only ever rewrites a bounded document.
+ */
 public interface ActionLogRepository {
 
+  int ACTIONS_PER_BUCKET = 100;
+
   /**
-   * Performs a MongoDB Upsert operation based on the targetId. If a document with the given
-   * targetId is found, the provided action will be pushed onto a list on the document. If no
-   * document with the given targetId is found, a new one will be created with the provided action
-   * as the sole item in the list.
+   * Performs a MongoDB Upsert operation based on the targetId. If an action log with the given
+   * targetId has room left, the provided action will be pushed onto its list of actions. Otherwise
+   * a new one will be created with the provided action as the sole item in the list.
    *
    * @param targetId field to search on
    * @param action action to push into the list of actions for the given targetId
    * @return true if upsert is successful, false otherwise
    */
   boolean pushEvent(String targetId, Action action);
+
+  /**
+   * Pushes batches of actions in one bulk write, one upsert per targetId and bucket. The actions of
+   * a target are appended in list order, as pushEvent would append them one at a time.
+   *
+   * @param actionsByTargetId actions to push, grouped by targetId
+   * @return the number of action logs created or modified
+   */
+  int pushEvents(Map<String, List<Action>> actionsByTargetId);
+
+  /**
+   * Get a page of the actions logged against any of the given targets, newest first.
+   *
+   * @param targetIds targets whose actions are read
+   * @param skip number of actions to skip
+   * @param limit maximum number of actions to return
+   * @return the actions of the page
+   */
+  List<Action> findActionsByTargetIds(Collection<String> targetIds, long skip, int limit);
 }
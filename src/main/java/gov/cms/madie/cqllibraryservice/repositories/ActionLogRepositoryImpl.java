@@ -1,10 +1,18 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.result.UpdateResult;
 import gov.cms.madie.models.common.Action;
 import gov.cms.madie.models.common.ActionLog;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.ListUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -28,9 +36,53 @@ public class ActionLogRepositoryImpl implements ActionLogRepository {
     Update update = new Update();
     UpdateResult upsert =
         mongoTemplate.upsert(
-            new Query(Criteria.where("targetId").is(targetId)),
-            update.push("actions").value(action),
-            ActionLog.class);
+            getBucketQuery(targetId, 1), update.push("actions").value(action), ActionLog.class);
     return upsert.getUpsertedId() != null || upsert.getModifiedCount() == 1;
   }
+
+  @Override
+  public int pushEvents(Map<String, List<Action>> actionsByTargetId) {
+    if (actionsByTargetId == null || actionsByTargetId.isEmpty()) {
+      return 0;
+    }
+    BulkOperations bulkOps =
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, ActionLog.class);
+    actionsByTargetId.forEach(
+        (targetId, actions) -> {
+          for (List<Action> chunk : ListUtils.partition(actions, ACTIONS_PER_BUCKET)) {
+            bulkOps.upsert(
+                getBucketQuery(targetId, chunk.size()),
+                new Update().push("actions").each(chunk.toArray()));
+          }
+        });
+    BulkWriteResult result = bulkOps.execute();
+    return result.getUpserts().size() + result.getModifiedCount();
+  }
+
+  /**
+   * Selects an action log of the target with room for count more actions, i.e. one whose actions do
+   * not reach index ACTIONS_PER_BUCKET - count. When there is none, the upsert starts a new bucket.
+   */
+  static Query getBucketQuery(String targetId, int count) {
+    return new Query(
+        Criteria.where("targetId")
+            .is(targetId)
+            .and("actions." + (ACTIONS_PER_BUCKET - count))
+            .exists(false));
+  }
+
+  @Override
+  public List<Action> findActionsByTargetIds(Collection<String> targetIds, long skip, int limit) {
+    // bucket and position break ties between actions performed at the same instant
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("targetId").in(targetIds)),
+            Aggregation.unwind("actions", "position"),
+            Aggregation.sort(
+                Sort.by(Sort.Direction.DESC, "actions.performedAt", "_id", "position")),
+            Aggregation.skip(skip),
+            Aggregation.limit(limit),
+            Aggregation.replaceRoot("actions"));
+    return mongoTemplate.aggregate(aggregation, ActionLog.class, Action.class).getMappedResults();
+  }
 }
@@ -0,0 +1,77 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maintains the fields derived from a library that are stored alongside it for indexed lookups, but
+ * are not part of the shared library model. Runs for every save and insert of a library.
+ *
+ * <p>The ELM of a versioned library is stamped with the version of the translator that produced it
+ * only when it is saved through {@link CqlLibraryElmRepository#saveWithElmTranslatedBy}, right
+ * after the translation, so the stamp is written together with the ELM. Any other save replaces the
+ * document without the stamp, which only means the ELM is translated again when it is next read.
+ */
+@Component
+public class CqlLibraryBeforeSaveCallback implements BeforeSaveCallback<CqlLibrary> {
+  public static final String CQL_LIBRARY_NAME_LOWER = "cqlLibraryNameLower";
+  public static final String CQL_LIBRARY_NAME_TRIGRAMS = "cqlLibraryNameTrigrams";
+  public static final String VERSION_KEY = "versionKey";
+  public static final String ELM_TRANSLATOR_VERSION = "elmTranslatorVersion";
+
+  /** Version of the translator that just produced the ELM of the library saved on this thread. */
+  private static final ThreadLocal<String> ELM_TRANSLATED_BY = new ThreadLocal<>();
+
+  static <T> T withElmTranslatedBy(String translatorVersion, Supplier<T> save) {
+    ELM_TRANSLATED_BY.set(StringUtils.defaultString(translatorVersion));
+    try {
+      return save.get();
+    } finally {
+      ELM_TRANSLATED_BY.remove();
+    }
+  }
+
+  public static String normalizeCqlLibraryName(String cqlLibraryName) {
+    return StringUtils.lowerCase(cqlLibraryName, Locale.ROOT);
+  }
+
+  /**
+   * Distinct three character substrings of the normalized name, in order of first occurrence. A
+   * name containing a search term has every trigram of the term, which lets a multikey index narrow
+   * down substring searches. Names shorter than three characters have none.
+   */
+  public static List<String> getNameTrigrams(String cqlLibraryName) {
+    String name = normalizeCqlLibraryName(cqlLibraryName);
+    if (name == null || name.length() < 3) {
+      return List.of();
+    }
+    Set<String> trigrams = new LinkedHashSet<>();
+    for (int i = 0; i + 3 <= name.length(); i++) {
+      trigrams.add(name.substring(i, i + 3));
+    }
+    return List.copyOf(trigrams);
+  }
+
+  @Override
+  public CqlLibrary onBeforeSave(CqlLibrary cqlLibrary, Document document, String collection) {
+    document.put(CQL_LIBRARY_NAME_LOWER, normalizeCqlLibraryName(cqlLibrary.getCqlLibraryName()));
+    document.put(CQL_LIBRARY_NAME_TRIGRAMS, getNameTrigrams(cqlLibrary.getCqlLibraryName()));
+    document.put(VERSION_KEY, VersionKeyUtils.toKey(cqlLibrary.getVersion()));
+    String translatorVersion = ELM_TRANSLATED_BY.get();
+    if (translatorVersion != null
+        && !cqlLibrary.isDraft()
+        && StringUtils.isNotBlank(cqlLibrary.getElmJson())) {
+      document.put(ELM_TRANSLATOR_VERSION, translatorVersion);
+    }
+    return cqlLibrary;
+  }
+}
@@ -0,0 +1,16 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+
+public interface CqlLibraryDeleteRepository {
+
+  /**
+   * Deletes all the versions and drafts of a library with one bulk delete, together with the
+   * library sets no other library belongs to and the action logs of everything deleted. Each
+   * collection is cleaned with a single delete, however many versions the library has.
+   *
+   * @param cqlLibraryName - name of the library
+   * @return counts of the deleted libraries, library sets and action logs
+   */
+  LibraryDeleteResultDTO deleteAllVersionsByCqlLibraryName(String cqlLibraryName);
+}
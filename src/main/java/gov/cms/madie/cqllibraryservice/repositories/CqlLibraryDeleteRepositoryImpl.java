@@ -0,0 +1,97 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+@Slf4j
+@Repository
+public class CqlLibraryDeleteRepositoryImpl implements CqlLibraryDeleteRepository {
+
+  private final MongoTemplate mongoTemplate;
+
+  public CqlLibraryDeleteRepositoryImpl(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public LibraryDeleteResultDTO deleteAllVersionsByCqlLibraryName(String cqlLibraryName) {
+    Query query = Query.query(Criteria.where("cqlLibraryName").is(cqlLibraryName));
+    query.fields().include("id", "librarySetId");
+    List<CqlLibrary> libraries = mongoTemplate.find(query, CqlLibrary.class);
+    if (libraries.isEmpty()) {
+      return LibraryDeleteResultDTO.builder()
+          .cqlLibraryName(cqlLibraryName)
+          .deletedLibrarySetIds(List.of())
+          .deletedActionLogTargetIds(List.of())
+          .build();
+    }
+    List<String> libraryIds = libraries.stream().map(CqlLibrary::getId).toList();
+    // deleting by id lets the library usage listener clean up the usage of the libraries as well
+    long deletedLibraries =
+        mongoTemplate
+            .remove(Query.query(Criteria.where("id").in(libraryIds)), CqlLibrary.class)
+            .getDeletedCount();
+
+    Set<String> librarySetIds =
+        libraries.stream()
+            .map(CqlLibrary::getLibrarySetId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(HashSet::new));
+    if (!librarySetIds.isEmpty()) {
+      librarySetIds.removeAll(
+          mongoTemplate.findDistinct(
+              Query.query(Criteria.where("librarySetId").in(librarySetIds)),
+              "librarySetId",
+              CqlLibrary.class,
+              String.class));
+    }
+    List<String> actionLogTargetIds = new ArrayList<>(libraryIds);
+    long deletedLibrarySets = 0;
+    if (!librarySetIds.isEmpty()) {
+      Criteria orphanedLibrarySets = Criteria.where("librarySetId").in(librarySetIds);
+      Query librarySetQuery = Query.query(orphanedLibrarySets);
+      librarySetQuery.fields().include("id");
+      // creating and versioning a library logs against its librarySetId, creating the library
+      // set logs against the id of the library set document
+      actionLogTargetIds.addAll(librarySetIds);
+      mongoTemplate.find(librarySetQuery, LibrarySet.class).stream()
+          .map(LibrarySet::getId)
+          .forEach(actionLogTargetIds::add);
+      deletedLibrarySets =
+          mongoTemplate
+              .remove(Query.query(orphanedLibrarySets), LibrarySet.class)
+              .getDeletedCount();
+    }
+    long deletedActionLogs =
+        mongoTemplate
+            .remove(Query.query(Criteria.where("targetId").in(actionLogTargetIds)), ActionLog.class)
+            .getDeletedCount();
+    log.info(
+        "Deleted library [{}]: {} versions, {} library sets, {} action logs",
+        cqlLibraryName,
+        deletedLibraries,
+        deletedLibrarySets,
+        deletedActionLogs);
+    return LibraryDeleteResultDTO.builder()
+        .cqlLibraryName(cqlLibraryName)
+        .deletedLibraries(deletedLibraries)
+        .deletedLibrarySetIds(List.copyOf(librarySetIds))
+        .deletedLibrarySets(deletedLibrarySets)
+        .deletedActionLogs(deletedActionLogs)
+        .deletedActionLogTargetIds(List.copyOf(actionLogTargetIds))
+        .build();
+  }
+}
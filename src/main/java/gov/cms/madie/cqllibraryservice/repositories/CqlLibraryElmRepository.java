@@ -0,0 +1,40 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.Collection;
+import java.util.Set;
+
+public interface CqlLibraryElmRepository {
+
+  /**
+   * Checks which of the given libraries have persisted ELM that was produced by the given version
+   * of the CQL-ELM translator.
+   *
+   * @param ids - ids of the libraries
+   * @param translatorVersion - version of the translator currently in use
+   * @return ids of the libraries that have ELM stamped with the given translator version
+   */
+  Set<String> findIdsElmTranslatedBy(Collection<String> ids, String translatorVersion);
+
+  /**
+   * Replaces the ELM persisted on a library and stamps it with the version of the translator that
+   * produced it. Only the ELM fields are written, the rest of the library is left untouched.
+   *
+   * @param id - id of the library
+   * @param elmJson - translated ELM json
+   * @param elmXml - translated ELM xml
+   * @param translatorVersion - version of the translator that produced the ELM
+   * @return true if the library was updated, false otherwise
+   */
+  boolean updateElm(String id, String elmJson, String elmXml, String translatorVersion);
+
+  /**
+   * Saves a versioned library whose ELM was just translated and stamps the ELM with the version of
+   * the translator that produced it, in the same write.
+   *
+   * @param cqlLibrary - library to save
+   * @param translatorVersion - version of the translator that produced the ELM
+   * @return the saved library
+   */
+  CqlLibrary saveWithElmTranslatedBy(CqlLibrary cqlLibrary, String translatorVersion);
+}
@@ -0,0 +1,61 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.ELM_TRANSLATOR_VERSION;
+
+import com.mongodb.client.result.UpdateResult;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class CqlLibraryElmRepositoryImpl implements CqlLibraryElmRepository {
+
+  private final MongoTemplate mongoTemplate;
+
+  public CqlLibraryElmRepositoryImpl(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @Override
+  public Set<String> findIdsElmTranslatedBy(Collection<String> ids, String translatorVersion) {
+    Query query =
+        new Query(
+            Criteria.where("id")
+                .in(ids)
+                .and(ELM_TRANSLATOR_VERSION)
+                .is(StringUtils.defaultString(translatorVersion)));
+    query.fields().include("id");
+    return mongoTemplate.find(query, CqlLibrary.class).stream()
+        .map(CqlLibrary::getId)
+        .collect(Collectors.toSet());
+  }
+
+  @Override
+  public boolean updateElm(String id, String elmJson, String elmXml, String translatorVersion) {
+    Update update =
+        new Update()
+            .set("elmJson", elmJson)
+            .set("elmXml", elmXml)
+            .set(ELM_TRANSLATOR_VERSION, StringUtils.defaultString(translatorVersion));
+    return isModified(
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(id)), update, CqlLibrary.class));
+  }
+
+  @Override
+  public CqlLibrary saveWithElmTranslatedBy(CqlLibrary cqlLibrary, String translatorVersion) {
+    return CqlLibraryBeforeSaveCallback.withElmTranslatedBy(
+        translatorVersion, () -> mongoTemplate.save(cqlLibrary));
+  }
+
+  private boolean isModified(UpdateResult result) {
+    return result.getModifiedCount() == 1;
+  }
+}
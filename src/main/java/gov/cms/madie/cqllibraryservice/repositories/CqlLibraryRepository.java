@@ -10,15 +10,24 @@ import org.springframework.data.mongodb.repository.ExistsQuery;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 public interface CqlLibraryRepository
-    extends MongoRepository<CqlLibrary, String>, CqlLibraryVersionRepository, LibraryAclRepository {
-
-  @ExistsQuery("{cqlLibraryName: {$regex: '^?0$', $options: 'i'}}")
-  boolean existsByCqlLibraryName(String cqlLibraryName);
+    extends MongoRepository<CqlLibrary, String>,
+        CqlLibraryVersionRepository,
+        CqlLibraryElmRepository,
+        LibraryAclRepository,
+        LibraryUsageRepository,
+        CqlLibraryDeleteRepository {
+
+  /** Case-insensitive check, answered by an equality lookup on the normalized library name. */
+  default boolean existsByCqlLibraryName(String cqlLibraryName) {
+    return existsByCqlLibraryNameLower(
+        CqlLibraryBeforeSaveCallback.normalizeCqlLibraryName(cqlLibraryName));
+  }
+
+  @ExistsQuery("{cqlLibraryNameLower: ?0}")
+  boolean existsByCqlLibraryNameLower(String cqlLibraryNameLower);
 
   boolean existsByLibrarySetIdAndDraft(String librarySetId, boolean draft);
 
-  List<CqlLibrary> findAllByCqlLibraryName(String libraryName);
-
   List<CqlLibrary> findAllByCqlLibraryNameAndDraftAndVersion(
       String cqlLibraryName, boolean draft, Version version);
 
@@ -27,13 +36,11 @@ public interface CqlLibraryRepository
 
   @Aggregation(
       pipeline = {
+        "{'$project': {'librarySetId': 1, 'createdBy': 1, 'createdAt': 1}}",
         "{'$group': {'_id': '$librarySetId',"
             + "'librarySetId': {'$first':'$librarySetId'},"
             + "'createdBy': {'$first':'$createdBy'}}}",
         "{'$sort': {'createdAt':1}}"
       })
   List<CqlLibrary> findByCqlLibrarySetId();
-
-  List<CqlLibrary> findByLibrarySetIdAndDraftAndActive(
-      String librarySetId, boolean draft, boolean active);
 }
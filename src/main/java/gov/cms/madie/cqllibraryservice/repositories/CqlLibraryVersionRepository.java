@@ -1,6 +1,10 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
 import gov.cms.madie.models.common.Version;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CqlLibraryVersionRepository {
@@ -9,4 +13,36 @@ public interface CqlLibraryVersionRepository {
 
   Optional<Version> findMaxMinorVersionByLibrarySetIdAndVersionMajor(
       String librarySetId, int majorVersion);
+
+  /**
+   * Finds the versioned (non-draft) libraries matching any of the given name, version and optional
+   * model combinations, in a single query.
+   *
+   * @param requests - libraries to look up
+   * @return all matching libraries, in no particular order
+   */
+  List<CqlLibrary> findVersionedLibraries(List<VersionedLibraryRequest> requests);
+
+  /**
+   * Same as {@link #findVersionedLibraries(List)}, but the persisted ELM of a library is only read
+   * if it was produced by the given version of the CQL-ELM translator. Stale ELM is left unset, so
+   * whether a library has to be translated again is known without another query.
+   *
+   * @param requests - libraries to look up
+   * @param translatorVersion - version of the translator currently in use
+   * @return all matching libraries, in no particular order
+   */
+  List<CqlLibrary> findVersionedLibrariesWithElmTranslatedBy(
+      List<VersionedLibraryRequest> requests, String translatorVersion);
+
+  /**
+   * Finds the active versioned (non-draft) libraries of a library set, reading only the given
+   * fields.
+   *
+   * @param librarySetId - library set id
+   * @param fields - library fields to read, or null for all
+   * @return the versioned libraries of the set, in no particular order
+   */
+  List<CqlLibrary> findVersionedLibrariesByLibrarySetId(
+      String librarySetId, Collection<String> fields);
 }
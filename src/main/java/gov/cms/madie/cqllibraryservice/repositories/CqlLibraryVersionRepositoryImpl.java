@@ -1,10 +1,23 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.ELM_TRANSLATOR_VERSION;
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.VERSION_KEY;
+
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
 import gov.cms.madie.models.library.CqlLibrary;
 import gov.cms.madie.models.common.Version;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
@@ -20,38 +33,96 @@ public class CqlLibraryVersionRepositoryImpl implements CqlLibraryVersionReposit
 
   @Override
   public Optional<Version> findMaxVersionByLibrarySetId(String librarySetId) {
-    Query q =
-        new Query(Criteria.where("librarySetId").is(librarySetId).and("draft").is(false))
-            .with(Sort.by(Sort.Direction.DESC, "version.major", "version.minor"))
-            .limit(1);
-    CqlLibrary one = mongoTemplate.findOne(q, CqlLibrary.class);
+    return findMaxVersion(Criteria.where("librarySetId").is(librarySetId).and("draft").is(false));
+  }
 
-    if (one == null || one.getVersion() == null) {
+  @Override
+  public Optional<Version> findMaxMinorVersionByLibrarySetIdAndVersionMajor(
+      String librarySetId, int majorVersion) {
+    return findMaxVersion(
+        Criteria.where("librarySetId")
+            .is(librarySetId)
+            .and("draft")
+            .is(false)
+            .and(VERSION_KEY)
+            .gte(VersionKeyUtils.getMajorLowerBound(majorVersion))
+            .lt(VersionKeyUtils.getMajorLowerBound(majorVersion + 1)));
+  }
+
+  /**
+   * Reads only the version key of the highest version matching the criteria, so the lookup is
+   * answered from the librarySetId, draft, versionKey index without loading the library.
+   */
+  private Optional<Version> findMaxVersion(Criteria criteria) {
+    Query q = new Query(criteria).with(Sort.by(Sort.Direction.DESC, VERSION_KEY)).limit(1);
+    q.fields().include(VERSION_KEY).exclude("_id");
+    Document one =
+        mongoTemplate.findOne(q, Document.class, mongoTemplate.getCollectionName(CqlLibrary.class));
+    if (one == null || !(one.get(VERSION_KEY) instanceof Number versionKey)) {
       return Optional.empty();
-    } else {
-      return Optional.of(one.getVersion());
     }
+    return Optional.of(VersionKeyUtils.fromKey(versionKey.longValue()));
   }
 
   @Override
-  public Optional<Version> findMaxMinorVersionByLibrarySetIdAndVersionMajor(
-      String librarySetId, int majorVersion) {
-    Query q =
+  public List<CqlLibrary> findVersionedLibraries(List<VersionedLibraryRequest> requests) {
+    return mongoTemplate.find(new Query(getVersionedLibrariesCriteria(requests)), CqlLibrary.class);
+  }
+
+  @Override
+  public List<CqlLibrary> findVersionedLibrariesWithElmTranslatedBy(
+      List<VersionedLibraryRequest> requests, String translatorVersion) {
+    AggregationExpression current =
+        ComparisonOperators.valueOf(ELM_TRANSLATOR_VERSION)
+            .equalToValue(StringUtils.defaultString(translatorVersion));
+    Aggregation aggregation =
+        Aggregation.newAggregation(
+            Aggregation.match(getVersionedLibrariesCriteria(requests)),
+            Aggregation.addFields()
+                .addField("elmJson")
+                .withValue(
+                    ConditionalOperators.when(current).thenValueOf("elmJson").otherwise("$$REMOVE"))
+                .addField("elmXml")
+                .withValue(
+                    ConditionalOperators.when(current).thenValueOf("elmXml").otherwise("$$REMOVE"))
+                .build());
+    return mongoTemplate
+        .aggregate(aggregation, CqlLibrary.class, CqlLibrary.class)
+        .getMappedResults();
+  }
+
+  private Criteria getVersionedLibrariesCriteria(List<VersionedLibraryRequest> requests) {
+    Criteria[] libraries =
+        requests.stream()
+            .map(
+                request -> {
+                  Criteria criteria =
+                      Criteria.where("cqlLibraryName")
+                          .is(request.getName())
+                          .and("version")
+                          .is(Version.parse(request.getVersion()));
+                  return StringUtils.isBlank(request.getModel())
+                      ? criteria
+                      : criteria.and("model").is(request.getModel());
+                })
+            .toArray(Criteria[]::new);
+    return Criteria.where("draft").is(false).orOperator(libraries);
+  }
+
+  @Override
+  public List<CqlLibrary> findVersionedLibrariesByLibrarySetId(
+      String librarySetId, Collection<String> fields) {
+    Query query =
         new Query(
-                Criteria.where("librarySetId")
-                    .is(librarySetId)
-                    .and("version.major")
-                    .is(majorVersion)
-                    .and("draft")
-                    .is(false))
-            .with(Sort.by(Sort.Direction.DESC, "version.major", "version.minor"))
-            .limit(1);
-    CqlLibrary one = mongoTemplate.findOne(q, CqlLibrary.class);
-
-    if (one == null || one.getVersion() == null) {
-      return Optional.empty();
-    } else {
-      return Optional.of(one.getVersion());
+            Criteria.where("librarySetId")
+                .is(librarySetId)
+                .and("draft")
+                .is(false)
+                .and("active")
+                .is(true));
+    if (fields != null) {
+      query.fields().include(fields.toArray(String[]::new));
     }
+    return mongoTemplate.find(query, CqlLibrary.class);
   }
 }
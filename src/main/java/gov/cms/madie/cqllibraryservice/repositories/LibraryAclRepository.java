@@ -1,13 +1,38 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
-import gov.cms.madie.models.dto.LibraryUsage;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
+import gov.cms.madie.models.library.CqlLibrary;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LibraryAclRepository {
   /**
-   * Find all library by user(either owner or SHARED_WITH ACL )
+   * Find a library by id together with its library set, joined by the database in a single round
+   * trip. Only the given fields of the library are read, all of them if fields is null.
+   *
+   * @param id -> library id
+   * @param fields -> library fields to read, or null for all
+   * @return the library with its librarySet populated, or empty if there is no such library
+   */
+  Optional<CqlLibrary> findCqlLibraryWithLibrarySetById(String id, Collection<String> fields);
+
+  /**
+   * Find the libraries with the given ids together with their library sets, in a single query. Only
+   * the id, name and library set id of the libraries are read.
+   *
+   * @param ids -> library ids
+   * @return the libraries found, with their librarySet populated, in no particular order
+   */
+  List<CqlLibrary> findCqlLibrarySummariesWithLibrarySetByIds(Collection<String> ids);
+
+  /**
+   * Find all library by user(either owner or SHARED_WITH ACL ), ordered by id, i.e. in the order
+   * the libraries were created.
    *
    * @param userId- current user
    * @return List of cqlLibraries
@@ -15,23 +40,41 @@ public interface LibraryAclRepository {
   List<LibraryListDTO> findAllLibrariesByUser(String userId);
 
   /**
-   * Get all the libraries(name, version and owner) if they include library with given library name,
-   * version doesn't matter
+   * Same as findAllLibrariesByUser, but libraries are read from a database cursor as the stream is
+   * consumed. The stream holds the cursor open and must be closed by the caller.
    *
-   * @param name -> library name for which usage needs to be determined
-   * @return List<LibraryUsage> -> LibraryUsage: name, version and owner of including library
+   * @param userId- current user
+   * @return Stream of cqlLibraries
    */
-  List<LibraryUsage> findLibraryUsageByLibraryName(String name);
+  Stream<LibraryListDTO> streamAllLibrariesByUser(String userId);
 
   /**
-   * This method queries libraries by library name and model. Library name match is a "like"
-   * comparison. It can be library name or part of the library name. Results returned are sorted in
-   * ascending order by library name and descending by version. Draft libraries are excluded.
+   * Find one page of libraries matching the given criteria, ordered by the requested sort field and
+   * then by id. The page starts right after the cursor position, if any.
    *
-   * @param name -> library name
-   * @param model -> library model
-   * @return list of LibraryListDTO
+   * @param criteria -> filters, sort, cursor position and maximum number of libraries to return
+   * @return List of LibraryListDTO, at most criteria.limit entries
+   */
+  List<LibraryListDTO> findLibrariesPage(LibraryListCriteria criteria);
+
+  /**
+   * This method queries non-draft libraries of a model by library name, matching the name either by
+   * prefix or by substring, ignoring case. Results returned are sorted in ascending order by
+   * library name and descending by version, and cut to the requested page.
+   *
+   * @param criteria -> search term, match type, model and page
+   * @return list of LibraryListDTO, at most criteria.limit entries
    */
   List<LibraryListDTO> findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
-      String name, String model);
+      LibrarySearchCriteria criteria);
+
+  /**
+   * Same as findLibrariesByNameAndModelOrderByNameAscAndVersionDsc, but libraries are read from a
+   * database cursor as the stream is consumed. The stream must be closed by the caller.
+   *
+   * @param criteria -> search term, match type, model and page
+   * @return Stream of LibraryListDTO
+   */
+  Stream<LibraryListDTO> streamLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
+      LibrarySearchCriteria criteria);
 }
@@ -1,29 +1,53 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCursor;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.dto.LibraryNameMatch;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
 import gov.cms.madie.models.access.RoleEnum;
-import gov.cms.madie.models.dto.LibraryUsage;
 import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
 
 import io.micrometer.common.util.StringUtils;
+import org.bson.Document;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.LookupOperation;
 import org.springframework.data.mongodb.core.aggregation.MatchOperation;
 import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
 import org.springframework.data.mongodb.core.aggregation.SortOperation;
 import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.regex.Pattern;
 
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.CQL_LIBRARY_NAME_LOWER;
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.CQL_LIBRARY_NAME_TRIGRAMS;
+import static gov.cms.madie.cqllibraryservice.repositories.CqlLibraryBeforeSaveCallback.VERSION_KEY;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 
 @Repository
 public class LibraryAclRepositoryImpl implements LibraryAclRepository {
+  static final Collation USER_ID_COLLATION =
+      Collation.of("en").strength(Collation.ComparisonLevel.secondary());
+
   private final MongoTemplate mongoTemplate;
 
   public LibraryAclRepositoryImpl(MongoTemplate mongoTemplate) {
@@ -39,81 +63,285 @@ public class LibraryAclRepositoryImpl implements LibraryAclRepository {
   }
 
   @Override
-  public List<LibraryListDTO> findAllLibrariesByUser(String userId) {
-    Criteria librarySetCriteria = new Criteria();
-    // if user is provided, fetch libraries belongs/shared to user
-    if (StringUtils.isNotBlank(userId)) {
-      librarySetCriteria =
-          new Criteria()
-              .orOperator(
-                  Criteria.where("librarySet.owner").is(userId),
-                  Criteria.where("librarySet.acls.userId")
-                      .regex("^\\Q" + userId + "\\E$", "i")
-                      .and("librarySet.acls.roles")
-                      .in(RoleEnum.SHARED_WITH));
-    }
-    MatchOperation matchOperation = match(librarySetCriteria);
-    UnwindOperation unwindOperation = unwind("librarySet");
-    Aggregation libraryAggregation =
+  public Optional<CqlLibrary> findCqlLibraryWithLibrarySetById(
+      String id, Collection<String> fields) {
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(match(Criteria.where("id").is(id)));
+    if (fields != null) {
+      // the set id is needed for the join, even if it was not asked for
+      operations.add(
+          project(
+              Stream.concat(fields.stream(), Stream.of("librarySetId"))
+                  .distinct()
+                  .toArray(String[]::new)));
+    }
+    operations.add(getLookupOperation());
+    Aggregation aggregation = newAggregation(operations);
+    Document document =
+        mongoTemplate
+            .aggregate(aggregation, CqlLibrary.class, Document.class)
+            .getUniqueMappedResult();
+    return Optional.ofNullable(document).map(this::toCqlLibraryWithLibrarySet);
+  }
+
+  @Override
+  public List<CqlLibrary> findCqlLibrarySummariesWithLibrarySetByIds(Collection<String> ids) {
+    if (ids == null || ids.isEmpty()) {
+      return List.of();
+    }
+    Aggregation aggregation =
         newAggregation(
-            getLookupOperation(), matchOperation, project(LibraryListDTO.class), unwindOperation);
+            match(Criteria.where("id").in(ids)),
+            project("cqlLibraryName", "librarySetId"),
+            getLookupOperation());
+    return mongoTemplate
+        .aggregate(aggregation, CqlLibrary.class, Document.class)
+        .getMappedResults()
+        .stream()
+        .map(this::toCqlLibraryWithLibrarySet)
+        .toList();
+  }
+
+  private CqlLibrary toCqlLibraryWithLibrarySet(Document document) {
+    // $lookup yields an array of matching sets while CqlLibrary.librarySet is a single set, so the
+    // array is taken out before converting the library and its first element is read on its own
+    List<Document> librarySets = document.getList("librarySet", Document.class);
+    document.remove("librarySet");
+    MongoConverter converter = mongoTemplate.getConverter();
+    CqlLibrary cqlLibrary = converter.read(CqlLibrary.class, document);
+    if (librarySets != null && !librarySets.isEmpty()) {
+      cqlLibrary.setLibrarySet(converter.read(LibrarySet.class, librarySets.get(0)));
+    }
+    return cqlLibrary;
+  }
+
+  /**
+   * Library sets owned by or shared with the user. User ids are compared case-insensitively via the
+   * collation, which the owner and acls.userId indexes on librarySet are built with.
+   */
+  private List<LibrarySet> findAccessibleLibrarySets(String userId) {
+    Query query =
+        new Query(
+                new Criteria()
+                    .orOperator(
+                        Criteria.where("owner").is(userId),
+                        Criteria.where("acls")
+                            .elemMatch(
+                                Criteria.where("userId")
+                                    .is(userId)
+                                    .and("roles")
+                                    .in(RoleEnum.SHARED_WITH))))
+            .collation(USER_ID_COLLATION);
+    return mongoTemplate.find(query, LibrarySet.class);
+  }
+
+  private Map<String, LibrarySet> findAccessibleLibrarySetsById(String userId) {
+    return findAccessibleLibrarySets(userId).stream()
+        .collect(Collectors.toMap(LibrarySet::getLibrarySetId, Function.identity(), (a, b) -> a));
+  }
 
+  /**
+   * Libraries are listed by id, i.e. in the order they were created. Without the sort, reading them
+   * through the librarySetId index would list them in library set order.
+   */
+  private Aggregation getAllLibrariesAggregation() {
+    return newAggregation(
+        sort(Sort.Direction.ASC, "id"),
+        getLookupOperation(),
+        project(LibraryListDTO.class),
+        unwind("librarySet"));
+  }
+
+  private Aggregation getLibrariesInSetsAggregation(Collection<String> librarySetIds) {
+    return newAggregation(
+        match(Criteria.where("librarySetId").in(librarySetIds)),
+        sort(Sort.Direction.ASC, "id"),
+        project("librarySetId", "cqlLibraryName", "createdAt", "model", "version", "draft"));
+  }
+
+  private LibraryListDTO withLibrarySet(
+      LibraryListDTO library, Map<String, LibrarySet> librarySets) {
+    library.setLibrarySet(librarySets.get(library.getLibrarySetId()));
+    return library;
+  }
+
+  @Override
+  public List<LibraryListDTO> findAllLibrariesByUser(String userId) {
+    if (StringUtils.isBlank(userId)) {
+      return mongoTemplate
+          .aggregate(getAllLibrariesAggregation(), CqlLibrary.class, LibraryListDTO.class)
+          .getMappedResults();
+    }
+    // resolve the user's library sets first, so only their libraries are read and no join is needed
+    Map<String, LibrarySet> librarySets = findAccessibleLibrarySetsById(userId);
+    if (librarySets.isEmpty()) {
+      return List.of();
+    }
+    List<LibraryListDTO> libraries =
+        mongoTemplate
+            .aggregate(
+                getLibrariesInSetsAggregation(librarySets.keySet()),
+                CqlLibrary.class,
+                LibraryListDTO.class)
+            .getMappedResults();
+    libraries.forEach(library -> withLibrarySet(library, librarySets));
+    return libraries;
+  }
+
+  @Override
+  public Stream<LibraryListDTO> streamAllLibrariesByUser(String userId) {
+    if (StringUtils.isBlank(userId)) {
+      return mongoTemplate.aggregateStream(
+          getAllLibrariesAggregation(), CqlLibrary.class, LibraryListDTO.class);
+    }
+    Map<String, LibrarySet> librarySets = findAccessibleLibrarySetsById(userId);
+    if (librarySets.isEmpty()) {
+      return Stream.empty();
+    }
     return mongoTemplate
-        .aggregate(libraryAggregation, CqlLibrary.class, LibraryListDTO.class)
-        .getMappedResults();
+        .aggregateStream(
+            getLibrariesInSetsAggregation(librarySets.keySet()),
+            CqlLibrary.class,
+            LibraryListDTO.class)
+        .map(library -> withLibrarySet(library, librarySets));
   }
 
   @Override
-  public List<LibraryUsage> findLibraryUsageByLibraryName(String name) {
-    LookupOperation lookupOperation = getLookupOperation();
-    MatchOperation matchOperation =
-        match(
-            new Criteria()
-                .andOperator(
-                    Criteria.where("includedLibraries.name").is(name),
-                    Criteria.where("active").is(true)));
-    ProjectionOperation projectionOperation =
-        project("version")
-            .and("cqlLibraryName")
-            .as("name")
-            .and("librarySet.owner")
-            .as("owner")
-            .andExclude("_id");
-    UnwindOperation unwindOperation = unwind("owner");
-    Aggregation aggregation =
-        newAggregation(matchOperation, lookupOperation, projectionOperation, unwindOperation);
+  public List<LibraryListDTO> findLibrariesPage(LibraryListCriteria criteria) {
+    LibraryListSort sort = criteria.getSort();
+    Criteria pageCriteria = getPageCriteria(criteria);
+    if (StringUtils.isNotBlank(criteria.getUserId())) {
+      List<String> librarySetIds =
+          findAccessibleLibrarySets(criteria.getUserId()).stream()
+              .map(LibrarySet::getLibrarySetId)
+              .toList();
+      if (librarySetIds.isEmpty()) {
+        return List.of();
+      }
+      pageCriteria =
+          new Criteria()
+              .andOperator(pageCriteria, Criteria.where("librarySetId").in(librarySetIds));
+    }
+    // filters and cursor only touch library fields, so they are resolved with an index range scan
+    // on the sort key (per library set when listing a user's libraries) and only the libraries of
+    // the page are joined with their library set
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(match(pageCriteria));
+    operations.add(
+        sort(
+            Sort.by(sort.getDirection(), sort.getField()).and(Sort.by(sort.getDirection(), "id"))));
+    operations.add(limit(criteria.getLimit()));
+    operations.add(getLookupOperation());
+    operations.add(project(LibraryListDTO.class));
+    operations.add(unwind("librarySet"));
+
     return mongoTemplate
-        .aggregate(aggregation, CqlLibrary.class, LibraryUsage.class)
+        .aggregate(newAggregation(operations), CqlLibrary.class, LibraryListDTO.class)
         .getMappedResults();
   }
 
-  @Override
-  public List<LibraryListDTO> findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
-      String name, String model) {
-    LookupOperation lookupOperation = getLookupOperation();
+  private Criteria getPageCriteria(LibraryListCriteria criteria) {
+    List<Criteria> filters = new ArrayList<>();
+    if (StringUtils.isNotBlank(criteria.getModel())) {
+      filters.add(Criteria.where("model").is(criteria.getModel()));
+    }
+    if (criteria.getDraft() != null) {
+      filters.add(Criteria.where("draft").is(criteria.getDraft()));
+    }
+    if (StringUtils.isNotBlank(criteria.getNamePrefix())) {
+      // anchored, case-sensitive prefix so the name index bounds the scan; the prefix is quoted,
+      // so user input never runs as a pattern
+      filters.add(
+          Criteria.where("cqlLibraryName").regex("^" + Pattern.quote(criteria.getNamePrefix())));
+    }
+    if (criteria.getAfter() != null) {
+      filters.add(getCursorCriteria(criteria.getSort(), criteria.getAfter()));
+    }
+    return filters.isEmpty() ? new Criteria() : new Criteria().andOperator(filters);
+  }
+
+  private Criteria getCursorCriteria(LibraryListSort sort, LibraryListCursor cursor) {
+    if (sort == LibraryListSort.NAME) {
+      return new Criteria()
+          .orOperator(
+              Criteria.where("cqlLibraryName").gt(cursor.getValue()),
+              Criteria.where("cqlLibraryName").is(cursor.getValue()).and("id").gt(cursor.getId()));
+    }
+    // libraries without a creation date sort last in descending order
+    if (StringUtils.isBlank(cursor.getValue())) {
+      return Criteria.where("createdAt").is(null).and("id").lt(cursor.getId());
+    }
+    Instant createdAt = Instant.parse(cursor.getValue());
+    return new Criteria()
+        .orOperator(
+            Criteria.where("createdAt").lt(createdAt),
+            Criteria.where("createdAt").is(createdAt).and("id").lt(cursor.getId()),
+            Criteria.where("createdAt").is(null));
+  }
+
+  private Criteria getNameSearchCriteria(LibraryNameMatch match, String name) {
+    // the term is quoted, so user input never runs as a pattern
+    String term = CqlLibraryBeforeSaveCallback.normalizeCqlLibraryName(name);
+    if (match == LibraryNameMatch.PREFIX) {
+      // anchored prefix on the lower-cased name is answered by a range of its index
+      return Criteria.where(CQL_LIBRARY_NAME_LOWER).regex("^" + Pattern.quote(term));
+    }
+    Criteria contains = Criteria.where(CQL_LIBRARY_NAME_LOWER).regex(Pattern.quote(term));
+    List<String> trigrams = CqlLibraryBeforeSaveCallback.getNameTrigrams(term);
+    if (trigrams.isEmpty()) {
+      return contains;
+    }
+    return new Criteria()
+        .andOperator(Criteria.where(CQL_LIBRARY_NAME_TRIGRAMS).all(trigrams), contains);
+  }
+
+  private Aggregation getLibrariesByNameAndModelAggregation(LibrarySearchCriteria criteria) {
     MatchOperation matchOperation =
         match(
             new Criteria()
                 .andOperator(
-                    Criteria.where("cqlLibraryName")
-                        .regex(Pattern.compile(name, Pattern.CASE_INSENSITIVE)),
+                    getNameSearchCriteria(criteria.getMatch(), criteria.getName()),
                     Criteria.where("active").is(true),
                     Criteria.where("draft").is(false),
-                    Criteria.where("model").is(model)));
+                    Criteria.where("model").is(criteria.getModel())));
+
+    // sorting ahead of the join keeps the output order while letting results flow out of the
+    // pipeline as soon as the sort completes, the id keeps pages stable
+    Sort sort =
+        Sort.by(Sort.Direction.ASC, "cqlLibraryName")
+            .and(Sort.by(Sort.Direction.DESC, VERSION_KEY))
+            .and(Sort.by(Sort.Direction.ASC, "id"));
+    SortOperation sortOperation = new SortOperation(sort);
 
     ProjectionOperation projectionOperation = project("cqlLibraryName", "version", "librarySet");
 
     UnwindOperation unwindOperation = unwind("librarySet");
 
-    Sort sort =
-        Sort.by(Sort.Direction.ASC, "cqlLibraryName").and(Sort.by(Sort.Direction.DESC, "version"));
-    SortOperation sortOperation = new SortOperation(sort);
+    List<AggregationOperation> operations = new ArrayList<>(List.of(matchOperation, sortOperation));
+    // without a limit every match is returned
+    if (criteria.getLimit() != null) {
+      operations.add(skip((long) criteria.getPage() * criteria.getLimit()));
+      operations.add(limit(criteria.getLimit()));
+    }
+    operations.add(getLookupOperation());
+    operations.add(projectionOperation);
+    operations.add(unwindOperation);
+    return newAggregation(operations);
+  }
 
-    Aggregation aggregation =
-        newAggregation(
-            matchOperation, lookupOperation, projectionOperation, unwindOperation, sortOperation);
+  @Override
+  public List<LibraryListDTO> findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
+      LibrarySearchCriteria criteria) {
     return mongoTemplate
-        .aggregate(aggregation, CqlLibrary.class, LibraryListDTO.class)
+        .aggregate(
+            getLibrariesByNameAndModelAggregation(criteria), CqlLibrary.class, LibraryListDTO.class)
         .getMappedResults();
   }
+
+  @Override
+  public Stream<LibraryListDTO> streamLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
+      LibrarySearchCriteria criteria) {
+    return mongoTemplate.aggregateStream(
+        getLibrariesByNameAndModelAggregation(criteria), CqlLibrary.class, LibraryListDTO.class);
+  }
 }
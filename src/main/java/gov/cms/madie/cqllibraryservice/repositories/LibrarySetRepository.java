@@ -2,6 +2,8 @@ package gov.cms.madie.cqllibraryservice.repositories;
 
 import gov.cms.madie.models.library.LibrarySet;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface LibrarySetRepository extends MongoRepository<LibrarySet, String> {
@@ -9,4 +11,6 @@ public interface LibrarySetRepository extends MongoRepository<LibrarySet, String
   boolean existsByLibrarySetId(String librarySetId);
 
   Optional<LibrarySet> findByLibrarySetId(String LibrarySetId);
+
+  List<LibrarySet> findAllByLibrarySetIdIn(Collection<String> librarySetIds);
 }
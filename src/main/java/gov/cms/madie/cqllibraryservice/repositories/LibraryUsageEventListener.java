@@ -0,0 +1,64 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.Collection;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the libraryUsage collection in step with the libraries: every save of a library (create,
+ * update, version, draft, soft delete) replaces its usage entries, a delete removes them, and a
+ * save of a library set refreshes the owner copied onto the entries of its libraries.
+ */
+@Slf4j
+@Component
+public class LibraryUsageEventListener extends AbstractMongoEventListener<Object> {
+  private final LibraryUsageRepository libraryUsageRepository;
+
+  public LibraryUsageEventListener(@Lazy CqlLibraryRepository cqlLibraryRepository) {
+    this.libraryUsageRepository = cqlLibraryRepository;
+  }
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<Object> event) {
+    if (event.getSource() instanceof CqlLibrary cqlLibrary) {
+      libraryUsageRepository.replaceLibraryUsage(cqlLibrary);
+    } else if (event.getSource() instanceof LibrarySet librarySet) {
+      libraryUsageRepository.updateLibraryUsageOwner(
+          librarySet.getLibrarySetId(), librarySet.getOwner());
+    }
+  }
+
+  @Override
+  public void onAfterDelete(AfterDeleteEvent<Object> event) {
+    if (!CqlLibrary.class.equals(event.getType())) {
+      return;
+    }
+    Collection<String> ids = getDeletedIds(event.getSource().get("_id"));
+    if (ids.isEmpty()) {
+      log.warn("Library usage not removed, delete by {} does not select by id", event.getSource());
+    } else {
+      libraryUsageRepository.deleteLibraryUsage(ids);
+    }
+  }
+
+  private Collection<String> getDeletedIds(Object id) {
+    if (id == null) {
+      return List.of();
+    }
+    if (id instanceof Document operators) {
+      Object in = operators.get("$in");
+      return in instanceof Collection<?> values
+          ? values.stream().map(String::valueOf).toList()
+          : List.of();
+    }
+    return List.of(id.toString());
+  }
+}
@@ -0,0 +1,51 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.models.dto.LibraryUsage;
+import gov.cms.madie.models.library.CqlLibrary;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface LibraryUsageRepository {
+  /**
+   * Replace the usage entries of the given library with one entry per library it includes. An
+   * inactive library does not use anything.
+   *
+   * @param cqlLibrary -> saved library
+   */
+  void replaceLibraryUsage(CqlLibrary cqlLibrary);
+
+  /**
+   * Remove the usage entries of deleted libraries.
+   *
+   * @param usedByIds -> ids of the deleted libraries
+   */
+  void deleteLibraryUsage(Collection<String> usedByIds);
+
+  /**
+   * Copy the owner of a library set onto the usage entries of its libraries.
+   *
+   * @param librarySetId -> library set id
+   * @param owner -> current owner of the library set
+   */
+  void updateLibraryUsageOwner(String librarySetId, String owner);
+
+  /**
+   * Get all the libraries(name, version and owner) if they include library with given library name,
+   * version doesn't matter
+   *
+   * @param name -> library name for which usage needs to be determined
+   * @return List<LibraryUsage> -> LibraryUsage: name, version and owner of including library
+   */
+  List<LibraryUsage> findLibraryUsageByLibraryName(String name);
+
+  /**
+   * Get all the libraries that include the library with given name, either directly or through
+   * other libraries, up to maxDepth levels of includes. Each library is returned once.
+   *
+   * @param name -> library name for which usage needs to be determined
+   * @param maxDepth -> number of include levels to follow, 1 for direct usage only
+   * @return List<LibraryUsage> sorted by name and version
+   */
+  List<LibraryUsage> findTransitiveLibraryUsageByLibraryName(String name, int maxDepth);
+}
@@ -0,0 +1,178 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryUsageEntry;
+import gov.cms.madie.models.common.IncludedLibrary;
+import gov.cms.madie.models.dto.LibraryUsage;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+@Repository
+public class LibraryUsageRepositoryImpl implements LibraryUsageRepository {
+  private final MongoTemplate mongoTemplate;
+
+  public LibraryUsageRepositoryImpl(MongoTemplate mongoTemplate) {
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  /**
+   * Build the usage entries of a library, one per distinct included library name.
+   *
+   * @param cqlLibrary -> including library
+   * @param owner -> owner of the library set of the including library, if known
+   * @return usage entries, empty if the library is inactive or includes nothing
+   */
+  public static List<LibraryUsageEntry> toLibraryUsageEntries(CqlLibrary cqlLibrary, String owner) {
+    if (!cqlLibrary.isActive() || CollectionUtils.isEmpty(cqlLibrary.getIncludedLibraries())) {
+      return List.of();
+    }
+    return cqlLibrary.getIncludedLibraries().stream()
+        .filter(include -> StringUtils.isNotBlank(include.getName()))
+        .collect(
+            Collectors.toMap(
+                IncludedLibrary::getName, Function.identity(), (first, second) -> first))
+        .values()
+        .stream()
+        .map(
+            include ->
+                LibraryUsageEntry.builder()
+                    .id(cqlLibrary.getId() + ":" + include.getName())
+                    .libraryName(include.getName())
+                    .libraryVersion(include.getVersion())
+                    .usedById(cqlLibrary.getId())
+                    .usedByName(cqlLibrary.getCqlLibraryName())
+                    .usedByVersion(Objects.toString(cqlLibrary.getVersion(), null))
+                    .usedByLibrarySetId(cqlLibrary.getLibrarySetId())
+                    .owner(owner)
+                    .build())
+        .toList();
+  }
+
+  /**
+   * Entries are replaced by id and the stale ones removed afterwards, rather than removed and
+   * inserted again, so concurrent saves of the same library cannot collide on the entry ids.
+   */
+  @Override
+  public void replaceLibraryUsage(CqlLibrary cqlLibrary) {
+    List<LibraryUsageEntry> entries = toLibraryUsageEntries(cqlLibrary, findOwner(cqlLibrary));
+    if (!entries.isEmpty()) {
+      BulkOperations bulkOps =
+          mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LibraryUsageEntry.class);
+      entries.forEach(
+          entry ->
+              bulkOps.replaceOne(
+                  Query.query(Criteria.where("id").is(entry.getId())),
+                  entry,
+                  FindAndReplaceOptions.options().upsert()));
+      bulkOps.execute();
+    }
+    mongoTemplate.remove(
+        Query.query(
+            Criteria.where("usedById")
+                .is(cqlLibrary.getId())
+                .and("id")
+                .nin(entries.stream().map(LibraryUsageEntry::getId).toList())),
+        LibraryUsageEntry.class);
+  }
+
+  private String findOwner(CqlLibrary cqlLibrary) {
+    if (!cqlLibrary.isActive()
+        || CollectionUtils.isEmpty(cqlLibrary.getIncludedLibraries())
+        || StringUtils.isBlank(cqlLibrary.getLibrarySetId())) {
+      return null;
+    }
+    Query query = Query.query(Criteria.where("librarySetId").is(cqlLibrary.getLibrarySetId()));
+    query.fields().include("owner");
+    return Optional.ofNullable(mongoTemplate.findOne(query, LibrarySet.class))
+        .map(LibrarySet::getOwner)
+        .orElse(null);
+  }
+
+  @Override
+  public void deleteLibraryUsage(Collection<String> usedByIds) {
+    if (CollectionUtils.isEmpty(usedByIds)) {
+      return;
+    }
+    mongoTemplate.remove(
+        Query.query(Criteria.where("usedById").in(usedByIds)), LibraryUsageEntry.class);
+  }
+
+  @Override
+  public void updateLibraryUsageOwner(String librarySetId, String owner) {
+    if (StringUtils.isBlank(librarySetId)) {
+      return;
+    }
+    mongoTemplate.updateMulti(
+        Query.query(Criteria.where("usedByLibrarySetId").is(librarySetId).and("owner").ne(owner)),
+        Update.update("owner", owner),
+        LibraryUsageEntry.class);
+  }
+
+  @Override
+  public List<LibraryUsage> findLibraryUsageByLibraryName(String name) {
+    Query query = Query.query(Criteria.where("libraryName").is(name));
+    query.fields().include("usedByName", "usedByVersion", "owner");
+    return mongoTemplate.find(query, LibraryUsageEntry.class).stream()
+        .map(LibraryUsageRepositoryImpl::toLibraryUsage)
+        .toList();
+  }
+
+  @Override
+  public List<LibraryUsage> findTransitiveLibraryUsageByLibraryName(String name, int maxDepth) {
+    // graphLookup keeps track of visited entries, so circular includes end the traversal
+    Aggregation aggregation =
+        newAggregation(
+            match(Criteria.where("libraryName").is(name)),
+            limit(1),
+            graphLookup(LibraryUsageEntry.COLLECTION)
+                .startWith("$libraryName")
+                .connectFrom("usedByName")
+                .connectTo("libraryName")
+                .maxDepth(Math.max(maxDepth - 1, 0))
+                .as("usages"),
+            unwind("usages"),
+            replaceRoot("usages"),
+            group("usedById")
+                .first("usedByName")
+                .as("usedByName")
+                .first("usedByVersion")
+                .as("usedByVersion")
+                .first("owner")
+                .as("owner"),
+            sort(Sort.by("usedByName", "usedByVersion")));
+    return mongoTemplate
+        .aggregate(aggregation, LibraryUsageEntry.COLLECTION, LibraryUsageEntry.class)
+        .getMappedResults()
+        .stream()
+        .map(LibraryUsageRepositoryImpl::toLibraryUsage)
+        .toList();
+  }
+
+  private static LibraryUsage toLibraryUsage(LibraryUsageEntry entry) {
+    return LibraryUsage.builder()
+        .name(entry.getUsedByName())
+        .version(entry.getUsedByVersion())
+        .owner(entry.getOwner())
+        .build();
+  }
+}
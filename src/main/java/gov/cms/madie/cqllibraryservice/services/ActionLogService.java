@@ -1,5 +1,7 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import gov.cms.madie.cqllibraryservice.dto.ActionLogPageDTO;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
 import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryActionLogRepository;
 import gov.cms.madie.models.common.Action;
 import gov.cms.madie.models.common.ActionType;
@@ -8,17 +10,28 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 
 @Slf4j
 @RequiredArgsConstructor
 @Service
 public class ActionLogService {
 
+  public static final int MAX_PAGE_SIZE = 100;
+
+  private final ActionLogWriter actionLogWriter;
   private final CqlLibraryActionLogRepository cqlLibraryHistoryRepository;
 
+  /**
+   * Log an action against the given target. The action is time-stamped now and written in the
+   * background by the {@link ActionLogWriter}.
+   *
+   * @return true if the action was accepted for writing, false otherwise
+   */
   public boolean logAction(
       final String targetId, final ActionType actionType, final String userId) {
-    return cqlLibraryHistoryRepository.pushEvent(
+    return actionLogWriter.write(
         targetId,
         Action.builder()
             .actionType(actionType)
@@ -26,4 +39,44 @@ public class ActionLogService {
             .performedAt(Instant.now())
             .build());
   }
+
+  /**
+   * Discard the actions still waiting to be written for the given targets, whose action logs were
+   * deleted.
+   */
+  public void discardActions(final Collection<String> targetIds) {
+    actionLogWriter.discard(targetIds);
+  }
+
+  /**
+   * Get a page of the actions logged against the given targets, newest first. One more action than
+   * requested is read to find out whether there is a next page.
+   *
+   * @param targetIds - targets whose actions are read
+   * @param page - zero based page number, pages are limit actions long
+   * @param limit - page size
+   * @return ActionLogPageDTO - actions of the page and the number of the next one
+   */
+  public ActionLogPageDTO findActions(Collection<String> targetIds, int page, int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new BadRequestObjectException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+    }
+    if (page < 0) {
+      throw new BadRequestObjectException("Page must not be negative.");
+    }
+    List<Action> actions =
+        cqlLibraryHistoryRepository.findActionsByTargetIds(
+            targetIds, (long) page * limit, limit + 1);
+    Integer nextPage = null;
+    if (actions.size() > limit) {
+      actions = actions.subList(0, limit);
+      nextPage = page + 1;
+    }
+    return ActionLogPageDTO.builder()
+        .content(actions)
+        .page(page)
+        .limit(limit)
+        .nextPage(nextPage)
+        .build();
+  }
 }
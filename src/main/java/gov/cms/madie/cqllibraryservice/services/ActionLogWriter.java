@@ -0,0 +1,245 @@
+package gov.cms.madie.cqllibraryservice.services;
+
+import gov.cms.madie.cqllibraryservice.config.EnvironmentConfig;
+import gov.cms.madie.cqllibraryservice.repositories.ActionLogRepository;
+import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryActionLogRepository;
+import gov.cms.madie.models.common.Action;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes action logs off the request thread. Actions are queued and a single writer thread pushes
+ * them in batches, one upsert per targetId, once a batch is full or the flush interval has passed
+ * since its first action. When the queue is full the backpressure policy decides whether the
+ * logging thread writes its action itself or drops it. On shutdown the queue is drained before the
+ * database connection closes; actions logged after that are written synchronously.
+ */
+@Slf4j
+@Component
+public class ActionLogWriter implements SmartLifecycle {
+
+  /** Stopped after the web server, so actions logged by requests still in flight are written. */
+  static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+  public enum Backpressure {
+    /** The logging thread writes its action itself. */
+    CALLER_RUNS,
+    /** The action is not logged. */
+    DROP
+  }
+
+  private record PendingAction(String targetId, Action action) {}
+
+  private final ActionLogRepository actionLogRepository;
+  private final BlockingQueue<PendingAction> queue;
+  private final int batchSize;
+  private final Duration flushInterval;
+  private final Backpressure backpressure;
+  private final Duration shutdownTimeout;
+  private final Timer writeTimer;
+  private final Counter droppedCounter;
+  private final Counter failedCounter;
+
+  private volatile boolean running;
+  private volatile boolean stopping;
+  private Thread writerThread;
+
+  public ActionLogWriter(
+      CqlLibraryActionLogRepository actionLogRepository,
+      EnvironmentConfig environmentConfig,
+      MeterRegistry meterRegistry) {
+    this.actionLogRepository = actionLogRepository;
+    this.queue = new ArrayBlockingQueue<>(environmentConfig.getActionLogQueueCapacity());
+    this.batchSize = environmentConfig.getActionLogBatchSize();
+    this.flushInterval = environmentConfig.getActionLogFlushInterval();
+    this.backpressure = environmentConfig.getActionLogBackpressure();
+    this.shutdownTimeout = environmentConfig.getActionLogShutdownTimeout();
+    Gauge.builder("actionLog.queue.size", queue, Collection::size)
+        .description("Actions waiting to be written")
+        .register(meterRegistry);
+    this.writeTimer =
+        Timer.builder("actionLog.write")
+            .description("Time taken to write a batch of actions")
+            .register(meterRegistry);
+    this.droppedCounter =
+        Counter.builder("actionLog.dropped")
+            .description("Actions dropped because the queue was full")
+            .register(meterRegistry);
+    this.failedCounter =
+        Counter.builder("actionLog.failed")
+            .description("Actions lost because their write failed")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Queue an action for the action log of the given target.
+   *
+   * @param targetId -> id the action log is kept under
+   * @param action -> action to append
+   * @return true if the action was queued or written, false if it was invalid, dropped, or its
+   *     synchronous write failed
+   */
+  public boolean write(String targetId, Action action) {
+    if (StringUtils.isEmpty(targetId) || action == null) {
+      return false;
+    }
+    PendingAction pending = new PendingAction(targetId, action);
+    if (!stopping) {
+      if (queue.offer(pending)) {
+        // stop() may have drained the queue between the check and the offer; an action still
+        // queued after that is taken back and written here rather than lost
+        if (stopping && queue.remove(pending)) {
+          return flush(List.of(pending));
+        }
+        return true;
+      }
+      if (backpressure == Backpressure.DROP) {
+        droppedCounter.increment();
+        log.warn(
+            "Action log queue is full, dropped {} action for {}", action.getActionType(), targetId);
+        return false;
+      }
+    }
+    return flush(List.of(pending));
+  }
+
+  /**
+   * Discard the actions still queued for the given targets, e.g. because their action logs were
+   * just deleted. A batch the writer thread has already taken from the queue is written regardless,
+   * so an action logged while the delete runs can still leave an action log behind.
+   *
+   * @param targetIds -> ids whose queued actions are discarded
+   */
+  public void discard(Collection<String> targetIds) {
+    if (CollectionUtils.isEmpty(targetIds)) {
+      return;
+    }
+    Set<String> targets = new HashSet<>(targetIds);
+    queue.removeIf(pending -> targets.contains(pending.targetId()));
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    stopping = false;
+    writerThread = new Thread(this::drain, "action-log-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+    running = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    stopping = true;
+    try {
+      writerThread.join(shutdownTimeout.toMillis());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    if (writerThread.isAlive()) {
+      log.warn(
+          "Action log writer did not finish within {}, {} actions are still queued",
+          shutdownTimeout,
+          queue.size());
+    } else {
+      // actions queued while the writer thread was exiting
+      List<PendingAction> remaining = new ArrayList<>();
+      queue.drainTo(remaining);
+      if (!remaining.isEmpty()) {
+        flush(remaining);
+      }
+    }
+    running = false;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  private void drain() {
+    List<PendingAction> batch = new ArrayList<>(batchSize);
+    while (!stopping || !queue.isEmpty()) {
+      try {
+        collectBatch(batch);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        log.warn("Action log writer interrupted, {} actions are still queued", queue.size());
+        return;
+      } finally {
+        if (!batch.isEmpty()) {
+          flush(batch);
+          batch.clear();
+        }
+      }
+    }
+  }
+
+  private void collectBatch(List<PendingAction> batch) throws InterruptedException {
+    PendingAction first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long deadline = System.nanoTime() + flushInterval.toNanos();
+    while (batch.size() < batchSize) {
+      queue.drainTo(batch, batchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= batchSize || remaining <= 0 || stopping) {
+        return;
+      }
+      PendingAction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private boolean flush(List<PendingAction> batch) {
+    Map<String, List<Action>> actionsByTargetId =
+        batch.stream()
+            .collect(
+                Collectors.groupingBy(
+                    PendingAction::targetId,
+                    LinkedHashMap::new,
+                    Collectors.mapping(PendingAction::action, Collectors.toList())));
+    try {
+      writeTimer.record(() -> actionLogRepository.pushEvents(actionsByTargetId));
+      return true;
+    } catch (RuntimeException ex) {
+      failedCounter.increment(batch.size());
+      log.error("Failed to write {} actions to the action log", batch.size(), ex);
+      return false;
+    }
+  }
+}
@@ -1,10 +1,19 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import gov.cms.madie.cqllibraryservice.dto.IncludedLibraryDTO;
 import gov.cms.madie.cqllibraryservice.dto.LibrarySetDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCursor;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
 import gov.cms.madie.cqllibraryservice.exceptions.*;
-import gov.cms.madie.cqllibraryservice.repositories.LibrarySetRepository;
+import gov.cms.madie.cqllibraryservice.utils.CursorUtils;
 import gov.cms.madie.models.access.RoleEnum;
+import gov.cms.madie.models.common.IncludedLibrary;
 import gov.cms.madie.models.common.Version;
 import gov.cms.madie.models.dto.LibraryUsage;
 import gov.cms.madie.models.library.CqlLibrary;
@@ -12,12 +21,27 @@ import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryRepository;
 import gov.cms.madie.models.library.LibrarySet;
 import gov.cms.madie.models.measure.ElmJson;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.apache.commons.collections4.CollectionUtils;
 
@@ -25,12 +49,23 @@ import org.apache.commons.collections4.CollectionUtils;
 @Service
 @AllArgsConstructor
 public class CqlLibraryService {
+  public static final int MAX_PAGE_SIZE = 100;
+  public static final int MAX_SEARCH_RESULTS = 1000;
+  public static final int MAX_SEARCH_TERM_LENGTH = 64;
+  public static final int MAX_BATCH_SIZE = 100;
+  public static final int MAX_INCLUDE_DEPTH = 25;
 
   private final ElmTranslatorClient elmTranslatorClient;
-  private final LibrarySetRepository librarySetRepository;
   private CqlLibraryRepository cqlLibraryRepository;
   private LibrarySetService librarySetService;
   private MeasureServiceClient measureServiceClient;
+  private ActionLogService actionLogService;
+
+  @Qualifier("elmTranslationExecutor")
+  private Executor elmTranslationExecutor;
+
+  @Qualifier("usageCheckExecutor")
+  private Executor usageCheckExecutor;
 
   public void checkDuplicateCqlLibraryName(String cqlLibraryName) {
     if (StringUtils.isNotEmpty(cqlLibraryName)
@@ -49,12 +84,220 @@ public class CqlLibraryService {
       Optional<String> model,
       boolean fetchElm,
       final String accessToken) {
-    List<CqlLibrary> libs =
-        model.isPresent()
-            ? cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersionAndModel(
-                name, false, Version.parse(version), model.get())
-            : cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersion(
-                name, false, Version.parse(version));
+    List<CqlLibrary> libs;
+    if (fetchElm) {
+      // stale ELM is not read, so it is known to need translating without another query
+      libs =
+          cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(
+              List.of(
+                  VersionedLibraryRequest.builder()
+                      .name(name)
+                      .version(version)
+                      .model(model.orElse(null))
+                      .build()),
+              elmTranslatorClient.getTranslatorVersion());
+    } else {
+      libs =
+          model.isPresent()
+              ? cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersionAndModel(
+                  name, false, Version.parse(version), model.get())
+              : cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersion(
+                  name, false, Version.parse(version));
+    }
+    CqlLibrary cqlLibrary = getSingleVersionedLibrary(name, version, libs);
+    if (fetchElm && StringUtils.isBlank(cqlLibrary.getElmJson())) {
+      translateElm(cqlLibrary, accessToken);
+    }
+    LibrarySet librarySet = librarySetService.findByLibrarySetId(cqlLibrary.getLibrarySetId());
+    cqlLibrary.setLibrarySet(librarySet);
+    return cqlLibrary;
+  }
+
+  /**
+   * Batch form of {@link #getVersionedCqlLibrary}. The libraries are read with one query, their
+   * library sets with at most one more, and ELM that is missing or stale is translated in parallel.
+   * The batch fails as a whole, with the same errors the single lookup reports for a library.
+   *
+   * @param requests - name, version and optional model of each library
+   * @param fetchElm - whether to include ELM
+   * @param accessToken - auth token, passed on to the translator
+   * @return libraries in the order they were requested
+   */
+  public List<CqlLibrary> getVersionedCqlLibraries(
+      List<VersionedLibraryRequest> requests, boolean fetchElm, final String accessToken) {
+    if (CollectionUtils.isEmpty(requests) || requests.size() > MAX_BATCH_SIZE) {
+      throw new BadRequestObjectException(
+          "Batch must contain between 1 and " + MAX_BATCH_SIZE + " libraries.");
+    }
+    if (requests.stream()
+        .anyMatch(
+            request ->
+                request == null
+                    || StringUtils.isAnyBlank(request.getName(), request.getVersion()))) {
+      throw new BadRequestObjectException("Each library must have a name and a version.");
+    }
+    List<CqlLibrary> found = cqlLibraryRepository.findVersionedLibraries(requests);
+    List<CqlLibrary> libraries =
+        requests.stream()
+            .map(
+                request ->
+                    getSingleVersionedLibrary(
+                        request.getName(),
+                        request.getVersion(),
+                        found.stream()
+                            .filter(cqlLibrary -> isRequestedLibrary(cqlLibrary, request))
+                            .toList()))
+            .toList();
+    if (fetchElm) {
+      translateStaleElm(libraries.stream().distinct().toList(), accessToken);
+    }
+    Map<String, LibrarySet> librarySets =
+        librarySetService.findByLibrarySetIds(
+            libraries.stream()
+                .map(CqlLibrary::getLibrarySetId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+    libraries.stream()
+        .filter(cqlLibrary -> cqlLibrary.getLibrarySetId() != null)
+        .forEach(
+            cqlLibrary -> cqlLibrary.setLibrarySet(librarySets.get(cqlLibrary.getLibrarySetId())));
+    return libraries;
+  }
+
+  /**
+   * Resolves the transitive closure of a library's includes. The include graph is walked breadth
+   * first, fetching each level with a single query, so the number of queries is bounded by the
+   * depth of the graph rather than its size. Includes are resolved within the model of the starting
+   * library.
+   *
+   * @param id - id of the library to start at
+   * @param maxDepth - deepest level of includes to resolve
+   * @param fetchElm - whether to include ELM
+   * @param accessToken - auth token, passed on to the translator
+   * @return every included library once, nearest first
+   * @throws BadRequestObjectException if includes nest deeper than maxDepth
+   * @throws GeneralConflictException if the includes are circular
+   * @throws ResourceNotFoundException if the library or one of its includes does not exist
+   */
+  public List<IncludedLibraryDTO> getIncludedLibraries(
+      String id, int maxDepth, boolean fetchElm, final String accessToken) {
+    if (maxDepth < 1 || maxDepth > MAX_INCLUDE_DEPTH) {
+      throw new BadRequestObjectException("Depth must be between 1 and " + MAX_INCLUDE_DEPTH + ".");
+    }
+    CqlLibrary root =
+        cqlLibraryRepository
+            .findById(id)
+            .orElseThrow(() -> new ResourceNotFoundException("Library", id));
+    String rootKey = getIncludeKey(root.getCqlLibraryName(), root.getVersion());
+    Map<String, CqlLibrary> resolved = new LinkedHashMap<>();
+    Map<String, Integer> depths = new HashMap<>();
+    Map<String, List<String>> includes = new HashMap<>();
+    includes.put(rootKey, getIncludeKeys(root.getIncludedLibraries()));
+
+    List<IncludedLibrary> level = getIncludes(root.getIncludedLibraries());
+    for (int depth = 1; !level.isEmpty(); depth++) {
+      Map<String, VersionedLibraryRequest> requests = new LinkedHashMap<>();
+      for (IncludedLibrary include : level) {
+        String key = getIncludeKey(include.getName(), Version.parse(include.getVersion()));
+        if (!resolved.containsKey(key) && !key.equals(rootKey)) {
+          requests.putIfAbsent(
+              key,
+              VersionedLibraryRequest.builder()
+                  .name(include.getName())
+                  .version(include.getVersion())
+                  .model(root.getModel())
+                  .build());
+        }
+      }
+      if (requests.isEmpty()) {
+        break;
+      }
+      if (depth > maxDepth) {
+        throw new BadRequestObjectException(
+            "Includes of library "
+                + root.getCqlLibraryName()
+                + " nest deeper than "
+                + maxDepth
+                + " levels.");
+      }
+      List<CqlLibrary> found =
+          cqlLibraryRepository.findVersionedLibraries(new ArrayList<>(requests.values()));
+      List<IncludedLibrary> next = new ArrayList<>();
+      for (Map.Entry<String, VersionedLibraryRequest> request : requests.entrySet()) {
+        CqlLibrary cqlLibrary =
+            getSingleVersionedLibrary(
+                request.getValue().getName(),
+                request.getValue().getVersion(),
+                found.stream()
+                    .filter(library -> isRequestedLibrary(library, request.getValue()))
+                    .toList());
+        resolved.put(request.getKey(), cqlLibrary);
+        depths.put(request.getKey(), depth);
+        includes.put(request.getKey(), getIncludeKeys(cqlLibrary.getIncludedLibraries()));
+        next.addAll(getIncludes(cqlLibrary.getIncludedLibraries()));
+      }
+      level = next;
+    }
+    checkForCircularIncludes(rootKey, includes, new ArrayList<>(), new HashSet<>());
+
+    if (fetchElm && !resolved.isEmpty()) {
+      translateStaleElm(new ArrayList<>(resolved.values()), accessToken);
+    }
+    return resolved.entrySet().stream()
+        .map(
+            entry ->
+                IncludedLibraryDTO.builder()
+                    .id(entry.getValue().getId())
+                    .name(entry.getValue().getCqlLibraryName())
+                    .version(Objects.toString(entry.getValue().getVersion(), null))
+                    .model(entry.getValue().getModel())
+                    .depth(depths.get(entry.getKey()))
+                    .cql(entry.getValue().getCql())
+                    .elmJson(fetchElm ? entry.getValue().getElmJson() : null)
+                    .elmXml(fetchElm ? entry.getValue().getElmXml() : null)
+                    .build())
+        .toList();
+  }
+
+  /** Depth first search for an include path that leads back to a library already on it. */
+  private void checkForCircularIncludes(
+      String key, Map<String, List<String>> includes, List<String> path, Set<String> checked) {
+    int index = path.indexOf(key);
+    if (index >= 0) {
+      List<String> cycle = new ArrayList<>(path.subList(index, path.size()));
+      cycle.add(key);
+      throw new GeneralConflictException(
+          "Circular library includes found: " + String.join(" -> ", cycle));
+    }
+    if (!checked.add(key)) {
+      return;
+    }
+    path.add(key);
+    for (String include : includes.getOrDefault(key, List.of())) {
+      checkForCircularIncludes(include, includes, path, checked);
+    }
+    path.remove(path.size() - 1);
+  }
+
+  private List<IncludedLibrary> getIncludes(List<IncludedLibrary> includedLibraries) {
+    return includedLibraries == null
+        ? List.of()
+        : includedLibraries.stream()
+            .filter(include -> StringUtils.isNotBlank(include.getName()))
+            .toList();
+  }
+
+  private List<String> getIncludeKeys(List<IncludedLibrary> includedLibraries) {
+    return getIncludes(includedLibraries).stream()
+        .map(include -> getIncludeKey(include.getName(), Version.parse(include.getVersion())))
+        .toList();
+  }
+
+  private String getIncludeKey(String name, Version version) {
+    return name + " " + version;
+  }
+
+  private CqlLibrary getSingleVersionedLibrary(String name, String version, List<CqlLibrary> libs) {
     if (CollectionUtils.isEmpty(libs)) {
       log.error("Could not find Library resource with name: [{}] Version: [{}]", name, version);
       throw new ResourceNotFoundException("Library", "name", name);
@@ -64,38 +307,105 @@ public class CqlLibraryService {
           "Multiple versioned libraries were found. "
               + "Please provide additional filters "
               + "to narrow down the results to a single library.");
-    } else {
-      CqlLibrary cqlLibrary = libs.get(0);
-      if (fetchElm) {
-        try {
-          final ElmJson elmJson =
-              elmTranslatorClient.getElmJson(
-                  cqlLibrary.getCql(), cqlLibrary.getModel(), accessToken);
-          if (elmTranslatorClient.hasErrors(elmJson)) {
-            throw new CqlElmTranslationErrorException(cqlLibrary.getCqlLibraryName());
-          }
-          cqlLibrary.setElmJson(elmJson.getJson());
-          cqlLibrary.setElmXml(elmJson.getXml());
-        } catch (CqlElmTranslationServiceException | CqlElmTranslationErrorException e) {
-          throw e;
-        }
+    }
+    return libs.get(0);
+  }
+
+  private boolean isRequestedLibrary(CqlLibrary cqlLibrary, VersionedLibraryRequest request) {
+    return StringUtils.equals(cqlLibrary.getCqlLibraryName(), request.getName())
+        && cqlLibrary.getVersion() != null
+        && cqlLibrary.getVersion().compareTo(Version.parse(request.getVersion())) == 0
+        && (StringUtils.isBlank(request.getModel())
+            || StringUtils.equals(cqlLibrary.getModel(), request.getModel()));
+  }
+
+  private void translateStaleElm(List<CqlLibrary> libraries, final String accessToken) {
+    Set<String> current =
+        cqlLibraryRepository.findIdsElmTranslatedBy(
+            libraries.stream().map(CqlLibrary::getId).toList(),
+            elmTranslatorClient.getTranslatorVersion());
+    CompletableFuture<?>[] translations =
+        libraries.stream()
+            .filter(
+                cqlLibrary ->
+                    StringUtils.isBlank(cqlLibrary.getElmJson())
+                        || !current.contains(cqlLibrary.getId()))
+            .map(
+                cqlLibrary ->
+                    CompletableFuture.runAsync(
+                        () -> translateElm(cqlLibrary, accessToken), elmTranslationExecutor))
+            .toArray(CompletableFuture[]::new);
+    try {
+      CompletableFuture.allOf(translations).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
       }
-      LibrarySet librarySet = librarySetService.findByLibrarySetId(cqlLibrary.getLibrarySetId());
-      cqlLibrary.setLibrarySet(librarySet);
-      return cqlLibrary;
+      throw ex;
     }
   }
 
-  public CqlLibrary findCqlLibraryById(String id) {
-    Optional<CqlLibrary> optionalLibrary = cqlLibraryRepository.findById(id);
-    if (optionalLibrary.isPresent()) {
-      CqlLibrary cqlLibrary = optionalLibrary.get();
-      LibrarySet librarySet = librarySetService.findByLibrarySetId(cqlLibrary.getLibrarySetId());
-      cqlLibrary.setLibrarySet(librarySet);
-      return cqlLibrary;
+  private void translateElm(CqlLibrary cqlLibrary, final String accessToken) {
+    final ElmJson elmJson =
+        elmTranslatorClient.getCachedElmJson(
+            cqlLibrary.getCql(), cqlLibrary.getModel(), accessToken);
+    if (elmTranslatorClient.hasErrors(elmJson)) {
+      throw new CqlElmTranslationErrorException(cqlLibrary.getCqlLibraryName());
     }
-    log.error("CqlLibrary with library ID [{}] was not found", id);
-    throw new ResourceNotFoundException("CQL Library", id);
+    cqlLibrary.setElmJson(elmJson.getJson());
+    cqlLibrary.setElmXml(elmJson.getXml());
+    // persist the fresh ELM, so subsequent reads are served without the translator
+    cqlLibraryRepository.updateElm(
+        cqlLibrary.getId(),
+        elmJson.getJson(),
+        elmJson.getXml(),
+        elmTranslatorClient.getTranslatorVersion());
+  }
+
+  public CqlLibrary findCqlLibraryById(String id) {
+    return findCqlLibraryById(id, null);
+  }
+
+  /**
+   * Find a library with its library set, reading only the given library fields.
+   *
+   * @param id - library id
+   * @param fields - library fields to read, or null for all
+   * @return CqlLibrary - the library, with unread fields left unset
+   */
+  public CqlLibrary findCqlLibraryById(String id, Collection<String> fields) {
+    return cqlLibraryRepository
+        .findCqlLibraryWithLibrarySetById(id, fields)
+        .orElseThrow(
+            () -> {
+              log.error("CqlLibrary with library ID [{}] was not found", id);
+              return new ResourceNotFoundException("CQL Library", id);
+            });
+  }
+
+  /**
+   * Find the name and library set of each given library in a single query.
+   *
+   * @param ids - library ids, duplicates are allowed
+   * @return List<CqlLibrary> - one library per given id, in the same order, with only the id, name
+   *     and library set populated
+   * @throws ResourceNotFoundException for the first id that does not belong to a library
+   */
+  public List<CqlLibrary> findCqlLibrarySummariesByIds(List<String> ids) {
+    Map<String, CqlLibrary> libraries =
+        cqlLibraryRepository.findCqlLibrarySummariesWithLibrarySetByIds(Set.copyOf(ids)).stream()
+            .collect(Collectors.toMap(CqlLibrary::getId, Function.identity()));
+    return ids.stream()
+        .map(
+            id -> {
+              CqlLibrary library = libraries.get(id);
+              if (library == null) {
+                log.error("CqlLibrary with library ID [{}] was not found", id);
+                throw new ResourceNotFoundException("CQL Library", id);
+              }
+              return library;
+            })
+        .toList();
   }
 
   public boolean changeOwnership(String id, String userid) {
@@ -150,46 +460,184 @@ public class CqlLibraryService {
   }
 
   /**
-   * Library is being used if any of its version is either included in other library or measure
+   * Same as findLibraryUsage, but also returns the libraries that use the given library through
+   * other libraries, following at most MAX_INCLUDE_DEPTH levels of includes.
+   *
+   * @param libraryName - library name
+   * @return List of LibraryUsage, each including library once
+   */
+  public List<LibraryUsage> findTransitiveLibraryUsage(String libraryName) {
+    if (StringUtils.isBlank(libraryName)) {
+      throw new BadRequestObjectException("Please provide library name.");
+    }
+    if (!cqlLibraryRepository.existsByCqlLibraryName(libraryName)) {
+      throw new ResourceNotFoundException("Library", "name", libraryName);
+    }
+    return cqlLibraryRepository.findTransitiveLibraryUsageByLibraryName(
+        libraryName, MAX_INCLUDE_DEPTH);
+  }
+
+  /**
+   * Library is being used if any of its version is either included in other library or measure. The
+   * measure service is asked on the usage check executor while the libraries are looked up, so it
+   * is not waited for when the library is already used by another library. Usage found by either
+   * lookup wins over a failure of the other; an unknown or missing library name is always reported,
+   * whatever the measure service answers.
    *
    * @param name - library name
    * @param accessToken
    * @return true/false
    */
   public boolean isLibraryBeinUsed(String name, String accessToken) {
-    // check usage in libraries
-    List<LibraryUsage> usageInLibraries = findLibraryUsage(name);
-    if (CollectionUtils.isEmpty(usageInLibraries)) {
-      // check usage in measures
-      List<LibraryUsage> usageInMeasures =
-          measureServiceClient.getLibraryUsageInMeasures(name, accessToken);
-      return CollectionUtils.isNotEmpty(usageInMeasures);
+    CompletableFuture<Boolean> usedInMeasures =
+        CompletableFuture.supplyAsync(
+            () ->
+                CollectionUtils.isNotEmpty(
+                    measureServiceClient.getLibraryUsageInMeasures(name, accessToken)),
+            usageCheckExecutor);
+    try {
+      boolean usedInLibraries;
+      try {
+        usedInLibraries = CollectionUtils.isNotEmpty(findLibraryUsage(name));
+      } catch (BadRequestObjectException | ResourceNotFoundException ex) {
+        throw ex;
+      } catch (RuntimeException ex) {
+        if (isUsedIgnoringFailure(usedInMeasures)) {
+          return true;
+        }
+        throw ex;
+      }
+      return usedInLibraries || join(usedInMeasures);
+    } finally {
+      // the answer is known, a lookup still running is not waited for
+      usedInMeasures.cancel(true);
+    }
+  }
+
+  private boolean isUsedIgnoringFailure(CompletableFuture<Boolean> used) {
+    try {
+      return used.join();
+    } catch (CompletionException | CancellationException ex) {
+      return false;
+    }
+  }
+
+  private boolean join(CompletableFuture<Boolean> used) {
+    try {
+      return used.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw ex;
     }
-    return true;
   }
 
   /**
    * This method deletes cql library and its versions permanently, if none of the versions is being
-   * used either in measure or another library
+   * used either in measure or another library. The library sets left empty and the action logs of
+   * the deleted libraries and sets are removed as well, along with the actions still queued for
+   * them. An action written between the two can leave an action log behind.
    *
    * @param name - library name
    * @param accessToken - auth token
+   * @return LibraryDeleteResultDTO - counts of what was deleted
    */
-  public void deleteLibraryAlongWithVersions(String name, String accessToken) {
+  public LibraryDeleteResultDTO deleteLibraryAlongWithVersions(String name, String accessToken) {
     if (isLibraryBeinUsed(name, accessToken)) {
       throw new GeneralConflictException(
           "Library is being used actively, hence can not be deleted.");
     }
-    List<CqlLibrary> libraries = cqlLibraryRepository.findAllByCqlLibraryName(name);
-    cqlLibraryRepository.deleteAll(libraries);
+    LibraryDeleteResultDTO result = cqlLibraryRepository.deleteAllVersionsByCqlLibraryName(name);
+    librarySetService.evictLibrarySets(result.getDeletedLibrarySetIds());
+    actionLogService.discardActions(result.getDeletedActionLogTargetIds());
+    return result;
+  }
+
+  /**
+   * Get a page of libraries. One more library than requested is fetched to find out whether there
+   * is a next page; the cursor for it points at the last library of this page.
+   *
+   * @param criteria - filters, sort and page size
+   * @param cursor - nextCursor of the previous page, or blank for the first page
+   * @return LibraryListPageDTO - libraries of the page and the cursor for the next one
+   */
+  public LibraryListPageDTO findLibrariesPage(LibraryListCriteria criteria, String cursor) {
+    if (criteria.getLimit() < 1 || criteria.getLimit() > MAX_PAGE_SIZE) {
+      throw new BadRequestObjectException("Limit must be between 1 and " + MAX_PAGE_SIZE + ".");
+    }
+    LibraryListCursor after = null;
+    if (StringUtils.isNotBlank(cursor)) {
+      after = CursorUtils.decode(cursor);
+      if (after.getSort() != criteria.getSort()) {
+        throw new BadRequestObjectException("Cursor does not match the requested sort.");
+      }
+    }
+    List<LibraryListDTO> libraries =
+        cqlLibraryRepository.findLibrariesPage(
+            criteria.toBuilder().after(after).limit(criteria.getLimit() + 1).build());
+
+    String nextCursor = null;
+    if (libraries.size() > criteria.getLimit()) {
+      libraries = libraries.subList(0, criteria.getLimit());
+      nextCursor =
+          CursorUtils.encode(getCursor(criteria.getSort(), libraries.get(libraries.size() - 1)));
+    }
+    return LibraryListPageDTO.builder()
+        .content(libraries)
+        .limit(criteria.getLimit())
+        .nextCursor(nextCursor)
+        .build();
+  }
+
+  private LibraryListCursor getCursor(LibraryListSort sort, LibraryListDTO library) {
+    String value =
+        sort == LibraryListSort.NAME
+            ? library.getCqlLibraryName()
+            : Objects.toString(library.getCreatedAt(), null);
+    return LibraryListCursor.builder().sort(sort).value(value).id(library.getId()).build();
+  }
+
+  /**
+   * Search the non-draft libraries of a model by name. The search term is matched literally, as a
+   * prefix or a substring of the name, ignoring case.
+   *
+   * @param criteria - search term, match type, model and page
+   * @return List of LibraryListDTO, at most criteria.limit entries, all matches without a limit
+   */
+  public List<LibraryListDTO> findLibrariesByNameAndModel(LibrarySearchCriteria criteria) {
+    validateLibrarySearchCriteria(criteria);
+    return cqlLibraryRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria);
   }
 
-  public List<LibraryListDTO> findLibrariesByNameAndModel(String libraryName, String model) {
-    if (StringUtils.isBlank(libraryName) || StringUtils.isBlank(model)) {
+  /**
+   * Streaming variant of findLibrariesByNameAndModel. The returned stream holds a database cursor
+   * and must be closed by the caller.
+   */
+  public Stream<LibraryListDTO> streamLibrariesByNameAndModel(LibrarySearchCriteria criteria) {
+    validateLibrarySearchCriteria(criteria);
+    return cqlLibraryRepository.streamLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria);
+  }
+
+  private void validateLibrarySearchCriteria(LibrarySearchCriteria criteria) {
+    if (StringUtils.isBlank(criteria.getName()) || StringUtils.isBlank(criteria.getModel())) {
       throw new BadRequestObjectException("Please provide library name and model.");
     }
-    return cqlLibraryRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
-        libraryName, model);
+    if (criteria.getName().length() > MAX_SEARCH_TERM_LENGTH) {
+      throw new BadRequestObjectException(
+          "Library name must be at most " + MAX_SEARCH_TERM_LENGTH + " characters.");
+    }
+    if (criteria.getLimit() != null
+        && (criteria.getLimit() < 1 || criteria.getLimit() > MAX_SEARCH_RESULTS)) {
+      throw new BadRequestObjectException(
+          "Limit must be between 1 and " + MAX_SEARCH_RESULTS + ".");
+    }
+    if (criteria.getPage() < 0) {
+      throw new BadRequestObjectException("Page must not be negative.");
+    }
+    if (criteria.getLimit() == null && criteria.getPage() > 0) {
+      throw new BadRequestObjectException("Page requires a limit.");
+    }
   }
 
   /**
@@ -200,15 +648,26 @@ public class CqlLibraryService {
    *     itself
    */
   public LibrarySetDTO getLibrarySetBySetId(String librarySetId) {
+    return getLibrarySetBySetId(librarySetId, null);
+  }
+
+  /**
+   * Same as getLibrarySetBySetId, reading only the given fields of the versioned libraries
+   *
+   * @param librarySetId - set id of a Library
+   * @param fields - library fields to read, or null for all
+   * @return LibrarySetDTO - DTO containing the versioned libraries for a set id and library set
+   */
+  public LibrarySetDTO getLibrarySetBySetId(String librarySetId, Collection<String> fields) {
     if (StringUtils.isBlank(librarySetId)) {
       throw new BadRequestObjectException("Please provide library set ID.");
     }
     List<CqlLibrary> libraries =
-        cqlLibraryRepository.findByLibrarySetIdAndDraftAndActive(librarySetId, false, true);
+        cqlLibraryRepository.findVersionedLibrariesByLibrarySetId(librarySetId, fields);
     if (CollectionUtils.isEmpty(libraries)) {
       return null;
     }
-    LibrarySet librarySet = librarySetRepository.findByLibrarySetId(librarySetId).orElse(null);
+    LibrarySet librarySet = librarySetService.findByLibrarySetId(librarySetId);
     return LibrarySetDTO.builder().libraries(libraries).librarySet(librarySet).build();
   }
 }
@@ -1,20 +1,39 @@
 package gov.cms.madie.cqllibraryservice.services;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.benmanes.caffeine.cache.Cache;
 import gov.cms.madie.cqllibraryservice.config.EnvironmentConfig;
 import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceException;
+import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceUnavailableException;
 import gov.cms.madie.models.common.ModelType;
 import gov.cms.madie.models.measure.ElmJson;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 @Slf4j
@@ -22,19 +41,54 @@ import org.springframework.web.client.RestTemplate;
 @AllArgsConstructor
 public class ElmTranslatorClient {
 
+  private static final String ERROR_EXCEPTIONS = "errorExceptions";
+
+  /** Thread-safe and reusable; parsers created from it share its symbol tables and buffers. */
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
   private EnvironmentConfig environmentConfig;
   private RestTemplate elmTranslatorRestTemplate;
+  private Cache<String, ElmJson> elmJsonCache;
+  private CircuitBreakerRegistry elmTranslatorCircuitBreakerRegistry;
+  private BulkheadRegistry elmTranslatorBulkheadRegistry;
 
+  /** Translations currently in progress for {@link #getCachedElmJson}, by cache key. */
+  private final ConcurrentMap<String, CompletableFuture<ElmJson>> inFlightTranslations =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Translate the CQL with the translator for the library model. Calls go through a bulkhead and a
+   * circuit breaker kept per translator, so a slow or failing translator fails fast instead of
+   * holding request threads.
+   *
+   * @throws CqlElmTranslationServiceUnavailableException if the call was not attempted
+   * @throws CqlElmTranslationServiceException if the call failed
+   */
   public ElmJson getElmJson(final String cql, String libraryModel, String accessToken) {
+    final String translatorName = getTranslatorName(libraryModel);
+    final CircuitBreaker circuitBreaker =
+        elmTranslatorCircuitBreakerRegistry.circuitBreaker(translatorName);
+    final Bulkhead bulkhead = elmTranslatorBulkheadRegistry.bulkhead(translatorName);
     try {
       URI uri = getCqlElmTranslationServiceUri(libraryModel);
       HttpHeaders headers = new HttpHeaders();
       headers.setContentType(MediaType.TEXT_PLAIN);
       headers.set(HttpHeaders.AUTHORIZATION, accessToken);
       HttpEntity<String> cqlEntity = new HttpEntity<>(cql, headers);
-      return elmTranslatorRestTemplate
-          .exchange(uri, HttpMethod.PUT, cqlEntity, ElmJson.class)
-          .getBody();
+      return Bulkhead.decorateSupplier(
+              bulkhead,
+              CircuitBreaker.decorateSupplier(
+                  circuitBreaker,
+                  () ->
+                      elmTranslatorRestTemplate
+                          .exchange(uri, HttpMethod.PUT, cqlEntity, ElmJson.class)
+                          .getBody()))
+          .get();
+    } catch (CallNotPermittedException | BulkheadFullException ex) {
+      log.warn(
+          "Not calling the {} CQL to ELM translation service: {}", translatorName, ex.getMessage());
+      throw new CqlElmTranslationServiceUnavailableException(
+          "CQL-ELM translation service is temporarily unavailable, please try again later", ex);
     } catch (Exception ex) {
       log.error("An error occurred calling the CQL to ELM translation service", ex);
       throw new CqlElmTranslationServiceException(
@@ -42,6 +96,125 @@ public class ElmTranslatorClient {
     }
   }
 
+  /**
+   * Get the ELM for CQL that can no longer change, i.e. the CQL of a versioned library. The
+   * translation is cached under a hash of the CQL, the model and the translator endpoint, so only
+   * the first request for a given library pays for the call to the translation service. ELM the
+   * translator reported errors for is returned but not cached. Requests arriving while that
+   * translation is in progress wait for it rather than starting their own, and share its result or
+   * its failure. A translation the service rejected as a client error, e.g. because of the caller's
+   * token, is not shared: the waiting requests try again with their own.
+   *
+   * @param cql - CQL of a versioned library
+   * @param libraryModel - model of the library
+   * @param accessToken - auth token, used only when the translation is not cached
+   * @return ElmJson for the given CQL
+   */
+  public ElmJson getCachedElmJson(final String cql, String libraryModel, String accessToken) {
+    final String cacheKey = getCacheKey(cql, libraryModel);
+    while (true) {
+      ElmJson elmJson = elmJsonCache.getIfPresent(cacheKey);
+      if (elmJson != null) {
+        return elmJson;
+      }
+      CompletableFuture<ElmJson> translation = new CompletableFuture<>();
+      CompletableFuture<ElmJson> inFlight = inFlightTranslations.putIfAbsent(cacheKey, translation);
+      if (inFlight == null) {
+        return translate(cacheKey, translation, cql, libraryModel, accessToken);
+      }
+      try {
+        return awaitTranslation(inFlight);
+      } catch (RuntimeException ex) {
+        if (!isClientError(ex)) {
+          throw ex;
+        }
+      }
+    }
+  }
+
+  private ElmJson translate(
+      String cacheKey,
+      CompletableFuture<ElmJson> translation,
+      String cql,
+      String libraryModel,
+      String accessToken) {
+    ElmJson elmJson;
+    try {
+      // a translation completed between the cache miss and claiming the key
+      elmJson = elmJsonCache.getIfPresent(cacheKey);
+      if (elmJson == null) {
+        elmJson = getElmJson(cql, libraryModel, accessToken);
+        // ELM with errors is not cached, so a fix on the translator side takes effect
+        if (!hasErrors(elmJson)) {
+          elmJsonCache.put(cacheKey, elmJson);
+        }
+      }
+    } catch (Throwable ex) {
+      // released before waiters wake up, so one retrying finds no finished translation to join
+      inFlightTranslations.remove(cacheKey, translation);
+      translation.completeExceptionally(ex);
+      throw ex;
+    }
+    inFlightTranslations.remove(cacheKey, translation);
+    translation.complete(elmJson);
+    return elmJson;
+  }
+
+  private ElmJson awaitTranslation(CompletableFuture<ElmJson> translation) {
+    try {
+      return translation.join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (ex.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw ex;
+    }
+  }
+
+  /** Whether the translation service rejected the request with a 4xx status. */
+  private boolean isClientError(Throwable ex) {
+    return ExceptionUtils.getThrowableList(ex).stream()
+        .anyMatch(
+            cause ->
+                cause instanceof RestClientResponseException response
+                    && response.getStatusCode().is4xxClientError());
+  }
+
+  /**
+   * Version of the CQL-ELM translator in use. ELM persisted with a different version is considered
+   * stale and is translated again.
+   *
+   * @return configured translator version, empty if none is configured
+   */
+  public String getTranslatorVersion() {
+    return StringUtils.defaultString(environmentConfig.getCqlElmTranslatorVersion());
+  }
+
+  private String getCacheKey(String cql, String libraryModel) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(
+          getCqlElmTranslationServiceUri(libraryModel).toString().getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      digest.update(StringUtils.defaultString(libraryModel).getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+      return HexFormat.of()
+          .formatHex(
+              digest.digest(StringUtils.defaultString(cql).getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", ex);
+    }
+  }
+
+  private String getTranslatorName(String libraryModel) {
+    return StringUtils.equals(libraryModel, ModelType.QDM_5_6.getValue())
+        ? "qdmElmTranslator"
+        : "fhirElmTranslator";
+  }
+
   private URI getCqlElmTranslationServiceUri(String libraryModel) {
     var isQdm = StringUtils.equals(libraryModel, ModelType.QDM_5_6.getValue());
     String baseUrl =
@@ -51,14 +224,29 @@ public class ElmTranslatorClient {
     return URI.create(baseUrl + environmentConfig.getCqlElmServiceElmJsonUri());
   }
 
+  /**
+   * Whether the translator reported errors, i.e. the top level errorExceptions is not empty. The
+   * ELM is streamed rather than read into a tree: the scan stops at errorExceptions and skips over
+   * everything else (usually the much larger library) without materializing it.
+   */
   public boolean hasErrors(ElmJson elmJson) {
     if (elmJson == null) {
       return true;
     }
-    try {
-      ObjectMapper mapper = new ObjectMapper();
-      JsonNode jsonNode = mapper.readTree(elmJson.getJson());
-      return jsonNode.has("errorExceptions") && jsonNode.get("errorExceptions").size() > 0;
+    try (JsonParser parser = JSON_FACTORY.createParser(elmJson.getJson())) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return false;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.currentName();
+        JsonToken value = parser.nextToken();
+        if (ERROR_EXCEPTIONS.equals(fieldName)) {
+          return (value == JsonToken.START_ARRAY && parser.nextToken() != JsonToken.END_ARRAY)
+              || (value == JsonToken.START_OBJECT && parser.nextToken() != JsonToken.END_OBJECT);
+        }
+        parser.skipChildren();
+      }
+      return false;
     } catch (Exception ex) {
       log.error("An error occurred parsing the response from the CQL-ELM translation service", ex);
       throw new CqlElmTranslationServiceException(
@@ -1,5 +1,6 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import gov.cms.madie.cqllibraryservice.exceptions.ResourceNotFoundException;
 import gov.cms.madie.cqllibraryservice.repositories.LibrarySetRepository;
 import gov.cms.madie.models.access.AclSpecification;
@@ -10,8 +11,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.stereotype.Service;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -19,6 +25,7 @@ import java.util.Optional;
 public class LibrarySetService {
   private final LibrarySetRepository librarySetRepository;
   private final ActionLogService actionLogService;
+  private final Cache<String, LibrarySet> librarySetCache;
 
   public void createLibrarySet(
       final String harpId, final String libraryId, final String savedLibrarySetId) {
@@ -54,6 +61,7 @@ public class LibrarySetService {
         }
       }
       LibrarySet updatedLibrarySet = librarySetRepository.save(librarySet);
+      librarySetCache.invalidate(librarySetId);
       log.info("SHARED acl added to library set [{}]", updatedLibrarySet.getId());
       return updatedLibrarySet;
     } else {
@@ -80,8 +88,56 @@ public class LibrarySetService {
         .findFirst();
   }
 
+  /**
+   * Cached lookup; absent sets are not cached, so a set created later is found immediately. The
+   * cached set is shared between requests, so a copy of it is returned.
+   */
   public LibrarySet findByLibrarySetId(final String librarySetId) {
-    return librarySetRepository.findByLibrarySetId(librarySetId).orElse(null);
+    return copyOf(
+        librarySetCache.get(
+            librarySetId, id -> librarySetRepository.findByLibrarySetId(id).orElse(null)));
+  }
+
+  /**
+   * Cached lookup of several library sets. Sets not in the cache are read in one query; absent sets
+   * are left out of the result. Copies of the cached sets are returned.
+   */
+  public Map<String, LibrarySet> findByLibrarySetIds(final Collection<String> librarySetIds) {
+    return librarySetCache
+        .getAll(
+            librarySetIds,
+            missingIds ->
+                librarySetRepository.findAllByLibrarySetIdIn(List.copyOf(missingIds)).stream()
+                    .collect(
+                        Collectors.toMap(
+                            LibrarySet::getLibrarySetId,
+                            Function.identity(),
+                            (first, second) -> first)))
+        .entrySet()
+        .stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> copyOf(entry.getValue())));
+  }
+
+  private static LibrarySet copyOf(LibrarySet librarySet) {
+    if (librarySet == null) {
+      return null;
+    }
+    List<AclSpecification> acls =
+        librarySet.getAcls() == null
+            ? null
+            : librarySet.getAcls().stream()
+                .map(
+                    acl ->
+                        new AclSpecification(
+                            acl.getUserId(),
+                            acl.getRoles() == null ? null : new ArrayList<>(acl.getRoles())))
+                .collect(Collectors.toCollection(ArrayList::new));
+    return librarySet.toBuilder().acls(acls).build();
+  }
+
+  /** Drops deleted library sets from the cache. */
+  public void evictLibrarySets(final Collection<String> librarySetIds) {
+    librarySetCache.invalidateAll(librarySetIds);
   }
 
   public LibrarySet updateOwnership(String librarySetId, String userId) {
@@ -90,6 +146,7 @@ public class LibrarySetService {
       LibrarySet librarySet = optionalLibrarySet.get();
       librarySet.setOwner(userId);
       LibrarySet updatedLibrarySet = librarySetRepository.save(librarySet);
+      librarySetCache.invalidate(librarySetId);
       log.info("Owner changed in Library set [{}]", updatedLibrarySet.getId());
       return updatedLibrarySet;
     } else {
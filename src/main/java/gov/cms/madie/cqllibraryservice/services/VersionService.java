@@ -11,6 +11,7 @@ import java.time.Instant;
 import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -58,7 +59,23 @@ public class VersionService {
       throw new PersistHapiFhirCqlLibraryException("CQL Library", cqlLibrary.getId(), username);
     }
 
-    var savedCqlLibrary = cqlLibraryRepository.save(cqlLibrary);
+    CqlLibrary savedCqlLibrary;
+    try {
+      savedCqlLibrary =
+          cqlLibraryRepository.saveWithElmTranslatedBy(
+              cqlLibrary, elmTranslatorClient.getTranslatorVersion());
+    } catch (DuplicateKeyException e) {
+      // the unique version index rejected a version saved concurrently by another request
+      log.warn(
+          "User [{}] cannot create version [{}] of CQL Library with id [{}], it already exists",
+          username,
+          next,
+          cqlLibrary.getId());
+      throw new GeneralConflictException(
+          String.format(
+              "Version %s of CQL Library %s was just created by another request. Please retry.",
+              next, cqlLibrary.getCqlLibraryName()));
+    }
 
     actionLogService.logAction(
         cqlLibrary.getLibrarySetId(),
@@ -145,7 +162,17 @@ public class VersionService {
                   "library " + cqlLibraryName + " version '" + cqlLibrary.getVersion() + "'\n"));
     }
 
-    var savedCqlLibrary = cqlLibraryRepository.save(clonedCqlLibrary);
+    CqlLibrary savedCqlLibrary;
+    try {
+      savedCqlLibrary = cqlLibraryRepository.save(clonedCqlLibrary);
+    } catch (DuplicateKeyException e) {
+      // the unique draft name index rejected a draft saved concurrently by another request
+      if (cqlLibraryName.equals(cqlLibrary.getCqlLibraryName())) {
+        throw new ResourceNotDraftableException("CQL Library");
+      }
+      throw new gov.cms.madie.cqllibraryservice.exceptions.DuplicateKeyException(
+          "cqlLibraryName", "Library name must be unique.");
+    }
 
     log.info(
         "User [{}] successfully created a draft cql library with ID [{}]",
@@ -0,0 +1,44 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCursor;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import org.apache.commons.lang3.StringUtils;
+
+/** Converts listing cursors to and from the opaque strings handed out to clients. */
+public class CursorUtils {
+  private static final String SEPARATOR = "|";
+
+  public static String encode(LibraryListCursor cursor) {
+    String raw =
+        String.join(
+            SEPARATOR,
+            cursor.getSort().name(),
+            StringUtils.defaultString(cursor.getValue()),
+            cursor.getId());
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static LibraryListCursor decode(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = StringUtils.splitPreserveAllTokens(raw, SEPARATOR);
+      if (parts.length != 3 || StringUtils.isBlank(parts[2])) {
+        throw new IllegalArgumentException("Malformed cursor");
+      }
+      LibraryListSort sort = LibraryListSort.valueOf(parts[0]);
+      if (sort == LibraryListSort.CREATED_AT && StringUtils.isNotEmpty(parts[1])) {
+        Instant.parse(parts[1]);
+      }
+      return LibraryListCursor.builder().sort(sort).value(parts[1]).id(parts[2]).build();
+    } catch (IllegalArgumentException | DateTimeException ex) {
+      throw new BadRequestObjectException("Invalid cursor.");
+    }
+  }
+}
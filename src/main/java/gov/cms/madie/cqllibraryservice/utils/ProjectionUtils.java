@@ -0,0 +1,75 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.annotation.Transient;
+
+/**
+ * Field selection for library reads. Callers that only need metadata can name the fields they want,
+ * so the cql and ELM of a library are neither read from the database nor sent in the response.
+ */
+public class ProjectionUtils {
+  public static final String ID = "id";
+
+  /** Persistent fields of a library, the ones that can be selected. */
+  public static final Set<String> LIBRARY_FIELDS =
+      Arrays.stream(CqlLibrary.class.getDeclaredFields())
+          .filter(field -> !Modifier.isStatic(field.getModifiers()))
+          .filter(field -> !field.isAnnotationPresent(Transient.class))
+          .map(Field::getName)
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+
+  private static final TypeReference<LinkedHashMap<String, Object>> FIELD_MAP =
+      new TypeReference<>() {};
+
+  /**
+   * Validate the requested library fields. The id is always selected.
+   *
+   * @param fields -> requested field names, may be null or empty
+   * @return the fields to select, or null when all fields are wanted
+   */
+  public static Set<String> getLibraryFields(List<String> fields) {
+    if (CollectionUtils.isEmpty(fields)) {
+      return null;
+    }
+    Set<String> selected = new LinkedHashSet<>();
+    selected.add(ID);
+    fields.stream().map(StringUtils::trim).filter(StringUtils::isNotEmpty).forEach(selected::add);
+    List<String> unknown = selected.stream().filter(f -> !LIBRARY_FIELDS.contains(f)).toList();
+    if (!unknown.isEmpty()) {
+      throw new BadRequestObjectException(
+          "Unknown library fields: " + String.join(", ", unknown) + ".");
+    }
+    return selected;
+  }
+
+  /**
+   * Serialize a library to only the selected fields. Unselected primitive fields would otherwise be
+   * written with their default values, as if they had been read.
+   *
+   * @param objectMapper -> mapper used for responses
+   * @param cqlLibrary -> library read with the given fields
+   * @param fields -> selected fields, as returned by getLibraryFields
+   * @return the selected fields by name
+   */
+  public static Map<String, Object> toFieldMap(
+      ObjectMapper objectMapper, CqlLibrary cqlLibrary, Collection<String> fields) {
+    Map<String, Object> values = objectMapper.convertValue(cqlLibrary, FIELD_MAP);
+    values.keySet().retainAll(fields);
+    return values;
+  }
+}
@@ -0,0 +1,49 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a stream of objects to the response as they are produced, either as newline delimited JSON
+ * or as a single JSON array. The stream is closed once written, or when writing fails.
+ */
+public class ResponseStreamUtils {
+
+  /** NDJSON when the client explicitly asks for it, a JSON array otherwise. */
+  public static MediaType getStreamMediaType(String accept) {
+    List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+    return acceptedTypes.stream()
+            .anyMatch(type -> type.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON))
+        ? MediaType.APPLICATION_NDJSON
+        : MediaType.APPLICATION_JSON;
+  }
+
+  public static StreamingResponseBody write(
+      Stream<?> stream, MediaType mediaType, ObjectMapper objectMapper) {
+    boolean ndjson = MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(mediaType);
+    ObjectWriter writer =
+        ndjson ? objectMapper.writer().withRootValueSeparator("\n") : objectMapper.writer();
+    return outputStream -> {
+      try (stream;
+          SequenceWriter sequenceWriter =
+              ndjson ? writer.writeValues(outputStream) : writer.writeValuesAsArray(outputStream)) {
+        Iterator<?> values = stream.iterator();
+        boolean empty = !values.hasNext();
+        while (values.hasNext()) {
+          sequenceWriter.write(values.next());
+        }
+        // the separator only goes between values, NDJSON also terminates the last one
+        if (ndjson && !empty) {
+          sequenceWriter.flush();
+          outputStream.write('\n');
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,47 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import gov.cms.madie.models.common.Version;
+
+/**
+ * Packs a library version into a single long that orders like the version itself: the major number
+ * in the high bits, then the minor number and the revision number in 20 bits each. Sorting or
+ * ranging on the key is a plain index scan, unlike sorting on the embedded version document.
+ */
+public class VersionKeyUtils {
+  static final int COMPONENT_BITS = 20;
+  static final long COMPONENT_MASK = (1L << COMPONENT_BITS) - 1;
+  static final int MAX_MAJOR = (1 << 23) - 1;
+
+  /** Weight of the minor number in the key, the major number weighs MINOR_FACTOR squared. */
+  public static final long MINOR_FACTOR = 1L << COMPONENT_BITS;
+
+  public static Long toKey(Version version) {
+    if (version == null) {
+      return null;
+    }
+    if (version.getMajor() < 0
+        || version.getMajor() > MAX_MAJOR
+        || version.getMinor() < 0
+        || version.getMinor() > COMPONENT_MASK
+        || version.getRevisionNumber() < 0
+        || version.getRevisionNumber() > COMPONENT_MASK) {
+      throw new IllegalArgumentException("Version " + version + " is out of range");
+    }
+    return getMajorLowerBound(version.getMajor())
+        | ((long) version.getMinor() << COMPONENT_BITS)
+        | version.getRevisionNumber();
+  }
+
+  public static Version fromKey(long key) {
+    return Version.builder()
+        .major((int) (key >>> (2 * COMPONENT_BITS)))
+        .minor((int) ((key >>> COMPONENT_BITS) & COMPONENT_MASK))
+        .revisionNumber((int) (key & COMPONENT_MASK))
+        .build();
+  }
+
+  /** Smallest key of the given major version, keys of the next major version start above it. */
+  public static long getMajorLowerBound(int major) {
+    return (long) major << (2 * COMPONENT_BITS);
+  }
+}
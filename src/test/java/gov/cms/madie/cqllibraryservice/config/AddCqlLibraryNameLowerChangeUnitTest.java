@@ -0,0 +1,66 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddCqlLibraryNameLowerChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddCqlLibraryNameLowerChangeUnit changeUnit;
+
+  @Test
+  void testAddCqlLibraryNameLower() {
+    IndexOperations indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+
+    changeUnit.addCqlLibraryNameLower(mongoTemplate);
+
+    ArgumentCaptor<AggregationUpdate> updateCaptor =
+        ArgumentCaptor.forClass(AggregationUpdate.class);
+    verify(mongoTemplate)
+        .updateMulti(any(Query.class), updateCaptor.capture(), eq(CqlLibrary.class));
+    assertThat(
+        updateCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT).toString(),
+        containsString("$toLower=$cqlLibraryName"));
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+    verify(indexOperations).ensureIndex(indexCaptor.capture());
+    assertThat(
+        indexCaptor.getValue().getIndexKeys().toJson(),
+        is(equalTo("{\"cqlLibraryNameLower\": 1}")));
+  }
+
+  @Test
+  void testRollbackExecution() {
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate)
+        .updateMulti(any(Query.class), updateCaptor.capture(), eq(CqlLibrary.class));
+    assertThat(
+        updateCaptor.getValue().getUpdateObject().toJson(),
+        is(equalTo("{\"$unset\": {\"cqlLibraryNameLower\": 1}}")));
+  }
+}
@@ -0,0 +1,69 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.mongodb.client.MongoCollection;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddCqlLibraryNameTrigramsChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddCqlLibraryNameTrigramsChangeUnit changeUnit;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testAddCqlLibraryNameTrigrams() {
+    MongoCollection<Document> collection = mock(MongoCollection.class);
+    IndexOperations indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.getCollectionName(CqlLibrary.class)).thenReturn("cqlLibrary");
+    when(mongoTemplate.getCollection("cqlLibrary")).thenReturn(collection);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    ArgumentCaptor<List<Bson>> pipelineCaptor = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+
+    changeUnit.addCqlLibraryNameTrigrams(mongoTemplate);
+
+    verify(collection).updateMany(any(Bson.class), pipelineCaptor.capture());
+    Document set = (Document) pipelineCaptor.getValue().get(0);
+    assertThat(
+        set.get("$set", Document.class).get("cqlLibraryNameTrigrams", Document.class).keySet(),
+        is(equalTo(Set.of("$setUnion"))));
+    verify(indexOperations).ensureIndex(indexCaptor.capture());
+    assertThat(
+        indexCaptor.getValue().getIndexKeys(),
+        is(equalTo(new Document("cqlLibraryNameTrigrams", 1))));
+  }
+
+  @Test
+  void testRollback() {
+    changeUnit.rollbackExecution(mongoTemplate);
+    verify(mongoTemplate)
+        .updateMulti(
+            any(Query.class),
+            eq(new Update().unset("cqlLibraryNameTrigrams")),
+            eq(CqlLibrary.class));
+  }
+}
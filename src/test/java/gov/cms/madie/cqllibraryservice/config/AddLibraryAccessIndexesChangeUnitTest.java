@@ -0,0 +1,93 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.internal.verification.Times;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddLibraryAccessIndexesChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddLibraryAccessIndexesChangeUnit changeUnit;
+
+  private IndexOperations librarySetIndexOperations;
+  private IndexOperations libraryIndexOperations;
+
+  @BeforeEach
+  void setup() {
+    librarySetIndexOperations = mock(IndexOperations.class);
+    libraryIndexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.indexOps(eq(LibrarySet.class))).thenReturn(librarySetIndexOperations);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(libraryIndexOperations);
+  }
+
+  @Test
+  void testAddLibraryAccessIndexes() {
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of());
+
+    changeUnit.addLibraryAccessIndexes(mongoTemplate);
+
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+    verify(librarySetIndexOperations, new Times(2)).ensureIndex(indexCaptor.capture());
+    List<Index> indexes = indexCaptor.getAllValues();
+    assertThat(indexes.get(0).getIndexKeys().toJson(), is(equalTo("{\"owner\": 1}")));
+    assertThat(indexes.get(1).getIndexKeys().toJson(), is(equalTo("{\"acls.userId\": 1}")));
+    assertThat(
+        indexes.get(0).getIndexOptions().get("collation").toString(),
+        is(equalTo("Document{{locale=en, strength=2}}")));
+    verify(libraryIndexOperations, new Times(1)).ensureIndex(any(Index.class));
+  }
+
+  @Test
+  void testAddLibraryAccessIndexesKeepsExistingLibrarySetIdIndex() {
+    IndexInfo existing =
+        new IndexInfo(
+            List.of(IndexField.create("librarySetId", Sort.Direction.ASC)),
+            "librarySetId",
+            false,
+            false,
+            null);
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of(existing));
+
+    changeUnit.addLibraryAccessIndexes(mongoTemplate);
+
+    verify(librarySetIndexOperations, new Times(2)).ensureIndex(any(Index.class));
+    verify(libraryIndexOperations, never()).ensureIndex(any(Index.class));
+  }
+
+  @Test
+  void testRollbackExecution() {
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of());
+
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    verify(librarySetIndexOperations, new Times(2)).dropIndex(anyString());
+    verify(libraryIndexOperations, never()).dropIndex(anyString());
+  }
+}
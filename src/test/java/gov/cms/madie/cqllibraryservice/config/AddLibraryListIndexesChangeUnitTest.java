@@ -0,0 +1,65 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.internal.verification.Times;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddLibraryListIndexesChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddLibraryListIndexesChangeUnit changeUnit;
+
+  private IndexOperations indexOperations;
+
+  @BeforeEach
+  void setup() {
+    indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+  }
+
+  @Test
+  void testAddLibraryListIndexes() {
+    changeUnit.addLibraryListIndexes(mongoTemplate);
+
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+    verify(indexOperations, new Times(4)).ensureIndex(indexCaptor.capture());
+    List<Index> indexes = indexCaptor.getAllValues();
+    assertThat(
+        indexes.get(0).getIndexKeys().toJson(), is(equalTo("{\"cqlLibraryName\": 1, \"_id\": 1}")));
+    assertThat(
+        indexes.get(1).getIndexKeys().toJson(), is(equalTo("{\"createdAt\": -1, \"_id\": -1}")));
+    assertThat(
+        indexes.get(2).getIndexKeys().toJson(),
+        is(equalTo("{\"model\": 1, \"draft\": 1, \"cqlLibraryName\": 1, \"_id\": 1}")));
+    assertThat(
+        indexes.get(3).getIndexKeys().toJson(),
+        is(equalTo("{\"model\": 1, \"draft\": 1, \"createdAt\": -1, \"_id\": -1}")));
+  }
+
+  @Test
+  void testRollbackExecution() {
+    changeUnit.rollbackExecution(mongoTemplate);
+    verify(indexOperations, new Times(4)).dropIndex(anyString());
+  }
+}
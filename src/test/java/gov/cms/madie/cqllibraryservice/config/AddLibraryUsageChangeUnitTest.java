@@ -0,0 +1,105 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryUsageEntry;
+import gov.cms.madie.models.common.IncludedLibrary;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddLibraryUsageChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddLibraryUsageChangeUnit changeUnit;
+
+  private IndexOperations indexOperations;
+
+  @BeforeEach
+  void setup() {
+    indexOperations = mock(IndexOperations.class);
+  }
+
+  @Test
+  void testAddLibraryUsage() {
+    when(mongoTemplate.indexOps(eq(LibraryUsageEntry.class))).thenReturn(indexOperations);
+    CqlLibrary wrapper =
+        CqlLibrary.builder()
+            .id("WRAPPER_ID")
+            .cqlLibraryName("Wrapper")
+            .librarySetId("SET_ID")
+            .active(true)
+            .includedLibraries(
+                List.of(
+                    IncludedLibrary.builder().name("Helper").build(),
+                    IncludedLibrary.builder().name("Common").build()))
+            .build();
+    CqlLibrary orphan =
+        CqlLibrary.builder()
+            .id("ORPHAN_ID")
+            .cqlLibraryName("Orphan")
+            .active(true)
+            .includedLibraries(List.of(IncludedLibrary.builder().name("Helper").build()))
+            .build();
+    when(mongoTemplate.stream(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(Stream.of(wrapper, orphan));
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(List.of(LibrarySet.builder().librarySetId("SET_ID").owner("john").build()));
+    ArgumentCaptor<List<LibraryUsageEntry>> entriesCaptor = ArgumentCaptor.forClass(List.class);
+
+    changeUnit.addLibraryUsage(mongoTemplate);
+
+    verify(indexOperations, times(3)).ensureIndex(any(Index.class));
+    verify(mongoTemplate).remove(any(Query.class), eq(LibraryUsageEntry.class));
+    verify(mongoTemplate).insertAll(entriesCaptor.capture());
+    List<LibraryUsageEntry> entries = entriesCaptor.getValue();
+    assertThat(entries.size(), is(equalTo(3)));
+    assertThat(entries.stream().filter(e -> "john".equals(e.getOwner())).count(), is(equalTo(2L)));
+    assertThat(
+        entries.stream()
+            .filter(e -> "ORPHAN_ID".equals(e.getUsedById()))
+            .findFirst()
+            .get()
+            .getOwner(),
+        is(equalTo(null)));
+  }
+
+  @Test
+  void testAddLibraryUsageWithoutLibraries() {
+    when(mongoTemplate.indexOps(eq(LibraryUsageEntry.class))).thenReturn(indexOperations);
+    when(mongoTemplate.stream(any(Query.class), eq(CqlLibrary.class))).thenReturn(Stream.of());
+
+    changeUnit.addLibraryUsage(mongoTemplate);
+
+    verify(mongoTemplate, never()).insertAll(anyList());
+  }
+
+  @Test
+  void testRollback() {
+    changeUnit.rollbackExecution(mongoTemplate);
+    verify(mongoTemplate).dropCollection(LibraryUsageEntry.class);
+  }
+}
@@ -0,0 +1,115 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.internal.verification.Times;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddQueryPathIndexesChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddQueryPathIndexesChangeUnit changeUnit;
+
+  private IndexOperations libraryIndexOperations;
+  private IndexOperations librarySetIndexOperations;
+  private IndexOperations actionLogIndexOperations;
+
+  @BeforeEach
+  void setup() {
+    libraryIndexOperations = mock(IndexOperations.class);
+    librarySetIndexOperations = mock(IndexOperations.class);
+    actionLogIndexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(libraryIndexOperations);
+    when(mongoTemplate.indexOps(eq(LibrarySet.class))).thenReturn(librarySetIndexOperations);
+    when(mongoTemplate.indexOps(eq(ActionLog.class))).thenReturn(actionLogIndexOperations);
+  }
+
+  @Test
+  void testAddQueryPathIndexes() {
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(librarySetIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(actionLogIndexOperations.getIndexInfo()).thenReturn(List.of());
+
+    changeUnit.addQueryPathIndexes(mongoTemplate);
+
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+    verify(libraryIndexOperations, new Times(3)).ensureIndex(indexCaptor.capture());
+    List<Index> indexes = indexCaptor.getAllValues();
+    assertThat(
+        indexes.get(0).getIndexKeys().toJson(),
+        is(
+            equalTo(
+                "{\"librarySetId\": 1, \"draft\": 1, \"version.major\": -1, \"version.minor\": -1}")));
+    assertThat(
+        indexes.get(1).getIndexKeys().toJson(),
+        is(equalTo("{\"cqlLibraryName\": 1, \"draft\": 1, \"version\": 1, \"model\": 1}")));
+    assertThat(
+        indexes.get(2).getIndexKeys().toJson(),
+        is(equalTo("{\"includedLibraries.name\": 1, \"active\": 1}")));
+    verify(librarySetIndexOperations, new Times(1)).ensureIndex(any(Index.class));
+    verify(actionLogIndexOperations, new Times(1)).ensureIndex(any(Index.class));
+  }
+
+  @Test
+  void testAddQueryPathIndexesSkipsExistingIndexes() {
+    IndexInfo targetIdIndex =
+        new IndexInfo(
+            List.of(IndexField.create("targetId", Sort.Direction.ASC)),
+            "targetId",
+            true,
+            false,
+            null);
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(librarySetIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(actionLogIndexOperations.getIndexInfo()).thenReturn(List.of(targetIdIndex));
+
+    changeUnit.addQueryPathIndexes(mongoTemplate);
+
+    verify(actionLogIndexOperations, never()).ensureIndex(any(Index.class));
+  }
+
+  @Test
+  void testRollbackExecution() {
+    IndexInfo targetIdIndex =
+        new IndexInfo(
+            List.of(IndexField.create("targetId", Sort.Direction.ASC)),
+            AddQueryPathIndexesChangeUnit.TARGET_ID_INDEX,
+            false,
+            false,
+            null);
+    when(libraryIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(librarySetIndexOperations.getIndexInfo()).thenReturn(List.of());
+    when(actionLogIndexOperations.getIndexInfo()).thenReturn(List.of(targetIdIndex));
+
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    verify(actionLogIndexOperations).dropIndex(AddQueryPathIndexesChangeUnit.TARGET_ID_INDEX);
+    verify(libraryIndexOperations, never()).dropIndex(any(String.class));
+  }
+}
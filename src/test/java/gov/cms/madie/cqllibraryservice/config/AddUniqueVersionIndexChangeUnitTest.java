@@ -0,0 +1,110 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddUniqueVersionIndexChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddUniqueVersionIndexChangeUnit changeUnit;
+
+  private IndexOperations indexOperations;
+
+  @BeforeEach
+  void setup() {
+    indexOperations = mock(IndexOperations.class);
+  }
+
+  private IndexInfo uniqueVersionIndex() {
+    IndexInfo indexInfo = mock(IndexInfo.class);
+    when(indexInfo.getName()).thenReturn(AddUniqueVersionIndexChangeUnit.UNIQUE_VERSION_INDEX);
+    return indexInfo;
+  }
+
+  private void givenDuplicates(List<Document> duplicates) {
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(duplicates, new Document()));
+  }
+
+  @Test
+  void testAddUniqueVersionIndex() {
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    givenDuplicates(List.of());
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+
+    changeUnit.addUniqueVersionIndex(mongoTemplate);
+
+    verify(indexOperations).ensureIndex(indexCaptor.capture());
+    Document options = indexCaptor.getValue().getIndexOptions();
+    assertThat(options.get("unique"), is(true));
+    assertThat(
+        options.get("partialFilterExpression"),
+        is(
+            equalTo(
+                new Document("draft", false).append("versionKey", new Document("$exists", true)))));
+    assertThat(
+        indexCaptor.getValue().getIndexKeys(),
+        is(equalTo(new Document("librarySetId", 1).append("versionKey", 1))));
+  }
+
+  @Test
+  void testAddUniqueVersionIndexFailsWhenVersionsAreDuplicated() {
+    givenDuplicates(
+        List.of(
+            new Document("librarySetId", "SET_ID").append("versionKey", 1L).append("count", 2)));
+
+    IllegalStateException ex =
+        assertThrows(
+            IllegalStateException.class, () -> changeUnit.addUniqueVersionIndex(mongoTemplate));
+
+    assertThat(ex.getMessage(), containsString("SET_ID"));
+    verify(indexOperations, never()).ensureIndex(any(Index.class));
+  }
+
+  @Test
+  void testRollback() {
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    IndexInfo indexInfo = uniqueVersionIndex();
+    when(indexOperations.getIndexInfo()).thenReturn(List.of(indexInfo));
+
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    verify(indexOperations).dropIndex(AddUniqueVersionIndexChangeUnit.UNIQUE_VERSION_INDEX);
+  }
+
+  @Test
+  void testRollbackWithoutIndex() {
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    when(indexOperations.getIndexInfo()).thenReturn(List.of());
+    changeUnit.rollbackExecution(mongoTemplate);
+    verify(indexOperations, never()).dropIndex(anyString());
+  }
+}
@@ -0,0 +1,125 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.mongodb.client.MongoCollection;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AddVersionKeyChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks AddVersionKeyChangeUnit changeUnit;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testAddVersionKey() {
+    MongoCollection<Document> collection = mock(MongoCollection.class);
+    IndexOperations indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.getCollectionName(CqlLibrary.class)).thenReturn("cqlLibrary");
+    when(mongoTemplate.getCollection("cqlLibrary")).thenReturn(collection);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    ArgumentCaptor<Bson> filterCaptor = ArgumentCaptor.forClass(Bson.class);
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+
+    changeUnit.addVersionKey(mongoTemplate);
+
+    verify(collection).updateMany(filterCaptor.capture(), any(List.class));
+    assertThat(
+        filterCaptor.getValue(),
+        is(equalTo(new Document("version", new Document("$type", "object")))));
+    verify(indexOperations, times(2)).ensureIndex(indexCaptor.capture());
+    verify(indexOperations, never()).dropIndex(anyString());
+    assertThat(
+        indexCaptor.getAllValues().get(0).getIndexKeys(),
+        is(equalTo(new Document("librarySetId", 1).append("draft", 1).append("versionKey", -1))));
+    assertThat(
+        indexCaptor.getAllValues().get(1).getIndexKeys(),
+        is(
+            equalTo(
+                new Document("model", 1)
+                    .append("draft", 1)
+                    .append("cqlLibraryName", 1)
+                    .append("versionKey", -1))));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testAddVersionKeyDropsSupersededIndexes() {
+    MongoCollection<Document> collection = mock(MongoCollection.class);
+    IndexOperations indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.getCollectionName(CqlLibrary.class)).thenReturn("cqlLibrary");
+    when(mongoTemplate.getCollection("cqlLibrary")).thenReturn(collection);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    when(indexOperations.getIndexInfo())
+        .thenReturn(
+            List.of(
+                indexInfo("_id_"),
+                indexInfo(AddQueryPathIndexesChangeUnit.LIBRARY_SET_VERSION_INDEX),
+                indexInfo(AddLibraryListIndexesChangeUnit.MODEL_DRAFT_NAME_INDEX),
+                indexInfo(AddLibraryAccessIndexesChangeUnit.LIBRARY_SET_ID_INDEX),
+                indexInfo(AddLibraryListIndexesChangeUnit.NAME_INDEX)));
+
+    changeUnit.addVersionKey(mongoTemplate);
+
+    verify(indexOperations).dropIndex(AddQueryPathIndexesChangeUnit.LIBRARY_SET_VERSION_INDEX);
+    verify(indexOperations).dropIndex(AddLibraryListIndexesChangeUnit.MODEL_DRAFT_NAME_INDEX);
+    verify(indexOperations).dropIndex(AddLibraryAccessIndexesChangeUnit.LIBRARY_SET_ID_INDEX);
+    verify(indexOperations, times(3)).dropIndex(anyString());
+  }
+
+  private static IndexInfo indexInfo(String name) {
+    return new IndexInfo(List.of(), name, false, false, "");
+  }
+
+  @Test
+  void testRollback() {
+    IndexOperations indexOperations = mock(IndexOperations.class);
+    when(mongoTemplate.indexOps(eq(CqlLibrary.class))).thenReturn(indexOperations);
+    ArgumentCaptor<Index> indexCaptor = ArgumentCaptor.forClass(Index.class);
+
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    verify(indexOperations, times(3)).ensureIndex(indexCaptor.capture());
+    assertThat(
+        indexCaptor.getAllValues().stream()
+            .map(index -> index.getIndexOptions().get("name"))
+            .toList(),
+        is(
+            equalTo(
+                List.<Object>of(
+                    AddQueryPathIndexesChangeUnit.LIBRARY_SET_VERSION_INDEX,
+                    AddLibraryListIndexesChangeUnit.MODEL_DRAFT_NAME_INDEX,
+                    AddLibraryAccessIndexesChangeUnit.LIBRARY_SET_ID_INDEX))));
+
+    verify(indexOperations).dropIndex(AddVersionKeyChangeUnit.LIBRARY_SET_VERSION_KEY_INDEX);
+    verify(indexOperations).dropIndex(AddVersionKeyChangeUnit.MODEL_NAME_VERSION_KEY_INDEX);
+    verify(mongoTemplate)
+        .updateMulti(any(Query.class), eq(new Update().unset("versionKey")), eq(CqlLibrary.class));
+  }
+}
@@ -0,0 +1,69 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import io.mongock.runner.core.executor.changelog.ChangeLogService;
+import io.mongock.runner.core.internal.ChangeLogItem;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Mongock sorts change units by comparing their order as strings, so "10" would run before "2".
+ * Orders are zero-padded to the same width, so the string order is the numeric one. The change
+ * units are loaded and sorted here by Mongock itself.
+ */
+class ChangeUnitOrderTest {
+
+  private List<ChangeLogItem> getChangeUnits() {
+    ChangeLogService changeLogService =
+        new ChangeLogService(
+            List.of(ChangeUnitOrderTest.class.getPackageName()), List.of(), "0", "9999");
+    return List.copyOf(changeLogService.fetchChangeLogs());
+  }
+
+  private List<String> getChangeUnitIds() {
+    return getChangeUnits().stream().map(ChangeLogItem::getId).toList();
+  }
+
+  @Test
+  void testChangeUnitsRunInNumericOrder() {
+    List<ChangeLogItem> changeUnits = getChangeUnits();
+    for (int i = 1; i < changeUnits.size(); i++) {
+      assertThat(
+          changeUnits.get(i).getId(),
+          Integer.parseInt(changeUnits.get(i - 1).getOrder()),
+          lessThanOrEqualTo(Integer.parseInt(changeUnits.get(i).getOrder())));
+    }
+  }
+
+  @Test
+  void testChangeUnitOrdersHaveTheSameWidth() {
+    for (ChangeLogItem changeUnit : getChangeUnits()) {
+      assertThat(changeUnit.getId(), changeUnit.getOrder().length(), is(3));
+    }
+  }
+
+  @Test
+  void testUniqueVersionIndexIsAddedAfterVersionKeyBackfill() {
+    List<String> ids = getChangeUnitIds();
+    assertThat(ids.indexOf("add_version_key"), lessThan(ids.indexOf("add_unique_version_index")));
+  }
+
+  @Test
+  void testUniqueDraftNameIndexIsAddedAfterNameLowerBackfill() {
+    List<String> ids = getChangeUnitIds();
+    assertThat(
+        ids.indexOf("add_cql_library_name_lower"),
+        lessThan(ids.indexOf("add_unique_draft_name_index")));
+  }
+
+  @Test
+  void testActionLogBucketsAreSplitLast() {
+    List<String> ids = getChangeUnitIds();
+    assertThat(ids.get(ids.size() - 1), is(equalTo("split_action_log_buckets")));
+  }
+}
@@ -0,0 +1,80 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+@ExtendWith(MockitoExtension.class)
+class ElmTranslatorClientConfigTest {
+
+  @Mock private EnvironmentConfig environmentConfig;
+
+  private final ElmTranslatorClientConfig config = new ElmTranslatorClientConfig();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Test
+  void testCircuitBreakerIgnoresClientErrors() {
+    when(environmentConfig.getElmTranslatorFailureRateThreshold()).thenReturn(50f);
+    when(environmentConfig.getElmTranslatorSlowCallRateThreshold()).thenReturn(80f);
+    when(environmentConfig.getElmTranslatorSlowCallDurationThreshold())
+        .thenReturn(Duration.ofSeconds(10));
+    when(environmentConfig.getElmTranslatorSlidingWindowSize()).thenReturn(20);
+    when(environmentConfig.getElmTranslatorWaitDurationInOpenState())
+        .thenReturn(Duration.ofSeconds(30));
+    when(environmentConfig.getElmTranslatorPermittedCallsInHalfOpenState()).thenReturn(3);
+
+    CircuitBreaker circuitBreaker =
+        config
+            .elmTranslatorCircuitBreakerRegistry(environmentConfig, meterRegistry)
+            .circuitBreaker("fhirElmTranslator");
+    circuitBreaker.onError(
+        0, TimeUnit.NANOSECONDS, new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+
+    assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls(), is(0));
+    assertThat(circuitBreaker.getCircuitBreakerConfig().getFailureRateThreshold(), is(50f));
+    assertThat(circuitBreaker.getCircuitBreakerConfig().getSlowCallRateThreshold(), is(80f));
+    assertThat(
+        meterRegistry
+            .find("resilience4j.circuitbreaker.state")
+            .tag("name", "fhirElmTranslator")
+            .tag("state", "closed")
+            .gauge()
+            .value(),
+        is(1.0));
+  }
+
+  @Test
+  void testBulkheadRejectionsAreCounted() {
+    when(environmentConfig.getElmTranslatorMaxConcurrentCalls()).thenReturn(1);
+    when(environmentConfig.getElmTranslatorBulkheadMaxWait()).thenReturn(Duration.ZERO);
+
+    Bulkhead bulkhead =
+        config
+            .elmTranslatorBulkheadRegistry(environmentConfig, meterRegistry)
+            .bulkhead("qdmElmTranslator");
+    bulkhead.acquirePermission();
+    assertThrows(BulkheadFullException.class, bulkhead::acquirePermission);
+
+    assertThat(
+        meterRegistry
+            .find("resilience4j.bulkhead.rejected.calls")
+            .tag("name", "qdmElmTranslator")
+            .counter()
+            .count(),
+        is(1.0));
+  }
+}
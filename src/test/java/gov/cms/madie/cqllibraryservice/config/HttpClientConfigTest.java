@@ -0,0 +1,110 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class HttpClientConfigTest {
+
+  @Mock private EnvironmentConfig environmentConfig;
+
+  private final HttpClientConfig httpClientConfig = new HttpClientConfig();
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    when(environmentConfig.getHttpClientMaxConnectionsTotal()).thenReturn(20);
+    when(environmentConfig.getHttpClientMaxConnectionsPerRoute()).thenReturn(10);
+    when(environmentConfig.getHttpClientConnectTimeout()).thenReturn(Duration.ofSeconds(1));
+    when(environmentConfig.getHttpClientConnectionRequestTimeout())
+        .thenReturn(Duration.ofSeconds(1));
+    when(environmentConfig.getHttpClientIdleEviction()).thenReturn(Duration.ofSeconds(30));
+  }
+
+  @Test
+  void testElmTranslatorRestTemplateUsesPooledClient() throws Exception {
+    when(environmentConfig.getCqlElmServiceReadTimeout()).thenReturn(Duration.ofSeconds(60));
+
+    try (CloseableHttpClient httpClient =
+        httpClientConfig.elmTranslatorHttpClient(environmentConfig, meterRegistry)) {
+      RestTemplate restTemplate =
+          httpClientConfig.elmTranslatorRestTemplate(new RestTemplateBuilder(), httpClient);
+
+      assertThat(
+          restTemplate.getRequestFactory(),
+          is(instanceOf(HttpComponentsClientHttpRequestFactory.class)));
+      assertThat(
+          ((HttpComponentsClientHttpRequestFactory) restTemplate.getRequestFactory())
+              .getHttpClient(),
+          is(sameInstance(httpClient)));
+      assertThat(
+          meterRegistry
+              .find("httpcomponents.httpclient.pool.route.max.default")
+              .tag("httpclient", "elmTranslator")
+              .gauge()
+              .value(),
+          is(10.0));
+    }
+  }
+
+  @Test
+  void testMeasureServiceHttpClientRegistersPoolMetrics() throws Exception {
+    when(environmentConfig.getMeasureServiceReadTimeout()).thenReturn(Duration.ofSeconds(15));
+
+    try (CloseableHttpClient httpClient =
+        httpClientConfig.measureServiceHttpClient(environmentConfig, meterRegistry)) {
+      assertThat(
+          meterRegistry
+              .find("httpcomponents.httpclient.pool.total.max")
+              .tag("httpclient", "measureService")
+              .gauge(),
+          is(notNullValue()));
+    }
+  }
+
+  @Test
+  void testHttpClientsAreClosedWithTheContext() {
+    when(environmentConfig.getCqlElmServiceReadTimeout()).thenReturn(Duration.ofSeconds(60));
+    when(environmentConfig.getMeasureServiceReadTimeout()).thenReturn(Duration.ofSeconds(15));
+    AtomicReference<CloseableHttpClient> httpClient = new AtomicReference<>();
+
+    new ApplicationContextRunner()
+        .withUserConfiguration(HttpClientConfig.class)
+        .withInitializer(
+            context ->
+                context.getBeanFactory().registerSingleton("environmentConfig", environmentConfig))
+        .withBean(MeterRegistry.class, () -> meterRegistry)
+        .withBean(RestTemplateBuilder.class, RestTemplateBuilder::new)
+        .run(
+            context ->
+                httpClient.set(
+                    context.getBean("elmTranslatorHttpClient", CloseableHttpClient.class)));
+
+    // the pool was shut down with the context
+    assertThrows(
+        IllegalStateException.class,
+        () -> httpClient.get().execute(new HttpGet("http://localhost/"), response -> null));
+  }
+}
@@ -0,0 +1,89 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Collation;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class IndexVerificationRunnerTest {
+  @Mock private MongoTemplate mongoTemplate;
+  @Mock private MongoCollection<Document> collection;
+  @Mock private FindIterable<Document> findIterable;
+
+  @InjectMocks IndexVerificationRunner runner;
+
+  private Document explainWithStage(String stage) {
+    Document inputStage = new Document("stage", stage);
+    return new Document(
+        "queryPlanner",
+        new Document("winningPlan", new Document("stage", "FETCH").append("inputStage", inputStage))
+            .append("rejectedPlans", List.of()));
+  }
+
+  private void stubFind() {
+    when(mongoTemplate.getCollectionName(any())).thenReturn("collection");
+    when(mongoTemplate.getCollection(anyString())).thenReturn(collection);
+    when(collection.find(any(Bson.class))).thenReturn(findIterable);
+    when(findIterable.sort(any(Bson.class))).thenReturn(findIterable);
+    when(findIterable.collation(any(Collation.class))).thenReturn(findIterable);
+  }
+
+  @Test
+  void testFindUnindexedQueryPathsReportsCollectionScans() {
+    stubFind();
+    when(findIterable.explain())
+        .thenReturn(explainWithStage("COLLSCAN"), explainWithStage("IXSCAN"));
+
+    List<String> unindexed = runner.findUnindexedQueryPaths();
+
+    assertThat(unindexed, is(equalTo(List.of("findMaxVersionByLibrarySetId"))));
+  }
+
+  @Test
+  void testFindUnindexedQueryPathsWhenAllIndexed() {
+    stubFind();
+    when(findIterable.explain()).thenReturn(explainWithStage("IXSCAN"));
+
+    assertThat(runner.findUnindexedQueryPaths().isEmpty(), is(true));
+  }
+
+  @Test
+  void testUsesCollectionScanSearchesNestedPlans() {
+    Document plan =
+        new Document(
+            "queryPlan",
+            new Document("stage", "OR")
+                .append(
+                    "inputStages",
+                    List.of(new Document("stage", "IXSCAN"), new Document("stage", "COLLSCAN"))));
+    assertThat(IndexVerificationRunner.usesCollectionScan(plan), is(true));
+    assertThat(
+        IndexVerificationRunner.usesCollectionScan(new Document("stage", "IXSCAN")), is(false));
+  }
+
+  @Test
+  void testRunSwallowsDatabaseErrors() {
+    when(mongoTemplate.getCollectionName(any())).thenThrow(new IllegalStateException("down"));
+    assertDoesNotThrow(() -> runner.run(mock(ApplicationArguments.class)));
+  }
+}
@@ -0,0 +1,54 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import gov.cms.madie.models.library.LibrarySet;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.messaging.Message;
+
+@ExtendWith(MockitoExtension.class)
+class LibrarySetChangeListenerTest {
+
+  @Mock private Message<ChangeStreamDocument<Document>, Document> message;
+
+  private Cache<String, LibrarySet> librarySetCache;
+  private LibrarySetChangeListener listener;
+
+  @BeforeEach
+  void setUp() {
+    librarySetCache = Caffeine.newBuilder().build();
+    librarySetCache.put("set-1", LibrarySet.builder().librarySetId("set-1").build());
+    librarySetCache.put("set-2", LibrarySet.builder().librarySetId("set-2").build());
+    listener = new LibrarySetChangeListener(librarySetCache);
+  }
+
+  @Test
+  void testOnMessageEvictsChangedSet() {
+    when(message.getBody()).thenReturn(new Document("librarySetId", "set-1"));
+
+    listener.onMessage(message);
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+    assertThat(librarySetCache.getIfPresent("set-2").getLibrarySetId(), is("set-2"));
+  }
+
+  @Test
+  void testOnMessageClearsCacheWhenDocumentIsMissing() {
+    when(message.getBody()).thenReturn(null);
+
+    listener.onMessage(message);
+
+    assertThat(librarySetCache.estimatedSize(), is(0L));
+  }
+}
@@ -0,0 +1,210 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import gov.cms.madie.models.library.LibrarySet;
+import java.time.Duration;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.Message;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.Subscription;
+import org.springframework.util.ErrorHandler;
+
+@ExtendWith(MockitoExtension.class)
+class LibrarySetChangeStreamTest {
+
+  @Mock private MessageListenerContainer container;
+  @Mock private Subscription subscription;
+  @Mock private Subscription restartedSubscription;
+  @Mock private Message<ChangeStreamDocument<Document>, Document> message;
+  @Mock private ChangeStreamDocument<Document> event;
+
+  private Cache<String, LibrarySet> librarySetCache;
+  private LibrarySetChangeStream changeStream;
+
+  @BeforeEach
+  void setUp() {
+    librarySetCache = Caffeine.newBuilder().build();
+    librarySetCache.put("set-1", LibrarySet.builder().librarySetId("set-1").build());
+    changeStream =
+        new LibrarySetChangeStream(
+            container,
+            "librarySet",
+            new LibrarySetChangeListener(librarySetCache),
+            librarySetCache,
+            Duration.ofMillis(10));
+  }
+
+  @AfterEach
+  void tearDown() {
+    changeStream.destroy();
+  }
+
+  @SuppressWarnings("unchecked")
+  private ArgumentCaptor<ChangeStreamRequest<Document>> requestCaptor() {
+    return ArgumentCaptor.forClass(ChangeStreamRequest.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void deliver(ChangeStreamRequest<Document> request, BsonDocument resumeToken) {
+    when(message.getBody()).thenReturn(new Document("librarySetId", "set-2"));
+    when(message.getRaw()).thenReturn(event);
+    when(event.getResumeToken()).thenReturn(resumeToken);
+    ((MessageListener<ChangeStreamDocument<Document>, Document>) request.getMessageListener())
+        .onMessage(message);
+  }
+
+  @Test
+  void testErrorClearsCacheAndResumesAfterLastEvent() throws Exception {
+    ArgumentCaptor<ChangeStreamRequest<Document>> request = requestCaptor();
+    ArgumentCaptor<ErrorHandler> errorHandler = ArgumentCaptor.forClass(ErrorHandler.class);
+    when(container.register(request.capture(), eq(Document.class), errorHandler.capture()))
+        .thenReturn(subscription, restartedSubscription);
+    when(container.isRunning()).thenReturn(true);
+    BsonDocument resumeToken = new BsonDocument("_data", new BsonString("token-1"));
+
+    changeStream.subscribe();
+    deliver(request.getValue(), resumeToken);
+    errorHandler.getValue().handleError(new DataAccessResourceFailureException("network"));
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+    verify(container, timeout(5000).times(2))
+        .register(any(ChangeStreamRequest.class), eq(Document.class), any(ErrorHandler.class));
+    verify(container).remove(subscription);
+    assertThat(
+        request
+            .getAllValues()
+            .get(1)
+            .getRequestOptions()
+            .getChangeStreamOptions()
+            .getResumeToken()
+            .orElse(null),
+        is(resumeToken));
+    verify(restartedSubscription, never()).await(any(Duration.class));
+  }
+
+  @Test
+  void testErrorWithoutResumeTokenRestartsFromNowAndClearsCacheOnceOpen() throws Exception {
+    ArgumentCaptor<ChangeStreamRequest<Document>> request = requestCaptor();
+    ArgumentCaptor<ErrorHandler> errorHandler = ArgumentCaptor.forClass(ErrorHandler.class);
+    when(container.register(request.capture(), eq(Document.class), errorHandler.capture()))
+        .thenReturn(subscription, restartedSubscription);
+    when(container.isRunning()).thenReturn(true);
+
+    changeStream.subscribe();
+    errorHandler.getValue().handleError(new DataAccessResourceFailureException("network"));
+
+    verify(restartedSubscription, timeout(5000)).await(Duration.ofMillis(10));
+    assertThat(
+        request
+            .getAllValues()
+            .get(1)
+            .getRequestOptions()
+            .getChangeStreamOptions()
+            .getResumeToken()
+            .isEmpty(),
+        is(true));
+  }
+
+  @Test
+  void testLostHistoryRestartsFromNow() throws Exception {
+    ArgumentCaptor<ChangeStreamRequest<Document>> request = requestCaptor();
+    ArgumentCaptor<ErrorHandler> errorHandler = ArgumentCaptor.forClass(ErrorHandler.class);
+    when(container.register(request.capture(), eq(Document.class), errorHandler.capture()))
+        .thenReturn(subscription, restartedSubscription);
+    when(container.isRunning()).thenReturn(true);
+
+    changeStream.subscribe();
+    deliver(request.getValue(), new BsonDocument("_data", new BsonString("token-1")));
+    errorHandler
+        .getValue()
+        .handleError(
+            new UncategorizedMongoDbException(
+                "history lost",
+                commandException(LibrarySetChangeStream.CHANGE_STREAM_HISTORY_LOST)));
+
+    verify(restartedSubscription, timeout(5000)).await(Duration.ofMillis(10));
+    assertThat(
+        request
+            .getAllValues()
+            .get(1)
+            .getRequestOptions()
+            .getChangeStreamOptions()
+            .getResumeToken()
+            .isEmpty(),
+        is(true));
+  }
+
+  @Test
+  void testUnsupportedChangeStreamsAreNotRestarted() {
+    ArgumentCaptor<ErrorHandler> errorHandler = ArgumentCaptor.forClass(ErrorHandler.class);
+    when(container.register(
+            any(ChangeStreamRequest.class), eq(Document.class), errorHandler.capture()))
+        .thenReturn(subscription);
+
+    changeStream.subscribe();
+    errorHandler
+        .getValue()
+        .handleError(
+            new UncategorizedMongoDbException(
+                "standalone",
+                commandException(LibrarySetChangeStream.CHANGE_STREAMS_NOT_SUPPORTED)));
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+    verify(container, after(200).times(1))
+        .register(any(ChangeStreamRequest.class), eq(Document.class), any(ErrorHandler.class));
+  }
+
+  @Test
+  void testActiveSubscriptionIsNotRestarted() {
+    ArgumentCaptor<ErrorHandler> errorHandler = ArgumentCaptor.forClass(ErrorHandler.class);
+    when(container.register(
+            any(ChangeStreamRequest.class), eq(Document.class), errorHandler.capture()))
+        .thenReturn(subscription);
+    when(container.isRunning()).thenReturn(true);
+    when(subscription.isActive()).thenReturn(true);
+
+    changeStream.subscribe();
+    errorHandler.getValue().handleError(new IllegalStateException("listener failed"));
+
+    verify(subscription, timeout(5000)).isActive();
+    verify(container, never()).remove(any(Subscription.class));
+    verify(container, times(1))
+        .register(any(ChangeStreamRequest.class), eq(Document.class), any(ErrorHandler.class));
+  }
+
+  private static MongoCommandException commandException(int code) {
+    return new MongoCommandException(
+        new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(code)),
+        new ServerAddress());
+  }
+}
@@ -0,0 +1,130 @@
+package gov.cms.madie.cqllibraryservice.config;
+
+import gov.cms.madie.models.common.ActionLog;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class SplitActionLogBucketsChangeUnitTest {
+  @Mock private MongoTemplate mongoTemplate;
+
+  @InjectMocks SplitActionLogBucketsChangeUnit changeUnit;
+
+  @BeforeEach
+  void setup() {
+    when(mongoTemplate.getCollectionName(ActionLog.class)).thenReturn("actionLog");
+  }
+
+  private List<Document> actions(int from, int to) {
+    return IntStream.range(from, to)
+        .mapToObj(i -> new Document("actionType", "UPDATED").append("performedAt", new Date(i)))
+        .toList();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testSplitActionLogBuckets() {
+    ObjectId id = new ObjectId();
+    Document actionLog =
+        new Document("_id", id).append("targetId", "SET_ID").append("actions", actions(0, 250));
+    when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("actionLog")))
+        .thenReturn(Stream.of(actionLog));
+
+    changeUnit.splitActionLogBuckets(mongoTemplate);
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).stream(query.capture(), eq(Document.class), eq("actionLog"));
+    assertThat(
+        query.getValue().getQueryObject(),
+        is(equalTo(new Document("actions.100", new Document("$exists", true)))));
+    ArgumentCaptor<Document> buckets = ArgumentCaptor.forClass(Document.class);
+    verify(mongoTemplate, times(2)).save(buckets.capture(), eq("actionLog"));
+    assertThat(
+        buckets.getAllValues().get(0),
+        is(
+            equalTo(
+                new Document("_id", id + "_1")
+                    .append("targetId", "SET_ID")
+                    .append("actions", actions(100, 200)))));
+    assertThat(
+        buckets.getAllValues().get(1),
+        is(
+            equalTo(
+                new Document("_id", id + "_2")
+                    .append("targetId", "SET_ID")
+                    .append("actions", actions(200, 250)))));
+    ArgumentCaptor<Query> trimQuery = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> trim = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate).updateFirst(trimQuery.capture(), trim.capture(), eq("actionLog"));
+    assertThat(trimQuery.getValue().getQueryObject(), is(equalTo(new Document("_id", id))));
+    assertThat(
+        trim.getValue().getUpdateObject(),
+        is(equalTo(new Document("$set", new Document("actions", actions(0, 100))))));
+  }
+
+  @Test
+  void testSplitActionLogBucketsWithoutLargeActionLogs() {
+    when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("actionLog")))
+        .thenReturn(Stream.of());
+
+    changeUnit.splitActionLogBuckets(mongoTemplate);
+
+    verify(mongoTemplate, never()).save(any(Document.class), any(String.class));
+    verify(mongoTemplate, never())
+        .updateFirst(any(Query.class), any(Update.class), any(String.class));
+  }
+
+  @Test
+  void testRollbackMergesBucketsInOrder() {
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq("actionLog"), eq(Document.class)))
+        .thenReturn(
+            new AggregationResults<>(
+                List.of(new Document("_id", "SET_ID").append("count", 2)), new Document()));
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("actionLog")))
+        .thenReturn(
+            List.of(
+                new Document("_id", "LOG_2").append("actions", actions(100, 150)),
+                new Document("_id", "LOG_1").append("actions", actions(0, 100))));
+
+    changeUnit.rollbackExecution(mongoTemplate);
+
+    ArgumentCaptor<Query> mergeQuery = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> merge = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate).updateFirst(mergeQuery.capture(), merge.capture(), eq("actionLog"));
+    assertThat(mergeQuery.getValue().getQueryObject(), is(equalTo(new Document("_id", "LOG_2"))));
+    assertThat(
+        merge.getValue().getUpdateObject(),
+        is(equalTo(new Document("$set", new Document("actions", actions(0, 150))))));
+    ArgumentCaptor<Query> removeQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).remove(removeQuery.capture(), eq("actionLog"));
+    assertThat(
+        removeQuery.getValue().getQueryObject(),
+        is(equalTo(new Document("_id", new Document("$in", List.of("LOG_1"))))));
+  }
+}
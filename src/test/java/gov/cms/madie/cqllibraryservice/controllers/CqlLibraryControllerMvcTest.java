@@ -1,8 +1,12 @@
 package gov.cms.madie.cqllibraryservice.controllers;
 
 import gov.cms.madie.cqllibraryservice.config.security.SecurityConfig;
+import gov.cms.madie.cqllibraryservice.dto.ActionLogPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
 import gov.cms.madie.cqllibraryservice.dto.LibrarySetDTO;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryNameMatch;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
 import gov.cms.madie.cqllibraryservice.exceptions.GeneralConflictException;
 import gov.cms.madie.models.common.ModelType;
 
@@ -15,9 +19,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -28,8 +34,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import gov.cms.madie.cqllibraryservice.dto.IncludedLibraryDTO;
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
 import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationErrorException;
 import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceException;
+import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceUnavailableException;
 import gov.cms.madie.cqllibraryservice.exceptions.DuplicateKeyException;
 import gov.cms.madie.cqllibraryservice.exceptions.InternalServerErrorException;
 import gov.cms.madie.cqllibraryservice.exceptions.PermissionDeniedException;
@@ -38,6 +47,7 @@ import gov.cms.madie.cqllibraryservice.exceptions.ResourceNotFoundException;
 import gov.cms.madie.cqllibraryservice.services.ActionLogService;
 import gov.cms.madie.models.access.AclSpecification;
 import gov.cms.madie.models.access.RoleEnum;
+import gov.cms.madie.models.common.Action;
 import gov.cms.madie.models.common.ActionType;
 import gov.cms.madie.models.dto.LibraryUsage;
 import gov.cms.madie.models.library.CqlLibrary;
@@ -47,10 +57,13 @@ import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryRepository;
 import gov.cms.madie.cqllibraryservice.services.CqlLibraryService;
 import gov.cms.madie.cqllibraryservice.services.LibrarySetService;
 import gov.cms.madie.cqllibraryservice.services.VersionService;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import gov.cms.madie.models.library.LibrarySet;
 
@@ -460,11 +473,11 @@ public class CqlLibraryControllerMvcTest {
   public void testGetCqlLibraryReturns404() throws Exception {
     doThrow(new ResourceNotFoundException("CQL Library", "Library1_ID"))
         .when(cqlLibraryService)
-        .findCqlLibraryById(anyString());
+        .findCqlLibraryById(anyString(), any());
     mockMvc
         .perform(get("/cql-libraries/Libary1_ID").with(user(TEST_USER_ID)).with(csrf()))
         .andExpect(status().isNotFound());
-    verify(cqlLibraryService, times(1)).findCqlLibraryById(anyString());
+    verify(cqlLibraryService, times(1)).findCqlLibraryById(anyString(), any());
   }
 
   @Test
@@ -480,7 +493,7 @@ public class CqlLibraryControllerMvcTest {
             .lastModifiedAt(createdTime)
             .lastModifiedBy("User1")
             .build();
-    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(existingLibrary);
+    when(cqlLibraryService.findCqlLibraryById(anyString(), any())).thenReturn(existingLibrary);
     mockMvc
         .perform(get("/cql-libraries/Libary1_ID").with(user(TEST_USER_ID)).with(csrf()))
         .andExpect(status().isOk())
@@ -490,7 +503,7 @@ public class CqlLibraryControllerMvcTest {
         .andExpect(jsonPath("$.lastModifiedBy").value("User1"))
         .andExpect(jsonPath("$.createdAt").value(is(equalTo(createdTime.toString()))))
         .andExpect(jsonPath("$.lastModifiedAt").value(is(equalTo(createdTime.toString()))));
-    verify(cqlLibraryService, times(1)).findCqlLibraryById(anyString());
+    verify(cqlLibraryService, times(1)).findCqlLibraryById(anyString(), any());
   }
 
   @Test
@@ -1127,8 +1140,8 @@ public class CqlLibraryControllerMvcTest {
     LibrarySet librarySet = LibrarySet.builder().acls(acls).build();
     lib1.setLibrarySet(librarySet);
     lib2.setLibrarySet(librarySet);
-    when(cqlLibraryService.findCqlLibraryById(eq("12345"))).thenReturn(lib1);
-    when(cqlLibraryService.findCqlLibraryById(eq("6789"))).thenReturn(lib2);
+    when(cqlLibraryService.findCqlLibrarySummariesByIds(List.of("12345", "6789")))
+        .thenReturn(List.of(lib1, lib2));
 
     mockMvc
         .perform(
@@ -1153,7 +1166,8 @@ public class CqlLibraryControllerMvcTest {
     List<AclSpecification> acls = List.of(acl1);
     LibrarySet librarySet = LibrarySet.builder().acls(acls).build();
     testLibrary.setLibrarySet(librarySet);
-    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(testLibrary);
+    when(cqlLibraryService.findCqlLibrarySummariesByIds(List.of("12345")))
+        .thenReturn(List.of(testLibrary));
 
     mockMvc
         .perform(
@@ -1173,7 +1187,8 @@ public class CqlLibraryControllerMvcTest {
 
     LibrarySet librarySet = LibrarySet.builder().acls(null).build();
     testLibrary.setLibrarySet(librarySet);
-    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(testLibrary);
+    when(cqlLibraryService.findCqlLibrarySummariesByIds(List.of("12345")))
+        .thenReturn(List.of(testLibrary));
 
     mockMvc
         .perform(
@@ -1187,6 +1202,21 @@ public class CqlLibraryControllerMvcTest {
         .andExpect(jsonPath("$[0].sharedWith", equalTo(null)));
   }
 
+  @Test
+  public void testAdminMeasureGetSharedWithReturns404ForUnknownLibrary() throws Exception {
+    when(cqlLibraryService.findCqlLibrarySummariesByIds(List.of("12345", "6789")))
+        .thenThrow(new ResourceNotFoundException("CQL Library", "6789"));
+
+    mockMvc
+        .perform(
+            MockMvcRequestBuilders.get("/cql-libraries/sharedWith?measureids=12345,6789")
+                .with(csrf())
+                .with(user(TEST_USER_ID))
+                .header(TEST_API_KEY_HEADER, TEST_API_KEY_HEADER_VALUE)
+                .header("Authorization", "test-okta"))
+        .andExpect(status().isNotFound());
+  }
+
   @Test
   public void testCreateVersionReturnsInternalServerError() throws Exception {
     when(versionService.createVersion(anyString(), anyBoolean(), anyString(), anyString()))
@@ -1250,6 +1280,28 @@ public class CqlLibraryControllerMvcTest {
         .createVersion(eq("Library1_ID"), eq(false), eq(TEST_USER_ID), eq("test-okta"));
   }
 
+  @Test
+  public void testCreateVersionReturnsServiceUnavailableWhenTranslatorIsUnavailable()
+      throws Exception {
+    when(versionService.createVersion(anyString(), anyBoolean(), anyString(), anyString()))
+        .thenThrow(
+            new CqlElmTranslationServiceUnavailableException(
+                "CQL-ELM translation service is temporarily unavailable, please try again later",
+                new RuntimeException("cause")));
+    mockMvc
+        .perform(
+            put("/cql-libraries/version/Library1_ID?isMajor=false")
+                .with(user(TEST_USER_ID))
+                .with(csrf())
+                .header("Authorization", "test-okta")
+                .contentType(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(
+            jsonPath("$.message")
+                .value(
+                    "CQL-ELM translation service is temporarily unavailable, please try again later"));
+  }
+
   @Test
   public void testCreateVersionReturnsCreatedVersion() throws Exception {
     final Instant createdTime = Instant.now().minus(100, ChronoUnit.MINUTES);
@@ -1313,6 +1365,60 @@ public class CqlLibraryControllerMvcTest {
             "TestFHIRHelpers", "1.0.000", Optional.of("QI-Core v4.1.1"), false, null);
   }
 
+  @Test
+  public void testGetVersionedCqlLibrariesReturnsBatch() throws Exception {
+    CqlLibrary helpers =
+        CqlLibrary.builder()
+            .id("Helpers_ID")
+            .cqlLibraryName("FHIRHelpers")
+            .version(Version.parse("4.1.000"))
+            .build();
+    when(cqlLibraryService.getVersionedCqlLibraries(anyList(), anyBoolean(), anyString()))
+        .thenReturn(List.of(helpers));
+
+    mockMvc
+        .perform(
+            post("/cql-libraries/versioned/batch")
+                .with(user(TEST_USER_ID))
+                .with(csrf())
+                .header("Authorization", "test-okta")
+                .content("[{\"name\": \"FHIRHelpers\", \"version\": \"4.1.000\"}]")
+                .contentType(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].id").value("Helpers_ID"));
+
+    verify(cqlLibraryService, times(1))
+        .getVersionedCqlLibraries(
+            List.of(
+                VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.1.000").build()),
+            true,
+            "test-okta");
+  }
+
+  @Test
+  public void testGetIncludedLibrariesReturnsClosure() throws Exception {
+    when(cqlLibraryService.getIncludedLibraries(anyString(), anyInt(), anyBoolean(), anyString()))
+        .thenReturn(
+            List.of(
+                IncludedLibraryDTO.builder()
+                    .id("Helpers_ID")
+                    .name("FHIRHelpers")
+                    .version("4.1.000")
+                    .depth(1)
+                    .build()));
+
+    mockMvc
+        .perform(
+            get("/cql-libraries/Library1_ID/includes?maxDepth=5")
+                .with(user(TEST_USER_ID))
+                .header("Authorization", "test-okta"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].name").value("FHIRHelpers"))
+        .andExpect(jsonPath("$[0].depth").value(1));
+
+    verify(cqlLibraryService, times(1)).getIncludedLibraries("Library1_ID", 5, false, "test-okta");
+  }
+
   @Test
   public void testGetLibraryCqlReturnsNotFound() throws Exception {
     when(cqlLibraryService.getVersionedCqlLibrary(anyString(), any(), any(), anyBoolean(), any()))
@@ -1560,9 +1666,36 @@ public class CqlLibraryControllerMvcTest {
         "[{\"name\":\"Helper\",\"version\":null,\"owner\":\"john\"}]");
   }
 
+  @Test
+  void testGetTransitiveLibraryUsage() throws Exception {
+    LibraryUsage libraryUsage = LibraryUsage.builder().name("Wrapper").owner("john").build();
+    when(cqlLibraryService.findTransitiveLibraryUsage(anyString()))
+        .thenReturn(List.of(libraryUsage));
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/cql-libraries/usage?libraryName=Test&transitive=true")
+                    .with(user(TEST_USER_ID))
+                    .with(csrf()))
+            .andReturn();
+    assertEquals(result.getResponse().getStatus(), HttpStatus.OK.value());
+    assertEquals(
+        result.getResponse().getContentAsString(),
+        "[{\"name\":\"Wrapper\",\"version\":null,\"owner\":\"john\"}]");
+    verify(cqlLibraryService, never()).findLibraryUsage(anyString());
+  }
+
   @Test
   void testDeleteLibraryAlongWithVersions() throws Exception {
-    doNothing().when(cqlLibraryService).deleteLibraryAlongWithVersions(anyString(), anyString());
+    when(cqlLibraryService.deleteLibraryAlongWithVersions(anyString(), anyString()))
+        .thenReturn(
+            LibraryDeleteResultDTO.builder()
+                .cqlLibraryName("Test")
+                .deletedLibraries(3)
+                .deletedLibrarySetIds(List.of("set-1"))
+                .deletedLibrarySets(1)
+                .deletedActionLogs(4)
+                .build());
     MvcResult result =
         mockMvc
             .perform(
@@ -1580,7 +1713,6 @@ public class CqlLibraryControllerMvcTest {
 
   @Test
   void testDeleteLibraryAlongWithVersionsMissingAdminKey() throws Exception {
-    doNothing().when(cqlLibraryService).deleteLibraryAlongWithVersions(anyString(), anyString());
     MvcResult result =
         mockMvc
             .perform(
@@ -1601,7 +1733,7 @@ public class CqlLibraryControllerMvcTest {
             .model("QDM 5.6")
             .build();
 
-    when(cqlLibraryService.findLibrariesByNameAndModel(anyString(), anyString()))
+    when(cqlLibraryService.findLibrariesByNameAndModel(any(LibrarySearchCriteria.class)))
         .thenReturn(List.of(l1));
     MvcResult result =
         mockMvc
@@ -1617,6 +1749,157 @@ public class CqlLibraryControllerMvcTest {
         result.getResponse().getContentAsString(), containsString(l1.getVersion().toString()));
   }
 
+  @Test
+  void testGetLibrariesByNameWithoutLimitReturnsAllMatches() throws Exception {
+    when(cqlLibraryService.findLibrariesByNameAndModel(any(LibrarySearchCriteria.class)))
+        .thenReturn(List.of());
+    mockMvc
+        .perform(
+            get("/cql-libraries/all-versioned?libraryName=test&model=QDM")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isOk());
+    verify(cqlLibraryService)
+        .findLibrariesByNameAndModel(
+            LibrarySearchCriteria.builder()
+                .name("test")
+                .model("QDM")
+                .match(LibraryNameMatch.CONTAINS)
+                .page(0)
+                .limit(null)
+                .build());
+  }
+
+  @Test
+  void testGetLibrariesByNamePrefixPage() throws Exception {
+    when(cqlLibraryService.findLibrariesByNameAndModel(any(LibrarySearchCriteria.class)))
+        .thenReturn(List.of());
+    mockMvc
+        .perform(
+            get("/cql-libraries/all-versioned?libraryName=test&model=QDM&match=prefix&page=2&limit=50")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isOk());
+    verify(cqlLibraryService)
+        .findLibrariesByNameAndModel(
+            LibrarySearchCriteria.builder()
+                .name("test")
+                .model("QDM")
+                .match(LibraryNameMatch.PREFIX)
+                .page(2)
+                .limit(50)
+                .build());
+  }
+
+  @Test
+  void testGetLibrariesByNameWithUnknownMatch() throws Exception {
+    mockMvc
+        .perform(
+            get("/cql-libraries/all-versioned?libraryName=test&model=QDM&match=regex")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(cqlLibraryService);
+  }
+
+  @Test
+  void testStreamLibrariesByNameAndModelAsNdjson() throws Exception {
+    LibraryListDTO l1 =
+        LibraryListDTO.builder()
+            .cqlLibraryName("Test1")
+            .version(Version.parse("0.1.000"))
+            .model("QDM 5.6")
+            .build();
+    LibraryListDTO l2 = l1.toBuilder().cqlLibraryName("Test2").build();
+    when(cqlLibraryService.streamLibrariesByNameAndModel(any(LibrarySearchCriteria.class)))
+        .thenReturn(Stream.of(l1, l2));
+
+    MvcResult asyncResult =
+        mockMvc
+            .perform(
+                get("/cql-libraries/all-versioned/stream?libraryName=test&model=QDM")
+                    .with(user(TEST_USER_ID))
+                    .accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult result =
+        mockMvc
+            .perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn();
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines.length, is(equalTo(2)));
+    assertThat(lines[0], containsString("\"cqlLibraryName\":\"Test1\""));
+    assertThat(lines[1], containsString("\"cqlLibraryName\":\"Test2\""));
+  }
+
+  @Test
+  void testStreamCqlLibrariesAsJsonArray() throws Exception {
+    LibraryListDTO l1 =
+        LibraryListDTO.builder()
+            .id("1")
+            .cqlLibraryName("Test1")
+            .version(Version.parse("0.1.000"))
+            .build();
+    when(repository.streamAllLibrariesByUser(TEST_USER_ID)).thenReturn(Stream.of(l1));
+
+    MvcResult asyncResult =
+        mockMvc
+            .perform(
+                get("/cql-libraries/stream?currentUser=true")
+                    .with(user(TEST_USER_ID))
+                    .accept(MediaType.APPLICATION_JSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(asyncResult))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+        .andExpect(jsonPath("$[0].id").value("1"))
+        .andExpect(jsonPath("$[0].cqlLibraryName").value("Test1"))
+        .andExpect(jsonPath("$[0].version").value("0.1.000"));
+  }
+
+  @Test
+  void testStreamCqlLibrariesWithSlowWriterRunsUnderConfiguredTimeout() throws Exception {
+    LibraryListDTO l1 =
+        LibraryListDTO.builder()
+            .id("1")
+            .cqlLibraryName("Test1")
+            .version(Version.parse("0.1.000"))
+            .build();
+    Stream<LibraryListDTO> slowStream =
+        Stream.of(l1, l1.toBuilder().id("2").build(), l1.toBuilder().id("3").build())
+            .peek(
+                library -> {
+                  try {
+                    Thread.sleep(100);
+                  } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                  }
+                });
+    when(repository.streamAllLibrariesByUser(TEST_USER_ID)).thenReturn(slowStream);
+
+    MvcResult asyncResult =
+        mockMvc
+            .perform(
+                get("/cql-libraries/stream?currentUser=true")
+                    .with(user(TEST_USER_ID))
+                    .accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    // the configured timeout, not the servlet container's 30s default
+    assertThat(
+        asyncResult.getRequest().getAsyncContext().getTimeout(),
+        is(equalTo(Duration.ofMinutes(10).toMillis())));
+    MvcResult result =
+        mockMvc.perform(asyncDispatch(asyncResult)).andExpect(status().isOk()).andReturn();
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertThat(lines.length, is(equalTo(3)));
+    assertThat(lines[2], containsString("\"id\":\"3\""));
+  }
+
   @Test
   void testGetLibrarySetBySetId() throws Exception {
     String librarySetId = "1-1-1-1";
@@ -1630,7 +1913,7 @@ public class CqlLibraryControllerMvcTest {
             .build();
     LibrarySetDTO librarySetDTO =
         LibrarySetDTO.builder().librarySet(librarySet).libraries(List.of(library)).build();
-    when(cqlLibraryService.getLibrarySetBySetId(anyString())).thenReturn(librarySetDTO);
+    when(cqlLibraryService.getLibrarySetBySetId(anyString(), any())).thenReturn(librarySetDTO);
     MvcResult result =
         mockMvc
             .perform(
@@ -1648,4 +1931,81 @@ public class CqlLibraryControllerMvcTest {
         result.getResponse().getContentAsString(),
         containsString(librarySetDTO.getLibraries().get(0).getCqlLibraryName()));
   }
+
+  @Test
+  void testGetLibrarySetBySetIdWithFields() throws Exception {
+    String librarySetId = "1-1-1-1";
+    LibrarySet librarySet = LibrarySet.builder().librarySetId(librarySetId).owner("John").build();
+    CqlLibrary library =
+        CqlLibrary.builder()
+            .id("lib-1")
+            .cqlLibraryName("Lib1")
+            .version(Version.parse("0.1.000"))
+            .build();
+    when(cqlLibraryService.getLibrarySetBySetId(
+            librarySetId, Set.of("id", "cqlLibraryName", "version", "active")))
+        .thenReturn(
+            LibrarySetDTO.builder().librarySet(librarySet).libraries(List.of(library)).build());
+
+    mockMvc
+        .perform(
+            get("/cql-libraries/library-set/" + librarySetId)
+                .param("fields", "cqlLibraryName,version,active")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.librarySet.owner").value("John"))
+        .andExpect(jsonPath("$.libraries[0].id").value("lib-1"))
+        .andExpect(jsonPath("$.libraries[0].cqlLibraryName").value("Lib1"))
+        .andExpect(jsonPath("$.libraries[0].version").value("0.1.000"))
+        .andExpect(jsonPath("$.libraries[0].active").value(false))
+        .andExpect(jsonPath("$.libraries[0].draft").doesNotExist())
+        .andExpect(jsonPath("$.libraries[0].cql").doesNotExist());
+  }
+
+  @Test
+  void testGetCqlLibraryWithUnknownFieldsReturnsBadRequest() throws Exception {
+    mockMvc
+        .perform(
+            get("/cql-libraries/lib-1")
+                .param("fields", "cqlLibraryName,elm")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isBadRequest());
+    verifyNoInteractions(cqlLibraryService);
+  }
+
+  @Test
+  void testGetActionLogsReturnsPageOfActions() throws Exception {
+    when(cqlLibraryService.findCqlLibraryById(eq("lib-1"), any()))
+        .thenReturn(CqlLibrary.builder().id("lib-1").librarySetId("set-1").build());
+    Action created =
+        Action.builder()
+            .actionType(ActionType.CREATED)
+            .performedBy(TEST_USER_ID)
+            .performedAt(Instant.parse("2024-01-01T00:00:00Z"))
+            .build();
+    when(actionLogService.findActions(List.of("lib-1", "set-1"), 1, 5))
+        .thenReturn(
+            ActionLogPageDTO.builder()
+                .content(List.of(created))
+                .page(1)
+                .limit(5)
+                .nextPage(2)
+                .build());
+
+    mockMvc
+        .perform(
+            get("/cql-libraries/lib-1/action-logs")
+                .param("page", "1")
+                .param("limit", "5")
+                .with(user(TEST_USER_ID))
+                .with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.content[0].actionType").value("CREATED"))
+        .andExpect(jsonPath("$.content[0].performedBy").value(TEST_USER_ID))
+        .andExpect(jsonPath("$.content[0].performedAt").value("2024-01-01T00:00:00Z"))
+        .andExpect(jsonPath("$.page").value(1))
+        .andExpect(jsonPath("$.nextPage").value(2));
+  }
 }
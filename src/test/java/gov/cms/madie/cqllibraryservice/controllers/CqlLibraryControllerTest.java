@@ -1,5 +1,7 @@
 package gov.cms.madie.cqllibraryservice.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -11,7 +13,14 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.cms.madie.cqllibraryservice.dto.ActionLogPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
 import gov.cms.madie.cqllibraryservice.exceptions.DuplicateKeyException;
 import gov.cms.madie.cqllibraryservice.exceptions.InvalidIdException;
 import gov.cms.madie.cqllibraryservice.exceptions.InvalidResourceStateException;
@@ -29,11 +38,23 @@ import gov.cms.madie.models.common.Version;
 import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryRepository;
 import gov.cms.madie.cqllibraryservice.services.CqlLibraryService;
 import gov.cms.madie.cqllibraryservice.services.VersionService;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
 
 import gov.cms.madie.models.library.LibrarySet;
 import org.junit.jupiter.api.BeforeEach;
@@ -43,10 +64,13 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @ExtendWith(MockitoExtension.class)
 class CqlLibraryControllerTest {
@@ -63,6 +87,8 @@ class CqlLibraryControllerTest {
 
   @Mock Principal principal;
 
+  @Spy ObjectMapper objectMapper = new ObjectMapper();
+
   @InjectMocks CqlLibraryController cqlLibraryController;
 
   @Captor private ArgumentCaptor<CqlLibrary> cqlLibraryArgumentCaptor;
@@ -122,6 +148,101 @@ class CqlLibraryControllerTest {
     assertEquals("testCqlLibraryId", response.getBody().get(0).getId());
   }
 
+  @Test
+  void streamCqlLibrariesAsNdjson() throws Exception {
+    LibraryListDTO other = libraryList.toBuilder().id("otherCqlLibraryId").build();
+    when(cqlLibraryRepository.streamAllLibrariesByUser(eq("test.user")))
+        .thenReturn(Stream.of(libraryList, other));
+    when(principal.getName()).thenReturn("test.user");
+
+    ResponseEntity<StreamingResponseBody> response =
+        cqlLibraryController.streamCqlLibraries(
+            principal, true, MediaType.APPLICATION_NDJSON_VALUE);
+
+    assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("testCqlLibraryId", objectMapper.readTree(lines[0]).get("id").asText());
+    assertEquals("otherCqlLibraryId", objectMapper.readTree(lines[1]).get("id").asText());
+  }
+
+  @Test
+  void streamCqlLibrariesDefaultsToJsonArray() throws Exception {
+    when(cqlLibraryRepository.streamAllLibrariesByUser(eq(""))).thenReturn(Stream.of(libraryList));
+    when(principal.getName()).thenReturn("test.user");
+
+    ResponseEntity<StreamingResponseBody> response =
+        cqlLibraryController.streamCqlLibraries(principal, false, null);
+
+    assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    JsonNode libraries = objectMapper.readTree(out.toString(StandardCharsets.UTF_8));
+    assertTrue(libraries.isArray());
+    assertEquals("testCqlLibraryId", libraries.get(0).get("id").asText());
+  }
+
+  @Test
+  void getCqlLibrariesPageWithCurrentUserFilter() {
+    LibraryListPageDTO page =
+        LibraryListPageDTO.builder()
+            .content(List.of(libraryList))
+            .limit(10)
+            .nextCursor("abc")
+            .build();
+    when(cqlLibraryService.findLibrariesPage(any(LibraryListCriteria.class), eq("cursor")))
+        .thenReturn(page);
+    when(principal.getName()).thenReturn("test.user");
+
+    ResponseEntity<LibraryListPageDTO> response =
+        cqlLibraryController.getCqlLibrariesPage(
+            principal, true, "QDM v5.6", false, "Test", "createdAt", "cursor", 10);
+
+    ArgumentCaptor<LibraryListCriteria> criteriaCaptor =
+        ArgumentCaptor.forClass(LibraryListCriteria.class);
+    verify(cqlLibraryService).findLibrariesPage(criteriaCaptor.capture(), eq("cursor"));
+    LibraryListCriteria criteria = criteriaCaptor.getValue();
+    assertEquals("test.user", criteria.getUserId());
+    assertEquals("QDM v5.6", criteria.getModel());
+    assertEquals(false, criteria.getDraft());
+    assertEquals("Test", criteria.getNamePrefix());
+    assertEquals(LibraryListSort.CREATED_AT, criteria.getSort());
+    assertEquals(10, criteria.getLimit());
+    assertEquals(page, response.getBody());
+  }
+
+  @Test
+  void getCqlLibrariesPageWithoutCurrentUserFilter() {
+    LibraryListPageDTO page = LibraryListPageDTO.builder().content(List.of()).limit(25).build();
+    when(cqlLibraryService.findLibrariesPage(any(LibraryListCriteria.class), eq(null)))
+        .thenReturn(page);
+
+    ResponseEntity<LibraryListPageDTO> response =
+        cqlLibraryController.getCqlLibrariesPage(
+            principal, false, null, null, null, "name", null, 25);
+
+    ArgumentCaptor<LibraryListCriteria> criteriaCaptor =
+        ArgumentCaptor.forClass(LibraryListCriteria.class);
+    verify(cqlLibraryService).findLibrariesPage(criteriaCaptor.capture(), eq(null));
+    assertNull(criteriaCaptor.getValue().getUserId());
+    assertEquals(LibraryListSort.NAME, criteriaCaptor.getValue().getSort());
+    assertEquals(page, response.getBody());
+  }
+
+  @Test
+  void getCqlLibrariesPageRejectsUnknownSort() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () ->
+                cqlLibraryController.getCqlLibrariesPage(
+                    principal, false, null, null, null, "version", null, 25));
+    assertEquals("Sort must be one of: name, createdAt.", ex.getMessage());
+    verifyNoInteractions(cqlLibraryService);
+  }
+
   @Test
   void testSaveCqlLibrary() {
     ArgumentCaptor<CqlLibrary> saveCqlLibraryArgCaptor = ArgumentCaptor.forClass(CqlLibrary.class);
@@ -151,13 +272,103 @@ class CqlLibraryControllerTest {
     assertThat(actionTypeArgumentCaptor.getValue(), is(equalTo(ActionType.CREATED)));
   }
 
+  @Test
+  void testConcurrentCreatesWithTheSameNameSaveOnlyOneLibrary() throws Exception {
+    // both requests pass the duplicate name check before either one is saved
+    CountDownLatch bothChecked = new CountDownLatch(2);
+    doAnswer(
+            invocation -> {
+              bothChecked.countDown();
+              bothChecked.await(5, TimeUnit.SECONDS);
+              return null;
+            })
+        .when(cqlLibraryService)
+        .checkDuplicateCqlLibraryName(anyString());
+    // the unique draft name index accepts the first save only
+    AtomicBoolean saved = new AtomicBoolean();
+    when(cqlLibraryRepository.save(any(CqlLibrary.class)))
+        .thenAnswer(
+            invocation -> {
+              if (!saved.compareAndSet(false, true)) {
+                throw new org.springframework.dao.DuplicateKeyException("E11000 duplicate key");
+              }
+              CqlLibrary library = invocation.getArgument(0);
+              library.setId("savedCqlLibraryId");
+              return library;
+            });
+    when(principal.getName()).thenReturn("test.user");
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      List<Future<ResponseEntity<CqlLibrary>>> creates =
+          executor.invokeAll(
+              List.of(
+                  () ->
+                      cqlLibraryController.createCqlLibrary(
+                          CqlLibrary.builder().cqlLibraryName("NewLibrary").build(), principal),
+                  () ->
+                      cqlLibraryController.createCqlLibrary(
+                          CqlLibrary.builder().cqlLibraryName("NewLibrary").build(), principal)),
+              10,
+              TimeUnit.SECONDS);
+
+      int createdCount = 0;
+      int rejectedCount = 0;
+      for (Future<ResponseEntity<CqlLibrary>> create : creates) {
+        try {
+          assertThat(create.get().getStatusCode(), is(equalTo(HttpStatus.CREATED)));
+          createdCount++;
+        } catch (ExecutionException ex) {
+          DuplicateKeyException duplicate =
+              assertInstanceOf(DuplicateKeyException.class, ex.getCause());
+          assertThat(duplicate.getKey(), is(equalTo("cqlLibraryName")));
+          rejectedCount++;
+        }
+      }
+      assertThat(createdCount, is(1));
+      assertThat(rejectedCount, is(1));
+      verify(librarySetService, times(1))
+          .createLibrarySet(anyString(), eq("savedCqlLibraryId"), anyString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testUpdateCqlLibraryRejectsNameTakenByConcurrentRequest() {
+    CqlLibrary persisted =
+        CqlLibrary.builder()
+            .id("Library1_ID")
+            .cqlLibraryName("Library1")
+            .draft(true)
+            .librarySet(LibrarySet.builder().owner("test.user").build())
+            .build();
+    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(persisted);
+    when(cqlLibraryService.isCqlLibraryNameChanged(any(CqlLibrary.class), any(CqlLibrary.class)))
+        .thenReturn(true);
+    when(cqlLibraryRepository.save(any(CqlLibrary.class)))
+        .thenThrow(new org.springframework.dao.DuplicateKeyException("E11000 duplicate key"));
+    when(principal.getName()).thenReturn("test.user");
+
+    DuplicateKeyException ex =
+        assertThrows(
+            DuplicateKeyException.class,
+            () ->
+                cqlLibraryController.updateCqlLibrary(
+                    "Library1_ID",
+                    persisted.toBuilder().cqlLibraryName("Library2").build(),
+                    principal));
+    assertThat(ex.getKey(), is(equalTo("cqlLibraryName")));
+  }
+
   @Test
   public void testGetCqlLibraryThrowsExceptionForNotFound() {
     doThrow(new ResourceNotFoundException("CQL Library", "Library1"))
         .when(cqlLibraryService)
-        .findCqlLibraryById(anyString());
+        .findCqlLibraryById(anyString(), any());
     assertThrows(
-        ResourceNotFoundException.class, () -> cqlLibraryController.getCqlLibrary("Library1"));
+        ResourceNotFoundException.class,
+        () -> cqlLibraryController.getCqlLibrary("Library1", null));
   }
 
   @Test
@@ -169,12 +380,65 @@ class CqlLibraryControllerTest {
             .cql("library testCql version '1.0.000'")
             .model(ModelType.QI_CORE.getValue())
             .build();
-    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(library);
-    ResponseEntity<CqlLibrary> output = cqlLibraryController.getCqlLibrary("Library1_ID");
+    when(cqlLibraryService.findCqlLibraryById(anyString(), any())).thenReturn(library);
+    ResponseEntity<Object> output = cqlLibraryController.getCqlLibrary("Library1_ID", null);
     assertNotNull(output);
     assertEquals(library, output.getBody());
   }
 
+  @Test
+  public void testGetCqlLibraryReturnsOnlyRequestedFields() {
+    CqlLibrary library = CqlLibrary.builder().id("Library1_ID").cqlLibraryName("Library1").build();
+    when(cqlLibraryService.findCqlLibraryById(
+            "Library1_ID", Set.of("id", "cqlLibraryName", "draft")))
+        .thenReturn(library);
+    ResponseEntity<Object> output =
+        cqlLibraryController.getCqlLibrary("Library1_ID", List.of("cqlLibraryName", "draft"));
+    assertEquals(
+        Map.of("id", "Library1_ID", "cqlLibraryName", "Library1", "draft", false),
+        output.getBody());
+  }
+
+  @Test
+  public void testGetActionLogsReadsActionsOfLibraryAndLibrarySet() {
+    CqlLibrary library =
+        CqlLibrary.builder()
+            .id("Library1_ID")
+            .librarySetId("SET_ID")
+            .librarySet(LibrarySet.builder().id("SET_DOC_ID").librarySetId("SET_ID").build())
+            .build();
+    when(cqlLibraryService.findCqlLibraryById("Library1_ID", Set.of("id", "librarySetId")))
+        .thenReturn(library);
+    ActionLogPageDTO page = ActionLogPageDTO.builder().content(List.of()).page(1).limit(10).build();
+    when(actionLogService.findActions(List.of("Library1_ID", "SET_ID", "SET_DOC_ID"), 1, 10))
+        .thenReturn(page);
+
+    ResponseEntity<ActionLogPageDTO> output =
+        cqlLibraryController.getActionLogs("Library1_ID", 1, 10);
+
+    assertEquals(HttpStatus.OK, output.getStatusCode());
+    assertEquals(page, output.getBody());
+  }
+
+  @Test
+  public void testGetActionLogsThrowsExceptionForNotFound() {
+    doThrow(new ResourceNotFoundException("CQL Library", "Library1"))
+        .when(cqlLibraryService)
+        .findCqlLibraryById(anyString(), any());
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> cqlLibraryController.getActionLogs("Library1", 0, 25));
+    verifyNoInteractions(actionLogService);
+  }
+
+  @Test
+  public void testGetCqlLibraryRejectsUnknownFields() {
+    assertThrows(
+        BadRequestObjectException.class,
+        () -> cqlLibraryController.getCqlLibrary("Library1_ID", List.of("librarySet", "nope")));
+    verifyNoInteractions(cqlLibraryService);
+  }
+
   @Test
   public void testUpdateCqlLibraryThrowsExceptionForNullIdOnLibrary() {
     final String pathId = "Library1_ID";
@@ -506,19 +770,34 @@ class CqlLibraryControllerTest {
     String owner = "john";
     LibraryUsage libraryUsage = LibraryUsage.builder().name(libraryName).owner(owner).build();
     when(cqlLibraryService.findLibraryUsage(anyString())).thenReturn(List.of(libraryUsage));
-    ResponseEntity<List<LibraryUsage>> response = cqlLibraryController.getLibraryUsage(libraryName);
+    ResponseEntity<List<LibraryUsage>> response =
+        cqlLibraryController.getLibraryUsage(libraryName, false);
     List<LibraryUsage> usage = response.getBody();
     assertThat(usage.size(), is(equalTo(1)));
     assertThat(usage.get(0).getName(), is(equalTo(libraryName)));
     assertThat(usage.get(0).getOwner(), is(equalTo(owner)));
   }
 
+  @Test
+  void testGetTransitiveLibraryUsage() {
+    LibraryUsage libraryUsage = LibraryUsage.builder().name("Wrapper").owner("john").build();
+    when(cqlLibraryService.findTransitiveLibraryUsage(anyString()))
+        .thenReturn(List.of(libraryUsage));
+    ResponseEntity<List<LibraryUsage>> response =
+        cqlLibraryController.getLibraryUsage("Helper", true);
+    assertThat(response.getBody(), is(equalTo(List.of(libraryUsage))));
+    verify(cqlLibraryService, never()).findLibraryUsage(anyString());
+  }
+
   @Test
   void testDeleteLibraryAlongWithVersions() {
     MockHttpServletRequest request = new MockHttpServletRequest();
     request.addHeader("api-key", "key");
     String libraryName = "Helper";
-    doNothing().when(cqlLibraryService).deleteLibraryAlongWithVersions(anyString(), anyString());
+    LibraryDeleteResultDTO deleteResult =
+        LibraryDeleteResultDTO.builder().cqlLibraryName(libraryName).deletedLibraries(2).build();
+    when(cqlLibraryService.deleteLibraryAlongWithVersions(anyString(), anyString()))
+        .thenReturn(deleteResult);
     ResponseEntity<String> response =
         cqlLibraryController.deleteLibraryAlongWithVersions(request, libraryName, "token", "key");
     assertThat(
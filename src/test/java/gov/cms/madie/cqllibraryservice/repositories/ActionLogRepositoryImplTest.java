@@ -1,19 +1,40 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.mongodb.client.result.UpdateResult;
 import gov.cms.madie.models.common.Action;
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.common.ActionType;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import org.bson.BsonString;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,6 +70,17 @@ class ActionLogRepositoryImplTest {
     assertThat(output, is(true));
   }
 
+  @Test
+  void pushEventSelectsBucketWithRoom() {
+    when(mongoTemplate.upsert(any(Query.class), any(Update.class), any(Class.class)))
+        .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    actionLogRepository.pushEvent("TARGET_ID", Action.builder().build());
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).upsert(query.capture(), any(Update.class), eq(ActionLog.class));
+    assertThat(query.getValue().getQueryObject(), is(equalTo(bucketQuery("TARGET_ID", 99))));
+  }
+
   @Test
   void returnsFalseForValidInputsNoUpsert() {
     when(mongoTemplate.upsert(any(Query.class), any(Update.class), any(Class.class)))
@@ -56,4 +88,97 @@ class ActionLogRepositoryImplTest {
     boolean output = actionLogRepository.pushEvent("TARGET_ID", Action.builder().build());
     assertThat(output, is(false));
   }
+
+  @Test
+  void pushEventsDoesNothingForNoActions() {
+    assertThat(actionLogRepository.pushEvents(Map.of()), is(0));
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  @Test
+  void pushEventsUpsertsOncePerTarget() {
+    Action created = Action.builder().actionType(ActionType.CREATED).build();
+    Action versioned = Action.builder().actionType(ActionType.VERSIONED_MAJOR).build();
+    Map<String, List<Action>> actionsByTargetId = new LinkedHashMap<>();
+    actionsByTargetId.put("TARGET_1", List.of(created, versioned));
+    actionsByTargetId.put("TARGET_2", List.of(created));
+    BulkOperations bulkOps = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, ActionLog.class))
+        .thenReturn(bulkOps);
+    when(bulkOps.execute())
+        .thenReturn(
+            BulkWriteResult.acknowledged(
+                0, 1, 0, 1, List.of(new BulkWriteUpsert(1, new BsonString("LOG_2"))), List.of()));
+
+    assertThat(actionLogRepository.pushEvents(actionsByTargetId), is(2));
+
+    ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+    verify(bulkOps, times(2)).upsert(queries.capture(), updates.capture());
+    assertThat(
+        queries.getAllValues().get(0).getQueryObject(), is(equalTo(bucketQuery("TARGET_1", 98))));
+    assertThat(
+        queries.getAllValues().get(1).getQueryObject(), is(equalTo(bucketQuery("TARGET_2", 99))));
+    Document push = updates.getAllValues().get(0).getUpdateObject().get("$push", Document.class);
+    Update.Modifier each =
+        ((Update.Modifiers) push.get("actions")).getModifiers().iterator().next();
+    assertThat(each.getKey(), is(equalTo("$each")));
+    assertThat(Arrays.asList((Object[]) each.getValue()), is(equalTo(List.of(created, versioned))));
+  }
+
+  @Test
+  void pushEventsSplitsActionsIntoBuckets() {
+    List<Action> actions =
+        IntStream.range(0, 150)
+            .mapToObj(i -> Action.builder().actionType(ActionType.UPDATED).build())
+            .toList();
+    BulkOperations bulkOps = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, ActionLog.class))
+        .thenReturn(bulkOps);
+    when(bulkOps.execute())
+        .thenReturn(
+            BulkWriteResult.acknowledged(
+                0, 1, 0, 1, List.of(new BulkWriteUpsert(1, new BsonString("LOG_2"))), List.of()));
+
+    actionLogRepository.pushEvents(Map.of("TARGET_1", actions));
+
+    ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+    verify(bulkOps, times(2)).upsert(queries.capture(), any(Update.class));
+    // a full bucket only fits into a new one, the rest into one holding at most 50 actions
+    assertThat(
+        queries.getAllValues().get(0).getQueryObject(), is(equalTo(bucketQuery("TARGET_1", 0))));
+    assertThat(
+        queries.getAllValues().get(1).getQueryObject(), is(equalTo(bucketQuery("TARGET_1", 50))));
+  }
+
+  @Test
+  void findActionsByTargetIdsReadsPageOfActionsNewestFirst() {
+    Action created = Action.builder().actionType(ActionType.CREATED).build();
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(ActionLog.class), eq(Action.class)))
+        .thenReturn(new AggregationResults<>(List.of(created), new Document()));
+
+    List<Action> actions =
+        actionLogRepository.findActionsByTargetIds(List.of("LIB_ID", "SET_ID"), 20, 11);
+
+    assertThat(actions, is(equalTo(List.of(created))));
+    ArgumentCaptor<Aggregation> aggregation = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregation.capture(), eq(ActionLog.class), eq(Action.class));
+    List<Document> pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    assertThat(
+        pipeline.get(2),
+        is(
+            equalTo(
+                new Document(
+                    "$sort",
+                    new Document("actions.performedAt", -1)
+                        .append("_id", -1)
+                        .append("position", -1)))));
+    assertThat(pipeline.get(3), is(equalTo(new Document("$skip", 20L))));
+    assertThat(pipeline.get(4), is(equalTo(new Document("$limit", 11L))));
+  }
+
+  private static Document bucketQuery(String targetId, int index) {
+    return new Document("targetId", targetId)
+        .append("actions." + index, new Document("$exists", false));
+  }
 }
@@ -0,0 +1,118 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
+import gov.cms.madie.models.common.Version;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CqlLibraryBeforeSaveCallbackTest {
+
+  private final CqlLibraryBeforeSaveCallback callback = new CqlLibraryBeforeSaveCallback();
+
+  @Test
+  void testOnBeforeSaveSetsLowerCasedName() {
+    CqlLibrary cqlLibrary = CqlLibrary.builder().cqlLibraryName("TestLibrary").build();
+    Document document = new Document("cqlLibraryName", "TestLibrary");
+
+    CqlLibrary result = callback.onBeforeSave(cqlLibrary, document, "cqlLibrary");
+
+    assertThat(result, is(equalTo(cqlLibrary)));
+    assertThat(document.getString("cqlLibraryNameLower"), is(equalTo("testlibrary")));
+    assertThat(
+        document.getList("cqlLibraryNameTrigrams", String.class),
+        is(equalTo(List.of("tes", "est", "stl", "tli", "lib", "ibr", "bra", "rar", "ary"))));
+  }
+
+  @Test
+  void testOnBeforeSaveSetsVersionKey() {
+    Version version = Version.parse("1.2.003");
+    Document document = new Document();
+    callback.onBeforeSave(
+        CqlLibrary.builder().cqlLibraryName("TestLibrary").version(version).build(),
+        document,
+        "cqlLibrary");
+    assertThat(document.getLong("versionKey"), is(equalTo(VersionKeyUtils.toKey(version))));
+  }
+
+  @Test
+  void testOnBeforeSaveStampsJustTranslatedElmOfVersionedLibrary() {
+    Document document = new Document();
+    CqlLibraryBeforeSaveCallback.withElmTranslatedBy(
+        "3.10.0",
+        () ->
+            callback.onBeforeSave(
+                CqlLibrary.builder().draft(false).elmJson("{\"library\": {}}").build(),
+                document,
+                "cqlLibrary"));
+    assertThat(document.getString("elmTranslatorVersion"), is(equalTo("3.10.0")));
+  }
+
+  @Test
+  void testOnBeforeSaveDoesNotStampElmOfPlainSave() {
+    Document document = new Document();
+    callback.onBeforeSave(
+        CqlLibrary.builder().draft(false).elmJson("{\"library\": {}}").build(),
+        document,
+        "cqlLibrary");
+    assertThat(document.containsKey("elmTranslatorVersion"), is(false));
+  }
+
+  @Test
+  void testOnBeforeSaveDoesNotStampDraftOrMissingElm() {
+    Document draft = new Document();
+    Document withoutElm = new Document();
+    CqlLibraryBeforeSaveCallback.withElmTranslatedBy(
+        "3.10.0",
+        () -> {
+          callback.onBeforeSave(
+              CqlLibrary.builder().draft(true).elmJson("{\"library\": {}}").build(),
+              draft,
+              "cqlLibrary");
+          return callback.onBeforeSave(
+              CqlLibrary.builder().draft(false).build(), withoutElm, "cqlLibrary");
+        });
+
+    assertThat(draft.containsKey("elmTranslatorVersion"), is(false));
+    assertThat(withoutElm.containsKey("elmTranslatorVersion"), is(false));
+  }
+
+  @Test
+  void testGetNameTrigramsAreDistinct() {
+    assertThat(CqlLibraryBeforeSaveCallback.getNameTrigrams("AaaAa"), is(equalTo(List.of("aaa"))));
+  }
+
+  @Test
+  void testGetNameTrigramsOfShortName() {
+    assertThat(CqlLibraryBeforeSaveCallback.getNameTrigrams("Ab"), is(equalTo(List.of())));
+    assertThat(CqlLibraryBeforeSaveCallback.getNameTrigrams(null), is(equalTo(List.of())));
+  }
+
+  @Test
+  void testOnBeforeSaveWithoutName() {
+    Document document = new Document();
+    callback.onBeforeSave(CqlLibrary.builder().build(), document, "cqlLibrary");
+    assertThat(document.containsKey("cqlLibraryNameLower"), is(true));
+    assertThat(document.get("cqlLibraryNameLower"), is(nullValue()));
+    assertThat(document.get("versionKey"), is(nullValue()));
+  }
+
+  @Test
+  void testExistsByCqlLibraryNameLooksUpNormalizedName() {
+    CqlLibraryRepository repository = mock(CqlLibraryRepository.class);
+    when(repository.existsByCqlLibraryName("TestLibrary")).thenCallRealMethod();
+    when(repository.existsByCqlLibraryNameLower("testlibrary")).thenReturn(true);
+
+    assertThat(repository.existsByCqlLibraryName("TestLibrary"), is(true));
+    verify(repository).existsByCqlLibraryNameLower("testlibrary");
+  }
+}
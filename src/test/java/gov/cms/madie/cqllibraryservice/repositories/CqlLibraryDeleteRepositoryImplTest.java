@@ -0,0 +1,128 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.client.result.DeleteResult;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+import gov.cms.madie.models.common.ActionLog;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+@ExtendWith(MockitoExtension.class)
+class CqlLibraryDeleteRepositoryImplTest {
+
+  @Mock MongoTemplate mongoTemplate;
+
+  @InjectMocks CqlLibraryDeleteRepositoryImpl cqlLibraryDeleteRepository;
+
+  private static Set<?> getIn(Query query, String field) {
+    return new HashSet<>(
+        (Collection<?>) query.getQueryObject().get(field, Document.class).get("$in"));
+  }
+
+  @Test
+  void testDeleteAllVersionsRemovesOrphanedLibrarySetsAndActionLogs() {
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(
+            List.of(
+                CqlLibrary.builder().id("lib-1").librarySetId("set-1").build(),
+                CqlLibrary.builder().id("lib-2").librarySetId("set-1").build(),
+                CqlLibrary.builder().id("lib-3").librarySetId("set-2").build()));
+    when(mongoTemplate.remove(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(DeleteResult.acknowledged(3));
+    // a library of another name still belongs to set-2
+    when(mongoTemplate.findDistinct(
+            any(Query.class), eq("librarySetId"), eq(CqlLibrary.class), eq(String.class)))
+        .thenReturn(List.of("set-2"));
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(List.of(LibrarySet.builder().id("set-doc-1").librarySetId("set-1").build()));
+    when(mongoTemplate.remove(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(DeleteResult.acknowledged(1));
+    when(mongoTemplate.remove(any(Query.class), eq(ActionLog.class)))
+        .thenReturn(DeleteResult.acknowledged(4));
+
+    LibraryDeleteResultDTO result =
+        cqlLibraryDeleteRepository.deleteAllVersionsByCqlLibraryName("Helper");
+
+    assertThat(result.getCqlLibraryName(), is(equalTo("Helper")));
+    assertThat(result.getDeletedLibraries(), is(3L));
+    assertThat(result.getDeletedLibrarySetIds(), is(equalTo(List.of("set-1"))));
+    assertThat(result.getDeletedLibrarySets(), is(1L));
+    assertThat(result.getDeletedActionLogs(), is(4L));
+    assertThat(
+        Set.copyOf(result.getDeletedActionLogTargetIds()),
+        is(equalTo(Set.of("lib-1", "lib-2", "lib-3", "set-1", "set-doc-1"))));
+
+    ArgumentCaptor<Query> libraryQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(libraryQuery.capture(), eq(CqlLibrary.class));
+    assertThat(
+        libraryQuery.getValue().getQueryObject(),
+        is(equalTo(new Document("cqlLibraryName", "Helper"))));
+    assertThat(
+        libraryQuery.getValue().getFieldsObject(),
+        is(equalTo(new Document("id", 1).append("librarySetId", 1))));
+    ArgumentCaptor<Query> deleteQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).remove(deleteQuery.capture(), eq(CqlLibrary.class));
+    assertThat(getIn(deleteQuery.getValue(), "id"), is(equalTo(Set.of("lib-1", "lib-2", "lib-3"))));
+    ArgumentCaptor<Query> librarySetQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).remove(librarySetQuery.capture(), eq(LibrarySet.class));
+    assertThat(getIn(librarySetQuery.getValue(), "librarySetId"), is(equalTo(Set.of("set-1"))));
+    ArgumentCaptor<Query> actionLogQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).remove(actionLogQuery.capture(), eq(ActionLog.class));
+    assertThat(
+        getIn(actionLogQuery.getValue(), "targetId"),
+        is(equalTo(Set.of("lib-1", "lib-2", "lib-3", "set-1", "set-doc-1"))));
+  }
+
+  @Test
+  void testDeleteAllVersionsKeepsLibrarySetsInUse() {
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(List.of(CqlLibrary.builder().id("lib-1").librarySetId("set-1").build()));
+    when(mongoTemplate.remove(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(DeleteResult.acknowledged(1));
+    when(mongoTemplate.findDistinct(
+            any(Query.class), eq("librarySetId"), eq(CqlLibrary.class), eq(String.class)))
+        .thenReturn(List.of("set-1"));
+    when(mongoTemplate.remove(any(Query.class), eq(ActionLog.class)))
+        .thenReturn(DeleteResult.acknowledged(1));
+
+    LibraryDeleteResultDTO result =
+        cqlLibraryDeleteRepository.deleteAllVersionsByCqlLibraryName("Helper");
+
+    assertThat(result.getDeletedLibrarySetIds(), is(equalTo(List.of())));
+    assertThat(result.getDeletedLibrarySets(), is(0L));
+    verify(mongoTemplate, never()).remove(any(Query.class), eq(LibrarySet.class));
+  }
+
+  @Test
+  void testDeleteAllVersionsOfUnknownLibraryDeletesNothing() {
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class))).thenReturn(List.of());
+
+    LibraryDeleteResultDTO result =
+        cqlLibraryDeleteRepository.deleteAllVersionsByCqlLibraryName("Helper");
+
+    assertThat(result.getDeletedLibraries(), is(0L));
+    assertThat(result.getDeletedActionLogTargetIds(), is(equalTo(List.of())));
+    verify(mongoTemplate, never()).remove(any(Query.class), any(Class.class));
+  }
+}
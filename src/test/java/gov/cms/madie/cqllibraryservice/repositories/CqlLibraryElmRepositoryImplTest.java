@@ -0,0 +1,84 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import com.mongodb.client.result.UpdateResult;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import java.util.Set;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CqlLibraryElmRepositoryImplTest {
+
+  @Mock MongoTemplate mongoTemplate;
+
+  @InjectMocks CqlLibraryElmRepositoryImpl cqlLibraryElmRepository;
+
+  @Test
+  void testUpdateElmSetsOnlyElmFields() {
+    ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+    when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(CqlLibrary.class)))
+        .thenReturn(UpdateResult.acknowledged(1, 0L, null));
+    boolean output = cqlLibraryElmRepository.updateElm("LIBRARY_ID", "{}", "<xml/>", "3.10.0");
+    assertThat(output, is(false));
+    verify(mongoTemplate)
+        .updateFirst(any(Query.class), updateCaptor.capture(), eq(CqlLibrary.class));
+    Document set = (Document) updateCaptor.getValue().getUpdateObject().get("$set");
+    assertThat(set.keySet().size(), is(equalTo(3)));
+    assertThat(set.get("elmJson"), is(equalTo("{}")));
+    assertThat(set.get("elmXml"), is(equalTo("<xml/>")));
+    assertThat(set.get("elmTranslatorVersion"), is(equalTo("3.10.0")));
+  }
+
+  @Test
+  void testFindIdsElmTranslatedByReturnsMatchingIds() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class)))
+        .thenReturn(List.of(CqlLibrary.builder().id("LIBRARY_1").build()));
+    Set<String> output =
+        cqlLibraryElmRepository.findIdsElmTranslatedBy(List.of("LIBRARY_1", "LIBRARY_2"), "3.10.0");
+    assertThat(output, is(equalTo(Set.of("LIBRARY_1"))));
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(CqlLibrary.class));
+    Query query = queryCaptor.getValue();
+    assertThat(
+        query.getQueryObject().get("id"),
+        is(equalTo(new Document("$in", List.of("LIBRARY_1", "LIBRARY_2")))));
+    assertThat(query.getQueryObject().get("elmTranslatorVersion"), is(equalTo("3.10.0")));
+    assertThat(query.getFieldsObject(), is(equalTo(new Document("id", 1))));
+  }
+
+  @Test
+  void testSaveWithElmTranslatedByStampsElmInTheSave() {
+    CqlLibrary cqlLibrary = CqlLibrary.builder().draft(false).elmJson("{}").build();
+    Document document = new Document();
+    when(mongoTemplate.save(cqlLibrary))
+        .thenAnswer(
+            invocation ->
+                new CqlLibraryBeforeSaveCallback()
+                    .onBeforeSave(invocation.getArgument(0), document, "cqlLibrary"));
+
+    CqlLibrary output = cqlLibraryElmRepository.saveWithElmTranslatedBy(cqlLibrary, "3.10.0");
+
+    assertThat(output, is(equalTo(cqlLibrary)));
+    assertThat(document.get("elmTranslatorVersion"), is(equalTo("3.10.0")));
+    Document afterwards = new Document();
+    new CqlLibraryBeforeSaveCallback().onBeforeSave(cqlLibrary, afterwards, "cqlLibrary");
+    assertThat(afterwards.containsKey("elmTranslatorVersion"), is(false));
+  }
+}
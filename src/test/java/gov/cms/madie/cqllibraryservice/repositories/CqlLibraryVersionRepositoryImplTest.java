@@ -1,21 +1,30 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
+import gov.cms.madie.cqllibraryservice.utils.VersionKeyUtils;
 import gov.cms.madie.models.library.CqlLibrary;
 import gov.cms.madie.models.common.Version;
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.query.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,9 +34,21 @@ class CqlLibraryVersionRepositoryImplTest {
 
   @InjectMocks CqlLibraryVersionRepositoryImpl cqlLibraryVersionRepository;
 
+  private void givenMaxVersionKey(Document result) {
+    when(mongoTemplate.getCollectionName(CqlLibrary.class)).thenReturn("cqlLibrary");
+    when(mongoTemplate.findOne(any(Query.class), eq(Document.class), eq("cqlLibrary")))
+        .thenReturn(result);
+  }
+
+  private Query captureMaxVersionQuery() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).findOne(queryCaptor.capture(), eq(Document.class), eq("cqlLibrary"));
+    return queryCaptor.getValue();
+  }
+
   @Test
   void testFindMaxVersionByLibrarySetIdReturnsEmptyOptionalForNoResponse() {
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class))).thenReturn(null);
+    givenMaxVersionKey(null);
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxVersionByLibrarySetId("LIBRARY_SET_ID");
     assertThat(output.isEmpty(), is(true));
@@ -35,8 +56,7 @@ class CqlLibraryVersionRepositoryImplTest {
 
   @Test
   void testFindMaxVersionByLibrarySetIdReturnsEmptyOptionalForNullVersionResponse() {
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class)))
-        .thenReturn(CqlLibrary.builder().build());
+    givenMaxVersionKey(new Document());
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxVersionByLibrarySetId("LIBRARY_SET_ID");
     assertThat(output.isEmpty(), is(true));
@@ -45,17 +65,25 @@ class CqlLibraryVersionRepositoryImplTest {
   @Test
   void testFindMaxVersionByLibrarySetIdReturnsVersion() {
     Version version = Version.parse("1.2.000");
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class)))
-        .thenReturn(CqlLibrary.builder().version(version).build());
+    givenMaxVersionKey(new Document("versionKey", VersionKeyUtils.toKey(version)));
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxVersionByLibrarySetId("LIBRARY_SET_ID");
     assertThat(output.isEmpty(), is(false));
     assertThat(output.get(), is(equalTo(version)));
+
+    Query query = captureMaxVersionQuery();
+    assertThat(
+        query.getQueryObject(),
+        is(equalTo(new Document("librarySetId", "LIBRARY_SET_ID").append("draft", false))));
+    assertThat(query.getSortObject(), is(equalTo(new Document("versionKey", -1))));
+    assertThat(
+        query.getFieldsObject(), is(equalTo(new Document("versionKey", 1).append("_id", 0))));
+    assertThat(query.getLimit(), is(1));
   }
 
   @Test
   void testFindMaxMinorVersionByLibrarySetIdAndVersionMajorReturnsEmptyOptionalForNoResponse() {
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class))).thenReturn(null);
+    givenMaxVersionKey(null);
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxMinorVersionByLibrarySetIdAndVersionMajor(
             "LIBRARY_SET_ID", 1);
@@ -65,8 +93,7 @@ class CqlLibraryVersionRepositoryImplTest {
   @Test
   void
       testFindMaxMinorVersionByLibrarySetIdAndVersionMajorReturnsEmptyOptionalForNullVersionResponse() {
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class)))
-        .thenReturn(CqlLibrary.builder().build());
+    givenMaxVersionKey(new Document());
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxMinorVersionByLibrarySetIdAndVersionMajor(
             "LIBRARY_SET_ID", 1);
@@ -76,12 +103,114 @@ class CqlLibraryVersionRepositoryImplTest {
   @Test
   void testFindMaxMinorVersionByLibrarySetIdAndVersionMajorReturnsVersion() {
     Version version = Version.parse("1.2.000");
-    when(mongoTemplate.findOne(any(Query.class), any(Class.class)))
-        .thenReturn(CqlLibrary.builder().version(version).build());
+    givenMaxVersionKey(new Document("versionKey", VersionKeyUtils.toKey(version)));
     Optional<Version> output =
         cqlLibraryVersionRepository.findMaxMinorVersionByLibrarySetIdAndVersionMajor(
             "LIBRARY_SET_ID", 1);
     assertThat(output.isEmpty(), is(false));
     assertThat(output.get(), is(equalTo(version)));
+
+    Document versionKeyRange =
+        captureMaxVersionQuery().getQueryObject().get("versionKey", Document.class);
+    assertThat(versionKeyRange.get("$gte"), is(equalTo(VersionKeyUtils.getMajorLowerBound(1))));
+    assertThat(versionKeyRange.get("$lt"), is(equalTo(VersionKeyUtils.getMajorLowerBound(2))));
+  }
+
+  @Test
+  void testFindVersionedLibrariesQueriesAllLibrariesAtOnce() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    CqlLibrary helpers = CqlLibrary.builder().cqlLibraryName("FHIRHelpers").build();
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class))).thenReturn(List.of(helpers));
+
+    List<CqlLibrary> output =
+        cqlLibraryVersionRepository.findVersionedLibraries(
+            List.of(
+                VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.1.000").build(),
+                VersionedLibraryRequest.builder()
+                    .name("QICoreCommon")
+                    .version("1.0.000")
+                    .model("QI-Core v4.1.1")
+                    .build()));
+
+    assertThat(output, is(equalTo(List.of(helpers))));
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(CqlLibrary.class));
+    Document queryObject = queryCaptor.getValue().getQueryObject();
+    assertThat(queryObject.get("draft"), is(false));
+    List<?> libraries = (List<?>) queryObject.get("$or");
+    assertThat(libraries.size(), is(2));
+    Document first = (Document) libraries.get(0);
+    assertThat(first.get("cqlLibraryName"), is(equalTo("FHIRHelpers")));
+    assertThat(first.containsKey("model"), is(false));
+    Document second = (Document) libraries.get(1);
+    assertThat(second.get("version"), is(equalTo(Version.parse("1.0.000"))));
+    assertThat(second.get("model"), is(equalTo("QI-Core v4.1.1")));
+  }
+
+  @Test
+  void testFindVersionedLibrariesWithElmTranslatedByLeavesOutStaleElm() {
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    CqlLibrary helpers = CqlLibrary.builder().id("lib-1").build();
+    when(mongoTemplate.aggregate(
+            any(Aggregation.class), eq(CqlLibrary.class), eq(CqlLibrary.class)))
+        .thenReturn(new AggregationResults<>(List.of(helpers), new Document()));
+
+    List<CqlLibrary> output =
+        cqlLibraryVersionRepository.findVersionedLibrariesWithElmTranslatedBy(
+            List.of(
+                VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.1.000").build()),
+            "3.10.0");
+
+    assertThat(output, is(equalTo(List.of(helpers))));
+    verify(mongoTemplate)
+        .aggregate(aggregationCaptor.capture(), eq(CqlLibrary.class), eq(CqlLibrary.class));
+    List<Document> pipeline = aggregationCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    Document match = pipeline.get(0).get("$match", Document.class);
+    assertThat(match.get("draft"), is(false));
+    Document addFields = pipeline.get(1).get("$addFields", Document.class);
+    assertThat(
+        addFields.get("elmJson"),
+        is(
+            equalTo(
+                new Document(
+                    "$cond",
+                    new Document(
+                            "if", new Document("$eq", List.of("$elmTranslatorVersion", "3.10.0")))
+                        .append("then", "$elmJson")
+                        .append("else", "$$REMOVE")))));
+    assertThat(addFields.containsKey("elmXml"), is(true));
+  }
+
+  @Test
+  void testFindVersionedLibrariesByLibrarySetIdReadsOnlyRequestedFields() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    CqlLibrary library = CqlLibrary.builder().id("lib-1").build();
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class))).thenReturn(List.of(library));
+
+    List<CqlLibrary> output =
+        cqlLibraryVersionRepository.findVersionedLibrariesByLibrarySetId(
+            "LIBRARY_SET_ID", List.of("id", "version"));
+
+    assertThat(output, is(equalTo(List.of(library))));
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(CqlLibrary.class));
+    Query query = queryCaptor.getValue();
+    assertThat(
+        query.getQueryObject(),
+        is(
+            equalTo(
+                new Document("librarySetId", "LIBRARY_SET_ID")
+                    .append("draft", false)
+                    .append("active", true))));
+    assertThat(query.getFieldsObject(), is(equalTo(new Document("id", 1).append("version", 1))));
+  }
+
+  @Test
+  void testFindVersionedLibrariesByLibrarySetIdReadsAllFieldsWithoutSelection() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    when(mongoTemplate.find(any(Query.class), eq(CqlLibrary.class))).thenReturn(List.of());
+
+    cqlLibraryVersionRepository.findVersionedLibrariesByLibrarySetId("LIBRARY_SET_ID", null);
+
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(CqlLibrary.class));
+    assertThat(queryCaptor.getValue().getFieldsObject().isEmpty(), is(true));
   }
 }
@@ -1,8 +1,13 @@
 package gov.cms.madie.cqllibraryservice.repositories;
 
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCursor;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.dto.LibraryNameMatch;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
 import gov.cms.madie.models.common.Version;
-import gov.cms.madie.models.dto.LibraryUsage;
+import gov.cms.madie.models.library.CqlLibrary;
 import gov.cms.madie.models.library.LibrarySet;
 import org.bson.Document;
 
@@ -10,21 +15,43 @@ import org.junit.jupiter.api.BeforeEach;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.LimitOperation;
+import org.springframework.data.mongodb.core.aggregation.LookupOperation;
+import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.SkipOperation;
+import org.springframework.data.mongodb.core.aggregation.SortOperation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -98,31 +125,336 @@ public class LibraryAclRepositoryImplTest {
     library5.setLibrarySet(librarySet2);
   }
 
+  @Test
+  void testFindCqlLibraryWithLibrarySetById() {
+    Document librarySetDocument =
+        new Document("_id", "s1").append("librarySetId", "set-1").append("owner", "p1");
+    Document libraryDocument =
+        new Document("_id", "lib-1")
+            .append("cqlLibraryName", "TestLib")
+            .append("librarySetId", "set-1")
+            .append("librarySet", List.of(librarySetDocument));
+    CqlLibrary library =
+        CqlLibrary.builder().id("lib-1").cqlLibraryName("TestLib").librarySetId("set-1").build();
+    LibrarySet librarySet = LibrarySet.builder().librarySetId("set-1").owner("p1").build();
+    MongoConverter converter = mock(MongoConverter.class);
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(List.of(libraryDocument), new Document()));
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(converter.read(eq(CqlLibrary.class), any(Document.class))).thenReturn(library);
+    when(converter.read(LibrarySet.class, librarySetDocument)).thenReturn(librarySet);
+
+    Optional<CqlLibrary> cqlLibrary =
+        libraryAclRepository.findCqlLibraryWithLibrarySetById("lib-1", null);
+
+    assertThat(cqlLibrary.isPresent(), is(true));
+    assertThat(cqlLibrary.get().getId(), is(equalTo("lib-1")));
+    assertThat(cqlLibrary.get().getLibrarySet(), is(equalTo(librarySet)));
+    // the joined array is not handed to the library mapping
+    ArgumentCaptor<Document> documentCaptor = ArgumentCaptor.forClass(Document.class);
+    verify(converter).read(eq(CqlLibrary.class), documentCaptor.capture());
+    assertThat(documentCaptor.getValue().containsKey("librarySet"), is(false));
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregate(aggregationCaptor.capture(), eq(CqlLibrary.class), eq(Document.class));
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(2)));
+    assertThat(operations.get(0), is(instanceOf(MatchOperation.class)));
+    assertThat(operations.get(1), is(instanceOf(LookupOperation.class)));
+  }
+
+  @Test
+  void testFindCqlLibraryWithLibrarySetByIdWithoutLibrarySet() {
+    Document libraryDocument =
+        new Document("_id", "lib-1")
+            .append("librarySetId", "set-1")
+            .append("librarySet", List.of());
+    MongoConverter converter = mock(MongoConverter.class);
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(List.of(libraryDocument), new Document()));
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(converter.read(eq(CqlLibrary.class), any(Document.class)))
+        .thenReturn(CqlLibrary.builder().id("lib-1").build());
+
+    Optional<CqlLibrary> cqlLibrary =
+        libraryAclRepository.findCqlLibraryWithLibrarySetById("lib-1", null);
+
+    assertThat(cqlLibrary.isPresent(), is(true));
+    assertThat(cqlLibrary.get().getLibrarySet(), is(nullValue()));
+    verify(converter, never()).read(eq(LibrarySet.class), any(Document.class));
+  }
+
+  @Test
+  void testFindCqlLibraryWithLibrarySetByIdProjectsRequestedFields() {
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+    libraryAclRepository.findCqlLibraryWithLibrarySetById("lib-1", List.of("id", "version"));
+
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregate(aggregationCaptor.capture(), eq(CqlLibrary.class), eq(Document.class));
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(3)));
+    assertThat(operations.get(1), is(instanceOf(ProjectionOperation.class)));
+    // the set id is projected for the join even though it was not requested
+    Document project =
+        operations.get(1).toDocument(Aggregation.DEFAULT_CONTEXT).get("$project", Document.class);
+    assertThat(project.keySet(), is(equalTo(Set.of("id", "version", "librarySetId"))));
+    assertThat(operations.get(2), is(instanceOf(LookupOperation.class)));
+  }
+
+  @Test
+  void testFindCqlLibrarySummariesWithLibrarySetByIds() {
+    Document librarySetDocument = new Document("librarySetId", "set-1").append("owner", "p1");
+    Document libraryDocument =
+        new Document("_id", "lib-1")
+            .append("cqlLibraryName", "TestLib")
+            .append("librarySetId", "set-1")
+            .append("librarySet", List.of(librarySetDocument));
+    CqlLibrary library = CqlLibrary.builder().id("lib-1").cqlLibraryName("TestLib").build();
+    LibrarySet librarySet = LibrarySet.builder().librarySetId("set-1").owner("p1").build();
+    MongoConverter converter = mock(MongoConverter.class);
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(List.of(libraryDocument), new Document()));
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(converter.read(eq(CqlLibrary.class), any(Document.class))).thenReturn(library);
+    when(converter.read(LibrarySet.class, librarySetDocument)).thenReturn(librarySet);
+
+    List<CqlLibrary> libraries =
+        libraryAclRepository.findCqlLibrarySummariesWithLibrarySetByIds(List.of("lib-1", "lib-2"));
+
+    assertThat(libraries.size(), is(equalTo(1)));
+    assertThat(libraries.get(0).getLibrarySet(), is(equalTo(librarySet)));
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregate(aggregationCaptor.capture(), eq(CqlLibrary.class), eq(Document.class));
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(3)));
+    Document match =
+        operations.get(0).toDocument(Aggregation.DEFAULT_CONTEXT).get("$match", Document.class);
+    assertThat(match.get("id", Document.class).get("$in"), is(equalTo(List.of("lib-1", "lib-2"))));
+    assertThat(operations.get(1), is(instanceOf(ProjectionOperation.class)));
+    assertThat(operations.get(2), is(instanceOf(LookupOperation.class)));
+  }
+
+  @Test
+  void testFindCqlLibrarySummariesWithLibrarySetByIdsWithoutIds() {
+    assertThat(
+        libraryAclRepository.findCqlLibrarySummariesWithLibrarySetByIds(List.of()).isEmpty(),
+        is(true));
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  @Test
+  void testFindCqlLibraryWithLibrarySetByIdNotFound() {
+    when(mongoTemplate.aggregate(any(Aggregation.class), eq(CqlLibrary.class), eq(Document.class)))
+        .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+    assertThat(
+        libraryAclRepository.findCqlLibraryWithLibrarySetById("lib-1", null).isEmpty(), is(true));
+  }
+
   @Test
   public void testfindAllMyLibraries() {
+    LibrarySet librarySet = LibrarySet.builder().owner("p1").librarySetId("1-1").build();
+    LibrarySet sharedLibrarySet = LibrarySet.builder().owner("p2").librarySetId("2-2").build();
+    library1.setLibrarySet(null);
+    library2.setLibrarySet(null);
     AggregationResults allResults =
-        new AggregationResults<>(List.of(library1, library2, library3), new Document());
+        new AggregationResults<>(List.of(library1, library2), new Document());
 
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(List.of(librarySet, sharedLibrarySet));
     when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
         .thenReturn(allResults);
 
     List<LibraryListDTO> list = libraryAclRepository.findAllLibrariesByUser("p1");
+    assertEquals(list.size(), 2);
+    assertThat(list.get(0).getLibrarySet(), is(equalTo(librarySet)));
+    assertThat(list.get(1).getLibrarySet(), is(equalTo(sharedLibrarySet)));
+
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(LibrarySet.class));
+    assertThat(queryCaptor.getValue().getCollation().isPresent(), is(true));
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregationCaptor.capture(), (Class<?>) any(), any());
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(3)));
+    assertThat(
+        operations.get(0).toDocument(Aggregation.DEFAULT_CONTEXT).toJson(),
+        containsString("\"librarySetId\": {\"$in\""));
+    // listed in creation order, as before the library sets were resolved first
+    assertThat(
+        operations.get(1).toDocument(Aggregation.DEFAULT_CONTEXT),
+        is(equalTo(new Document("$sort", new Document("id", 1)))));
+  }
+
+  @Test
+  public void testfindAllMyLibrariesWithoutAccessibleLibrarySets() {
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class))).thenReturn(List.of());
+
+    List<LibraryListDTO> list = libraryAclRepository.findAllLibrariesByUser("p1");
+    assertThat(list.isEmpty(), is(true));
+    verify(mongoTemplate, never()).aggregate(any(Aggregation.class), (Class<?>) any(), any());
+  }
+
+  @Test
+  public void testfindAllLibraries() {
+    AggregationResults allResults =
+        new AggregationResults<>(List.of(library1, library2, library3), new Document());
+    when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
+        .thenReturn(allResults);
+
+    List<LibraryListDTO> list = libraryAclRepository.findAllLibrariesByUser("");
     assertEquals(list.size(), 3);
+    verify(mongoTemplate, never()).find(any(Query.class), eq(LibrarySet.class));
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregationCaptor.capture(), (Class<?>) any(), any());
+    assertThat(
+        aggregationCaptor
+            .getValue()
+            .getPipeline()
+            .getOperations()
+            .get(0)
+            .toDocument(Aggregation.DEFAULT_CONTEXT),
+        is(equalTo(new Document("$sort", new Document("id", 1)))));
   }
 
   @Test
-  void testFindLibraryUsageByLibraryName() {
-    String libraryName = "test";
-    String owner = "john";
-    LibraryUsage usage = LibraryUsage.builder().name(libraryName).owner(owner).build();
-    AggregationResults result = new AggregationResults<>(List.of(usage), new Document());
+  public void testStreamAllMyLibrariesAttachesLibrarySets() {
+    LibrarySet librarySet = LibrarySet.builder().owner("p1").librarySetId("1-1").build();
+    library1.setLibrarySet(null);
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(List.of(librarySet));
+    when(mongoTemplate.aggregateStream(
+            any(Aggregation.class), eq(CqlLibrary.class), eq(LibraryListDTO.class)))
+        .thenReturn(Stream.of(library1));
+
+    List<LibraryListDTO> list = libraryAclRepository.streamAllLibrariesByUser("p1").toList();
+    assertThat(list.size(), is(equalTo(1)));
+    assertThat(list.get(0).getLibrarySet(), is(equalTo(librarySet)));
+  }
+
+  @Test
+  public void testStreamAllLibraries() {
+    when(mongoTemplate.aggregateStream(
+            any(Aggregation.class), eq(CqlLibrary.class), eq(LibraryListDTO.class)))
+        .thenReturn(Stream.of(library1, library2));
+
+    List<LibraryListDTO> list = libraryAclRepository.streamAllLibrariesByUser(null).toList();
+    assertThat(list.size(), is(equalTo(2)));
+    verify(mongoTemplate, never()).find(any(Query.class), eq(LibrarySet.class));
+  }
+
+  @Test
+  public void testStreamAllMyLibrariesWithoutAccessibleLibrarySets() {
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class))).thenReturn(List.of());
+
+    assertThat(libraryAclRepository.streamAllLibrariesByUser("p1").count(), is(equalTo(0L)));
+    verify(mongoTemplate, never())
+        .aggregateStream(any(Aggregation.class), eq(CqlLibrary.class), eq(LibraryListDTO.class));
+  }
+
+  @Test
+  void testStreamLibrariesByNameAndModelOrderByNameAscAndVersionDsc() {
+    when(mongoTemplate.aggregateStream(
+            any(Aggregation.class), eq(CqlLibrary.class), eq(LibraryListDTO.class)))
+        .thenReturn(Stream.of(library3, library4));
+
+    List<LibraryListDTO> libraries =
+        libraryAclRepository
+            .streamLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
+                search("library", LibraryNameMatch.CONTAINS))
+            .toList();
+    assertThat(libraries.size(), is(equalTo(2)));
+
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregateStream(
+            aggregationCaptor.capture(), eq(CqlLibrary.class), eq(LibraryListDTO.class));
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.get(0), is(instanceOf(MatchOperation.class)));
+    assertThat(operations.get(1), is(instanceOf(SortOperation.class)));
+    assertThat(operations.get(2), is(instanceOf(SkipOperation.class)));
+    assertThat(operations.get(3), is(instanceOf(LimitOperation.class)));
+    assertThat(operations.get(4), is(instanceOf(LookupOperation.class)));
+  }
 
+  private LibrarySearchCriteria search(String name, LibraryNameMatch match) {
+    return LibrarySearchCriteria.builder()
+        .name(name)
+        .model("QDM")
+        .match(match)
+        .page(2)
+        .limit(10)
+        .build();
+  }
+
+  private List<Document> getSearchPipeline(LibrarySearchCriteria criteria) {
     when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
-        .thenReturn(result);
-    List<LibraryUsage> libraryUsages = libraryAclRepository.findLibraryUsageByLibraryName("");
-    assertThat(libraryUsages.size(), is(equalTo(1)));
-    assertThat(libraryUsages.get(0).getName(), is(equalTo(libraryName)));
-    assertThat(libraryUsages.get(0).getOwner(), is(equalTo(owner)));
+        .thenReturn(new AggregationResults<>(List.of(), new Document()));
+    libraryAclRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria);
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate)
+        .aggregate(aggregationCaptor.capture(), eq(CqlLibrary.class), eq(LibraryListDTO.class));
+    return aggregationCaptor.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+  }
+
+  /** The name filter is the first of the match conditions. */
+  private Document getNameFilter(List<Document> pipeline) {
+    Document match = pipeline.get(0).get("$match", Document.class);
+    return (Document) match.getList("$and", Document.class).get(0);
+  }
+
+  private String getRegex(Document filter) {
+    return filter.get("cqlLibraryNameLower", Pattern.class).pattern();
+  }
+
+  @Test
+  void testFindLibrariesByNamePrefixUsesQuotedAnchoredLowerCaseName() {
+    List<Document> pipeline = getSearchPipeline(search("Lib.*(", LibraryNameMatch.PREFIX));
+    Document nameFilter = getNameFilter(pipeline);
+    assertThat(getRegex(nameFilter), is(equalTo("^\\Qlib.*(\\E")));
+    assertThat(nameFilter.containsKey("cqlLibraryNameTrigrams"), is(false));
+    assertThat(pipeline.get(2), is(equalTo(new Document("$skip", 20L))));
+    assertThat(pipeline.get(3), is(equalTo(new Document("$limit", 10L))));
+  }
+
+  @Test
+  void testFindLibrariesByNameWithoutLimitReturnsAllMatches() {
+    List<Document> pipeline =
+        getSearchPipeline(
+            search("lib", LibraryNameMatch.PREFIX).toBuilder().page(0).limit(null).build());
+    assertThat(pipeline.get(2).containsKey("$lookup"), is(true));
+    assertThat(pipeline.stream().anyMatch(stage -> stage.containsKey("$limit")), is(false));
+    assertThat(pipeline.stream().anyMatch(stage -> stage.containsKey("$skip")), is(false));
+  }
+
+  @Test
+  void testFindLibrariesByNameContainingNarrowsByTrigrams() {
+    Document nameFilter =
+        getNameFilter(getSearchPipeline(search("HeLpEr", LibraryNameMatch.CONTAINS)));
+    List<Document> conditions = nameFilter.getList("$and", Document.class);
+    assertThat(
+        conditions.get(0),
+        is(
+            equalTo(
+                new Document(
+                    "cqlLibraryNameTrigrams",
+                    new Document("$all", List.of("hel", "elp", "lpe", "per"))))));
+    assertThat(getRegex(conditions.get(1)), is(equalTo("\\Qhelper\\E")));
+  }
+
+  @Test
+  void testFindLibrariesByShortNameContainingSkipsTrigrams() {
+    Document nameFilter = getNameFilter(getSearchPipeline(search("he", LibraryNameMatch.CONTAINS)));
+    assertThat(getRegex(nameFilter), is(equalTo("\\Qhe\\E")));
   }
 
   @Test
@@ -136,11 +468,127 @@ public class LibraryAclRepositoryImplTest {
         .thenReturn(result);
     List<LibraryListDTO> libraries =
         libraryAclRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
-            libraryName, model);
+            search(libraryName, LibraryNameMatch.CONTAINS).toBuilder().model(model).build());
     assertThat(libraries.size(), is(equalTo(2)));
     assertThat(libraries.get(0).getCqlLibraryName(), is(equalTo(library1.getCqlLibraryName())));
     assertThat(
         libraries.get(0).getLibrarySet().getOwner(),
         is(equalTo(library1.getLibrarySet().getOwner())));
   }
+
+  @Test
+  void testFindLibrariesPageFiltersBeforeJoiningLibrarySets() {
+    AggregationResults result =
+        new AggregationResults<>(List.of(library3, library4), new Document());
+    when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
+        .thenReturn(result);
+
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder()
+            .model("QDM")
+            .draft(false)
+            .namePrefix("lib")
+            .sort(LibraryListSort.NAME)
+            .after(
+                LibraryListCursor.builder().sort(LibraryListSort.NAME).value("a").id("2").build())
+            .limit(3)
+            .build();
+    List<LibraryListDTO> libraries = libraryAclRepository.findLibrariesPage(criteria);
+    assertThat(libraries.size(), is(equalTo(2)));
+
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregationCaptor.capture(), (Class<?>) any(), any());
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(6)));
+    assertThat(operations.get(0), is(instanceOf(MatchOperation.class)));
+    assertThat(operations.get(1), is(instanceOf(SortOperation.class)));
+    assertThat(operations.get(2), is(instanceOf(LimitOperation.class)));
+    assertThat(operations.get(3), is(instanceOf(LookupOperation.class)));
+    String match = operations.get(0).toDocument(Aggregation.DEFAULT_CONTEXT).toJson();
+    assertThat(match, containsString("\"model\": \"QDM\""));
+    assertThat(match, containsString("\"draft\": false"));
+    assertThat(match, containsString("^\\\\Qlib\\\\E"));
+    assertThat(match, containsString("\"$gt\": \"a\""));
+  }
+
+  @Test
+  void testFindLibrariesPageQuotesNamePrefixEndingTheQuote() {
+    when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
+        .thenReturn(new AggregationResults<>(List.of(), new Document()));
+
+    libraryAclRepository.findLibrariesPage(
+        LibraryListCriteria.builder()
+            .namePrefix("lib\\E.*(a+)+$")
+            .sort(LibraryListSort.NAME)
+            .limit(3)
+            .build());
+
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregationCaptor.capture(), (Class<?>) any(), any());
+    Document match =
+        aggregationCaptor
+            .getValue()
+            .getPipeline()
+            .getOperations()
+            .get(0)
+            .toDocument(Aggregation.DEFAULT_CONTEXT)
+            .get("$match", Document.class);
+    Pattern prefix =
+        Pattern.compile(
+            match
+                .getList("$and", Document.class)
+                .get(0)
+                .get("cqlLibraryName", Pattern.class)
+                .pattern());
+    assertThat(prefix.matcher("lib\\E.*(a+)+$ library").find(), is(true));
+    assertThat(prefix.matcher("libEaaa").find(), is(false));
+    assertThat(prefix.matcher("lib\\E").find(), is(false));
+  }
+
+  @Test
+  void testFindLibrariesPageForUserRestrictsToAccessibleLibrarySets() {
+    AggregationResults result = new AggregationResults<>(List.of(library1), new Document());
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(List.of(LibrarySet.builder().owner("p1").librarySetId("1-1").build()));
+    when(mongoTemplate.aggregate(any(Aggregation.class), (Class<?>) any(), any()))
+        .thenReturn(result);
+
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder()
+            .userId("p1")
+            .sort(LibraryListSort.CREATED_AT)
+            .after(
+                LibraryListCursor.builder()
+                    .sort(LibraryListSort.CREATED_AT)
+                    .value("2024-01-01T00:00:00Z")
+                    .id("2")
+                    .build())
+            .limit(2)
+            .build();
+    List<LibraryListDTO> libraries = libraryAclRepository.findLibrariesPage(criteria);
+    assertThat(libraries.size(), is(equalTo(1)));
+
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    verify(mongoTemplate).aggregate(aggregationCaptor.capture(), (Class<?>) any(), any());
+    List<AggregationOperation> operations =
+        aggregationCaptor.getValue().getPipeline().getOperations();
+    assertThat(operations.size(), is(equalTo(6)));
+    assertThat(operations.get(2), is(instanceOf(LimitOperation.class)));
+    assertThat(operations.get(3), is(instanceOf(LookupOperation.class)));
+    String match = operations.get(0).toDocument(Aggregation.DEFAULT_CONTEXT).toString();
+    assertThat(match, containsString("$lt"));
+    assertThat(match, containsString("createdAt=null"));
+    assertThat(match, containsString("librarySetId=Document{{$in=[1-1]}}"));
+  }
+
+  @Test
+  void testFindLibrariesPageForUserWithoutAccessibleLibrarySets() {
+    when(mongoTemplate.find(any(Query.class), eq(LibrarySet.class))).thenReturn(List.of());
+
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().userId("p1").sort(LibraryListSort.NAME).limit(2).build();
+    assertThat(libraryAclRepository.findLibrariesPage(criteria).isEmpty(), is(true));
+    verify(mongoTemplate, never()).aggregate(any(Aggregation.class), (Class<?>) any(), any());
+  }
 }
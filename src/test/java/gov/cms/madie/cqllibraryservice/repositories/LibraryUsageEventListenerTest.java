@@ -0,0 +1,75 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.List;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryUsageEventListenerTest {
+
+  @Mock CqlLibraryRepository cqlLibraryRepository;
+
+  private LibraryUsageEventListener listener;
+
+  @BeforeEach
+  void setUp() {
+    listener = new LibraryUsageEventListener(cqlLibraryRepository);
+  }
+
+  @SuppressWarnings("unchecked")
+  private AfterDeleteEvent<Object> deleteEvent(Document query, Class<?> type) {
+    return new AfterDeleteEvent<>(query, (Class<Object>) type, "collection");
+  }
+
+  @Test
+  void testSavedLibraryReplacesUsage() {
+    CqlLibrary library = CqlLibrary.builder().id("LIBRARY_ID").build();
+    listener.onAfterSave(new AfterSaveEvent<>(library, new Document(), "cqlLibrary"));
+    verify(cqlLibraryRepository).replaceLibraryUsage(library);
+  }
+
+  @Test
+  void testSavedLibrarySetUpdatesOwner() {
+    LibrarySet librarySet = LibrarySet.builder().librarySetId("SET_ID").owner("john").build();
+    listener.onAfterSave(new AfterSaveEvent<>(librarySet, new Document(), "librarySet"));
+    verify(cqlLibraryRepository).updateLibraryUsageOwner("SET_ID", "john");
+  }
+
+  @Test
+  void testOtherSavesAreIgnored() {
+    listener.onAfterSave(new AfterSaveEvent<>("other", new Document(), "other"));
+    verifyNoInteractions(cqlLibraryRepository);
+  }
+
+  @Test
+  void testDeletedLibraryRemovesUsage() {
+    ObjectId id = new ObjectId();
+    listener.onAfterDelete(deleteEvent(new Document("_id", id), CqlLibrary.class));
+    verify(cqlLibraryRepository).deleteLibraryUsage(List.of(id.toString()));
+  }
+
+  @Test
+  void testDeletedLibrariesByIdsRemoveUsage() {
+    Document query = new Document("_id", new Document("$in", List.of("ID_1", "ID_2")));
+    listener.onAfterDelete(deleteEvent(query, CqlLibrary.class));
+    verify(cqlLibraryRepository).deleteLibraryUsage(List.of("ID_1", "ID_2"));
+  }
+
+  @Test
+  void testDeletesOfOtherTypesAreIgnored() {
+    listener.onAfterDelete(deleteEvent(new Document("_id", "SET_ID"), LibrarySet.class));
+    verifyNoInteractions(cqlLibraryRepository);
+  }
+}
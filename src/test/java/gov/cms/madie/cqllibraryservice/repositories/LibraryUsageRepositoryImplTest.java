@@ -0,0 +1,229 @@
+package gov.cms.madie.cqllibraryservice.repositories;
+
+import gov.cms.madie.cqllibraryservice.dto.LibraryUsageEntry;
+import gov.cms.madie.models.common.IncludedLibrary;
+import gov.cms.madie.models.common.Version;
+import gov.cms.madie.models.dto.LibraryUsage;
+import gov.cms.madie.models.library.CqlLibrary;
+import gov.cms.madie.models.library.LibrarySet;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.GraphLookupOperation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryUsageRepositoryImplTest {
+
+  @Mock MongoTemplate mongoTemplate;
+
+  @InjectMocks LibraryUsageRepositoryImpl libraryUsageRepository;
+
+  private CqlLibrary library(boolean active, IncludedLibrary... includes) {
+    return CqlLibrary.builder()
+        .id("LIBRARY_ID")
+        .cqlLibraryName("Wrapper")
+        .version(Version.parse("1.2.000"))
+        .librarySetId("SET_ID")
+        .active(active)
+        .includedLibraries(List.of(includes))
+        .build();
+  }
+
+  @Test
+  void testToLibraryUsageEntriesOnePerIncludedName() {
+    CqlLibrary library =
+        library(
+            true,
+            IncludedLibrary.builder().name("Helper").version("1.0.000").build(),
+            IncludedLibrary.builder().name("Helper").version("2.0.000").build(),
+            IncludedLibrary.builder().name("Common").version("3.0.000").build());
+
+    List<LibraryUsageEntry> entries =
+        LibraryUsageRepositoryImpl.toLibraryUsageEntries(library, "john");
+
+    assertThat(entries.size(), is(equalTo(2)));
+    LibraryUsageEntry helper =
+        entries.stream().filter(e -> "Helper".equals(e.getLibraryName())).findFirst().get();
+    assertThat(helper.getId(), is(equalTo("LIBRARY_ID:Helper")));
+    assertThat(helper.getLibraryVersion(), is(equalTo("1.0.000")));
+    assertThat(helper.getUsedById(), is(equalTo("LIBRARY_ID")));
+    assertThat(helper.getUsedByName(), is(equalTo("Wrapper")));
+    assertThat(helper.getUsedByVersion(), is(equalTo("1.2.000")));
+    assertThat(helper.getUsedByLibrarySetId(), is(equalTo("SET_ID")));
+    assertThat(helper.getOwner(), is(equalTo("john")));
+  }
+
+  @Test
+  void testToLibraryUsageEntriesEmptyForInactiveLibrary() {
+    CqlLibrary library = library(false, IncludedLibrary.builder().name("Helper").build());
+    assertThat(
+        LibraryUsageRepositoryImpl.toLibraryUsageEntries(library, "john").isEmpty(), is(true));
+  }
+
+  @Test
+  void testReplaceLibraryUsage() {
+    when(mongoTemplate.findOne(any(Query.class), eq(LibrarySet.class)))
+        .thenReturn(LibrarySet.builder().librarySetId("SET_ID").owner("john").build());
+    BulkOperations bulkOps = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, LibraryUsageEntry.class))
+        .thenReturn(bulkOps);
+    ArgumentCaptor<Query> replaceCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<LibraryUsageEntry> entryCaptor =
+        ArgumentCaptor.forClass(LibraryUsageEntry.class);
+    ArgumentCaptor<FindAndReplaceOptions> optionsCaptor =
+        ArgumentCaptor.forClass(FindAndReplaceOptions.class);
+    ArgumentCaptor<Query> removeCaptor = ArgumentCaptor.forClass(Query.class);
+
+    libraryUsageRepository.replaceLibraryUsage(
+        library(true, IncludedLibrary.builder().name("Helper").version("1.0.000").build()));
+
+    verify(bulkOps)
+        .replaceOne(replaceCaptor.capture(), entryCaptor.capture(), optionsCaptor.capture());
+    verify(bulkOps).execute();
+    assertThat(
+        replaceCaptor.getValue().getQueryObject(),
+        is(equalTo(new Document("id", "LIBRARY_ID:Helper"))));
+    assertThat(entryCaptor.getValue().getOwner(), is(equalTo("john")));
+    assertThat(optionsCaptor.getValue().isUpsert(), is(true));
+    // entries no longer included are removed once the current ones are in place
+    verify(mongoTemplate).remove(removeCaptor.capture(), eq(LibraryUsageEntry.class));
+    assertThat(
+        removeCaptor.getValue().getQueryObject(),
+        is(
+            equalTo(
+                new Document("usedById", "LIBRARY_ID")
+                    .append("id", new Document("$nin", List.of("LIBRARY_ID:Helper"))))));
+    verify(mongoTemplate, never()).insertAll(anyList());
+  }
+
+  @Test
+  void testReplaceLibraryUsageOnlyRemovesForInactiveLibrary() {
+    ArgumentCaptor<Query> removeCaptor = ArgumentCaptor.forClass(Query.class);
+
+    libraryUsageRepository.replaceLibraryUsage(
+        library(false, IncludedLibrary.builder().name("Helper").build()));
+
+    verify(mongoTemplate).remove(removeCaptor.capture(), eq(LibraryUsageEntry.class));
+    assertThat(
+        removeCaptor.getValue().getQueryObject(),
+        is(
+            equalTo(
+                new Document("usedById", "LIBRARY_ID")
+                    .append("id", new Document("$nin", List.of())))));
+    verify(mongoTemplate, never()).findOne(any(Query.class), eq(LibrarySet.class));
+    verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), any(Class.class));
+  }
+
+  @Test
+  void testDeleteLibraryUsage() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    libraryUsageRepository.deleteLibraryUsage(List.of("ID_1", "ID_2"));
+    verify(mongoTemplate).remove(queryCaptor.capture(), eq(LibraryUsageEntry.class));
+    assertThat(
+        queryCaptor.getValue().getQueryObject(),
+        is(equalTo(new Document("usedById", new Document("$in", List.of("ID_1", "ID_2"))))));
+  }
+
+  @Test
+  void testDeleteLibraryUsageSkipsEmptyIds() {
+    libraryUsageRepository.deleteLibraryUsage(List.of());
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  @Test
+  void testUpdateLibraryUsageOwner() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+    libraryUsageRepository.updateLibraryUsageOwner("SET_ID", "jane");
+    verify(mongoTemplate)
+        .updateMulti(queryCaptor.capture(), updateCaptor.capture(), eq(LibraryUsageEntry.class));
+    assertThat(queryCaptor.getValue().getQueryObject().get("usedByLibrarySetId"), is("SET_ID"));
+    assertThat(
+        updateCaptor.getValue().getUpdateObject(),
+        is(equalTo(new Document("$set", new Document("owner", "jane")))));
+  }
+
+  @Test
+  void testFindLibraryUsageByLibraryName() {
+    ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+    when(mongoTemplate.find(any(Query.class), eq(LibraryUsageEntry.class)))
+        .thenReturn(
+            List.of(
+                LibraryUsageEntry.builder()
+                    .usedByName("Wrapper")
+                    .usedByVersion("1.2.000")
+                    .owner("john")
+                    .build()));
+
+    List<LibraryUsage> usages = libraryUsageRepository.findLibraryUsageByLibraryName("Helper");
+
+    assertThat(
+        usages,
+        is(
+            equalTo(
+                List.of(
+                    LibraryUsage.builder()
+                        .name("Wrapper")
+                        .version("1.2.000")
+                        .owner("john")
+                        .build()))));
+    verify(mongoTemplate).find(queryCaptor.capture(), eq(LibraryUsageEntry.class));
+    assertThat(
+        queryCaptor.getValue().getQueryObject(),
+        is(equalTo(new Document("libraryName", "Helper"))));
+  }
+
+  @Test
+  void testFindTransitiveLibraryUsageByLibraryName() {
+    ArgumentCaptor<Aggregation> aggregationCaptor = ArgumentCaptor.forClass(Aggregation.class);
+    LibraryUsageEntry entry =
+        LibraryUsageEntry.builder().usedByName("Measure").usedByVersion("1.0.000").build();
+    when(mongoTemplate.aggregate(
+            any(Aggregation.class), eq(LibraryUsageEntry.COLLECTION), eq(LibraryUsageEntry.class)))
+        .thenReturn(new AggregationResults<>(List.of(entry), new Document()));
+
+    List<LibraryUsage> usages =
+        libraryUsageRepository.findTransitiveLibraryUsageByLibraryName("Helper", 3);
+
+    assertThat(usages.size(), is(equalTo(1)));
+    assertThat(usages.get(0).getName(), is(equalTo("Measure")));
+    verify(mongoTemplate)
+        .aggregate(
+            aggregationCaptor.capture(),
+            eq(LibraryUsageEntry.COLLECTION),
+            eq(LibraryUsageEntry.class));
+    GraphLookupOperation graphLookup =
+        (GraphLookupOperation) aggregationCaptor.getValue().getPipeline().getOperations().get(2);
+    assertThat(graphLookup, is(instanceOf(GraphLookupOperation.class)));
+    Document graphLookupDocument =
+        graphLookup.toDocument(Aggregation.DEFAULT_CONTEXT).get("$graphLookup", Document.class);
+    assertThat(graphLookupDocument.get("connectFromField"), is(equalTo("usedByName")));
+    assertThat(graphLookupDocument.get("connectToField"), is(equalTo("libraryName")));
+    assertThat(graphLookupDocument.get("maxDepth"), is(equalTo(2L)));
+  }
+}
@@ -1,5 +1,7 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import gov.cms.madie.cqllibraryservice.dto.ActionLogPageDTO;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
 import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryActionLogRepository;
 import gov.cms.madie.models.common.Action;
 import gov.cms.madie.models.common.ActionType;
@@ -11,12 +13,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -24,6 +31,7 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class ActionLogServiceTest {
 
+  @Mock ActionLogWriter actionLogWriter;
   @Mock CqlLibraryActionLogRepository cqlLibraryHistoryRepository;
 
   @InjectMocks ActionLogService actionLogService;
@@ -34,30 +42,79 @@ class ActionLogServiceTest {
 
   @Test
   void testLogActionReturnsTrue() {
-    when(cqlLibraryHistoryRepository.pushEvent(anyString(), any(Action.class))).thenReturn(true);
+    when(actionLogWriter.write(anyString(), any(Action.class))).thenReturn(true);
     boolean output = actionLogService.logAction("TARGET_ID", ActionType.CREATED, "firstUser");
     assertThat(output, is(true));
-    verify(cqlLibraryHistoryRepository, times(1))
-        .pushEvent(stringArgumentCaptor.capture(), actionArgumentCaptor.capture());
+    verify(actionLogWriter, times(1))
+        .write(stringArgumentCaptor.capture(), actionArgumentCaptor.capture());
     assertThat(stringArgumentCaptor.getValue(), is(equalTo("TARGET_ID")));
     Action value = actionArgumentCaptor.getValue();
     assertThat(value, is(notNullValue()));
     assertThat(value.getActionType(), is(equalTo(ActionType.CREATED)));
+    assertThat(value.getPerformedAt(), is(notNullValue()));
     assertThat(value.getPerformedBy(), is(equalTo("firstUser")));
   }
 
   @Test
   void testLogActionReturnsFalse() {
-    when(cqlLibraryHistoryRepository.pushEvent(anyString(), any(Action.class))).thenReturn(false);
+    when(actionLogWriter.write(anyString(), any(Action.class))).thenReturn(false);
     boolean output =
         actionLogService.logAction("TARGET_ID", ActionType.VERSIONED_MAJOR, "secondUser");
     assertThat(output, is(false));
-    verify(cqlLibraryHistoryRepository, times(1))
-        .pushEvent(stringArgumentCaptor.capture(), actionArgumentCaptor.capture());
+    verify(actionLogWriter, times(1))
+        .write(stringArgumentCaptor.capture(), actionArgumentCaptor.capture());
     assertThat(stringArgumentCaptor.getValue(), is(equalTo("TARGET_ID")));
     Action value = actionArgumentCaptor.getValue();
     assertThat(value, is(notNullValue()));
     assertThat(value.getActionType(), is(equalTo(ActionType.VERSIONED_MAJOR)));
     assertThat(value.getPerformedBy(), is(equalTo("secondUser")));
   }
+
+  @Test
+  void testDiscardActionsDiscardsQueuedActions() {
+    actionLogService.discardActions(List.of("TARGET_ID"));
+    verify(actionLogWriter, times(1)).discard(List.of("TARGET_ID"));
+  }
+
+  @Test
+  void testFindActionsReturnsPageWithNextPage() {
+    Action created = Action.builder().actionType(ActionType.CREATED).build();
+    Action updated = Action.builder().actionType(ActionType.UPDATED).build();
+    Action versioned = Action.builder().actionType(ActionType.VERSIONED_MAJOR).build();
+    when(cqlLibraryHistoryRepository.findActionsByTargetIds(List.of("LIB_ID", "SET_ID"), 4L, 3))
+        .thenReturn(List.of(versioned, updated, created));
+
+    ActionLogPageDTO page = actionLogService.findActions(List.of("LIB_ID", "SET_ID"), 2, 2);
+
+    assertThat(page.getContent(), is(equalTo(List.of(versioned, updated))));
+    assertThat(page.getPage(), is(2));
+    assertThat(page.getLimit(), is(2));
+    assertThat(page.getNextPage(), is(3));
+  }
+
+  @Test
+  void testFindActionsReturnsLastPage() {
+    Action created = Action.builder().actionType(ActionType.CREATED).build();
+    when(cqlLibraryHistoryRepository.findActionsByTargetIds(List.of("LIB_ID"), 0L, 26))
+        .thenReturn(List.of(created));
+
+    ActionLogPageDTO page = actionLogService.findActions(List.of("LIB_ID"), 0, 25);
+
+    assertThat(page.getContent(), is(equalTo(List.of(created))));
+    assertThat(page.getNextPage(), is(nullValue()));
+  }
+
+  @Test
+  void testFindActionsRejectsInvalidPage() {
+    assertThrows(
+        BadRequestObjectException.class,
+        () -> actionLogService.findActions(List.of("LIB_ID"), 0, 0));
+    assertThrows(
+        BadRequestObjectException.class,
+        () -> actionLogService.findActions(List.of("LIB_ID"), 0, 101));
+    assertThrows(
+        BadRequestObjectException.class,
+        () -> actionLogService.findActions(List.of("LIB_ID"), -1, 25));
+    verifyNoInteractions(cqlLibraryHistoryRepository);
+  }
 }
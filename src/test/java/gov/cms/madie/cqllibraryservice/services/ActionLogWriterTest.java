@@ -0,0 +1,233 @@
+package gov.cms.madie.cqllibraryservice.services;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import gov.cms.madie.cqllibraryservice.config.EnvironmentConfig;
+import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryActionLogRepository;
+import gov.cms.madie.models.common.Action;
+import gov.cms.madie.models.common.ActionType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ActionLogWriterTest {
+
+  @Mock CqlLibraryActionLogRepository actionLogRepository;
+  @Mock EnvironmentConfig environmentConfig;
+
+  private MeterRegistry meterRegistry;
+  private ActionLogWriter actionLogWriter;
+
+  private final Action created = Action.builder().actionType(ActionType.CREATED).build();
+  private final Action versioned = Action.builder().actionType(ActionType.VERSIONED_MAJOR).build();
+
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    lenient().when(environmentConfig.getActionLogQueueCapacity()).thenReturn(10);
+    lenient().when(environmentConfig.getActionLogBatchSize()).thenReturn(10);
+    lenient().when(environmentConfig.getActionLogFlushInterval()).thenReturn(Duration.ofMillis(50));
+    lenient()
+        .when(environmentConfig.getActionLogBackpressure())
+        .thenReturn(ActionLogWriter.Backpressure.CALLER_RUNS);
+    lenient()
+        .when(environmentConfig.getActionLogShutdownTimeout())
+        .thenReturn(Duration.ofSeconds(5));
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (actionLogWriter != null) {
+      actionLogWriter.stop();
+    }
+  }
+
+  private ActionLogWriter newWriter() {
+    actionLogWriter = new ActionLogWriter(actionLogRepository, environmentConfig, meterRegistry);
+    return actionLogWriter;
+  }
+
+  private double queueSize() {
+    return meterRegistry.get("actionLog.queue.size").gauge().value();
+  }
+
+  @Test
+  void testInvalidActionsAreRejected() {
+    newWriter();
+    assertThat(actionLogWriter.write(null, created), is(false));
+    assertThat(actionLogWriter.write("", created), is(false));
+    assertThat(actionLogWriter.write("TARGET_ID", null), is(false));
+    assertThat(queueSize(), is(0.0));
+  }
+
+  @Test
+  void testQueuedActionsAreWrittenInOneBatchGroupedByTarget() {
+    newWriter();
+    assertThat(actionLogWriter.write("TARGET_1", created), is(true));
+    assertThat(actionLogWriter.write("TARGET_2", created), is(true));
+    assertThat(actionLogWriter.write("TARGET_1", versioned), is(true));
+    assertThat(queueSize(), is(3.0));
+    verifyNoInteractions(actionLogRepository);
+
+    actionLogWriter.start();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, List<Action>>> batch = ArgumentCaptor.forClass(Map.class);
+    verify(actionLogRepository, timeout(5000)).pushEvents(batch.capture());
+    assertThat(
+        batch.getValue(),
+        is(equalTo(Map.of("TARGET_1", List.of(created, versioned), "TARGET_2", List.of(created)))));
+    assertThat(queueSize(), is(0.0));
+    assertThat(meterRegistry.get("actionLog.write").timer().count(), is(1L));
+  }
+
+  @Test
+  void testBatchesAreLimitedToBatchSize() {
+    when(environmentConfig.getActionLogBatchSize()).thenReturn(2);
+    newWriter();
+    actionLogWriter.write("TARGET_1", created);
+    actionLogWriter.write("TARGET_2", created);
+    actionLogWriter.write("TARGET_3", created);
+
+    actionLogWriter.start();
+
+    verify(actionLogRepository, timeout(5000).times(2)).pushEvents(anyMap());
+  }
+
+  @Test
+  void testStopDrainsQueueAndLaterActionsAreWrittenSynchronously() {
+    when(environmentConfig.getActionLogFlushInterval()).thenReturn(Duration.ofSeconds(1));
+    newWriter();
+    actionLogWriter.start();
+    actionLogWriter.write("TARGET_1", created);
+
+    actionLogWriter.stop();
+    verify(actionLogRepository, times(1)).pushEvents(Map.of("TARGET_1", List.of(created)));
+    assertThat(actionLogWriter.isRunning(), is(false));
+
+    assertThat(actionLogWriter.write("TARGET_2", versioned), is(true));
+    verify(actionLogRepository, times(1)).pushEvents(Map.of("TARGET_2", List.of(versioned)));
+  }
+
+  @Test
+  void testActionsLoggedWhileStoppingAreNotLost() throws Exception {
+    when(environmentConfig.getActionLogQueueCapacity()).thenReturn(100_000);
+    AtomicInteger written = new AtomicInteger();
+    when(actionLogRepository.pushEvents(anyMap()))
+        .thenAnswer(
+            invocation -> {
+              Map<String, List<Action>> actions = invocation.getArgument(0);
+              actions.values().forEach(list -> written.addAndGet(list.size()));
+              return 1;
+            });
+    newWriter();
+    actionLogWriter.start();
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(4);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> loggers = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        loggers.add(
+            executor.submit(
+                () -> {
+                  started.countDown();
+                  for (int j = 0; j < 2_000; j++) {
+                    if (actionLogWriter.write("TARGET_" + j % 10, created)) {
+                      accepted.incrementAndGet();
+                    }
+                  }
+                }));
+      }
+      started.await();
+      actionLogWriter.stop();
+      for (Future<?> logger : loggers) {
+        logger.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(accepted.get(), is(8_000));
+    assertThat(written.get(), is(equalTo(accepted.get())));
+  }
+
+  @Test
+  void testFullQueueWritesOnCallerThread() {
+    when(environmentConfig.getActionLogQueueCapacity()).thenReturn(1);
+    newWriter();
+    assertThat(actionLogWriter.write("TARGET_1", created), is(true));
+    assertThat(actionLogWriter.write("TARGET_2", versioned), is(true));
+
+    verify(actionLogRepository, times(1)).pushEvents(Map.of("TARGET_2", List.of(versioned)));
+    assertThat(queueSize(), is(1.0));
+  }
+
+  @Test
+  void testFullQueueDropsActionsWhenConfigured() {
+    when(environmentConfig.getActionLogQueueCapacity()).thenReturn(1);
+    when(environmentConfig.getActionLogBackpressure())
+        .thenReturn(ActionLogWriter.Backpressure.DROP);
+    newWriter();
+    assertThat(actionLogWriter.write("TARGET_1", created), is(true));
+    assertThat(actionLogWriter.write("TARGET_2", versioned), is(false));
+
+    verify(actionLogRepository, never()).pushEvents(anyMap());
+    assertThat(meterRegistry.get("actionLog.dropped").counter().count(), is(1.0));
+  }
+
+  @Test
+  void testDiscardRemovesQueuedActionsOfTargets() {
+    newWriter();
+    actionLogWriter.write("TARGET_1", created);
+    actionLogWriter.write("TARGET_2", created);
+    actionLogWriter.write("TARGET_1", versioned);
+
+    actionLogWriter.discard(List.of("TARGET_1", "TARGET_3"));
+    assertThat(queueSize(), is(1.0));
+
+    actionLogWriter.start();
+    verify(actionLogRepository, timeout(5000)).pushEvents(Map.of("TARGET_2", List.of(created)));
+  }
+
+  @Test
+  void testFailedWriteIsCountedAndWriterKeepsRunning() {
+    when(actionLogRepository.pushEvents(Map.of("TARGET_1", List.of(created))))
+        .thenThrow(new RuntimeException("write failed"));
+    newWriter();
+    actionLogWriter.start();
+    actionLogWriter.write("TARGET_1", created);
+    verify(actionLogRepository, timeout(5000)).pushEvents(Map.of("TARGET_1", List.of(created)));
+
+    actionLogWriter.write("TARGET_2", versioned);
+    verify(actionLogRepository, timeout(5000)).pushEvents(Map.of("TARGET_2", List.of(versioned)));
+    assertThat(meterRegistry.get("actionLog.failed").counter().count(), is(1.0));
+  }
+}
@@ -1,5 +1,7 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import gov.cms.madie.cqllibraryservice.repositories.CqlLibraryRepository;
 import gov.cms.madie.cqllibraryservice.repositories.LibrarySetRepository;
 import gov.cms.madie.models.access.AclSpecification;
@@ -11,6 +13,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
@@ -27,6 +30,7 @@ import static org.mockito.Mockito.when;
 public class CqlLibraryServiceAclTest {
   @Mock private CqlLibraryRepository cqlLibraryRepository;
   @Mock private LibrarySetRepository librarySetRepository;
+  @Spy private Cache<String, LibrarySet> librarySetCache = Caffeine.newBuilder().build();
   @InjectMocks private LibrarySetService librarySetService;
   @InjectMocks private CqlLibraryService cqlLibraryService;
   LibrarySet librarySet;
@@ -3,22 +3,38 @@ package gov.cms.madie.cqllibraryservice.services;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import gov.cms.madie.cqllibraryservice.dto.IncludedLibraryDTO;
 import gov.cms.madie.cqllibraryservice.dto.LibrarySetDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryDeleteResultDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCriteria;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListCursor;
 import gov.cms.madie.cqllibraryservice.dto.LibraryListDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListPageDTO;
+import gov.cms.madie.cqllibraryservice.dto.LibraryListSort;
+import gov.cms.madie.cqllibraryservice.dto.LibraryNameMatch;
+import gov.cms.madie.cqllibraryservice.dto.LibrarySearchCriteria;
+import gov.cms.madie.cqllibraryservice.dto.VersionedLibraryRequest;
 import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationErrorException;
 import gov.cms.madie.cqllibraryservice.exceptions.DuplicateKeyException;
 import gov.cms.madie.cqllibraryservice.exceptions.GeneralConflictException;
+import gov.cms.madie.cqllibraryservice.exceptions.MeasureServiceException;
 import gov.cms.madie.cqllibraryservice.exceptions.PermissionDeniedException;
 import gov.cms.madie.cqllibraryservice.exceptions.ResourceNotFoundException;
-import gov.cms.madie.cqllibraryservice.repositories.LibrarySetRepository;
+import gov.cms.madie.cqllibraryservice.utils.CursorUtils;
+import gov.cms.madie.models.common.IncludedLibrary;
 import gov.cms.madie.models.common.Version;
 import gov.cms.madie.models.dto.LibraryUsage;
 import gov.cms.madie.models.library.CqlLibrary;
@@ -27,13 +43,26 @@ import gov.cms.madie.models.library.LibrarySet;
 import gov.cms.madie.models.measure.ElmJson;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 class CqlLibraryServiceTest {
@@ -42,8 +71,10 @@ class CqlLibraryServiceTest {
   @Mock private CqlLibraryRepository cqlLibraryRepository;
   @Mock private LibrarySetService librarySetService;
   @Mock private MeasureServiceClient measureServiceClient;
-  @Mock private LibrarySetRepository librarySetRepository;
+  @Mock private ActionLogService actionLogService;
   @Mock private ElmTranslatorClient elmTranslatorClient;
+  @Spy private Executor elmTranslationExecutor = new SyncTaskExecutor();
+  @Spy private Executor usageCheckExecutor = new SyncTaskExecutor();
 
   @Test
   public void testCheckDuplicateCqlLibraryNameDoesNotThrowException() {
@@ -111,10 +142,9 @@ class CqlLibraryServiceTest {
             .cql("this is totally valid CQL here")
             .build();
     cqlLibraries.add(cqlLibrary1);
-    when(cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersionAndModel(
-            any(), anyBoolean(), any(), anyString()))
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), any()))
         .thenReturn(cqlLibraries);
-    when(elmTranslatorClient.getElmJson(anyString(), anyString(), anyString()))
+    when(elmTranslatorClient.getCachedElmJson(anyString(), anyString(), anyString()))
         .thenReturn(ElmJson.builder().json("{\"library\": {}}").build());
     CqlLibrary versionedCqlLibrary =
         cqlLibraryService.getVersionedCqlLibrary(
@@ -137,9 +167,9 @@ class CqlLibraryServiceTest {
             .cql("this is totally valid CQL here")
             .build();
     cqlLibraries.add(cqlLibrary);
-    when(cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersion(any(), anyBoolean(), any()))
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), any()))
         .thenReturn(cqlLibraries);
-    when(elmTranslatorClient.getElmJson(anyString(), anyString(), anyString()))
+    when(elmTranslatorClient.getCachedElmJson(anyString(), anyString(), anyString()))
         .thenReturn(ElmJson.builder().json("{\"library\": {}}").build());
     CqlLibrary versionedCqlLibrary =
         cqlLibraryService.getVersionedCqlLibrary(
@@ -150,10 +180,91 @@ class CqlLibraryServiceTest {
     assertEquals(cqlLibrary.getModel(), versionedCqlLibrary.getModel());
   }
 
+  @Test
+  public void testGetVersionedCqlLibraryWithoutElm() {
+    var cqlLibrary =
+        CqlLibrary.builder()
+            .cqlLibraryName("TestFHIRHelpers")
+            .version(Version.builder().major(1).minor(0).revisionNumber(0).build())
+            .model("QI-Core v4.1.1")
+            .draft(false)
+            .build();
+    when(cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersionAndModel(
+            any(), anyBoolean(), any(), anyString()))
+        .thenReturn(List.of(cqlLibrary));
+    CqlLibrary versionedCqlLibrary =
+        cqlLibraryService.getVersionedCqlLibrary(
+            "TestFHIRHelpers", "1.0.000", Optional.of("QI-Core v4.1.1"), false, "test-okta");
+    assertThat(versionedCqlLibrary, is(equalTo(cqlLibrary)));
+    verify(cqlLibraryRepository, never())
+        .findVersionedLibrariesWithElmTranslatedBy(anyList(), any());
+    verifyNoInteractions(elmTranslatorClient);
+  }
+
+  @Test
+  public void testGetVersionedCqlLibraryServesPersistedElm() {
+    var cqlLibrary =
+        CqlLibrary.builder()
+            .id("Library1_ID")
+            .cqlLibraryName("TestFHIRHelpers")
+            .version(Version.builder().major(1).minor(0).revisionNumber(0).build())
+            .model("QI-Core v4.1.1")
+            .draft(false)
+            .cql("this is totally valid CQL here")
+            .elmJson("{\"library\": {}}")
+            .elmXml("<library/>")
+            .build();
+    when(elmTranslatorClient.getTranslatorVersion()).thenReturn("3.10.0");
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), anyString()))
+        .thenReturn(List.of(cqlLibrary));
+    CqlLibrary versionedCqlLibrary =
+        cqlLibraryService.getVersionedCqlLibrary(
+            "TestFHIRHelpers", "1.0.000", Optional.of("QI-Core v4.1.1"), true, "test-okta");
+    assertThat(versionedCqlLibrary.getElmJson(), is(equalTo("{\"library\": {}}")));
+    assertThat(versionedCqlLibrary.getElmXml(), is(equalTo("<library/>")));
+    verify(cqlLibraryRepository, times(1))
+        .findVersionedLibrariesWithElmTranslatedBy(
+            eq(
+                List.of(
+                    VersionedLibraryRequest.builder()
+                        .name("TestFHIRHelpers")
+                        .version("1.0.000")
+                        .model("QI-Core v4.1.1")
+                        .build())),
+            eq("3.10.0"));
+    verify(elmTranslatorClient, never()).getCachedElmJson(anyString(), anyString(), anyString());
+    verify(cqlLibraryRepository, never()).updateElm(any(), any(), any(), any());
+  }
+
+  @Test
+  public void testGetVersionedCqlLibraryRetranslatesStaleElm() {
+    // stale ELM is left out by the lookup
+    var cqlLibrary =
+        CqlLibrary.builder()
+            .id("Library1_ID")
+            .cqlLibraryName("TestFHIRHelpers")
+            .version(Version.builder().major(1).minor(0).revisionNumber(0).build())
+            .model("QI-Core v4.1.1")
+            .draft(false)
+            .cql("this is totally valid CQL here")
+            .build();
+    when(elmTranslatorClient.getTranslatorVersion()).thenReturn("3.10.0");
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), anyString()))
+        .thenReturn(List.of(cqlLibrary));
+    when(elmTranslatorClient.getCachedElmJson(anyString(), anyString(), anyString()))
+        .thenReturn(ElmJson.builder().json("{\"library\": {}}").xml("<library/>").build());
+    CqlLibrary versionedCqlLibrary =
+        cqlLibraryService.getVersionedCqlLibrary(
+            "TestFHIRHelpers", "1.0.000", Optional.of("QI-Core v4.1.1"), true, "test-okta");
+    assertThat(versionedCqlLibrary.getElmJson(), is(equalTo("{\"library\": {}}")));
+    verify(cqlLibraryRepository, times(1))
+        .updateElm(eq("Library1_ID"), eq("{\"library\": {}}"), eq("<library/>"), eq("3.10.0"));
+  }
+
   @Test
   public void testGetVersionedCqlShouldThrowExceptionWhenNoLibrariesAreFound() {
     List<CqlLibrary> cqlLibraries = new ArrayList<>();
-    when(cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersion(any(), anyBoolean(), any()))
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), any()))
         .thenReturn(cqlLibraries);
     assertThrows(
         ResourceNotFoundException.class,
@@ -181,7 +292,7 @@ class CqlLibraryServiceTest {
             .build();
     cqlLibraries.add(cqlLibrary1);
     cqlLibraries.add(cqlLibrary2);
-    when(cqlLibraryRepository.findAllByCqlLibraryNameAndDraftAndVersion(any(), anyBoolean(), any()))
+    when(cqlLibraryRepository.findVersionedLibrariesWithElmTranslatedBy(anyList(), any()))
         .thenReturn(cqlLibraries);
     assertThrows(
         GeneralConflictException.class,
@@ -194,19 +305,50 @@ class CqlLibraryServiceTest {
   void testFindCqlLibraryById() {
     String id = "1";
     CqlLibrary lib =
-        CqlLibrary.builder().id(id).cqlLibraryName("XyZ").librarySetId("1-2-3-4").build();
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.of(lib));
-    when(librarySetService.findByLibrarySetId(anyString())).thenReturn(new LibrarySet());
+        CqlLibrary.builder()
+            .id(id)
+            .cqlLibraryName("XyZ")
+            .librarySetId("1-2-3-4")
+            .librarySet(new LibrarySet())
+            .build();
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.of(lib));
 
     CqlLibrary cqlLib = cqlLibraryService.findCqlLibraryById(id);
     assertEquals(cqlLib.getId(), id);
     assertNotNull(cqlLib.getLibrarySet());
+    verifyNoInteractions(librarySetService);
+  }
+
+  @Test
+  void testFindCqlLibrarySummariesByIdsKeepsRequestedOrder() {
+    CqlLibrary lib1 = CqlLibrary.builder().id("1").cqlLibraryName("Lib1").build();
+    CqlLibrary lib2 = CqlLibrary.builder().id("2").cqlLibraryName("Lib2").build();
+    when(cqlLibraryRepository.findCqlLibrarySummariesWithLibrarySetByIds(Set.of("1", "2")))
+        .thenReturn(List.of(lib1, lib2));
+
+    List<CqlLibrary> libraries =
+        cqlLibraryService.findCqlLibrarySummariesByIds(List.of("2", "1", "2"));
+    assertEquals(List.of(lib2, lib1, lib2), libraries);
+  }
+
+  @Test
+  void testFindCqlLibrarySummariesByIdsNotFound() {
+    CqlLibrary lib1 = CqlLibrary.builder().id("1").cqlLibraryName("Lib1").build();
+    when(cqlLibraryRepository.findCqlLibrarySummariesWithLibrarySetByIds(Set.of("1", "2")))
+        .thenReturn(List.of(lib1));
+    Exception ex =
+        assertThrows(
+            ResourceNotFoundException.class,
+            () -> cqlLibraryService.findCqlLibrarySummariesByIds(List.of("1", "2")));
+    assertEquals(ex.getMessage(), "Could not find resource CQL Library with id: 2");
   }
 
   @Test
   void testFindCqlLibraryByIdNotFound() {
     String id = "1";
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.empty());
     Exception ex =
         assertThrows(
             ResourceNotFoundException.class, () -> cqlLibraryService.findCqlLibraryById(id));
@@ -228,7 +370,8 @@ class CqlLibraryServiceTest {
 
   @Test
   public void testDeleteDraftLibraryWithIdNotFound() {
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.empty());
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.empty());
 
     assertThrows(
         ResourceNotFoundException.class,
@@ -244,10 +387,9 @@ class CqlLibraryServiceTest {
             .librarySetId("LibSetID")
             .version(Version.parse("1.0.0"))
             .build();
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.of(library));
-
-    when(librarySetService.findByLibrarySetId(anyString()))
-        .thenReturn(LibrarySet.builder().librarySetId("LibSetID").owner("TEST_USER").build());
+    library.setLibrarySet(LibrarySet.builder().librarySetId("LibSetID").owner("TEST_USER").build());
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.of(library));
 
     assertThrows(
         GeneralConflictException.class,
@@ -263,9 +405,10 @@ class CqlLibraryServiceTest {
             .librarySetId("LibSetID")
             .version(Version.parse("1.0.0"))
             .build();
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.of(library));
-    when(librarySetService.findByLibrarySetId(anyString()))
-        .thenReturn(LibrarySet.builder().librarySetId("LibSetID").owner("SOME_OTHER_USER").build());
+    library.setLibrarySet(
+        LibrarySet.builder().librarySetId("LibSetID").owner("SOME_OTHER_USER").build());
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.of(library));
 
     assertThrows(
         PermissionDeniedException.class,
@@ -281,9 +424,9 @@ class CqlLibraryServiceTest {
             .librarySetId("LibSetID")
             .version(Version.parse("1.0.0"))
             .build();
-    when(cqlLibraryRepository.findById(anyString())).thenReturn(Optional.of(library));
-    when(librarySetService.findByLibrarySetId(anyString()))
-        .thenReturn(LibrarySet.builder().librarySetId("LibSetID").owner("TEST_USER").build());
+    library.setLibrarySet(LibrarySet.builder().librarySetId("LibSetID").owner("TEST_USER").build());
+    when(cqlLibraryRepository.findCqlLibraryWithLibrarySetById(anyString(), any()))
+        .thenReturn(Optional.of(library));
     doNothing().when(cqlLibraryRepository).delete(any(CqlLibrary.class));
 
     CqlLibrary output = cqlLibraryService.deleteDraftLibrary("LibID", "TEST_USER");
@@ -314,18 +457,51 @@ class CqlLibraryServiceTest {
     assertThat(ex.getMessage(), is(equalTo("Please provide library name.")));
   }
 
+  @Test
+  void testFindTransitiveLibraryUsage() {
+    LibraryUsage usage = LibraryUsage.builder().name("Wrapper").owner("john").build();
+    when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+    when(cqlLibraryRepository.findTransitiveLibraryUsageByLibraryName(
+            anyString(), eq(CqlLibraryService.MAX_INCLUDE_DEPTH)))
+        .thenReturn(List.of(usage));
+    List<LibraryUsage> libraryUsages = cqlLibraryService.findTransitiveLibraryUsage("Helper");
+    assertThat(libraryUsages, is(equalTo(List.of(usage))));
+  }
+
+  @Test
+  void testFindTransitiveLibraryUsageWhenLibraryNotFound() {
+    when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(false);
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> cqlLibraryService.findTransitiveLibraryUsage("Helper"));
+    verify(cqlLibraryRepository, never()).findTransitiveLibraryUsageByLibraryName(any(), anyInt());
+  }
+
   @Test
   void testDeleteLibraryAlongWithVersionsSuccess() {
     String libraryName = "test";
-    CqlLibrary cqlLibrary = CqlLibrary.builder().cqlLibraryName(libraryName).build();
+    LibraryDeleteResultDTO deleteResult =
+        LibraryDeleteResultDTO.builder()
+            .cqlLibraryName(libraryName)
+            .deletedLibraries(3)
+            .deletedLibrarySetIds(List.of("set-1"))
+            .deletedLibrarySets(1)
+            .deletedActionLogs(4)
+            .deletedActionLogTargetIds(List.of("lib-1", "set-1"))
+            .build();
     when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
     when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString())).thenReturn(List.of());
     when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
         .thenReturn(List.of());
-    when(cqlLibraryRepository.findAllByCqlLibraryName(anyString())).thenReturn(List.of(cqlLibrary));
+    when(cqlLibraryRepository.deleteAllVersionsByCqlLibraryName(libraryName))
+        .thenReturn(deleteResult);
 
-    cqlLibraryService.deleteLibraryAlongWithVersions(libraryName, "token");
-    verify(cqlLibraryRepository, times(1)).deleteAll(List.of(cqlLibrary));
+    LibraryDeleteResultDTO result =
+        cqlLibraryService.deleteLibraryAlongWithVersions(libraryName, "token");
+    assertThat(result, is(equalTo(deleteResult)));
+    verify(librarySetService, times(1)).evictLibrarySets(List.of("set-1"));
+    verify(actionLogService, times(1)).discardActions(List.of("lib-1", "set-1"));
+    verify(cqlLibraryRepository, never()).deleteAll(any());
   }
 
   @Test
@@ -361,6 +537,155 @@ class CqlLibraryServiceTest {
         ex.getMessage(), is(equalTo("Library is being used actively, hence can not be deleted.")));
   }
 
+  private CqlLibraryService withUsageCheckExecutor(Executor executor) {
+    return new CqlLibraryService(
+        elmTranslatorClient,
+        cqlLibraryRepository,
+        librarySetService,
+        measureServiceClient,
+        actionLogService,
+        elmTranslationExecutor,
+        executor);
+  }
+
+  @Test
+  void testIsLibraryBeingUsedDoesNotWaitForMeasuresWhenUsedInLibrary() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CountDownLatch measureServiceCalled = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+      when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenAnswer(
+              invocation -> {
+                measureServiceCalled.countDown();
+                release.await();
+                return List.of();
+              });
+      // usage in libraries is only found once the measure service is being called
+      when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString()))
+          .thenAnswer(
+              invocation -> {
+                measureServiceCalled.await();
+                return List.of(LibraryUsage.builder().name("Other").build());
+              });
+
+      assertTrue(withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+      assertThat(release.getCount(), is(1L));
+    } finally {
+      release.countDown();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedWhenUsedInLibraryAndMeasureServiceFails() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+      when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString()))
+          .thenReturn(List.of(LibraryUsage.builder().name("Other").build()));
+      lenient()
+          .when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenThrow(new MeasureServiceException("measure service down"));
+
+      assertTrue(withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedWhenUsedInMeasureAndLibraryLookupFails() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+      when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString()))
+          .thenThrow(new IllegalStateException("database down"));
+      when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenReturn(List.of(LibraryUsage.builder().name("Measure").build()));
+
+      assertTrue(withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedRethrowsLibraryLookupFailureWhenNotUsedInMeasures() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+      when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString()))
+          .thenThrow(new IllegalStateException("database down"));
+      when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenThrow(new MeasureServiceException("measure service down"));
+
+      Exception ex =
+          assertThrows(
+              IllegalStateException.class,
+              () -> withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+      assertThat(ex.getMessage(), is(equalTo("database down")));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedReportsMissingLibraryEvenWhenUsedInMeasure() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    CountDownLatch measureServiceAnswered = new CountDownLatch(1);
+    try {
+      lenient()
+          .when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenAnswer(
+              invocation -> {
+                measureServiceAnswered.countDown();
+                return List.of(LibraryUsage.builder().name("Measure").build());
+              });
+      // the library is only found missing after the measure service reported usage
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString()))
+          .thenAnswer(
+              invocation -> {
+                measureServiceAnswered.await(5, TimeUnit.SECONDS);
+                return false;
+              });
+
+      assertThrows(
+          ResourceNotFoundException.class,
+          () -> withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedFalseWhenUsedNowhere() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+      when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString())).thenReturn(List.of());
+      when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+          .thenReturn(List.of());
+
+      assertFalse(withUsageCheckExecutor(executor).isLibraryBeinUsed("Helper", "token"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testIsLibraryBeingUsedRethrowsMeasureServiceFailure() {
+    when(cqlLibraryRepository.existsByCqlLibraryName(anyString())).thenReturn(true);
+    when(cqlLibraryRepository.findLibraryUsageByLibraryName(anyString())).thenReturn(List.of());
+    when(measureServiceClient.getLibraryUsageInMeasures(anyString(), anyString()))
+        .thenThrow(new MeasureServiceException("measure service down"));
+
+    assertThrows(
+        MeasureServiceException.class,
+        () -> cqlLibraryService.isLibraryBeinUsed("Helper", "token"));
+  }
+
   @Test
   void testDeleteLibraryAlongWithVersionsIfOneNotExists() {
     String libraryName = "test";
@@ -373,6 +698,15 @@ class CqlLibraryServiceTest {
         ex.getMessage(), is(equalTo("Could not find resource Library with name: " + libraryName)));
   }
 
+  private LibrarySearchCriteria search(String name, String model) {
+    return LibrarySearchCriteria.builder()
+        .name(name)
+        .model(model)
+        .match(LibraryNameMatch.CONTAINS)
+        .limit(CqlLibraryService.MAX_SEARCH_RESULTS)
+        .build();
+  }
+
   @Test
   void testFindLibrariesByNameAndModel() {
     String libraryName = "test";
@@ -383,31 +717,196 @@ class CqlLibraryServiceTest {
             .version(Version.parse("0.1.000"))
             .model("QICore 4.1.1")
             .build();
-    when(cqlLibraryRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
-            anyString(), anyString()))
+    LibrarySearchCriteria criteria = search(libraryName, model);
+    when(cqlLibraryRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria))
         .thenReturn(List.of(l1));
-    List<LibraryListDTO> result = cqlLibraryService.findLibrariesByNameAndModel(libraryName, model);
+    List<LibraryListDTO> result = cqlLibraryService.findLibrariesByNameAndModel(criteria);
     assertThat(result.size(), equalTo(1));
   }
 
+  @Test
+  void testStreamLibrariesByNameAndModel() {
+    LibraryListDTO l1 = LibraryListDTO.builder().cqlLibraryName("L1").build();
+    when(cqlLibraryRepository.streamLibrariesByNameAndModelOrderByNameAscAndVersionDsc(
+            any(LibrarySearchCriteria.class)))
+        .thenReturn(Stream.of(l1));
+    List<LibraryListDTO> result =
+        cqlLibraryService.streamLibrariesByNameAndModel(search("test", "QDM v5.6")).toList();
+    assertThat(result, is(equalTo(List.of(l1))));
+  }
+
+  @Test
+  void testStreamLibrariesByNameAndModelIfModelMissing() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.streamLibrariesByNameAndModel(search("Test", null)));
+    assertThat(ex.getMessage(), is(equalTo("Please provide library name and model.")));
+    verifyNoInteractions(cqlLibraryRepository);
+  }
+
   @Test
   void testFindLibrariesByNameAndModelIfModelMissing() {
     Exception ex =
         assertThrows(
             BadRequestObjectException.class,
-            () -> cqlLibraryService.findLibrariesByNameAndModel("Test", null));
+            () -> cqlLibraryService.findLibrariesByNameAndModel(search("Test", null)));
     assertThat(ex.getMessage(), is(equalTo("Please provide library name and model.")));
   }
 
+  @Test
+  void testFindLibrariesByNameAndModelIfNameTooLong() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.findLibrariesByNameAndModel(search("a".repeat(65), "QDM")));
+    assertThat(ex.getMessage(), is(equalTo("Library name must be at most 64 characters.")));
+    verifyNoInteractions(cqlLibraryRepository);
+  }
+
+  @Test
+  void testFindLibrariesByNameAndModelIfLimitOutOfRange() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () ->
+                cqlLibraryService.findLibrariesByNameAndModel(
+                    search("Test", "QDM").toBuilder().limit(1001).build()));
+    assertThat(ex.getMessage(), is(equalTo("Limit must be between 1 and 1000.")));
+  }
+
+  @Test
+  void testFindLibrariesByNameAndModelWithoutLimit() {
+    LibrarySearchCriteria criteria = search("Test", "QDM").toBuilder().limit(null).build();
+    when(cqlLibraryRepository.findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria))
+        .thenReturn(List.of());
+
+    cqlLibraryService.findLibrariesByNameAndModel(criteria);
+
+    verify(cqlLibraryRepository).findLibrariesByNameAndModelOrderByNameAscAndVersionDsc(criteria);
+  }
+
+  @Test
+  void testFindLibrariesByNameAndModelIfPageWithoutLimit() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () ->
+                cqlLibraryService.findLibrariesByNameAndModel(
+                    search("Test", "QDM").toBuilder().page(1).limit(null).build()));
+    assertThat(ex.getMessage(), is(equalTo("Page requires a limit.")));
+  }
+
+  @Test
+  void testFindLibrariesByNameAndModelIfPageNegative() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () ->
+                cqlLibraryService.findLibrariesByNameAndModel(
+                    search("Test", "QDM").toBuilder().page(-1).build()));
+    assertThat(ex.getMessage(), is(equalTo("Page must not be negative.")));
+  }
+
   @Test
   void testFindLibrariesByNameAndModelIfLibraryNameMissing() {
     Exception ex =
         assertThrows(
             BadRequestObjectException.class,
-            () -> cqlLibraryService.findLibrariesByNameAndModel(null, "QDM"));
+            () -> cqlLibraryService.findLibrariesByNameAndModel(search(null, "QDM")));
     assertThat(ex.getMessage(), is(equalTo("Please provide library name and model.")));
   }
 
+  @Test
+  void testFindLibrariesPageReturnsNextCursorWhenMoreLibrariesExist() {
+    LibraryListDTO l1 = LibraryListDTO.builder().id("1").cqlLibraryName("Lib1").build();
+    LibraryListDTO l2 = LibraryListDTO.builder().id("2").cqlLibraryName("Lib2").build();
+    LibraryListDTO l3 = LibraryListDTO.builder().id("3").cqlLibraryName("Lib3").build();
+    when(cqlLibraryRepository.findLibrariesPage(any(LibraryListCriteria.class)))
+        .thenReturn(List.of(l1, l2, l3));
+
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().sort(LibraryListSort.NAME).limit(2).build();
+    LibraryListPageDTO page = cqlLibraryService.findLibrariesPage(criteria, null);
+
+    assertThat(page.getContent(), is(equalTo(List.of(l1, l2))));
+    assertThat(page.getLimit(), is(equalTo(2)));
+    LibraryListCursor next = CursorUtils.decode(page.getNextCursor());
+    assertThat(next.getSort(), is(equalTo(LibraryListSort.NAME)));
+    assertThat(next.getValue(), is(equalTo("Lib2")));
+    assertThat(next.getId(), is(equalTo("2")));
+
+    ArgumentCaptor<LibraryListCriteria> criteriaCaptor =
+        ArgumentCaptor.forClass(LibraryListCriteria.class);
+    verify(cqlLibraryRepository).findLibrariesPage(criteriaCaptor.capture());
+    assertThat(criteriaCaptor.getValue().getLimit(), is(equalTo(3)));
+    assertNull(criteriaCaptor.getValue().getAfter());
+  }
+
+  @Test
+  void testFindLibrariesPageContinuesFromCursor() {
+    Instant createdAt = Instant.parse("2024-01-01T00:00:00Z");
+    LibraryListDTO l1 = LibraryListDTO.builder().id("1").createdAt(createdAt).build();
+    when(cqlLibraryRepository.findLibrariesPage(any(LibraryListCriteria.class)))
+        .thenReturn(List.of(l1));
+    String cursor =
+        CursorUtils.encode(
+            LibraryListCursor.builder()
+                .sort(LibraryListSort.CREATED_AT)
+                .value("2024-02-01T00:00:00Z")
+                .id("9")
+                .build());
+
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().sort(LibraryListSort.CREATED_AT).limit(2).build();
+    LibraryListPageDTO page = cqlLibraryService.findLibrariesPage(criteria, cursor);
+
+    assertThat(page.getContent(), is(equalTo(List.of(l1))));
+    assertNull(page.getNextCursor());
+    ArgumentCaptor<LibraryListCriteria> criteriaCaptor =
+        ArgumentCaptor.forClass(LibraryListCriteria.class);
+    verify(cqlLibraryRepository).findLibrariesPage(criteriaCaptor.capture());
+    assertThat(criteriaCaptor.getValue().getAfter().getId(), is(equalTo("9")));
+    assertThat(
+        criteriaCaptor.getValue().getAfter().getValue(), is(equalTo("2024-02-01T00:00:00Z")));
+  }
+
+  @Test
+  void testFindLibrariesPageRejectsLimitOutOfRange() {
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().sort(LibraryListSort.NAME).limit(101).build();
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.findLibrariesPage(criteria, null));
+    assertThat(ex.getMessage(), is(equalTo("Limit must be between 1 and 100.")));
+  }
+
+  @Test
+  void testFindLibrariesPageRejectsMalformedCursor() {
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().sort(LibraryListSort.NAME).limit(10).build();
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.findLibrariesPage(criteria, "not-a-cursor"));
+    assertThat(ex.getMessage(), is(equalTo("Invalid cursor.")));
+  }
+
+  @Test
+  void testFindLibrariesPageRejectsCursorOfAnotherSort() {
+    String cursor =
+        CursorUtils.encode(
+            LibraryListCursor.builder().sort(LibraryListSort.NAME).value("Lib").id("1").build());
+    LibraryListCriteria criteria =
+        LibraryListCriteria.builder().sort(LibraryListSort.CREATED_AT).limit(10).build();
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.findLibrariesPage(criteria, cursor));
+    assertThat(ex.getMessage(), is(equalTo("Cursor does not match the requested sort.")));
+  }
+
   @Test
   void testGetLibrarySetBySetId() {
     String librarySetId = "1-1-1-1";
@@ -426,11 +925,9 @@ class CqlLibraryServiceTest {
             .librarySetId(librarySetId)
             .version(Version.parse(libraryVersion))
             .build();
-    when(cqlLibraryRepository.findByLibrarySetIdAndDraftAndActive(
-            anyString(), anyBoolean(), anyBoolean()))
+    when(cqlLibraryRepository.findVersionedLibrariesByLibrarySetId(anyString(), isNull()))
         .thenReturn(List.of(lib1, lib2));
-    when(librarySetRepository.findByLibrarySetId(anyString()))
-        .thenReturn(Optional.ofNullable(librarySet));
+    when(librarySetService.findByLibrarySetId(anyString())).thenReturn(librarySet);
     LibrarySetDTO libraryDTO = cqlLibraryService.getLibrarySetBySetId(librarySetId);
     assertThat(libraryDTO.getLibrarySet().getLibrarySetId(), equalTo(librarySetId));
     assertThat(libraryDTO.getLibrarySet().getOwner(), equalTo(owner));
@@ -440,8 +937,7 @@ class CqlLibraryServiceTest {
   @Test
   void testGetLibrarySetBySetIdIfNoLibraryExistsWithSetId() {
     String librarySetId = "1-1-1-1";
-    when(cqlLibraryRepository.findByLibrarySetIdAndDraftAndActive(
-            anyString(), anyBoolean(), anyBoolean()))
+    when(cqlLibraryRepository.findVersionedLibrariesByLibrarySetId(anyString(), isNull()))
         .thenReturn(List.of());
     LibrarySetDTO libraryDTO = cqlLibraryService.getLibrarySetBySetId(librarySetId);
     assertThat(libraryDTO, equalTo(null));
@@ -456,10 +952,9 @@ class CqlLibraryServiceTest {
             .librarySetId(librarySetId)
             .version(Version.parse("0.1.000"))
             .build();
-    when(cqlLibraryRepository.findByLibrarySetIdAndDraftAndActive(
-            anyString(), anyBoolean(), anyBoolean()))
+    when(cqlLibraryRepository.findVersionedLibrariesByLibrarySetId(anyString(), isNull()))
         .thenReturn(List.of(lib1));
-    when(librarySetRepository.findByLibrarySetId(anyString())).thenReturn(Optional.empty());
+    when(librarySetService.findByLibrarySetId(anyString())).thenReturn(null);
     LibrarySetDTO libraryDTO = cqlLibraryService.getLibrarySetBySetId(librarySetId);
     assertThat(libraryDTO.getLibrarySet(), equalTo(null));
     assertThat(libraryDTO.getLibraries().size(), equalTo(1));
@@ -472,4 +967,285 @@ class CqlLibraryServiceTest {
             BadRequestObjectException.class, () -> cqlLibraryService.getLibrarySetBySetId(null));
     assertThat(exception.getMessage(), equalTo("Please provide library set ID."));
   }
+
+  @Test
+  void testGetVersionedCqlLibrariesResolvesBatchInRequestOrder() {
+    CqlLibrary helpers =
+        CqlLibrary.builder()
+            .id("Helpers_ID")
+            .cqlLibraryName("FHIRHelpers")
+            .version(Version.parse("4.1.000"))
+            .model("QI-Core v4.1.1")
+            .librarySetId("set-1")
+            .cql("library FHIRHelpers")
+            .elmJson("{}")
+            .build();
+    CqlLibrary common =
+        CqlLibrary.builder()
+            .id("Common_ID")
+            .cqlLibraryName("QICoreCommon")
+            .version(Version.parse("1.0.000"))
+            .model("QI-Core v4.1.1")
+            .librarySetId("set-2")
+            .cql("library QICoreCommon")
+            .build();
+    List<VersionedLibraryRequest> requests =
+        List.of(
+            VersionedLibraryRequest.builder().name("QICoreCommon").version("1.0.000").build(),
+            VersionedLibraryRequest.builder()
+                .name("FHIRHelpers")
+                .version("4.1.000")
+                .model("QI-Core v4.1.1")
+                .build());
+    when(cqlLibraryRepository.findVersionedLibraries(requests))
+        .thenReturn(List.of(helpers, common));
+    when(elmTranslatorClient.getTranslatorVersion()).thenReturn("3.10.0");
+    when(cqlLibraryRepository.findIdsElmTranslatedBy(anyList(), eq("3.10.0")))
+        .thenReturn(Set.of("Helpers_ID"));
+    when(elmTranslatorClient.getCachedElmJson("library QICoreCommon", "QI-Core v4.1.1", "token"))
+        .thenReturn(ElmJson.builder().json("{\"library\": {}}").xml("<library/>").build());
+    when(librarySetService.findByLibrarySetIds(Set.of("set-1", "set-2")))
+        .thenReturn(
+            Map.of(
+                "set-1", LibrarySet.builder().librarySetId("set-1").build(),
+                "set-2", LibrarySet.builder().librarySetId("set-2").build()));
+
+    List<CqlLibrary> output = cqlLibraryService.getVersionedCqlLibraries(requests, true, "token");
+
+    assertThat(output.size(), is(equalTo(2)));
+    assertThat(output.get(0).getId(), is(equalTo("Common_ID")));
+    assertThat(output.get(0).getElmJson(), is(equalTo("{\"library\": {}}")));
+    assertThat(output.get(0).getLibrarySet().getLibrarySetId(), is(equalTo("set-2")));
+    assertThat(output.get(1).getId(), is(equalTo("Helpers_ID")));
+    assertThat(output.get(1).getLibrarySet().getLibrarySetId(), is(equalTo("set-1")));
+    verify(elmTranslatorClient, times(1)).getCachedElmJson(anyString(), anyString(), anyString());
+    verify(cqlLibraryRepository, times(1))
+        .updateElm("Common_ID", "{\"library\": {}}", "<library/>", "3.10.0");
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesWithoutElmSkipsTranslation() {
+    CqlLibrary helpers =
+        CqlLibrary.builder()
+            .id("Helpers_ID")
+            .cqlLibraryName("FHIRHelpers")
+            .version(Version.parse("4.1.000"))
+            .build();
+    List<VersionedLibraryRequest> requests =
+        List.of(VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.1.000").build());
+    when(cqlLibraryRepository.findVersionedLibraries(requests)).thenReturn(List.of(helpers));
+    when(librarySetService.findByLibrarySetIds(Set.of())).thenReturn(Map.of());
+
+    List<CqlLibrary> output = cqlLibraryService.getVersionedCqlLibraries(requests, false, "token");
+
+    assertThat(output.get(0).getId(), is(equalTo("Helpers_ID")));
+    verifyNoInteractions(elmTranslatorClient);
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesThrowsNotFoundForMissingLibrary() {
+    CqlLibrary helpers =
+        CqlLibrary.builder()
+            .cqlLibraryName("FHIRHelpers")
+            .version(Version.parse("4.1.000"))
+            .build();
+    List<VersionedLibraryRequest> requests =
+        List.of(
+            VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.1.000").build(),
+            VersionedLibraryRequest.builder().name("FHIRHelpers").version("4.0.001").build());
+    when(cqlLibraryRepository.findVersionedLibraries(requests)).thenReturn(List.of(helpers));
+
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> cqlLibraryService.getVersionedCqlLibraries(requests, true, "token"));
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesThrowsConflictForAmbiguousLibrary() {
+    CqlLibrary qdm =
+        CqlLibrary.builder()
+            .cqlLibraryName("Common")
+            .version(Version.parse("1.0.000"))
+            .model("QDM v5.6")
+            .build();
+    CqlLibrary fhir =
+        CqlLibrary.builder()
+            .cqlLibraryName("Common")
+            .version(Version.parse("1.0.000"))
+            .model("QI-Core v4.1.1")
+            .build();
+    List<VersionedLibraryRequest> requests =
+        List.of(VersionedLibraryRequest.builder().name("Common").version("1.0.000").build());
+    when(cqlLibraryRepository.findVersionedLibraries(requests)).thenReturn(List.of(qdm, fhir));
+
+    assertThrows(
+        GeneralConflictException.class,
+        () -> cqlLibraryService.getVersionedCqlLibraries(requests, true, "token"));
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesFailsWhenTranslationHasErrors() {
+    CqlLibrary common =
+        CqlLibrary.builder()
+            .id("Common_ID")
+            .cqlLibraryName("Common")
+            .version(Version.parse("1.0.000"))
+            .model("QI-Core v4.1.1")
+            .cql("library Common")
+            .build();
+    List<VersionedLibraryRequest> requests =
+        List.of(VersionedLibraryRequest.builder().name("Common").version("1.0.000").build());
+    ElmJson elmJson = ElmJson.builder().json("{\"errorExceptions\": [{}]}").build();
+    when(cqlLibraryRepository.findVersionedLibraries(requests)).thenReturn(List.of(common));
+    when(cqlLibraryRepository.findIdsElmTranslatedBy(anyList(), any())).thenReturn(Set.of());
+    when(elmTranslatorClient.getCachedElmJson(anyString(), anyString(), anyString()))
+        .thenReturn(elmJson);
+    when(elmTranslatorClient.hasErrors(elmJson)).thenReturn(true);
+
+    assertThrows(
+        CqlElmTranslationErrorException.class,
+        () -> cqlLibraryService.getVersionedCqlLibraries(requests, true, "token"));
+    verify(cqlLibraryRepository, never()).updateElm(any(), any(), any(), any());
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesRejectsEmptyBatch() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.getVersionedCqlLibraries(List.of(), true, "token"));
+    assertThat(ex.getMessage(), is(equalTo("Batch must contain between 1 and 100 libraries.")));
+  }
+
+  @Test
+  void testGetVersionedCqlLibrariesRejectsLibraryWithoutVersion() {
+    List<VersionedLibraryRequest> requests =
+        List.of(VersionedLibraryRequest.builder().name("FHIRHelpers").build());
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.getVersionedCqlLibraries(requests, true, "token"));
+    assertThat(ex.getMessage(), is(equalTo("Each library must have a name and a version.")));
+  }
+
+  private CqlLibrary includingLibrary(String name, String... includes) {
+    return CqlLibrary.builder()
+        .id(name + "_ID")
+        .cqlLibraryName(name)
+        .version(Version.parse("1.0.000"))
+        .model("QI-Core v4.1.1")
+        .cql("library " + name)
+        .includedLibraries(
+            Arrays.stream(includes)
+                .map(include -> IncludedLibrary.builder().name(include).version("1.0.000").build())
+                .toList())
+        .build();
+  }
+
+  @Test
+  void testGetIncludedLibrariesResolvesEachLevelWithOneQuery() {
+    CqlLibrary measureLib = includingLibrary("Measure", "Common", "Helpers");
+    CqlLibrary common = includingLibrary("Common", "Helpers", "Base");
+    CqlLibrary helpers = includingLibrary("Helpers", "Base");
+    CqlLibrary base = includingLibrary("Base");
+    when(cqlLibraryRepository.findById("Measure_ID")).thenReturn(Optional.of(measureLib));
+    when(cqlLibraryRepository.findVersionedLibraries(anyList()))
+        .thenReturn(List.of(common, helpers))
+        .thenReturn(List.of(base));
+
+    List<IncludedLibraryDTO> output =
+        cqlLibraryService.getIncludedLibraries("Measure_ID", 10, false, "token");
+
+    assertThat(
+        output.stream().map(IncludedLibraryDTO::getName).toList(),
+        is(equalTo(List.of("Common", "Helpers", "Base"))));
+    assertThat(
+        output.stream().map(IncludedLibraryDTO::getDepth).toList(), is(equalTo(List.of(1, 1, 2))));
+    assertThat(output.get(2).getCql(), is(equalTo("library Base")));
+    assertThat(output.get(2).getElmJson(), is(nullValue()));
+    verify(cqlLibraryRepository, times(2)).findVersionedLibraries(anyList());
+    verifyNoInteractions(elmTranslatorClient);
+  }
+
+  @Test
+  void testGetIncludedLibrariesThrowsConflictForCircularIncludes() {
+    CqlLibrary measureLib = includingLibrary("Measure", "Common");
+    CqlLibrary common = includingLibrary("Common", "Helpers");
+    CqlLibrary helpers = includingLibrary("Helpers", "Common");
+    when(cqlLibraryRepository.findById("Measure_ID")).thenReturn(Optional.of(measureLib));
+    when(cqlLibraryRepository.findVersionedLibraries(anyList()))
+        .thenReturn(List.of(common))
+        .thenReturn(List.of(helpers));
+
+    Exception ex =
+        assertThrows(
+            GeneralConflictException.class,
+            () -> cqlLibraryService.getIncludedLibraries("Measure_ID", 10, false, "token"));
+    assertThat(
+        ex.getMessage(),
+        is(
+            equalTo(
+                "Circular library includes found: "
+                    + "Common 1.0.000 -> Helpers 1.0.000 -> Common 1.0.000")));
+  }
+
+  @Test
+  void testGetIncludedLibrariesThrowsBadRequestWhenTooDeep() {
+    CqlLibrary measureLib = includingLibrary("Measure", "Common");
+    CqlLibrary common = includingLibrary("Common", "Helpers");
+    when(cqlLibraryRepository.findById("Measure_ID")).thenReturn(Optional.of(measureLib));
+    when(cqlLibraryRepository.findVersionedLibraries(anyList())).thenReturn(List.of(common));
+
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.getIncludedLibraries("Measure_ID", 1, false, "token"));
+    assertThat(
+        ex.getMessage(), is(equalTo("Includes of library Measure nest deeper than 1 levels.")));
+  }
+
+  @Test
+  void testGetIncludedLibrariesThrowsNotFoundForMissingInclude() {
+    CqlLibrary measureLib = includingLibrary("Measure", "Common");
+    when(cqlLibraryRepository.findById("Measure_ID")).thenReturn(Optional.of(measureLib));
+    when(cqlLibraryRepository.findVersionedLibraries(anyList())).thenReturn(List.of());
+
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> cqlLibraryService.getIncludedLibraries("Measure_ID", 10, false, "token"));
+  }
+
+  @Test
+  void testGetIncludedLibrariesTranslatesStaleElm() {
+    CqlLibrary measureLib = includingLibrary("Measure", "Common");
+    CqlLibrary common = includingLibrary("Common");
+    when(cqlLibraryRepository.findById("Measure_ID")).thenReturn(Optional.of(measureLib));
+    when(cqlLibraryRepository.findVersionedLibraries(anyList())).thenReturn(List.of(common));
+    when(cqlLibraryRepository.findIdsElmTranslatedBy(anyList(), any())).thenReturn(Set.of());
+    when(elmTranslatorClient.getCachedElmJson("library Common", "QI-Core v4.1.1", "token"))
+        .thenReturn(ElmJson.builder().json("{}").xml("<library/>").build());
+
+    List<IncludedLibraryDTO> output =
+        cqlLibraryService.getIncludedLibraries("Measure_ID", 10, true, "token");
+
+    assertThat(output.get(0).getElmJson(), is(equalTo("{}")));
+    assertThat(output.get(0).getElmXml(), is(equalTo("<library/>")));
+  }
+
+  @Test
+  void testGetIncludedLibrariesThrowsNotFoundForMissingLibrary() {
+    when(cqlLibraryRepository.findById("Missing_ID")).thenReturn(Optional.empty());
+    assertThrows(
+        ResourceNotFoundException.class,
+        () -> cqlLibraryService.getIncludedLibraries("Missing_ID", 10, false, "token"));
+  }
+
+  @Test
+  void testGetIncludedLibrariesRejectsInvalidDepth() {
+    Exception ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> cqlLibraryService.getIncludedLibraries("Measure_ID", 0, false, "token"));
+    assertThat(ex.getMessage(), is(equalTo("Depth must be between 1 and 25.")));
+  }
 }
@@ -7,24 +7,39 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import gov.cms.madie.cqllibraryservice.config.EnvironmentConfig;
 import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceException;
+import gov.cms.madie.cqllibraryservice.exceptions.CqlElmTranslationServiceUnavailableException;
 import gov.cms.madie.models.common.ModelType;
 import gov.cms.madie.models.measure.ElmJson;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +47,13 @@ class ElmTranslatorClientTest {
 
   @Mock private EnvironmentConfig environmentConfig;
   @Mock private RestTemplate restTemplate;
+  @Spy private Cache<String, ElmJson> elmJsonCache = Caffeine.newBuilder().build();
+
+  @Spy
+  private CircuitBreakerRegistry elmTranslatorCircuitBreakerRegistry =
+      CircuitBreakerRegistry.ofDefaults();
+
+  @Spy private BulkheadRegistry elmTranslatorBulkheadRegistry = BulkheadRegistry.ofDefaults();
 
   @InjectMocks private ElmTranslatorClient elmTranslatorClient;
 
@@ -58,6 +80,42 @@ class ElmTranslatorClientTest {
         () -> elmTranslatorClient.getElmJson("TEST_CQL", "QDM v5.6", "TEST_TOKEN"));
   }
 
+  @Test
+  void testGetElmJsonFailsFastWhenCircuitIsOpen() {
+    elmTranslatorCircuitBreakerRegistry.circuitBreaker("qdmElmTranslator").transitionToOpenState();
+    assertThrows(
+        CqlElmTranslationServiceUnavailableException.class,
+        () ->
+            elmTranslatorClient.getElmJson("TEST_CQL", ModelType.QDM_5_6.getValue(), "TEST_TOKEN"));
+    verify(restTemplate, times(0))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  void testOpenQdmCircuitDoesNotAffectFhirTranslator() {
+    elmTranslatorCircuitBreakerRegistry.circuitBreaker("qdmElmTranslator").transitionToOpenState();
+    ElmJson elmJson = ElmJson.builder().json("{}").build();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenReturn(ResponseEntity.ok(elmJson));
+    ElmJson output =
+        elmTranslatorClient.getElmJson("TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    assertThat(output, is(equalTo(elmJson)));
+  }
+
+  @Test
+  void testGetElmJsonRejectsCallsWhenBulkheadIsFull() {
+    elmTranslatorBulkheadRegistry
+        .bulkhead("fhirElmTranslator", BulkheadConfig.custom().maxConcurrentCalls(1).build())
+        .tryAcquirePermission();
+    assertThrows(
+        CqlElmTranslationServiceUnavailableException.class,
+        () ->
+            elmTranslatorClient.getElmJson("TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN"));
+    verify(restTemplate, times(0))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
   @Test
   void testRestTemplateReturnsElmJson() {
     ElmJson elmJson = ElmJson.builder().json("{}").xml("<></>").build();
@@ -69,6 +127,221 @@ class ElmTranslatorClientTest {
     assertThat(output, is(equalTo(elmJson)));
   }
 
+  @Test
+  void testGetCachedElmJsonTranslatesOnlyOnce() {
+    ElmJson elmJson = ElmJson.builder().json("{}").xml("<></>").build();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenReturn(ResponseEntity.ok(elmJson));
+    ElmJson first =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    ElmJson second =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "OTHER_TOKEN");
+    assertThat(first, is(equalTo(elmJson)));
+    assertThat(second, is(equalTo(elmJson)));
+    verify(restTemplate, times(1))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  void testGetCachedElmJsonCoalescesConcurrentTranslations() throws Exception {
+    ElmJson elmJson = ElmJson.builder().json("{}").xml("<></>").build();
+    CompletableFuture<ElmJson> follower = new CompletableFuture<>();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenAnswer(
+            invocation -> {
+              // a second request for the same CQL arrives while this translation is in flight
+              Thread thread =
+                  new Thread(
+                      () ->
+                          follower.complete(
+                              elmTranslatorClient.getCachedElmJson(
+                                  "TEST_CQL", ModelType.QI_CORE.getValue(), "OTHER_TOKEN")));
+              thread.start();
+              long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+              while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+              }
+              return ResponseEntity.ok(elmJson);
+            });
+
+    ElmJson leader =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+
+    assertThat(leader, is(equalTo(elmJson)));
+    assertThat(follower.get(5, TimeUnit.SECONDS), is(equalTo(elmJson)));
+    verify(restTemplate, times(1))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  void testGetCachedElmJsonSharesFailureWithWaitingRequests() throws Exception {
+    CompletableFuture<Throwable> follower = new CompletableFuture<>();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenAnswer(
+            invocation -> {
+              Thread thread =
+                  new Thread(
+                      () -> {
+                        try {
+                          elmTranslatorClient.getCachedElmJson(
+                              "TEST_CQL", ModelType.QI_CORE.getValue(), "OTHER_TOKEN");
+                          follower.complete(null);
+                        } catch (Exception ex) {
+                          follower.complete(ex);
+                        }
+                      });
+              thread.start();
+              long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+              while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+              }
+              throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+            });
+
+    assertThrows(
+        CqlElmTranslationServiceException.class,
+        () ->
+            elmTranslatorClient.getCachedElmJson(
+                "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN"));
+
+    assertThat(
+        follower.get(5, TimeUnit.SECONDS) instanceof CqlElmTranslationServiceException, is(true));
+    verify(restTemplate, times(1))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  void testGetCachedElmJsonSharesErrorWithWaitingRequests() throws Exception {
+    CompletableFuture<Throwable> follower = new CompletableFuture<>();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenAnswer(
+            invocation -> {
+              Thread thread =
+                  new Thread(
+                      () -> {
+                        try {
+                          elmTranslatorClient.getCachedElmJson(
+                              "TEST_CQL", ModelType.QI_CORE.getValue(), "OTHER_TOKEN");
+                          follower.complete(null);
+                        } catch (Throwable ex) {
+                          follower.complete(ex);
+                        }
+                      });
+              thread.start();
+              long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+              while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+              }
+              throw new StackOverflowError("translation");
+            });
+
+    assertThrows(
+        StackOverflowError.class,
+        () ->
+            elmTranslatorClient.getCachedElmJson(
+                "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN"));
+
+    // the waiting request is released with the error instead of hanging in join()
+    assertThat(follower.get(5, TimeUnit.SECONDS) instanceof StackOverflowError, is(true));
+    verify(restTemplate, times(1))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testGetCachedElmJsonRetriesWithOwnTokenAfterClientError() throws Exception {
+    ElmJson elmJson = ElmJson.builder().json("{}").xml("<></>").build();
+    CompletableFuture<ElmJson> follower = new CompletableFuture<>();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenAnswer(
+            invocation -> {
+              // a second request for the same CQL arrives while this translation is in flight
+              Thread thread =
+                  new Thread(
+                      () ->
+                          follower.complete(
+                              elmTranslatorClient.getCachedElmJson(
+                                  "TEST_CQL", ModelType.QI_CORE.getValue(), "OTHER_TOKEN")));
+              thread.start();
+              long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+              while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+              }
+              throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED);
+            })
+        .thenReturn(ResponseEntity.ok(elmJson));
+
+    assertThrows(
+        CqlElmTranslationServiceException.class,
+        () ->
+            elmTranslatorClient.getCachedElmJson(
+                "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN"));
+
+    assertThat(follower.get(5, TimeUnit.SECONDS), is(equalTo(elmJson)));
+    ArgumentCaptor<HttpEntity<String>> entities = ArgumentCaptor.forClass(HttpEntity.class);
+    verify(restTemplate, times(2))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), entities.capture(), any(Class.class));
+    assertThat(
+        entities.getAllValues().get(1).getHeaders().getFirst(HttpHeaders.AUTHORIZATION),
+        is(equalTo("OTHER_TOKEN")));
+  }
+
+  @Test
+  void testGetCachedElmJsonKeysOnModel() {
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenReturn(ResponseEntity.ok(ElmJson.builder().json("{}").build()));
+    elmTranslatorClient.getCachedElmJson("TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    elmTranslatorClient.getCachedElmJson("TEST_CQL", ModelType.QDM_5_6.getValue(), "TEST_TOKEN");
+    verify(restTemplate, times(2))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
+  @Test
+  void testGetCachedElmJsonDoesNotCacheFailures() {
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenThrow(new HttpClientErrorException(HttpStatus.FORBIDDEN))
+        .thenReturn(ResponseEntity.ok(ElmJson.builder().json("{}").build()));
+    assertThrows(
+        CqlElmTranslationServiceException.class,
+        () ->
+            elmTranslatorClient.getCachedElmJson(
+                "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN"));
+    ElmJson output =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    assertThat(output.getJson(), is(equalTo("{}")));
+  }
+
+  @Test
+  void testGetCachedElmJsonDoesNotCacheElmWithErrors() {
+    ElmJson withErrors =
+        ElmJson.builder().json("{\"errorExceptions\": [{\"message\": \"error\"}]}").build();
+    when(restTemplate.exchange(
+            any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class)))
+        .thenReturn(ResponseEntity.ok(withErrors))
+        .thenReturn(ResponseEntity.ok(ElmJson.builder().json("{}").build()));
+    ElmJson first =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    ElmJson second =
+        elmTranslatorClient.getCachedElmJson(
+            "TEST_CQL", ModelType.QI_CORE.getValue(), "TEST_TOKEN");
+    assertThat(first, is(equalTo(withErrors)));
+    assertThat(second.getJson(), is(equalTo("{}")));
+    verify(restTemplate, times(2))
+        .exchange(any(URI.class), eq(HttpMethod.PUT), any(HttpEntity.class), any(Class.class));
+  }
+
   @Test
   void testHasErrorsHandlesNull() {
     boolean output = elmTranslatorClient.hasErrors(null);
@@ -120,6 +393,23 @@ class ElmTranslatorClientTest {
     assertThat(output, is(false));
   }
 
+  @Test
+  void testHasErrorsIgnoresNestedErrorExceptions() {
+    final String json =
+        "{\"library\": {\"errorExceptions\": [{\"message\": \"nested\"}]}, \"errorExceptions\": []}";
+    ElmJson elmJson = ElmJson.builder().json(json).build();
+    boolean output = elmTranslatorClient.hasErrors(elmJson);
+    assertThat(output, is(false));
+  }
+
+  @Test
+  void testHasErrorsStopsReadingAtErrorExceptions() {
+    final String json = "{\"errorExceptions\": [{\"message\": \"error\"}], \"library\": NOT_JSON";
+    ElmJson elmJson = ElmJson.builder().json(json).build();
+    boolean output = elmTranslatorClient.hasErrors(elmJson);
+    assertThat(output, is(true));
+  }
+
   @Test
   void testHasErrorsReturnsFalseForMissingField() {
     final String json =
@@ -1,6 +1,10 @@
 package gov.cms.madie.cqllibraryservice.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import gov.cms.madie.cqllibraryservice.repositories.LibrarySetRepository;
+import gov.cms.madie.models.access.AclSpecification;
+import gov.cms.madie.models.access.RoleEnum;
 import gov.cms.madie.models.library.LibrarySet;
 import org.junit.jupiter.api.Assertions;
 import gov.cms.madie.cqllibraryservice.exceptions.ResourceNotFoundException;
@@ -9,12 +13,18 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,6 +38,7 @@ class LibrarySetServiceTest {
 
   @InjectMocks private LibrarySetService librarySetService;
   @Mock LibrarySetRepository librarySetRepository;
+  @Spy Cache<String, LibrarySet> librarySetCache = Caffeine.newBuilder().build();
   LibrarySet librarySet;
 
   @BeforeEach
@@ -67,4 +78,95 @@ class LibrarySetServiceTest {
     verify(librarySetRepository, times(1)).findByLibrarySetId(anyString());
     verify(librarySetRepository, times(0)).save(any(LibrarySet.class));
   }
+
+  @Test
+  void testFindByLibrarySetIdReadsRepositoryOncePerSet() {
+    when(librarySetRepository.findByLibrarySetId(anyString())).thenReturn(Optional.of(librarySet));
+
+    librarySetService.findByLibrarySetId("set-1");
+    LibrarySet set = librarySetService.findByLibrarySetId("set-1");
+
+    assertThat(set.getOwner(), is(equalTo("user-1")));
+    verify(librarySetRepository, times(1)).findByLibrarySetId("set-1");
+  }
+
+  @Test
+  void testFindByLibrarySetIdReturnsCopiesOfCachedSet() {
+    AclSpecification acl =
+        new AclSpecification("user-2", new ArrayList<>(List.of(RoleEnum.SHARED_WITH)));
+    librarySet.setAcls(new ArrayList<>(List.of(acl)));
+    librarySetCache.put("set-1", librarySet);
+
+    LibrarySet set = librarySetService.findByLibrarySetId("set-1");
+    set.setOwner("user-3");
+    set.getAcls().get(0).getRoles().add(RoleEnum.OWNER);
+    set.getAcls().add(new AclSpecification("user-3", List.of(RoleEnum.SHARED_WITH)));
+
+    LibrarySet cached = librarySetCache.getIfPresent("set-1");
+    assertThat(cached.getOwner(), is(equalTo("user-1")));
+    assertThat(cached.getAcls(), is(equalTo(List.of(acl))));
+    assertThat(acl.getRoles(), is(equalTo(List.of(RoleEnum.SHARED_WITH))));
+    assertThat(
+        librarySetService.findByLibrarySetIds(Set.of("set-1")).get("set-1"),
+        is(equalTo(librarySet)));
+    assertThat(
+        librarySetService.findByLibrarySetIds(Set.of("set-1")).get("set-1") == librarySet,
+        is(false));
+  }
+
+  @Test
+  void testFindByLibrarySetIdDoesNotCacheMissingSet() {
+    when(librarySetRepository.findByLibrarySetId(anyString())).thenReturn(Optional.empty());
+
+    assertThat(librarySetService.findByLibrarySetId("set-1"), is(nullValue()));
+    assertThat(librarySetService.findByLibrarySetId("set-1"), is(nullValue()));
+    verify(librarySetRepository, times(2)).findByLibrarySetId("set-1");
+  }
+
+  @Test
+  void testUpdateOwnershipEvictsCachedSet() {
+    librarySetCache.put("set-1", librarySet);
+    when(librarySetRepository.findByLibrarySetId(anyString())).thenReturn(Optional.of(librarySet));
+    when(librarySetRepository.save(any(LibrarySet.class))).thenReturn(librarySet);
+
+    librarySetService.updateOwnership("set-1", "testUser");
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+  }
+
+  @Test
+  void testUpdateLibrarySetAclsEvictsCachedSet() {
+    librarySetCache.put("set-1", librarySet);
+    when(librarySetRepository.findByLibrarySetId(anyString())).thenReturn(Optional.of(librarySet));
+    when(librarySetRepository.save(any(LibrarySet.class))).thenReturn(librarySet);
+
+    librarySetService.updateLibrarySetAcls("set-1", "user-2", RoleEnum.SHARED_WITH);
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+  }
+
+  @Test
+  void testFindByLibrarySetIdsReadsOnlyUncachedSets() {
+    librarySetCache.put("set-1", librarySet);
+    LibrarySet other = LibrarySet.builder().librarySetId("set-2").owner("user-2").build();
+    when(librarySetRepository.findAllByLibrarySetIdIn(List.of("set-2"))).thenReturn(List.of(other));
+
+    Map<String, LibrarySet> sets = librarySetService.findByLibrarySetIds(Set.of("set-1", "set-2"));
+
+    assertThat(sets.get("set-1").getOwner(), is(equalTo("user-1")));
+    assertThat(sets.get("set-2").getOwner(), is(equalTo("user-2")));
+    assertThat(librarySetCache.getIfPresent("set-2"), is(equalTo(other)));
+  }
+
+  @Test
+  void testEvictLibrarySets() {
+    LibrarySet other = LibrarySet.builder().librarySetId("set-2").owner("user-2").build();
+    librarySetCache.put("set-1", librarySet);
+    librarySetCache.put("set-2", other);
+
+    librarySetService.evictLibrarySets(List.of("set-1"));
+
+    assertThat(librarySetCache.getIfPresent("set-1"), is(nullValue()));
+    assertThat(librarySetCache.getIfPresent("set-2"), is(equalTo(other)));
+  }
 }
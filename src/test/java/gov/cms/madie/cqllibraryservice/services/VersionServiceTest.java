@@ -6,6 +6,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import gov.cms.madie.cqllibraryservice.exceptions.*;
@@ -248,13 +249,16 @@ class VersionServiceTest {
     when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(existingCqlLibrary);
     when(cqlLibraryRepository.findMaxVersionByLibrarySetId(anyString()))
         .thenReturn(Optional.of(Version.parse("1.0.0")));
-    when(cqlLibraryRepository.save(any(CqlLibrary.class))).thenReturn(updatedCqlLibrary);
+    when(cqlLibraryRepository.saveWithElmTranslatedBy(any(CqlLibrary.class), any()))
+        .thenReturn(updatedCqlLibrary);
     when(elmTranslatorClient.getElmJson(anyString(), anyString(), anyString()))
         .thenReturn(ElmJson.builder().json("{}").xml("<></>").build());
     when(elmTranslatorClient.hasErrors(any(ElmJson.class))).thenReturn(false);
+    when(elmTranslatorClient.getTranslatorVersion()).thenReturn("3.10.0");
     versionService.createVersion("testCqlLibraryId", true, "testUser", "accesstoken");
 
-    verify(cqlLibraryRepository, times(1)).save(cqlLibraryArgumentCaptor.capture());
+    verify(cqlLibraryRepository, times(1))
+        .saveWithElmTranslatedBy(cqlLibraryArgumentCaptor.capture(), eq("3.10.0"));
     CqlLibrary savedValue = cqlLibraryArgumentCaptor.getValue();
 
     assertFalse(savedValue.isDraft());
@@ -269,6 +273,45 @@ class VersionServiceTest {
     assertThat(actionTypeArgumentCaptor.getValue(), is(equalTo(ActionType.VERSIONED_MAJOR)));
   }
 
+  @Test
+  void testCreateVersionThrowsConflictWhenVersionCreatedConcurrently() {
+    CqlLibrary existingCqlLibrary =
+        CqlLibrary.builder()
+            .id("testCqlLibraryId")
+            .cqlLibraryName("testCql")
+            .createdBy("testUser")
+            .draft(true)
+            .cql("library testCql version '1.0.000'")
+            .librarySetId("testLibrarySetId")
+            .version(Version.parse("1.0.000"))
+            .model(ModelType.QI_CORE.toString())
+            .librarySet(
+                LibrarySet.builder().librarySetId("testLibrarySetId").owner("testUser").build())
+            .build();
+    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(existingCqlLibrary);
+    when(cqlLibraryRepository.findMaxVersionByLibrarySetId(anyString()))
+        .thenReturn(Optional.of(Version.parse("1.0.000")));
+    when(elmTranslatorClient.getElmJson(anyString(), anyString(), anyString()))
+        .thenReturn(ElmJson.builder().json("{}").xml("<></>").build());
+    when(elmTranslatorClient.hasErrors(any(ElmJson.class))).thenReturn(false);
+    when(cqlLibraryRepository.saveWithElmTranslatedBy(any(CqlLibrary.class), any()))
+        .thenThrow(new org.springframework.dao.DuplicateKeyException("E11000"));
+
+    GeneralConflictException ex =
+        assertThrows(
+            GeneralConflictException.class,
+            () ->
+                versionService.createVersion("testCqlLibraryId", true, "testUser", "accesstoken"));
+
+    assertThat(
+        ex.getMessage(),
+        is(
+            equalTo(
+                "Version 2.0.000 of CQL Library testCql was just created by another request."
+                    + " Please retry.")));
+    verifyNoInteractions(actionLogService);
+  }
+
   @Test
   void testCreateVersionMinorSuccess() {
     CqlLibrary existingCqlLibrary =
@@ -292,12 +335,14 @@ class VersionServiceTest {
     when(cqlLibraryRepository.findMaxMinorVersionByLibrarySetIdAndVersionMajor(
             anyString(), anyInt()))
         .thenReturn(Optional.of(Version.parse("1.0.0")));
-    when(cqlLibraryRepository.save(any(CqlLibrary.class))).thenReturn(updatedCqlLibrary);
+    when(cqlLibraryRepository.saveWithElmTranslatedBy(any(CqlLibrary.class), any()))
+        .thenReturn(updatedCqlLibrary);
     when(elmTranslatorClient.getElmJson(anyString(), anyString(), anyString()))
         .thenReturn(ElmJson.builder().json("{}").xml("<></>").build());
     when(elmTranslatorClient.hasErrors(any(ElmJson.class))).thenReturn(false);
     versionService.createVersion("testCqlLibraryId", false, "testUser", "accesstoken");
-    verify(cqlLibraryRepository, times(1)).save(cqlLibraryArgumentCaptor.capture());
+    verify(cqlLibraryRepository, times(1))
+        .saveWithElmTranslatedBy(cqlLibraryArgumentCaptor.capture(), any());
     CqlLibrary savedValue = cqlLibraryArgumentCaptor.getValue();
 
     assertFalse(savedValue.isDraft());
@@ -422,6 +467,60 @@ class VersionServiceTest {
     assertThat(savedValue.getLibrarySetId(), is(equalTo(existingCqlLibrary.getLibrarySetId())));
   }
 
+  @Test
+  void testCreateDraftRejectsNameTakenByConcurrentRequest() {
+    CqlLibrary existingCqlLibrary =
+        CqlLibrary.builder()
+            .id("testCqlLibraryId")
+            .cqlLibraryName("testCqlLibraryName")
+            .createdBy("testUser")
+            .cql("library testCql version '1.0.000'")
+            .draft(false)
+            .librarySetId("testLibrarySetId")
+            .version(Version.parse("1.0.000"))
+            .librarySet(
+                LibrarySet.builder().librarySetId("testLibrarySetId").owner("testUser").build())
+            .build();
+    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(existingCqlLibrary);
+    when(cqlLibraryRepository.existsByLibrarySetIdAndDraft(anyString(), anyBoolean()))
+        .thenReturn(false);
+    when(cqlLibraryRepository.save(any(CqlLibrary.class)))
+        .thenThrow(new org.springframework.dao.DuplicateKeyException("E11000"));
+
+    DuplicateKeyException ex =
+        assertThrows(
+            DuplicateKeyException.class,
+            () ->
+                versionService.createDraft(
+                    "testCqlLibraryId", "testNewCqlLibraryName", "testUser"));
+    assertThat(ex.getKey(), is(equalTo("cqlLibraryName")));
+  }
+
+  @Test
+  void testCreateDraftRejectsDraftSavedByConcurrentRequest() {
+    CqlLibrary existingCqlLibrary =
+        CqlLibrary.builder()
+            .id("testCqlLibraryId")
+            .cqlLibraryName("testCqlLibraryName")
+            .createdBy("testUser")
+            .cql("library testCqlLibraryName version '1.0.000'")
+            .draft(false)
+            .librarySetId("testLibrarySetId")
+            .version(Version.parse("1.0.000"))
+            .librarySet(
+                LibrarySet.builder().librarySetId("testLibrarySetId").owner("testUser").build())
+            .build();
+    when(cqlLibraryService.findCqlLibraryById(anyString())).thenReturn(existingCqlLibrary);
+    when(cqlLibraryRepository.existsByLibrarySetIdAndDraft(anyString(), anyBoolean()))
+        .thenReturn(false);
+    when(cqlLibraryRepository.save(any(CqlLibrary.class)))
+        .thenThrow(new org.springframework.dao.DuplicateKeyException("E11000"));
+
+    assertThrows(
+        ResourceNotDraftableException.class,
+        () -> versionService.createDraft("testCqlLibraryId", "testCqlLibraryName", "testUser"));
+  }
+
   @Test
   void testCreateDraftThrowsExceptionWhenDraftAlreadyExists() {
     AclSpecification aclSpecification = new AclSpecification();
@@ -0,0 +1,51 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.cms.madie.cqllibraryservice.exceptions.BadRequestObjectException;
+import gov.cms.madie.models.library.CqlLibrary;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class ProjectionUtilsTest {
+
+  @Test
+  void testNoFieldsSelectsEverything() {
+    assertThat(ProjectionUtils.getLibraryFields(null), is(nullValue()));
+    assertThat(ProjectionUtils.getLibraryFields(List.of()), is(nullValue()));
+  }
+
+  @Test
+  void testSelectedFieldsAlwaysIncludeId() {
+    assertThat(
+        ProjectionUtils.getLibraryFields(List.of(" cqlLibraryName", "version ", "")),
+        is(equalTo(Set.of("id", "cqlLibraryName", "version"))));
+  }
+
+  @Test
+  void testUnknownAndTransientFieldsAreRejected() {
+    BadRequestObjectException ex =
+        assertThrows(
+            BadRequestObjectException.class,
+            () -> ProjectionUtils.getLibraryFields(List.of("librarySet", "elm", "cql")));
+    assertThat(ex.getMessage(), is(equalTo("Unknown library fields: librarySet, elm.")));
+  }
+
+  @Test
+  void testFieldMapHoldsOnlySelectedFields() {
+    CqlLibrary library =
+        CqlLibrary.builder().id("lib-1").cqlLibraryName("Lib1").cql("library Lib1").build();
+    Map<String, Object> values =
+        ProjectionUtils.toFieldMap(
+            new ObjectMapper(), library, Set.of("id", "cqlLibraryName", "active"));
+    assertThat(
+        values, is(equalTo(Map.of("id", "lib-1", "cqlLibraryName", "Lib1", "active", false))));
+  }
+}
@@ -0,0 +1,59 @@
+package gov.cms.madie.cqllibraryservice.utils;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import gov.cms.madie.models.common.Version;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class VersionKeyUtilsTest {
+
+  @Test
+  void testKeyRoundTrips() {
+    Version version = Version.builder().major(12).minor(345).revisionNumber(999).build();
+    assertThat(VersionKeyUtils.fromKey(VersionKeyUtils.toKey(version)), is(equalTo(version)));
+  }
+
+  @Test
+  void testKeysOrderNumerically() {
+    List<Version> versions =
+        List.of(
+            Version.parse("10.0.000"),
+            Version.parse("2.10.000"),
+            Version.parse("2.9.999"),
+            Version.parse("2.9.010"),
+            Version.parse("0.0.000"));
+    List<Version> byKey =
+        versions.stream()
+            .sorted(Comparator.comparing(VersionKeyUtils::toKey, Comparator.reverseOrder()))
+            .toList();
+    assertThat(byKey, is(equalTo(versions)));
+  }
+
+  @Test
+  void testMajorBoundsContainAllVersionsOfMajor() {
+    long key = VersionKeyUtils.toKey(Version.parse("3.1048575.1048575"));
+    assertThat(key >= VersionKeyUtils.getMajorLowerBound(3), is(true));
+    assertThat(key < VersionKeyUtils.getMajorLowerBound(4), is(true));
+  }
+
+  @Test
+  void testNullVersionHasNoKey() {
+    assertThat(VersionKeyUtils.toKey(null), is(nullValue()));
+  }
+
+  @Test
+  void testOutOfRangeVersionIsRejected() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> VersionKeyUtils.toKey(Version.builder().minor(1 << 20).build()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> VersionKeyUtils.toKey(Version.builder().revisionNumber(-1).build()));
+  }
+}